@@ -0,0 +1,126 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of an acquire/release pair of pooled direct buffers.
+ *
+ * {@link #magazine()} exercises {@link BufferPool} with its per-thread magazines, {@link #sharedQueue()} a single
+ * shared free list as used before the magazines were introduced.  Run {@link #main(String[])} to compare both
+ * across 1 to 32 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BufferPoolBenchmark
+{
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    @Param({"256", "262144"})
+    public int bufferSize;
+
+    private BufferPool _magazinePool;
+    private SharedQueueBufferPool _sharedQueuePool;
+
+    @Setup
+    public void setUp()
+    {
+        final int slabSize = Math.max(bufferSize, 256 * 1024);
+        _magazinePool = new BufferPool(bufferSize, slabSize, 1024);
+        _sharedQueuePool = new SharedQueueBufferPool(bufferSize, 1024);
+    }
+
+    @Benchmark
+    public ByteBuffer magazine()
+    {
+        final ByteBuffer buffer = _magazinePool.getBuffer();
+        _magazinePool.returnBuffer(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer sharedQueue()
+    {
+        final ByteBuffer buffer = _sharedQueuePool.getBuffer();
+        _sharedQueuePool.returnBuffer(buffer);
+        return buffer;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        for (int threads : THREAD_COUNTS)
+        {
+            new Runner(new OptionsBuilder().include(BufferPoolBenchmark.class.getSimpleName())
+                                           .threads(threads)
+                                           .build()).run();
+        }
+    }
+
+    private static final class SharedQueueBufferPool
+    {
+        private final int _bufferSize;
+        private final int _maxSize;
+        private final ConcurrentLinkedQueue<ByteBuffer> _pooledBuffers = new ConcurrentLinkedQueue<>();
+
+        private SharedQueueBufferPool(final int bufferSize, final int maxSize)
+        {
+            _bufferSize = bufferSize;
+            _maxSize = maxSize;
+        }
+
+        ByteBuffer getBuffer()
+        {
+            final ByteBuffer buf = _pooledBuffers.poll();
+            return buf == null ? ByteBuffer.allocateDirect(_bufferSize) : buf;
+        }
+
+        void returnBuffer(final ByteBuffer buf)
+        {
+            buf.clear();
+            if (_pooledBuffers.size() < _maxSize)
+            {
+                _pooledBuffers.add(buf);
+            }
+        }
+    }
+}
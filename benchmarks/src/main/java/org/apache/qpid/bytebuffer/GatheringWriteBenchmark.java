@@ -0,0 +1,178 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the number of gathering writes needed to send a batch of small frames, mirroring the write path of
+ * {@code NonBlockingConnection}.
+ *
+ * With a {@code coalescingThreshold} of zero every frame is written as soon as it is produced; otherwise frames are
+ * held back until the threshold is reached.  {@code maxGatheringWriteBuffers} caps the number of buffers passed to
+ * each write.  The {@code writes} counter reports the number of write calls made, which on a socket channel each
+ * correspond to a system call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GatheringWriteBenchmark
+{
+    private static final int FRAMES_PER_BATCH = 1024;
+
+    @Param({"64", "1024"})
+    public int frameSize;
+
+    @Param({"0", "32768"})
+    public int coalescingThreshold;
+
+    @Param({"1024"})
+    public int maxGatheringWriteBuffers;
+
+    private final List<QpidByteBuffer> _pending = new ArrayList<>();
+    private QpidByteBuffer _frame;
+    private CountingChannel _channel;
+
+    @Setup
+    public void setUp()
+    {
+        _frame = QpidByteBuffer.wrap(ByteBuffer.allocateDirect(frameSize));
+        _channel = new CountingChannel();
+    }
+
+    @Benchmark
+    public long writeBatch(final WriteCounters counters) throws IOException
+    {
+        int buffered = 0;
+        for (int i = 0; i < FRAMES_PER_BATCH; i++)
+        {
+            _pending.add(_frame.duplicate());
+            buffered += frameSize;
+            if (buffered >= coalescingThreshold)
+            {
+                flush(counters);
+                buffered = 0;
+            }
+        }
+        flush(counters);
+        return _channel._bytesWritten;
+    }
+
+    private void flush(final WriteCounters counters) throws IOException
+    {
+        while (!_pending.isEmpty())
+        {
+            QpidByteBuffer.write(_channel, _pending, maxGatheringWriteBuffers);
+            counters.writes++;
+            int written = 0;
+            while (written < _pending.size() && !_pending.get(written).hasRemaining())
+            {
+                _pending.get(written++).dispose();
+            }
+            _pending.subList(0, written).clear();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder().include(GatheringWriteBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters
+    public static class WriteCounters
+    {
+        public long writes;
+
+        @Setup(Level.Iteration)
+        public void reset()
+        {
+            writes = 0;
+        }
+    }
+
+    private static final class CountingChannel implements GatheringByteChannel
+    {
+        private long _bytesWritten;
+
+        @Override
+        public long write(final ByteBuffer[] srcs, final int offset, final int length)
+        {
+            long written = 0;
+            for (int i = offset; i < offset + length; i++)
+            {
+                written += write(srcs[i]);
+            }
+            return written;
+        }
+
+        @Override
+        public long write(final ByteBuffer[] srcs)
+        {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(final ByteBuffer src)
+        {
+            final int remaining = src.remaining();
+            src.position(src.limit());
+            _bytesWritten += remaining;
+            return remaining;
+        }
+
+        @Override
+        public boolean isOpen()
+        {
+            return true;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.ServerMessage;
+
+/**
+ * Measures {@link DefinedGroupMessageGroupManager} with many message groups shared by many consumers.
+ *
+ * Each benchmark thread plays the part of a consumer of the queue which offers itself the next entry, as happens when
+ * a consumer walks the queue: if the group of the entry might be assigned to it the consumer accepts the entry,
+ * otherwise the entry is recorded as skipped.  {@link #findEarliestAssignedAvailableEntry(Consumer)} measures the
+ * lookup made when a consumer is removed.  Run {@link #main(String[])} to measure across 1 to 32 consumers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MessageGroupManagerBenchmark
+{
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+    private static final int NUMBER_OF_ENTRIES = 65536;
+    private static final String GROUP_KEY = "group";
+
+    @Param({"100", "50000"})
+    public int groups;
+
+    private DefinedGroupMessageGroupManager _groupManager;
+    private QueueEntry[] _entries;
+
+    @Setup
+    public void setUp()
+    {
+        final Stub resetHelperStub = new Stub();
+        _groupManager = new DefinedGroupMessageGroupManager(GROUP_KEY,
+                                                            "default",
+                                                            Stub.create(MessageGroupManager.ConsumerResetHelper.class,
+                                                                        resetHelperStub));
+
+        final Random random = new Random(0);
+        _entries = new QueueEntry[NUMBER_OF_ENTRIES];
+        for (int i = 0; i < _entries.length; i++)
+        {
+            _entries[i] = createEntry(i, "group-" + random.nextInt(groups));
+        }
+    }
+
+    @Benchmark
+    public boolean assignGroupedEntry(final Consumer consumer)
+    {
+        final QueueEntry entry = _entries[consumer.nextIndex()];
+        return _groupManager.mightAssign(entry, consumer._consumer)
+               && _groupManager.acceptMessage(consumer._consumer, entry);
+    }
+
+    @Benchmark
+    public QueueEntry findEarliestAssignedAvailableEntry(final Consumer consumer)
+    {
+        return _groupManager.findEarliestAssignedAvailableEntry(consumer._consumer);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        for (int threads : THREAD_COUNTS)
+        {
+            new Runner(new OptionsBuilder().include(MessageGroupManagerBenchmark.class.getSimpleName())
+                                           .threads(threads)
+                                           .build()).run();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Consumer
+    {
+        private final Random _random = new Random();
+        private QueueConsumer<?> _consumer;
+        private int _index;
+
+        @Setup
+        public void setUp()
+        {
+            _consumer = Stub.create(QueueConsumer.class, new Stub());
+            _index = _random.nextInt(NUMBER_OF_ENTRIES);
+        }
+
+        int nextIndex()
+        {
+            _index = (_index + 1) % NUMBER_OF_ENTRIES;
+            return _index;
+        }
+    }
+
+    private static QueueEntry createEntry(final long messageNumber, final String group)
+    {
+        final Stub headerStub = new Stub();
+        headerStub.answer("getHeader", group);
+
+        final Stub messageStub = new Stub();
+        messageStub.answer("getMessageNumber", messageNumber);
+        messageStub.answer("getMessageHeader", Stub.create(AMQMessageHeader.class, headerStub));
+
+        final Stub entryStub = new Stub();
+        entryStub.answer("getMessage", Stub.create(ServerMessage.class, messageStub));
+        entryStub.answer("isAvailable", true);
+        entryStub.answer("acquire", true);
+        entryStub.answer("compareTo", new Stub.Answer()
+        {
+            @Override
+            public Object answer(final Object proxy, final Object[] args)
+            {
+                final long other = ((QueueEntry) args[0]).getMessage().getMessageNumber();
+                return messageNumber < other ? -1 : messageNumber > other ? 1 : 0;
+            }
+        });
+        return Stub.create(QueueEntry.class, entryStub);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import org.apache.qpid.server.configuration.updater.TaskExecutorImpl;
+import org.apache.qpid.server.message.ServerMessage;
+
+/**
+ * Measures the throughput of the entry list of a priority queue with ten priorities under concurrent producers and
+ * consumers.
+ *
+ * Producers add messages spread over the given number of priorities, leaving the others empty; consumers acquire and
+ * delete the first available entry, as a consumer of the queue would.  Run {@link #main(String[])} to measure with
+ * 1 to 16 producers and as many consumers.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PriorityQueueListBenchmark
+{
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16};
+    private static final int INITIAL_DEPTH = 10000;
+    private static final int MESSAGES_PER_PRODUCER = 1024;
+    private static final int PRIORITIES = 10;
+
+    @Param({"1", "3", "10"})
+    public int populatedPriorities;
+
+    private TaskExecutorImpl _taskExecutor;
+    private QueueEntryList _entries;
+
+    @Setup
+    public void setUp()
+    {
+        _taskExecutor = new TaskExecutorImpl();
+        _taskExecutor.start();
+
+        _entries = PriorityQueueList.newInstance(createQueue(_taskExecutor));
+
+        final Random random = new Random(0);
+        for (int i = 0; i < INITIAL_DEPTH; i++)
+        {
+            _entries.add(createMessage(i, random, populatedPriorities), null);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        _taskExecutor.stop();
+    }
+
+    @Benchmark
+    @Group("producersAndConsumers")
+    public QueueEntry produce(final Producer producer)
+    {
+        return _entries.add(producer.nextMessage(), null);
+    }
+
+    @Benchmark
+    @Group("producersAndConsumers")
+    public QueueEntry consume()
+    {
+        final QueueEntryIterator iterator = _entries.iterator();
+        while (iterator.advance())
+        {
+            final QueueEntry entry = iterator.getNode();
+            if (entry.acquire())
+            {
+                entry.delete();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        for (int threads : THREAD_COUNTS)
+        {
+            new Runner(new OptionsBuilder().include(PriorityQueueListBenchmark.class.getSimpleName())
+                                           .threadGroups(threads, threads)
+                                           .build()).run();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Producer
+    {
+        private final ServerMessage[] _messages = new ServerMessage[MESSAGES_PER_PRODUCER];
+        private int _next;
+
+        @Setup
+        public void setUp(final BenchmarkParams params)
+        {
+            final int populatedPriorities = Integer.parseInt(params.getParam("populatedPriorities"));
+            final Random random = new Random();
+            for (int i = 0; i < _messages.length; i++)
+            {
+                _messages[i] = createMessage(i, random, populatedPriorities);
+            }
+        }
+
+        ServerMessage nextMessage()
+        {
+            final ServerMessage message = _messages[_next];
+            _next = (_next + 1) % _messages.length;
+            return message;
+        }
+    }
+
+    private static PriorityQueueImpl createQueue(final TaskExecutorImpl taskExecutor)
+    {
+        final Map<String, Object> attributes = QueueStubs.createQueueAttributes("priorityQueueListBenchmark");
+        attributes.put(PriorityQueue.PRIORITIES, PRIORITIES);
+
+        final PriorityQueueImpl queue = new PriorityQueueImpl(attributes, QueueStubs.createVirtualHost(taskExecutor));
+        queue.open();
+        return queue;
+    }
+
+    private static ServerMessage createMessage(final long messageNumber,
+                                               final Random random,
+                                               final int populatedPriorities)
+    {
+        // priorities 0 to 9 map one to one to the ten priority levels
+        final Stub headerStub = new Stub();
+        headerStub.answer("getPriority", (byte) random.nextInt(populatedPriorities));
+        return QueueStubs.createMessage(messageNumber, headerStub);
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.qpid.server.configuration.updater.TaskExecutorImpl;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+
+/**
+ * Reports the heap occupied per queued message by the entries of each type of queue.
+ *
+ * The messages and their references are created, and held, before the entries are added, so that the figure reported
+ * is the cost of the entry and of the structures of the entry list only.  Each entry is added with an enqueue record
+ * created at that point, as a durable queue receives one from the store.  Run {@link #main(String[])}, optionally
+ * passing the number of messages (one million by default), with a fixed heap so that the measurement is not skewed
+ * by the heap growing.
+ */
+public class QueueEntryFootprint
+{
+    private static final int DEFAULT_MESSAGE_COUNT = 1000000;
+    private static final String KEY = "key";
+    private static final int PRIORITIES = 10;
+
+    // holds the messages of the queue being measured so that they are not collected before the entries are
+    private static ServerMessage[] _messages;
+    private static QueueEntryList _entries;
+
+    private enum QueueType
+    {
+        STANDARD, PRIORITY, SORTED, SORTED_SKIP_LIST, LAST_VALUE, PARTITIONED
+    }
+
+    public static void main(String[] args) throws Exception
+    {
+        final int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MESSAGE_COUNT;
+
+        final TaskExecutorImpl taskExecutor = new TaskExecutorImpl();
+        taskExecutor.start();
+        try
+        {
+            for (QueueType type : QueueType.values())
+            {
+                _messages = createMessages(messageCount);
+                _entries = createEntryList(type, taskExecutor);
+                final UUID queueId = UUID.randomUUID();
+
+                final long before = usedHeap();
+                for (int i = 0; i < messageCount; i++)
+                {
+                    _entries.add(_messages[i], new EnqueueRecord(queueId, i));
+                }
+                final long after = usedHeap();
+
+                System.out.println(String.format("%-16s %6.1f bytes per message",
+                                                 type,
+                                                 (after - before) / (double) messageCount));
+
+                _messages = null;
+                _entries = null;
+            }
+        }
+        finally
+        {
+            taskExecutor.stop();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+    private static QueueEntryList createEntryList(final QueueType type, final TaskExecutorImpl taskExecutor)
+    {
+        final VirtualHost<?> virtualHost = QueueStubs.createVirtualHost(taskExecutor);
+        final Map<String, Object> attributes = QueueStubs.createQueueAttributes("queueEntryFootprint-" + type);
+
+        final AbstractQueue<?> queue;
+        switch (type)
+        {
+            case PRIORITY:
+                attributes.put(PriorityQueue.PRIORITIES, PRIORITIES);
+                queue = new PriorityQueueImpl(attributes, virtualHost);
+                break;
+            case SORTED:
+            case SORTED_SKIP_LIST:
+                attributes.put(SortedQueue.SORT_KEY, KEY);
+                queue = new SortedQueueImpl(attributes, virtualHost);
+                break;
+            case LAST_VALUE:
+                attributes.put(LastValueQueue.LVQ_KEY, KEY);
+                queue = new LastValueQueueImpl(attributes, virtualHost);
+                break;
+            case PARTITIONED:
+                queue = new PartitionedQueueImpl(attributes, virtualHost);
+                break;
+            default:
+                queue = new StandardQueueImpl(attributes, virtualHost);
+                break;
+        }
+        queue.open();
+
+        if (type == QueueType.SORTED_SKIP_LIST)
+        {
+            return new ConcurrentSortedQueueEntryList((SortedQueueImpl) queue);
+        }
+        else if (type == QueueType.SORTED)
+        {
+            return new SortedQueueEntryList((SortedQueueImpl) queue);
+        }
+        return queue.getEntries();
+    }
+
+    private static ServerMessage[] createMessages(final int count)
+    {
+        final ServerMessage[] messages = new ServerMessage[count];
+        for (int i = 0; i < count; i++)
+        {
+            final Stub headerStub = new Stub();
+            headerStub.answer("getHeader", String.format("%09d", count - i));
+            headerStub.answer("getPriority", (byte) (i % PRIORITIES));
+            messages[i] = QueueStubs.createMessage(i, headerStub, true);
+        }
+        return messages;
+    }
+
+    private static final class EnqueueRecord implements MessageEnqueueRecord
+    {
+        private final UUID _queueId;
+        private final long _messageNumber;
+
+        private EnqueueRecord(final UUID queueId, final long messageNumber)
+        {
+            _queueId = queueId;
+            _messageNumber = messageNumber;
+        }
+
+        @Override
+        public UUID getQueueId()
+        {
+            return _queueId;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageNumber;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.qpid.server.configuration.updater.TaskExecutor;
+import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.BrokerModel;
+import org.apache.qpid.server.model.ConfiguredObjectFactory;
+import org.apache.qpid.server.model.ConfiguredObjectFactoryImpl;
+import org.apache.qpid.server.model.LifetimePolicy;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+
+/**
+ * Creates the stubbed broker objects on which the queue benchmarks build their queues and messages.
+ */
+final class QueueStubs
+{
+    private QueueStubs()
+    {
+    }
+
+    /**
+     * @return a virtual host providing what a queue needs to be opened, running its tasks on the given executor
+     */
+    static VirtualHost<?> createVirtualHost(final TaskExecutor taskExecutor)
+    {
+        final ConfiguredObjectFactory factory = new ConfiguredObjectFactoryImpl(BrokerModel.getInstance());
+        final Stub virtualHostStub = new Stub();
+        virtualHostStub.answer("getEventLogger", new EventLogger());
+        virtualHostStub.answer("getObjectFactory", factory);
+        virtualHostStub.answer("getModel", factory.getModel());
+        virtualHostStub.answer("getPrincipal", Stub.create(Principal.class, new Stub()));
+        virtualHostStub.answer("getTaskExecutor", taskExecutor);
+        virtualHostStub.answer("getChildExecutor", taskExecutor);
+        return Stub.create(VirtualHost.class, virtualHostStub);
+    }
+
+    /**
+     * @return the attributes of a non durable, permanent queue of the given name, to which those of the type of queue
+     *         may be added
+     */
+    static Map<String, Object> createQueueAttributes(final String name)
+    {
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Queue.ID, UUID.randomUUID());
+        attributes.put(Queue.NAME, name);
+        attributes.put(Queue.DURABLE, false);
+        attributes.put(Queue.LIFETIME_POLICY, LifetimePolicy.PERMANENT);
+        return attributes;
+    }
+
+    /**
+     * @return a non persistent message with the given number, whose header is answered by the given stub
+     */
+    static ServerMessage createMessage(final long messageNumber, final Stub headerStub)
+    {
+        return createMessage(messageNumber, headerStub, false);
+    }
+
+    static ServerMessage createMessage(final long messageNumber, final Stub headerStub, final boolean persistent)
+    {
+        final Stub messageStub = new Stub();
+        final Stub referenceStub = new Stub();
+        final ServerMessage message = Stub.create(ServerMessage.class, messageStub);
+        messageStub.answer("getMessageNumber", messageNumber);
+        messageStub.answer("isPersistent", persistent);
+        messageStub.answer("getMessageHeader", Stub.create(AMQMessageHeader.class, headerStub));
+        messageStub.answer("newReference", Stub.create(MessageReference.class, referenceStub));
+        referenceStub.answer("getMessage", message);
+        return message;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Answers the methods of a proxied interface by name, returning defaults for all other methods.  The broker objects
+ * the queue benchmarks depend on are stubbed this way as the benchmarks have no mocking library.
+ */
+final class Stub implements InvocationHandler
+{
+    interface Answer
+    {
+        Object answer(Object proxy, Object[] args);
+    }
+
+    private final Map<String, Object> _answers = new HashMap<>();
+
+    static <T> T create(final Class<T> type, final Stub stub)
+    {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, stub));
+    }
+
+    /**
+     * Sets the value returned by the methods of the given name.  If the value is an {@link Answer} the value returned
+     * is computed by it on each invocation.
+     */
+    void answer(final String methodName, final Object value)
+    {
+        _answers.put(methodName, value);
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+    {
+        final String name = method.getName();
+        if (_answers.containsKey(name))
+        {
+            final Object value = _answers.get(name);
+            return value instanceof Answer ? ((Answer) value).answer(proxy, args) : value;
+        }
+        else if ("equals".equals(name) && args != null && args.length == 1)
+        {
+            return proxy == args[0];
+        }
+        else if ("hashCode".equals(name) && args == null)
+        {
+            return System.identityHashCode(proxy);
+        }
+        else if ("toString".equals(name) && args == null)
+        {
+            return "Stub[" + method.getDeclaringClass().getSimpleName() + "]";
+        }
+        return defaultValue(method.getReturnType());
+    }
+    private static Object defaultValue(final Class<?> type)
+    {
+        if (type == Boolean.TYPE)
+        {
+            return Boolean.FALSE;
+        }
+        else if (type == Integer.TYPE)
+        {
+            return 0;
+        }
+        else if (type == Long.TYPE)
+        {
+            return 0L;
+        }
+        else if (type == Short.TYPE)
+        {
+            return (short) 0;
+        }
+        else if (type == Byte.TYPE)
+        {
+            return (byte) 0;
+        }
+        else if (type == Character.TYPE)
+        {
+            return (char) 0;
+        }
+        else if (type == Double.TYPE)
+        {
+            return 0d;
+        }
+        else if (type == Float.TYPE)
+        {
+            return 0f;
+        }
+        else if (type == List.class || type == Collection.class)
+        {
+            return Collections.emptyList();
+        }
+        else if (type == Set.class)
+        {
+            return Collections.emptySet();
+        }
+        else if (type == Map.class)
+        {
+            return Collections.emptyMap();
+        }
+        return null;
+    }
+}
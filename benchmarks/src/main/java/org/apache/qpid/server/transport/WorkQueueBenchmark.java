@@ -0,0 +1,109 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the cost of handing connection work to the IO threads of a {@link NetworkConnectionScheduler}.
+ *
+ * Each benchmark thread plays the part of an IO thread which schedules a connection it owns and then takes the next
+ * task from the work queue, as happens when a connection is rescheduled after processing.  {@code shared} uses the
+ * single queue shared by all IO threads, {@code workStealing} a queue per IO thread.  Run {@link #main(String[])} to
+ * compare both across 1 to 32 threads; sample mode reports the latency percentiles of each hand-off.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WorkQueueBenchmark
+{
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    @Param({"shared", "workStealing"})
+    public String queueType;
+
+    private WorkQueue _workQueue;
+
+    @Setup
+    public void setUp(final ThreadParams threadParams)
+    {
+        _workQueue = "workStealing".equals(queueType)
+                ? new WorkStealingQueue(threadParams.getThreadCount())
+                : new SharedWorkQueue();
+    }
+
+    @Benchmark
+    public Runnable handOff(final Worker worker) throws InterruptedException
+    {
+        _workQueue.add(worker, worker._index);
+        final Runnable task = _workQueue.take(worker._index);
+        task.run();
+        return task;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        for (int threads : THREAD_COUNTS)
+        {
+            new Runner(new OptionsBuilder().include(WorkQueueBenchmark.class.getSimpleName())
+                                           .threads(threads)
+                                           .build()).run();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Worker implements Runnable
+    {
+        private int _index;
+        private long _runCount;
+
+        @Setup
+        public void setUp(final ThreadParams threadParams)
+        {
+            _index = threadParams.getThreadIndex();
+        }
+
+        @Override
+        public void run()
+        {
+            _runCount++;
+        }
+    }
+}
@@ -155,6 +155,16 @@ public abstract class AbstractServerMessageImpl<X extends AbstractServerMessageI
         return resources != null && !resources.isEmpty();
     }
 
+    @Override
+    final public boolean isReferencedOnlyBy(TransactionLogResource resource)
+    {
+        Collection<UUID> resources = _resources;
+        return _referenceCount == 1
+               && resources != null
+               && resources.size() == 1
+               && resources.contains(resource.getId());
+    }
+
     @Override
     final public boolean isPersistent()
     {
@@ -46,6 +46,11 @@ public interface ServerMessage<T extends StorableMessageMetaData> extends Enqueu
 
     boolean isReferenced();
 
+    /**
+     * @return true if the only reference to the message is the one held by the given resource
+     */
+    boolean isReferencedOnlyBy(TransactionLogResource resource);
+
     long getArrivalTime();
 
     Object getConnectionReference();
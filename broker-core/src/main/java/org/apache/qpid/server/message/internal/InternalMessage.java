@@ -246,6 +246,12 @@ public class InternalMessage extends AbstractServerMessageImpl<InternalMessage,
                     {
                         return false;
                     }
+
+                    @Override
+                    public long compactContent()
+                    {
+                        return 0L;
+                    }
                 };
             }
         }
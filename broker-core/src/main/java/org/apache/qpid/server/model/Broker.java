@@ -171,6 +171,31 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
     @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE)
     int DEFAULT_BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE = 1024;
 
+    String BROKER_DIRECT_BYTE_BUFFER_POOL_MINIMUM_BUFFER_SIZE = "broker.directByteBufferPoolMinimumBufferSize";
+    @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_POOL_MINIMUM_BUFFER_SIZE,
+                           description = "Size of the smallest size class of the direct byte buffer pool."
+                                         + " Rounded up to a power of two.")
+    int DEFAULT_BROKER_DIRECT_BYTE_BUFFER_POOL_MINIMUM_BUFFER_SIZE = 256;
+
+    String BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE_CLASS_LIMITS = "broker.directByteBufferPoolSizeClassLimits";
+    @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE_CLASS_LIMITS,
+                           description = "A mapping of direct byte buffer pool size class (in bytes) to the maximum"
+                                         + " number of buffers retained by that class.  Size classes not mentioned"
+                                         + " retain up to " + BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE + " buffers.")
+    String DEFAULT_BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE_CLASS_LIMITS = "{}";
+
+    String BROKER_DIRECT_BYTE_BUFFER_RETENTION_SAMPLE_INTERVAL = "broker.directByteBufferRetentionSampleInterval";
+    @ManagedContextDefault(name = BROKER_DIRECT_BYTE_BUFFER_RETENTION_SAMPLE_INTERVAL,
+                           description = "One in how many pooled direct byte buffer allocations are tracked for"
+                                         + " retention and leaks.  Zero disables tracking.")
+    int DEFAULT_BROKER_DIRECT_BYTE_BUFFER_RETENTION_SAMPLE_INTERVAL = 0;
+
+    String BROKER_IO_INSTRUMENTATION_ENABLED = "broker.ioInstrumentationEnabled";
+    @ManagedContextDefault(name = BROKER_IO_INSTRUMENTATION_ENABLED,
+                           description = "If true, the selector and IO thread activity of the AMQP ports is recorded"
+                                         + " from startup. It can be turned on and off at runtime.")
+    boolean DEFAULT_BROKER_IO_INSTRUMENTATION_ENABLED = false;
+
     @ManagedAttribute(validValues = {"org.apache.qpid.server.model.BrokerImpl#getAvailableConfigurationEncrypters()"})
     String getConfidentialConfigurationEncryptionProvider();
 
@@ -240,6 +265,100 @@ public interface Broker<X extends Broker<X>> extends ConfiguredObject<X>, EventL
                       description = "Number of objects pending finalization")
     int getNumberOfObjectsPendingFinalization();
 
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Pooled Direct Memory Size",
+                      description = "Size of direct memory held by the buffer pool awaiting reuse")
+    long getPooledDirectMemorySize();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "In Use Pooled Direct Memory Size",
+                      description = "Size of direct memory in pooled buffers currently in use")
+    long getInUsePooledDirectMemorySize();
+
+    @ManagedOperation(nonModifying = true,
+                      description = "Returns the usage of each size class of the direct byte buffer pool")
+    Map<String, Map<String, Object>> getDirectBufferPoolStatistics();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Estimated Pinned Direct Memory Size",
+                      description = "Estimated size of pooled direct memory kept alive by live buffers."
+                                    + " Zero unless retention tracking is enabled.")
+    long getEstimatedPinnedDirectMemorySize();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Estimated Referenced Direct Memory Size",
+                      description = "Estimated size of pooled direct memory actually referenced by live buffers."
+                                    + " Zero unless retention tracking is enabled.")
+    long getEstimatedReferencedDirectMemorySize();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE,
+                      units = StatisticUnit.COUNT,
+                      label = "Direct Memory Leaks",
+                      description = "Number of sampled direct buffers garbage collected without being disposed")
+    long getDirectMemoryLeakCount();
+
+    @ManagedOperation(nonModifying = true,
+                      description = "Returns the direct memory retention observed by sampling pooled buffer"
+                                    + " allocations, including the allocation sites pinning the most memory")
+    Map<String, Object> getDirectMemoryRetention();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.COUNT,
+                      label = "Selector Wakeups Per Second",
+                      description = "Number of times per second the selectors of the AMQP ports returned from select."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getSelectorWakeupRate();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.TIME_DURATION,
+                      label = "Select Time",
+                      description = "99th percentile of the time in microseconds the selectors of the AMQP ports spent in select."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getSelectTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.TIME_DURATION,
+                      label = "IO Work Queue Time",
+                      description = "99th percentile of the time in microseconds connections of the AMQP ports waited for an IO"
+                                    + " thread. Zero unless IO instrumentation is enabled.")
+    long getIoWorkQueueTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.TIME_DURATION,
+                      label = "IO Work Time",
+                      description = "99th percentile of the time in microseconds an IO thread of the AMQP ports spent processing a"
+                                    + " connection in one go. Zero unless IO instrumentation is enabled.")
+    long getIoWorkTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Bytes Per Read",
+                      description = "Mean number of bytes read from the network by the AMQP ports by a single read."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getBytesPerRead();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Bytes Per Write",
+                      description = "Mean number of bytes written to the network by the AMQP ports by a single write."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getBytesPerWrite();
+
+    @ManagedOperation(nonModifying = true,
+                      description = "Returns histograms of the selector and IO thread activity of the AMQP ports"
+                                    + " combined. Durations are in microseconds.")
+    Map<String, Object> getIoHistograms();
+
+    @ManagedOperation(nonModifying = true,
+                      description = "Turns the recording of selector and IO thread activity on or off")
+    void setIoInstrumentationEnabled(@Param(name = "enabled",
+                                            description = "If true, selector and IO thread activity is recorded")
+                                     boolean enabled);
+
     @ManagedOperation(nonModifying = true, description = "Initiates garbage collection")
     void performGC();
 
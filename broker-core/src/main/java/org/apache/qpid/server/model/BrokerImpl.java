@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,8 @@ import com.google.common.util.concurrent.ListenableFuture;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import org.apache.qpid.bytebuffer.BufferPoolStatistics;
+import org.apache.qpid.bytebuffer.BufferRetentionStatistics;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.configuration.CommonProperties;
 import org.apache.qpid.server.BrokerOptions;
@@ -60,6 +63,7 @@ import org.apache.qpid.server.configuration.updater.TaskExecutorImpl;
 import org.apache.qpid.server.logging.EventLogger;
 import org.apache.qpid.server.logging.messages.BrokerMessages;
 import org.apache.qpid.server.logging.messages.VirtualHostMessages;
+import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.model.preferences.GenericPrincipal;
 import org.apache.qpid.server.model.preferences.Preference;
 import org.apache.qpid.server.model.preferences.UserPreferences;
@@ -84,7 +88,9 @@ import org.apache.qpid.server.store.preferences.PreferenceStore;
 import org.apache.qpid.server.store.preferences.PreferenceStoreUpdaterImpl;
 import org.apache.qpid.server.store.preferences.PreferencesRecoverer;
 import org.apache.qpid.server.store.preferences.PreferencesRoot;
+import org.apache.qpid.server.transport.NetworkIoStatistics;
 import org.apache.qpid.server.util.HousekeepingExecutor;
+import org.apache.qpid.server.util.ParameterizedTypes;
 import org.apache.qpid.server.virtualhost.VirtualHostPropertiesNodeCreator;
 import org.apache.qpid.util.SystemUtils;
 
@@ -233,8 +239,56 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
         _networkBufferSize = networkBufferSize;
 
         int poolSize = getContextValue(Integer.class, BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE);
+        int minimumPooledBufferSize = getContextValue(Integer.class, BROKER_DIRECT_BYTE_BUFFER_POOL_MINIMUM_BUFFER_SIZE);
+        if (minimumPooledBufferSize <= 0)
+        {
+            throw new IllegalConfigurationException(BROKER_DIRECT_BYTE_BUFFER_POOL_MINIMUM_BUFFER_SIZE
+                                                    + " is set to unacceptable value '" + minimumPooledBufferSize
+                                                    + "'. Must be positive.");
+        }
+
+        QpidByteBuffer.initialisePool(_networkBufferSize,
+                                      poolSize,
+                                      minimumPooledBufferSize,
+                                      getDirectByteBufferPoolSizeClassLimits());
+
+        int retentionSampleInterval = getContextValue(Integer.class, BROKER_DIRECT_BYTE_BUFFER_RETENTION_SAMPLE_INTERVAL);
+        if (retentionSampleInterval < 0)
+        {
+            throw new IllegalConfigurationException(BROKER_DIRECT_BYTE_BUFFER_RETENTION_SAMPLE_INTERVAL
+                                                    + " is set to unacceptable value '" + retentionSampleInterval
+                                                    + "'. Must not be negative.");
+        }
+        QpidByteBuffer.initialiseRetentionTracking(retentionSampleInterval);
 
-        QpidByteBuffer.initialisePool(_networkBufferSize, poolSize);
+        NetworkIoStatistics.setEnabled(getContextValue(Boolean.class, BROKER_IO_INSTRUMENTATION_ENABLED));
+    }
+
+    private Map<Integer, Integer> getDirectByteBufferPoolSizeClassLimits()
+    {
+        @SuppressWarnings("unchecked")
+        final Map<String, String> configuredLimits = getContextValue(Map.class,
+                                                                     ParameterizedTypes.MAP_OF_STRING_STRING,
+                                                                     BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE_CLASS_LIMITS);
+        final Map<Integer, Integer> limits = new HashMap<>();
+        if (configuredLimits != null)
+        {
+            for (Map.Entry<String, String> entry : configuredLimits.entrySet())
+            {
+                try
+                {
+                    limits.put(Integer.parseInt(entry.getKey()), Integer.parseInt(entry.getValue()));
+                }
+                catch (NumberFormatException e)
+                {
+                    throw new IllegalConfigurationException(BROKER_DIRECT_BYTE_BUFFER_POOL_SIZE_CLASS_LIMITS
+                                                            + " contains unacceptable entry '" + entry.getKey()
+                                                            + "' : '" + entry.getValue()
+                                                            + "'. Keys and values must be integers.", e);
+                }
+            }
+        }
+        return limits;
     }
 
     @Override
@@ -678,6 +732,149 @@ public class BrokerImpl extends AbstractContainer<BrokerImpl> implements Broker<
         return getMessageDeliveryStatistics().getTotal();
     }
 
+    @Override
+    public long getPooledDirectMemorySize()
+    {
+        long pooled = 0L;
+        for (BufferPoolStatistics sizeClass : QpidByteBuffer.getBufferPoolStatistics())
+        {
+            pooled += sizeClass.getPooledBytes();
+        }
+        return pooled;
+    }
+
+    @Override
+    public long getInUsePooledDirectMemorySize()
+    {
+        long inUse = 0L;
+        for (BufferPoolStatistics sizeClass : QpidByteBuffer.getBufferPoolStatistics())
+        {
+            inUse += sizeClass.getInUseBytes();
+        }
+        return inUse;
+    }
+
+    @Override
+    public Map<String, Map<String, Object>> getDirectBufferPoolStatistics()
+    {
+        final Map<String, Map<String, Object>> statistics = new LinkedHashMap<>();
+        for (BufferPoolStatistics sizeClass : QpidByteBuffer.getBufferPoolStatistics())
+        {
+            final Map<String, Object> classStatistics = new LinkedHashMap<>();
+            classStatistics.put("maxPoolSize", sizeClass.getMaxPoolSize());
+            classStatistics.put("pooledCount", sizeClass.getPooledCount());
+            classStatistics.put("inUseCount", sizeClass.getInUseCount());
+            classStatistics.put("pooledBytes", sizeClass.getPooledBytes());
+            classStatistics.put("inUseBytes", sizeClass.getInUseBytes());
+            classStatistics.put("allocationCount", sizeClass.getAllocationCount());
+            classStatistics.put("slabAllocationCount", sizeClass.getSlabAllocationCount());
+            classStatistics.put("discardCount", sizeClass.getDiscardCount());
+            statistics.put(String.valueOf(sizeClass.getBufferSize()), classStatistics);
+        }
+        return statistics;
+    }
+
+    @Override
+    public long getEstimatedPinnedDirectMemorySize()
+    {
+        return QpidByteBuffer.getRetentionStatistics().getEstimatedPinnedBytes();
+    }
+
+    @Override
+    public long getEstimatedReferencedDirectMemorySize()
+    {
+        return QpidByteBuffer.getRetentionStatistics().getEstimatedReferencedBytes();
+    }
+
+    @Override
+    public long getDirectMemoryLeakCount()
+    {
+        return QpidByteBuffer.getRetentionStatistics().getLeakCount();
+    }
+
+    @Override
+    public Map<String, Object> getDirectMemoryRetention()
+    {
+        final BufferRetentionStatistics statistics = QpidByteBuffer.getRetentionStatistics();
+        final Map<String, Object> retention = new LinkedHashMap<>();
+        retention.put("enabled", statistics.isEnabled());
+        retention.put("sampleInterval", statistics.getSampleInterval());
+        retention.put("sampledBufferCount", statistics.getSampledBufferCount());
+        retention.put("sampledPinnedBytes", statistics.getSampledPinnedBytes());
+        retention.put("sampledReferencedBytes", statistics.getSampledReferencedBytes());
+        retention.put("estimatedPinnedBytes", statistics.getEstimatedPinnedBytes());
+        retention.put("estimatedReferencedBytes", statistics.getEstimatedReferencedBytes());
+        retention.put("retentionAmplification", statistics.getRetentionAmplification());
+        retention.put("leakCount", statistics.getLeakCount());
+        retention.put("sampledPinnedBytesByAllocationSite", statistics.getSampledPinnedBytesByAllocationSite());
+        return retention;
+    }
+
+    @Override
+    public long getSelectorWakeupRate()
+    {
+        return Math.round(getNetworkIoStatistics().getSelectorWakeupRate());
+    }
+
+    @Override
+    public long getSelectTime()
+    {
+        return getNetworkIoStatistics().getSelectTime().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getIoWorkQueueTime()
+    {
+        return getNetworkIoStatistics().getWorkQueueTime().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getIoWorkTime()
+    {
+        return getNetworkIoStatistics().getWorkTime().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getBytesPerRead()
+    {
+        return Math.round(getNetworkIoStatistics().getBytesPerRead().getMean());
+    }
+
+    @Override
+    public long getBytesPerWrite()
+    {
+        return Math.round(getNetworkIoStatistics().getBytesPerWrite().getMean());
+    }
+
+    @Override
+    public Map<String, Object> getIoHistograms()
+    {
+        return getNetworkIoStatistics().toMap();
+    }
+
+    @Override
+    public void setIoInstrumentationEnabled(final boolean enabled)
+    {
+        NetworkIoStatistics.setEnabled(enabled);
+    }
+
+    private NetworkIoStatistics getNetworkIoStatistics()
+    {
+        final List<NetworkIoStatistics> portStatistics = new ArrayList<>();
+        for (Port<?> port : getPorts())
+        {
+            if (port instanceof AmqpPort)
+            {
+                final NetworkIoStatistics statistics = ((AmqpPort<?>) port).getNetworkIoStatistics();
+                if (statistics != null)
+                {
+                    portStatistics.add(statistics);
+                }
+            }
+        }
+        return NetworkIoStatistics.combine(portStatistics);
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <C extends ConfiguredObject> ListenableFuture<C> addChildAsync(final Class<C> childClass, final Map<String, Object> attributes, final ConfiguredObject... otherParents)
@@ -111,6 +111,18 @@ public interface Connection<X extends Connection<X>> extends ConfiguredObject<X>
     @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.MESSAGES, label = "Outbound")
     long getMessagesOut();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT, label = "Network Writes")
+    long getTransportWrites();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.BYTES, label = "Bytes per Network Write")
+    long getAverageTransportWriteSize();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT, label = "Coalesced Writes")
+    long getCoalescedTransportWrites();
+
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.COUNT, label = "Processing Budget Exhaustions")
+    long getProcessingBudgetExhaustions();
+
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.ABSOLUTE_TIME, label = "Last I/O time")
     Date getLastIoTime();
 
@@ -90,6 +90,59 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     @ManagedContextDefault( name = QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD)
     long DEFAULT_ESTIMATED_MESSAGE_MEMORY_OVERHEAD = 1024l;
 
+    String QUEUE_CONTENT_COMPACTION_MINIMUM_AGE = "queue.contentCompactionMinimumAge";
+    @ManagedContextDefault( name = QUEUE_CONTENT_COMPACTION_MINIMUM_AGE,
+            description = "Time in milliseconds a message must have been held by the queue before housekeeping copies"
+                          + " its content into tightly sized buffers, releasing any larger buffers it keeps reachable."
+                          + " A negative value, the default, disables compaction.")
+    long DEFAULT_CONTENT_COMPACTION_MINIMUM_AGE = -1l;
+
+    String QUEUE_MESSAGE_ID_INDEX_ENABLED = "queue.messageIdIndexEnabled";
+    @ManagedContextDefault( name = QUEUE_MESSAGE_ID_INDEX_ENABLED,
+            description = "If true, the queue keeps an index of its entries by message id, so that management"
+                          + " operations addressing messages by id do not need to walk the whole queue.  Off by"
+                          + " default, as every enqueue and dequeue then also updates the index.")
+    boolean DEFAULT_MESSAGE_ID_INDEX_ENABLED = false;
+
+    String QUEUE_HOUSEKEEPING_SCAN_SLICE_SIZE = "queue.housekeepingScanSliceSize";
+    @ManagedContextDefault( name = QUEUE_HOUSEKEEPING_SCAN_SLICE_SIZE,
+            description = "Maximum number of entries each housekeeping run checks for holds, flow to disk, compaction"
+                          + " and message alerts.  Successive runs resume where the previous run stopped."
+                          + " Zero or a negative value checks every entry in each run.")
+    int DEFAULT_HOUSEKEEPING_SCAN_SLICE_SIZE = 10000;
+
+    String QUEUE_PAGING_WINDOW_SIZE = "queue.pagingWindowSize";
+    @ManagedContextDefault( name = QUEUE_PAGING_WINDOW_SIZE,
+            description = "Maximum number of entries a queue keeps in memory.  Further persistent messages held only by"
+                          + " the queue are paged out to the store and read back as the queue is consumed."
+                          + " Applies to standard and partitioned queues without message groups."
+                          + " Zero or a negative value disables paging.")
+    int DEFAULT_PAGING_WINDOW_SIZE = 0;
+
+    String QUEUE_BULK_OPERATION_CHUNK_SIZE = "queue.bulkOperationChunkSize";
+    @ManagedContextDefault( name = QUEUE_BULK_OPERATION_CHUNK_SIZE,
+            description = "Maximum number of messages moved, copied or deleted in each store transaction of a bulk"
+                          + " operation on a queue.  Zero or a negative value processes every message in a single"
+                          + " transaction.")
+    int DEFAULT_BULK_OPERATION_CHUNK_SIZE = 1000;
+
+    String QUEUE_BROWSE_CURSOR_TIMEOUT = "queue.browseCursorTimeout";
+    @ManagedContextDefault( name = QUEUE_BROWSE_CURSOR_TIMEOUT,
+            description = "Time in milliseconds after which a browse cursor not used to fetch a further page of"
+                          + " messages is discarded.")
+    long DEFAULT_BROWSE_CURSOR_TIMEOUT = 60000L;
+
+    String QUEUE_MAXIMUM_BROWSE_CURSORS = "queue.maximumBrowseCursors";
+    @ManagedContextDefault( name = QUEUE_MAXIMUM_BROWSE_CURSORS,
+            description = "Maximum number of browse cursors a queue keeps open.  Browsing from the head of the queue is"
+                          + " refused while the queue has this many cursors open.")
+    int DEFAULT_MAXIMUM_BROWSE_CURSORS = 100;
+
+    String QUEUE_MAXIMUM_BROWSE_CURSORS_PER_PRINCIPAL = "queue.maximumBrowseCursorsPerPrincipal";
+    @ManagedContextDefault( name = QUEUE_MAXIMUM_BROWSE_CURSORS_PER_PRINCIPAL,
+            description = "Maximum number of browse cursors a queue keeps open for each user.")
+    int DEFAULT_MAXIMUM_BROWSE_CURSORS_PER_PRINCIPAL = 10;
+
     String MAX_ASYNCHRONOUS_DELIVERIES = "queue.maxAsynchronousDeliveries";
     @ManagedContextDefault(name = MAX_ASYNCHRONOUS_DELIVERIES )
     int DEFAULT_MAX_ASYNCHRONOUS_DELIVERIES = 80;
@@ -226,6 +279,12 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
 
     void visit(QueueEntryVisitor visitor);
 
+    /**
+     * Visits the entries of the messages with the given ids in queue order.  If the queue does not index its entries
+     * by message id, all entries are visited, so the visitor must check the message id itself.
+     */
+    void visit(QueueEntryVisitor visitor, Collection<Long> messageIds);
+
     ListenableFuture<Integer> deleteAndReturnCountAsync();
 
     int deleteAndReturnCount();
@@ -281,6 +340,20 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.ABSOLUTE_TIME, label = "Oldest Message")
     long getOldestMessageAge();
 
+    @ManagedStatistic(statisticType = StatisticType.CUMULATIVE, units = StatisticUnit.BYTES, label = "Reclaimed by Compaction")
+    long getContentCompactionReclaimedBytes();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.TIME_DURATION,
+                      label = "Housekeeping Scan Lag",
+                      description = "Time in milliseconds since the start of the last housekeeping pass which checked"
+                                    + " every entry on the queue.")
+    long getHousekeepingScanLag();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.MESSAGES,
+                      label = "Paged Messages",
+                      description = "Number of the messages on the queue which are held only in the store.")
+    long getPagedMessages();
+
     @ManagedOperation
     List<Long> moveMessages(@Param(name = "destination", description = "The queue to which the messages should be moved") Queue<?> destination,
                             @Param(name = "messageIds", description = "If provided, only messages in the queue whose (internal) message-id is supplied will be considered for moving") List<Long> messageIds,
@@ -301,6 +374,37 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
                               @Param(name = "limit", description = "Maximum number of messages to delete", defaultValue = "-1") int limit);
 
 
+    @ManagedOperation(description = "Moves messages to another queue in the background, a chunk at a time")
+    void startMoveMessages(@Param(name = "destination", description = "The queue to which the messages should be moved") Queue<?> destination,
+                           @Param(name = "messageIds", description = "If provided, only messages in the queue whose (internal) message-id is supplied will be considered for moving") List<Long> messageIds,
+                           @Param(name = "selector", description = "A (JMS) selector - if provided, only messages which match the selector will be considered for moving") String selector,
+                           @Param(name = "limit", description = "Maximum number of messages to move", defaultValue = "-1") int limit);
+
+
+    @ManagedOperation(description = "Copies messages to another queue in the background, a chunk at a time")
+    void startCopyMessages(@Param(name = "destination", description = "The queue to which the messages should be copied") Queue<?> destination,
+                           @Param(name = "messageIds", description = "If provided, only messages in the queue whose (internal) message-id is supplied will be considered for copying") List<Long> messageIds,
+                           @Param(name = "selector", description = "A (JMS) selector - if provided, only messages which match the selector will be considered for copying")  String selector,
+                           @Param(name = "limit", description = "Maximum number of messages to copy", defaultValue = "-1") int limit);
+
+
+    @ManagedOperation(description = "Deletes messages in the background, a chunk at a time")
+    void startDeleteMessages(@Param(name = "messageIds", description = "If provided, only messages in the queue whose (internal) message-id is supplied will be considered for deletion") List<Long> messageIds,
+                             @Param(name = "selector", description = "A (JMS) selector - if provided, only messages which match the selector will be considered for deletion") String selector,
+                             @Param(name = "limit", description = "Maximum number of messages to delete", defaultValue = "-1") int limit);
+
+
+    @ManagedOperation(nonModifying = true,
+            description = "The progress of the last background move, copy or delete started on the queue: the operation,"
+                          + " its state (RUNNING, COMPLETE, CANCELLED or FAILED), the number of messages processed"
+                          + " so far and its start time.  Empty if no such operation has been started.")
+    Map<String, Object> getBulkOperationProgress();
+
+
+    @ManagedOperation(description = "Cancels the running background move, copy or delete after its current chunk")
+    boolean cancelBulkOperation();
+
+
     @ManagedOperation
     long clearQueue();
 
@@ -322,6 +426,13 @@ public interface Queue<X extends Queue<X>> extends ConfiguredObject<X>,
                                      @Param(name = "last",  defaultValue = "-1") int last,
                                      @Param(name = "includeHeaders", defaultValue = "false") boolean includeHeaders);
 
+    @ManagedOperation(nonModifying = true, paramRequiringSecure = "includeHeaders",
+            description = "Returns the next page of messages on the queue together with a cursor from which the"
+                          + " following page may be browsed.  The cursor is null once the end of the queue is reached.")
+    Map<String, Object> browseMessages(@Param(name = "cursor", description = "The cursor returned with the previous page, or null to browse from the head of the queue") String cursor,
+                                       @Param(name = "count", defaultValue = "100", description = "Maximum number of messages to return") int count,
+                                       @Param(name = "includeHeaders", defaultValue = "false") boolean includeHeaders);
+
     @ManagedOperation(nonModifying = true, paramRequiringSecure = "includeHeaders")
     MessageInfo getMessageInfoById(@Param(name = "messageId") long messageId,
                                    @Param(name = "includeHeaders", defaultValue = "true") boolean includeHeaders);
@@ -21,12 +21,14 @@
 package org.apache.qpid.server.model.port;
 
 import java.net.SocketAddress;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.qpid.server.model.AuthenticationProvider;
 import org.apache.qpid.server.model.DerivedAttribute;
 import org.apache.qpid.server.model.ManagedAttribute;
 import org.apache.qpid.server.model.ManagedContextDefault;
+import org.apache.qpid.server.model.ManagedOperation;
 import org.apache.qpid.server.model.ManagedObject;
 import org.apache.qpid.server.model.ManagedStatistic;
 import org.apache.qpid.server.model.NamedAddressSpace;
@@ -35,6 +37,7 @@ import org.apache.qpid.server.model.StatisticType;
 import org.apache.qpid.server.model.StatisticUnit;
 import org.apache.qpid.server.model.Transport;
 import org.apache.qpid.server.model.TrustStore;
+import org.apache.qpid.server.transport.NetworkIoStatistics;
 
 import javax.net.ssl.SSLContext;
 
@@ -56,6 +59,7 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     String PORT_AMQP_THREAD_POOL_KEEP_ALIVE_TIMEOUT = "qpid.port.amqp.threadPool.keep_alive_timeout";
 
     String PORT_AMQP_NUMBER_OF_SELECTORS = "qpid.port.amqp.threadPool.numberOfSelectors";
+    String PORT_AMQP_THREAD_POOL_WORK_STEALING = "qpid.port.amqp.threadPool.workStealing";
     String PORT_AMQP_ACCEPT_BACKLOG = "qpid.port.amqp.acceptBacklog";
     String PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE = "qpid.port.amqp.outboundMessageBufferSize";
 
@@ -79,6 +83,13 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     @ManagedContextDefault(name = PORT_AMQP_NUMBER_OF_SELECTORS)
     long DEFAULT_PORT_AMQP_NUMBER_OF_SELECTORS = Math.max(DEFAULT_PORT_AMQP_THREAD_POOL_SIZE / 8, 1);
 
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_THREAD_POOL_WORK_STEALING,
+            description = "If true, each IO thread of the port has its own queue of work, the work of a connection"
+                          + " is preferably run by the same IO thread and idle IO threads steal work from busy ones."
+                          + " If false, all IO threads of the port share a single queue of work.")
+    boolean DEFAULT_PORT_AMQP_THREAD_POOL_WORK_STEALING = false;
+
     @SuppressWarnings("unused")
     @ManagedContextDefault(name = PORT_AMQP_ACCEPT_BACKLOG)
     int DEFAULT_PORT_AMQP_ACCEPT_BACKLOG = 1024;
@@ -93,6 +104,97 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     long DEFAULT_PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE = 1024 * 1024;
 
 
+    String PORT_AMQP_WRITE_COALESCING_THRESHOLD = "qpid.port.amqp.writeCoalescingThreshold";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_WRITE_COALESCING_THRESHOLD,
+                           description = "Number of bytes of outgoing frames a connection may hold back from the"
+                                         + " network while it has further work pending, so that they are written"
+                                         + " together with the output of that work. Zero disables write coalescing.")
+    int DEFAULT_PORT_AMQP_WRITE_COALESCING_THRESHOLD = 32 * 1024;
+
+    String PORT_AMQP_WRITE_COALESCING_MAX_DELAY = "qpid.port.amqp.writeCoalescingMaxDelay";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_WRITE_COALESCING_MAX_DELAY,
+                           description = "Maximum time in microseconds outgoing frames may be held back from the"
+                                         + " network by write coalescing.")
+    long DEFAULT_PORT_AMQP_WRITE_COALESCING_MAX_DELAY = 1000;
+
+    String PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS = "qpid.port.amqp.maxGatheringWriteBuffers";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS,
+                           description = "Maximum number of buffers passed to a single gathering write.")
+    int DEFAULT_PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS = 1024;
+
+    String PORT_AMQP_PROCESSING_BUDGET_BYTES = "qpid.port.amqp.processingBudget.bytes";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_PROCESSING_BUDGET_BYTES,
+                           description = "Number of bytes a connection may read from the network before it yields"
+                                         + " its IO thread to other connections. Zero disables the limit.")
+    long DEFAULT_PORT_AMQP_PROCESSING_BUDGET_BYTES = 1024 * 1024;
+
+    String PORT_AMQP_PROCESSING_BUDGET_TASKS = "qpid.port.amqp.processingBudget.tasks";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_PROCESSING_BUDGET_TASKS,
+                           description = "Number of pending protocol tasks (such as deliveries to consumers) a"
+                                         + " connection may process before it yields its IO thread to other"
+                                         + " connections. Zero disables the limit.")
+    int DEFAULT_PORT_AMQP_PROCESSING_BUDGET_TASKS = 1024;
+
+    String PORT_AMQP_PROCESSING_BUDGET_TIME = "qpid.port.amqp.processingBudget.time";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_PROCESSING_BUDGET_TIME,
+                           description = "Time in microseconds a connection may hold its IO thread before it yields"
+                                         + " to other connections. Zero disables the limit.")
+    long DEFAULT_PORT_AMQP_PROCESSING_BUDGET_TIME = 10000;
+
+    String PORT_AMQP_TLS_IDLE_BUFFER_RELEASE_DELAY = "qpid.port.amqp.tls.idleBufferReleaseDelay";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_TLS_IDLE_BUFFER_RELEASE_DELAY,
+                           description = "Time in milliseconds after which a TLS connection which has neither read"
+                                         + " nor written any data returns its network buffers to the pool.")
+    long DEFAULT_PORT_AMQP_TLS_IDLE_BUFFER_RELEASE_DELAY = 1000;
+
+    String PORT_AMQP_ACCEPT_RATE = "qpid.port.amqp.acceptRate";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_ACCEPT_RATE,
+                           description = "Maximum number of new connections per second the port admits for protocol"
+                                         + " negotiation. Sockets accepted beyond this rate wait in the admission"
+                                         + " queue. Zero disables the limit.")
+    int DEFAULT_PORT_AMQP_ACCEPT_RATE = 1000;
+
+    String PORT_AMQP_ACCEPT_BURST = "qpid.port.amqp.acceptBurst";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_ACCEPT_BURST,
+                           description = "Number of new connections the port may admit at once before the accept"
+                                         + " rate applies.")
+    int DEFAULT_PORT_AMQP_ACCEPT_BURST = 1000;
+
+    String PORT_AMQP_MAX_CONCURRENT_HANDSHAKES = "qpid.port.amqp.maxConcurrentHandshakes";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_MAX_CONCURRENT_HANDSHAKES,
+                           description = "Maximum number of connections of the port which may be negotiating TLS,"
+                                         + " protocol and authentication at the same time. Further sockets wait in"
+                                         + " the admission queue. Zero disables the limit.")
+    int DEFAULT_PORT_AMQP_MAX_CONCURRENT_HANDSHAKES = 1000;
+
+    String PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE = "qpid.port.amqp.handshakeThreadPool.size";
+
+    @SuppressWarnings("unused")
+    @ManagedContextDefault(name = PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE,
+                           description = "Number of threads running the expensive steps of TLS handshakes, so that"
+                                         + " they do not hold up the IO threads. Zero runs them on the IO threads.")
+    int DEFAULT_PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE = 2;
+
     String PROTOCOL_HANDSHAKE_TIMEOUT = "qpid.port.protocol_handshake_timeout";
 
     @SuppressWarnings("unused")
@@ -142,6 +244,63 @@ public interface AmqpPort<X extends AmqpPort<X>> extends ClientAuthCapablePort<X
     @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT, label = "Connections")
     int getConnectionCount();
 
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT,
+                      label = "Connections Awaiting Admission")
+    int getAcceptQueueDepth();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME, units = StatisticUnit.COUNT,
+                      label = "Handshakes In Progress")
+    int getHandshakesInProgress();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.COUNT,
+                      label = "Selector Wakeups Per Second",
+                      description = "Number of times per second the selectors of the port returned from select."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getSelectorWakeupRate();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.TIME_DURATION,
+                      label = "Select Time",
+                      description = "99th percentile of the time in microseconds the selectors of the port spent in select."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getSelectTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.TIME_DURATION,
+                      label = "IO Work Queue Time",
+                      description = "99th percentile of the time in microseconds connections of the port waited for an IO"
+                                    + " thread. Zero unless IO instrumentation is enabled.")
+    long getIoWorkQueueTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.TIME_DURATION,
+                      label = "IO Work Time",
+                      description = "99th percentile of the time in microseconds an IO thread of the port spent processing a"
+                                    + " connection in one go. Zero unless IO instrumentation is enabled.")
+    long getIoWorkTime();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Bytes Per Read",
+                      description = "Mean number of bytes read from the network by the port by a single read."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getBytesPerRead();
+
+    @ManagedStatistic(statisticType = StatisticType.POINT_IN_TIME,
+                      units = StatisticUnit.BYTES,
+                      label = "Bytes Per Write",
+                      description = "Mean number of bytes written to the network by the port by a single write."
+                                    + " Zero unless IO instrumentation is enabled.")
+    long getBytesPerWrite();
+
+    @ManagedOperation(nonModifying = true,
+                      description = "Returns histograms of the selector and IO thread activity of the port."
+                                    + " Durations are in microseconds.")
+    Map<String, Object> getIoHistograms();
+
+    NetworkIoStatistics getNetworkIoStatistics();
+
     @DerivedAttribute(description = "Maximum time allowed for a new connection to send a protocol header."
                                     + " If the connection does not send a protocol header within this time,"
                                     + " the connection will be aborted.")
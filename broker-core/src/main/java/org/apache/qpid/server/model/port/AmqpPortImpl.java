@@ -58,6 +58,7 @@ import org.apache.qpid.server.plugin.ProtocolEngineCreator;
 import org.apache.qpid.server.plugin.QpidServiceLoader;
 import org.apache.qpid.server.plugin.TransportProviderFactory;
 import org.apache.qpid.server.transport.AcceptingTransport;
+import org.apache.qpid.server.transport.NetworkIoStatistics;
 import org.apache.qpid.server.transport.PortBindFailureException;
 import org.apache.qpid.server.transport.TransportProvider;
 import org.apache.qpid.server.util.PortUtil;
@@ -651,6 +652,76 @@ public class AmqpPortImpl extends AbstractClientAuthCapablePortWithAuthProvider<
         return _connectionCount.get();
     }
 
+    @Override
+    public int getAcceptQueueDepth()
+    {
+        final AcceptingTransport transport = _transport;
+        return transport == null ? 0 : transport.getAcceptQueueDepth();
+    }
+
+    @Override
+    public int getHandshakesInProgress()
+    {
+        final AcceptingTransport transport = _transport;
+        return transport == null ? 0 : transport.getHandshakesInProgress();
+    }
+
+    @Override
+    public NetworkIoStatistics getNetworkIoStatistics()
+    {
+        final AcceptingTransport transport = _transport;
+        return transport == null ? null : transport.getIoStatistics();
+    }
+
+    @Override
+    public long getSelectorWakeupRate()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? 0L : Math.round(statistics.getSelectorWakeupRate());
+    }
+
+    @Override
+    public long getSelectTime()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? 0L : statistics.getSelectTime().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getIoWorkQueueTime()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? 0L : statistics.getWorkQueueTime().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getIoWorkTime()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? 0L : statistics.getWorkTime().getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getBytesPerRead()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? 0L : Math.round(statistics.getBytesPerRead().getMean());
+    }
+
+    @Override
+    public long getBytesPerWrite()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? 0L : Math.round(statistics.getBytesPerWrite().getMean());
+    }
+
+    @Override
+    public Map<String, Object> getIoHistograms()
+    {
+        final NetworkIoStatistics statistics = getNetworkIoStatistics();
+        return statistics == null ? Collections.<String, Object>emptyMap() : statistics.toMap();
+    }
+
     @Override
     public long getProtocolHandshakeTimeout()
     {
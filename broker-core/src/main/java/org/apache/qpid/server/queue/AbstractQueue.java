@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.lang.ref.WeakReference;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.security.AccessControlContext;
@@ -38,11 +39,13 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -53,6 +56,7 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -95,6 +99,7 @@ import org.apache.qpid.server.model.*;
 import org.apache.qpid.server.model.preferences.GenericPrincipal;
 import org.apache.qpid.server.plugin.MessageConverter;
 import org.apache.qpid.server.plugin.MessageFilterFactory;
+import org.apache.qpid.server.plugin.MessageMetaDataType;
 import org.apache.qpid.server.plugin.QpidServiceLoader;
 import org.apache.qpid.server.protocol.AMQSessionModel;
 import org.apache.qpid.server.protocol.MessageConverterRegistry;
@@ -102,6 +107,7 @@ import org.apache.qpid.server.security.access.Operation;
 import org.apache.qpid.server.security.auth.AuthenticatedPrincipal;
 import org.apache.qpid.server.store.MessageDurability;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.store.MessageStore;
 import org.apache.qpid.server.store.StorableMessageMetaData;
 import org.apache.qpid.server.store.StoredMessage;
 import org.apache.qpid.server.transport.AMQPConnection;
@@ -140,6 +146,8 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     };
 
     private static final long INITIAL_TARGET_QUEUE_SIZE = 102400l;
+    private static final long EXPIRY_WHEEL_TICK_DURATION = 1000l;
+    private static final int MAXIMUM_PENDING_PAGE_OUT_ATTEMPTS = 16;
     private static final String UTF8 = StandardCharsets.UTF_8.name();
 
     private final VirtualHost<?> _virtualHost;
@@ -177,6 +185,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private final AtomicLong _persistentMessageDequeueCount = new AtomicLong();
     private final AtomicLong _unackedMsgCount = new AtomicLong(0);
     private final AtomicLong _unackedMsgBytes = new AtomicLong();
+    private final AtomicLong _contentCompactionReclaimedBytes = new AtomicLong();
 
     private final AtomicInteger _bindingCountHigh = new AtomicInteger();
 
@@ -223,6 +232,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     private volatile int _maxAsyncDeliveries;
     private volatile long _estimatedAverageMessageHeaderSize;
+    private volatile long _contentCompactionMinimumAge;
 
     private final AtomicLong _stateChangeCount = new AtomicLong(Long.MIN_VALUE);
 
@@ -288,8 +298,57 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     private boolean _closing;
     private final ConcurrentMap<String, Callable<MessageFilter>> _defaultFiltersMap = new ConcurrentHashMap<>();
     private final List<HoldMethod> _holdMethods = new CopyOnWriteArrayList<>();
+    private final QueueEntryExpiryWheel _expiryWheel =
+            new QueueEntryExpiryWheel(EXPIRY_WHEEL_TICK_DURATION, System.currentTimeMillis());
+    private final QueueEntryExpiryWheel _compactionWheel =
+            new QueueEntryExpiryWheel(EXPIRY_WHEEL_TICK_DURATION, System.currentTimeMillis());
+
+    private final Object _housekeepingScanLock = new Object();
+    private int _housekeepingScanSliceSize;
+    private boolean _housekeepingScanInProgress;
+    // the entry the current pass stopped at; weakly held so that the entry, and the deleted entries it links to, are
+    // not kept alive between slices once it is deleted
+    private WeakReference<QueueEntry> _housekeepingScanPosition;
+    private long _housekeepingScanCumulativeQueueSize;
+    private long _housekeepingScanPassStartTime;
+    private volatile long _housekeepingScanCompletedPassStartTime = System.currentTimeMillis();
     private Map<String, String> _mimeTypeToFileExtension = Collections.emptyMap();
 
+    // messages beyond the paging window are paged out to the store in the order of the queue, and read back in that
+    // order.  While any message is paged out, newly enqueued messages are acquired by the pager until it has paged them
+    // out behind the others, so that they cannot overtake them.
+    private final Object _pagingLock = new Object();
+    private final PagedMessageList _pagedMessages = new PagedMessageList();
+    private final ConcurrentLinkedQueue<QueueEntry> _pendingPageOuts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _pendingPageOutCount = new AtomicInteger();
+    private final AtomicBoolean _pagingScheduled = new AtomicBoolean();
+    private final AccessControlContext _pagingContext;
+    private final Runnable _pagingTask = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            _pagingScheduled.set(false);
+            updatePaging();
+        }
+    };
+    private volatile boolean _pagingActive;
+
+    // the last entry of the run of acquired or deleted entries at the head of the queue, shared by the consumers so
+    // that each need not visit every entry the others have acquired; null if no such run is known
+    private final AtomicReference<QueueEntry> _acquiredRunEnd = new AtomicReference<>();
+
+    private final AccessControlContext _bulkOperationContext;
+    private final AtomicReference<BulkOperation> _bulkOperation = new AtomicReference<>();
+    private int _bulkOperationChunkSize;
+
+    private final ConcurrentMap<String, BrowseCursor> _browseCursors = new ConcurrentHashMap<>();
+    private long _browseCursorTimeout;
+    private int _maximumBrowseCursors;
+    private int _maximumBrowseCursorsPerPrincipal;
+    private int _pagingWindowSize;
+    private int _pendingPageOutAttempts;
+
     private interface HoldMethod
     {
         boolean isHeld(MessageReference<?> message, long evalutaionTime);
@@ -302,6 +361,8 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         _virtualHost = virtualHost;
         _immediateDeliveryContext = getSystemTaskControllerContext("Immediate Delivery", virtualHost.getPrincipal());
+        _pagingContext = getSystemTaskControllerContext("Queue Paging", virtualHost.getPrincipal());
+        _bulkOperationContext = getSystemTaskControllerContext("Queue Bulk Operation", virtualHost.getPrincipal());
 
         _queueRunner = new QueueRunner(this, getSystemTaskControllerContext("Queue Delivery",
                                                                             virtualHost.getPrincipal()));
@@ -494,6 +555,19 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         _estimatedAverageMessageHeaderSize = getContextValue(Long.class, QUEUE_ESTIMATED_MESSAGE_MEMORY_OVERHEAD);
         _maxAsyncDeliveries = getContextValue(Integer.class, Queue.MAX_ASYNCHRONOUS_DELIVERIES);
+        _contentCompactionMinimumAge = getContextValue(Long.class, QUEUE_CONTENT_COMPACTION_MINIMUM_AGE);
+        _housekeepingScanSliceSize = getContextValue(Integer.class, QUEUE_HOUSEKEEPING_SCAN_SLICE_SIZE);
+        _bulkOperationChunkSize = getContextValue(Integer.class, QUEUE_BULK_OPERATION_CHUNK_SIZE);
+        _browseCursorTimeout = getContextValue(Long.class, QUEUE_BROWSE_CURSOR_TIMEOUT);
+        _maximumBrowseCursors = getContextValue(Integer.class, QUEUE_MAXIMUM_BROWSE_CURSORS);
+        _maximumBrowseCursorsPerPrincipal = getContextValue(Integer.class, QUEUE_MAXIMUM_BROWSE_CURSORS_PER_PRINCIPAL);
+        _pagingWindowSize = getContextValue(Integer.class, QUEUE_PAGING_WINDOW_SIZE);
+        if (_pagingWindowSize > 0 && (!isPagingSupported() || _messageGroupManager != null))
+        {
+            _logger.warn("Queue '{}' ignores the paging window as paging would break the order of its messages",
+                         getName());
+            _pagingWindowSize = 0;
+        }
         _mimeTypeToFileExtension = getContextValue(Map.class, MAP_OF_STRING_STRING, MIME_TYPE_TO_FILE_EXTENSION);
 
         if(_defaultFilters != null)
@@ -931,14 +1005,15 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
 
         consumer.setStateListener(this);
+        consumerAdded(consumer);
         QueueContext queueContext;
         if(filters == null || !filters.startAtTail())
         {
-            queueContext = new QueueContext(getEntries().getHead());
+            queueContext = new QueueContext(getHead(consumer));
         }
         else
         {
-            queueContext = new QueueContext(getEntries().getTail());
+            queueContext = new QueueContext(getTail(consumer));
         }
         consumer.setQueueContext(queueContext);
 
@@ -989,6 +1064,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             setExclusiveSubscriber(null);
 
             consumer.setQueueContext(null);
+            consumerRemoved(consumer);
 
             if(_exclusive == ExclusivityPolicy.LINK)
             {
@@ -1203,10 +1279,28 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         final QueueConsumer<?> exclusiveSub = _exclusiveSubscriber;
         final QueueEntry entry = getEntries().add(message, enqueueRecord);
         updateExpiration(entry);
+        scheduleCompaction(entry);
 
         try
         {
-            if (action != null || (exclusiveSub == null  && _queueRunner.isIdle()))
+            if (_pagingWindowSize > 0 && enqueueRecord != null && !(enqueueRecord instanceof PagedEnqueueRecord))
+            {
+                if (_pagingActive && entry.acquire())
+                {
+                    // hold the entry back until the pager has paged it out behind the messages already paged out
+                    _pendingPageOutCount.incrementAndGet();
+                    _pendingPageOuts.add(entry);
+                    schedulePaging();
+                    checkForNotificationOnNewMessage(entry.getMessage());
+                    return;
+                }
+                else if (getInMemoryMessageCount() > _pagingWindowSize + getPagingBatchSize())
+                {
+                    schedulePaging();
+                }
+            }
+
+            if (action != null || (exclusiveSub == null  && isQueueRunnerIdle()))
             {
                 AccessController.doPrivileged(
                         new PrivilegedAction<Void>()
@@ -1269,7 +1363,25 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             if(expiration == 0l || expiration > calculatedExpiration)
             {
                 entry.setExpiration(calculatedExpiration);
+                expiration = calculatedExpiration;
+            }
+        }
+        if(expiration != 0l)
+        {
+            _expiryWheel.schedule(entry, expiration);
+        }
+    }
+
+    private void scheduleCompaction(final QueueEntry entry)
+    {
+        if (_contentCompactionMinimumAge >= 0L)
+        {
+            long arrivalTime = entry.getMessage().getArrivalTime();
+            if (arrivalTime == 0)
+            {
+                arrivalTime = System.currentTimeMillis();
             }
+            _compactionWheel.schedule(entry, arrivalTime + _contentCompactionMinimumAge);
         }
     }
 
@@ -1465,6 +1577,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
 
         _deliveredMessages.incrementAndGet();
+        entryDelivered(sub, entry);
 
         sub.send(entry, batch);
     }
@@ -1493,7 +1606,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         {
             QueueEntry oldEntry;
 
-            while((oldEntry  = subContext.getReleasedEntry()) == null || oldEntry.compareTo(entry) > 0)
+            while((oldEntry  = subContext.getReleasedEntry()) == null || compare(sub, oldEntry, entry) > 0)
             {
                 if(QueueContext._releasedUpdater.compareAndSet(subContext, oldEntry, entry))
                 {
@@ -1505,6 +1618,8 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void requeue(QueueEntry entry)
     {
+        resetAcquiredRun(entry);
+
         ConsumerNodeIterator subscriberIter = _consumerList.iterator();
         // iterate over all the subscribers, and if they are in advance of this queue entry then move them backwards
         while (subscriberIter.advance() && entry.isAvailable())
@@ -1534,15 +1649,23 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         checkCapacity();
 
+        if (_pagingActive && getInMemoryMessageCount() < _pagingWindowSize / 2)
+        {
+            schedulePaging();
+        }
     }
 
     private void decrementQueueSize(final QueueEntry entry)
     {
         final ServerMessage message = entry.getMessage();
-        long size = message.getSize();
+        decrementQueueSize(message.getSize(), message.isPersistent() && isDurable());
+    }
+
+    private void decrementQueueSize(final long size, final boolean persistent)
+    {
         getAtomicQueueSize().addAndGet(-size);
         _dequeueSize.addAndGet(size);
-        if(message.isPersistent() && isDurable())
+        if(persistent)
         {
             _persistentMessageDequeueSize.addAndGet(size);
             _persistentMessageDequeueCount.incrementAndGet();
@@ -1555,6 +1678,203 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         _dequeueCount.incrementAndGet();
     }
 
+    @Override
+    public long getPagedMessages()
+    {
+        return _pagedMessages.size();
+    }
+
+    private int getInMemoryMessageCount()
+    {
+        return getQueueDepthMessages() - _pagedMessages.size();
+    }
+
+    private int getPagingBatchSize()
+    {
+        return Math.max(1, _pagingWindowSize / 8);
+    }
+
+    private void schedulePaging()
+    {
+        if (_pagingScheduled.compareAndSet(false, true))
+        {
+            execute("Queue Paging[" + getName() + "]", _pagingTask, _pagingContext);
+        }
+    }
+
+    /**
+     * Pages out the entries beyond the paging window, or reads paged out messages back once the consumers have
+     * reduced the entries in memory to half the window.
+     */
+    void updatePaging()
+    {
+        synchronized (_pagingLock)
+        {
+            if (_stopped.get() || _pagingWindowSize <= 0)
+            {
+                return;
+            }
+
+            final boolean pendingPageOutsRemain = !pageOutPendingEntries();
+
+            final int inMemoryMessageCount = getInMemoryMessageCount();
+            if (inMemoryMessageCount > _pagingWindowSize)
+            {
+                _pagingActive = true;
+                pageOutBeyondWindow(inMemoryMessageCount - _pagingWindowSize);
+            }
+            else if (inMemoryMessageCount < _pagingWindowSize / 2 && !_pagedMessages.isEmpty())
+            {
+                pageIn(_pagingWindowSize - inMemoryMessageCount);
+            }
+
+            _pagingActive = !_pagedMessages.isEmpty() || _pendingPageOutCount.get() != 0;
+
+            if (pendingPageOutsRemain)
+            {
+                schedulePaging();
+            }
+        }
+    }
+
+    /**
+     * @return false if the entry at the head of the pending entries is still referenced by its enqueuing thread
+     */
+    private boolean pageOutPendingEntries()
+    {
+        QueueEntry entry;
+        while ((entry = _pendingPageOuts.peek()) != null)
+        {
+            final boolean keepInMemory = _pagedMessages.isEmpty()
+                                         && getInMemoryMessageCount() - _pendingPageOutCount.get() < _pagingWindowSize;
+            if (keepInMemory || !entry.getMessage().isReferencedOnlyBy(this))
+            {
+                // the message is either held by another queue, in which case it cannot be paged out, or still
+                // referenced while it is routed, in which case we try again shortly
+                if (!keepInMemory && ++_pendingPageOutAttempts < MAXIMUM_PENDING_PAGE_OUT_ATTEMPTS)
+                {
+                    return false;
+                }
+                entry.release();
+            }
+            else if (!pageOut(entry))
+            {
+                entry.release();
+            }
+            _pendingPageOutAttempts = 0;
+            _pendingPageOuts.poll();
+            _pendingPageOutCount.decrementAndGet();
+        }
+        return true;
+    }
+
+    private void pageOutBeyondWindow(int excess)
+    {
+        final QueueEntryIterator iterator = getEntries().iterator();
+        int position = 0;
+        while (excess > 0 && !_stopped.get() && iterator.advance())
+        {
+            final QueueEntry entry = iterator.getNode();
+            if (!entry.isDeleted() && ++position > _pagingWindowSize)
+            {
+                final ServerMessage message = entry.getMessage();
+                if (entry.getEnqueueRecord() != null
+                    && !entry.isRedelivered()
+                    && entry.getDeliveryCount() == 0
+                    && message.isReferencedOnlyBy(this)
+                    && entry.acquire())
+                {
+                    if (message.isReferencedOnlyBy(this) && pageOut(entry))
+                    {
+                        excess--;
+                    }
+                    else
+                    {
+                        entry.release();
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean pageOut(final QueueEntry entry)
+    {
+        final ServerMessage message = entry.getMessage();
+        final StoredMessage storedMessage = message.getStoredMessage();
+        if (storedMessage != null && storedMessage.flowToDisk() && ((QueueEntryImpl) entry).pageOut())
+        {
+            _pagedMessages.add(message.getMessageNumber(), message.getSize());
+            return true;
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int pageIn(int count)
+    {
+        int pagedIn = 0;
+        final MessageStore.MessageStoreReader reader = getVirtualHost().getMessageStore().newMessageStoreReader();
+        try
+        {
+            while (count-- > 0 && !_pagedMessages.isEmpty())
+            {
+                final long messageSize = _pagedMessages.peekSize();
+                final long messageNumber = _pagedMessages.remove();
+                final StoredMessage<?> storedMessage = reader.getMessage(messageNumber);
+                if (storedMessage == null)
+                {
+                    _logger.warn("Message {} paged out by queue '{}' is no longer in the store", messageNumber, getName());
+                    decrementQueueCount();
+                    // only messages with an enqueue record, and so persistent on a durable queue, are paged out
+                    decrementQueueSize(messageSize, true);
+                }
+                else
+                {
+                    final MessageMetaDataType type = storedMessage.getMetaData().getType();
+                    final ServerMessage<?> message = type.createMessage(storedMessage);
+                    final MessageReference<?> reference = message.newReference();
+                    try
+                    {
+                        doEnqueue(message, null, new PagedEnqueueRecord(getId(), messageNumber));
+                    }
+                    finally
+                    {
+                        reference.release();
+                    }
+                    pagedIn++;
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return pagedIn;
+    }
+
+    /**
+     * Returns the entries held back by the pager to the queue and reads back a window of the paged out messages, so
+     * that operations removing every message from the queue can work through them.
+     *
+     * @return true if any message was read back
+     */
+    private boolean pageInForRemoval()
+    {
+        synchronized (_pagingLock)
+        {
+            QueueEntry entry;
+            while ((entry = _pendingPageOuts.poll()) != null)
+            {
+                _pendingPageOutCount.decrementAndGet();
+                entry.release();
+            }
+            _pendingPageOutAttempts = 0;
+            final boolean pagedIn = pageIn(Math.max(1, _pagingWindowSize)) != 0;
+            _pagingActive = !_pagedMessages.isEmpty();
+            return pagedIn || !_pagedMessages.isEmpty();
+        }
+    }
+
     public boolean resend(final QueueEntry entry, final QueueConsumer<?> consumer)
     {
         /* TODO : This is wrong as the consumer may be suspended, we should instead change the state of the message
@@ -1702,6 +2022,8 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void stateChanged(QueueConsumer<?> sub, State oldState, State newState)
     {
+        _consumerList.consumerStateChanged(sub);
+
         if (oldState == State.ACTIVE && newState != State.ACTIVE)
         {
             _activeSubscriberCount.decrementAndGet();
@@ -1772,6 +2094,20 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public List<QueueEntry> getMessagesOnTheQueue(final long fromMessageId, final long toMessageId)
     {
+        final MessageIdIndex messageIdIndex = getEntries().getMessageIdIndex();
+        if (messageIdIndex != null)
+        {
+            final List<QueueEntry> entries = new ArrayList<>();
+            for (QueueEntry entry : messageIdIndex.get(fromMessageId, toMessageId))
+            {
+                if (!entry.isDeleted())
+                {
+                    entries.add(entry);
+                }
+            }
+            Collections.sort(entries);
+            return entries;
+        }
         return getMessagesOnTheQueue(new QueueEntryFilter()
         {
 
@@ -1790,6 +2126,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public QueueEntry getMessageOnTheQueue(final long messageId)
     {
+        final MessageIdIndex messageIdIndex = getEntries().getMessageIdIndex();
+        if (messageIdIndex != null)
+        {
+            final QueueEntry entry = messageIdIndex.get(messageId);
+            return entry == null || entry.isDeleted() ? null : entry;
+        }
         List<QueueEntry> entries = getMessagesOnTheQueue(new QueueEntryFilter()
         {
             private boolean _complete;
@@ -1842,27 +2184,89 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         while(queueListIterator.advance())
         {
-            QueueEntry node = queueListIterator.getNode();
-            MessageReference reference = node.newMessageReference();
-            if(reference != null)
+            if(visitEntry(queueListIterator.getNode(), visitor))
             {
-                try
-                {
+                break;
+            }
+        }
+    }
 
-                    final boolean done = !node.isDeleted() && visitor.visit(node);
-                    if(done)
-                    {
-                        break;
-                    }
-                }
-                finally
+    /**
+     * Visits the entries from the current position of the given iterator until the visitor stops the visit, leaving the
+     * iterator at the last entry visited.
+     */
+    void visit(final QueueEntryIterator iterator, final QueueEntryVisitor visitor)
+    {
+        while(iterator.advance())
+        {
+            if(visitEntry(iterator.getNode(), visitor))
+            {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public void visit(final QueueEntryVisitor visitor, final Collection<Long> messageIds)
+    {
+        final List<QueueEntry> entries = getIndexedEntries(messageIds);
+        if (entries == null)
+        {
+            visit(visitor);
+        }
+        else
+        {
+            for (QueueEntry entry : entries)
+            {
+                if (visitEntry(entry, visitor))
                 {
-                    reference.release();
+                    break;
                 }
             }
         }
     }
 
+    /**
+     * @return the entries of the given messages in the order of the queue, or null if the queue keeps no index of its
+     *         entries by message id
+     */
+    List<QueueEntry> getIndexedEntries(final Collection<Long> messageIds)
+    {
+        final MessageIdIndex messageIdIndex = getEntries().getMessageIdIndex();
+        if (messageIdIndex == null)
+        {
+            return null;
+        }
+        final List<QueueEntry> entries = new ArrayList<>(messageIds.size());
+        for (Long messageId : messageIds)
+        {
+            final QueueEntry entry = messageIdIndex.get(messageId);
+            if (entry != null)
+            {
+                entries.add(entry);
+            }
+        }
+        Collections.sort(entries);
+        return entries;
+    }
+
+    boolean visitEntry(final QueueEntry node, final QueueEntryVisitor visitor)
+    {
+        MessageReference reference = node.newMessageReference();
+        if(reference != null)
+        {
+            try
+            {
+                return !node.isDeleted() && visitor.visit(node);
+            }
+            finally
+            {
+                reference.release();
+            }
+        }
+        return false;
+    }
+
     /**
      * Returns a list of QueueEntries from a given range of queue positions, eg messages 5 to 10 on the queue.
      *
@@ -1897,31 +2301,37 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     @Override
     public long clearQueue()
     {
-        QueueEntryIterator queueListIterator = getEntries().iterator();
         long count = 0;
 
-        ServerTransaction txn = new LocalTransaction(getVirtualHost().getMessageStore());
-
-        while (queueListIterator.advance())
+        // messages paged out are read back a window at a time once the entries in memory have been removed
+        do
         {
-            final QueueEntry node = queueListIterator.getNode();
-            boolean acquired = node.acquireOrSteal(new Runnable()
-                                                    {
-                                                        @Override
-                                                        public void run()
-                                                        {
-                                                            dequeueEntry(node);
-                                                        }
-                                                    });
+            QueueEntryIterator queueListIterator = getEntries().iterator();
+
+            ServerTransaction txn = new LocalTransaction(getVirtualHost().getMessageStore());
 
-            if (acquired)
+            while (queueListIterator.advance())
             {
-                dequeueEntry(node, txn);
+                final QueueEntry node = queueListIterator.getNode();
+                boolean acquired = node.acquireOrSteal(new Runnable()
+                                                        {
+                                                            @Override
+                                                            public void run()
+                                                            {
+                                                                dequeueEntry(node);
+                                                            }
+                                                        });
+
+                if (acquired)
+                {
+                    dequeueEntry(node, txn);
+                }
+
             }
 
+            txn.commit();
         }
-
-        txn.commit();
+        while (pageInForRemoval());
 
         return count;
     }
@@ -2006,10 +2416,16 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                             }
                         }
 
-                        final List<QueueEntry> entries = getMessagesOnTheQueue(new AcquireAllQueueEntryFilter());
+                        List<QueueEntry> entries = getMessagesOnTheQueue(new AcquireAllQueueEntryFilter());
 
                         routeToAlternate(entries);
 
+                        while (pageInForRemoval())
+                        {
+                            entries = getMessagesOnTheQueue(new AcquireAllQueueEntryFilter());
+                            routeToAlternate(entries);
+                        }
+
                         preSetAlternateExchange();
                         _alternateExchange = null;
 
@@ -2072,6 +2488,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     {
         super.onClose();
         _stopped.set(true);
+        _browseCursors.clear();
         _closing = false;
     }
 
@@ -2133,44 +2550,142 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     {
         _stateChangeCount.incrementAndGet();
 
-        _queueRunner.execute();
+        executeQueueRunners();
 
     }
 
-    void flushConsumer(QueueConsumer<?> sub)
+    void executeQueueRunners()
     {
+        _queueRunner.execute();
+    }
 
-        flushConsumer(sub, Long.MAX_VALUE);
+    boolean isQueueRunnerIdle()
+    {
+        return _queueRunner.isIdle();
     }
 
-    boolean flushConsumer(QueueConsumer<?> sub, long iterations)
+    /**
+     * @return true if the given runner should attempt delivery to the given consumer
+     */
+    boolean isDeliveringTo(final QueueRunner runner, final QueueConsumer<?> consumer)
     {
-        boolean atTail = false;
-        final boolean keepSendLockHeld = iterations <=  getMaxAsyncDeliveries();
-        boolean queueEmpty = false;
-        boolean deliveryAttempted = false;
+        return true;
+    }
 
-        try
-        {
-            if(keepSendLockHeld)
-            {
-                sub.getSendLock();
-            }
-            while (!sub.isSuspended() && !atTail && iterations != 0)
-            {
-                try
-                {
-                    if(!keepSendLockHeld)
-                    {
-                        sub.getSendLock();
-                    }
+    /**
+     * @return the entry from which the given consumer starts to look for entries
+     */
+    QueueEntry getHead(final QueueConsumer<?> consumer)
+    {
+        return getEntries().getHead();
+    }
 
-                    atTail = attemptDelivery(sub, true);
-                    deliveryAttempted = true;
-                    if (atTail && getNextAvailableEntry(sub) == null)
-                    {
-                        queueEmpty = true;
-                    }
+    /**
+     * @return the entry from which the given consumer, if it only wants entries added after it, looks for entries
+     */
+    QueueEntry getTail(final QueueConsumer<?> consumer)
+    {
+        return getEntries().getTail();
+    }
+
+    /**
+     * @return the entry the given consumer visits after the given entry, or null if there is none
+     */
+    QueueEntry next(final QueueConsumer<?> consumer, final QueueEntry node)
+    {
+        return getEntries().next(node);
+    }
+
+    /**
+     * Compares two entries in the order in which the given consumer visits them.
+     */
+    int compare(final QueueConsumer<?> consumer, final QueueEntry entry, final QueueEntry other)
+    {
+        return entry.compareTo(other);
+    }
+
+    /**
+     * @return true if consumers visit the entries in the order of the entry list, so that they may share the run of
+     *         acquired entries at the head of the queue
+     */
+    boolean isAcquiredRunShared()
+    {
+        return true;
+    }
+
+    /**
+     * Called when a consumer is added to the queue, before the entry from which it looks for entries is chosen.
+     */
+    void consumerAdded(final QueueConsumer<?> consumer)
+    {
+    }
+
+    /**
+     * Called once a consumer has been removed from the queue.
+     */
+    void consumerRemoved(final QueueConsumer<?> consumer)
+    {
+    }
+
+    /**
+     * @return an available entry the given consumer should be delivered before the next entry in its order, or null if
+     *         there is none
+     */
+    QueueEntry getOverdueEntry(final QueueConsumer<?> consumer, final QueueEntry next)
+    {
+        return null;
+    }
+
+    /**
+     * Called once an entry has been sent to a consumer.
+     */
+    void entryDelivered(final QueueConsumer<?> consumer, final QueueEntry entry)
+    {
+    }
+
+    /**
+     * @return true if paging out the messages beyond the paging window, and reading them back in the order of the
+     *         queue, keeps the order in which the queue delivers its messages
+     */
+    boolean isPagingSupported()
+    {
+        return false;
+    }
+
+    void flushConsumer(QueueConsumer<?> sub)
+    {
+
+        flushConsumer(sub, Long.MAX_VALUE);
+    }
+
+    boolean flushConsumer(QueueConsumer<?> sub, long iterations)
+    {
+        boolean atTail = false;
+        final boolean keepSendLockHeld = iterations <=  getMaxAsyncDeliveries();
+        boolean queueEmpty = false;
+        boolean deliveryAttempted = false;
+
+        try
+        {
+            if(keepSendLockHeld)
+            {
+                sub.getSendLock();
+            }
+            while (!sub.isSuspended() && !atTail && iterations != 0)
+            {
+                try
+                {
+                    if(!keepSendLockHeld)
+                    {
+                        sub.getSendLock();
+                    }
+
+                    atTail = attemptDelivery(sub, true);
+                    deliveryAttempted = true;
+                    if (atTail && getNextAvailableEntry(sub) == null)
+                    {
+                        queueEmpty = true;
+                    }
                     else if (!atTail)
                     {
                         iterations--;
@@ -2234,6 +2749,12 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
         // avoid referring old deleted queue entry in sub._queueContext._lastSeen
         QueueEntry node  = getNextAvailableEntry(sub);
+        // an entry the consumer has passed over for too long is delivered first, leaving the consumer where it was
+        final QueueEntry overdueNode = node == null ? null : getOverdueEntry(sub, node);
+        if (overdueNode != null)
+        {
+            node = overdueNode;
+        }
         boolean subActive = sub.isActive() && !sub.isSuspended();
 
         if (subActive && (sub.getPriority() == Integer.MAX_VALUE || noHigherPriorityWithCredit(sub)))
@@ -2264,7 +2785,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                             }
                             else
                             {
-                                deliverMessage(sub, node, batch, true);
+                                deliverMessage(sub, node, batch, overdueNode == null);
                             }
                         }
                         finally
@@ -2286,23 +2807,28 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                 }
 
             }
-            atTail = (node == null) || (getEntries().next(node) == null);
+            atTail = (node == null) || (overdueNode == null && getEntries().next(node) == null);
         }
         return atTail || !subActive;
     }
 
     private boolean noHigherPriorityWithCredit(final QueueConsumer<?> sub)
     {
-        ConsumerNodeIterator iterator = _consumerList.iterator();
-        while(iterator.advance())
+        // only the levels above that of the consumer need be checked, and only those with an active consumer
+        for (QueueConsumerList.PriorityLevel level : _consumerList.getPriorityLevels())
         {
-            final ConsumerNode node = iterator.getNode();
-            QueueConsumer consumer = node.getConsumer();
-            if(consumer.getPriority() > sub.getPriority())
+            if (level.getPriority() <= sub.getPriority())
             {
-                if(getNextAvailableEntry(consumer) != null && consumer.hasCredit())
+                break;
+            }
+            if (level.getActiveCount() != 0)
+            {
+                for (QueueConsumer<?> consumer : level.getConsumers())
                 {
-                    return false;
+                    if (getNextAvailableEntry(consumer) != null && consumer.hasCredit())
+                    {
+                        return false;
+                    }
                 }
             }
         }
@@ -2332,11 +2858,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         QueueContext context = sub.getQueueContext();
         if(context != null)
         {
-            QueueEntry lastSeen = context.getLastSeenEntry();
             QueueEntry releasedNode = context.getReleasedEntry();
+            QueueEntry lastSeen = skipAcquiredRun(context, context.getLastSeenEntry(), releasedNode);
 
-            QueueEntry node = (releasedNode != null && lastSeen.compareTo(releasedNode)>=0) ? releasedNode : getEntries()
-                    .next(lastSeen);
+            boolean nextOfLastSeen = releasedNode == null || compare(sub, lastSeen, releasedNode) < 0;
+            QueueEntry node = nextOfLastSeen ? next(sub, lastSeen) : releasedNode;
 
             boolean expired = false;
             while (node != null && (!node.isAvailable() || (expired = node.expired()) || !sub.hasInterest(node) ||
@@ -2350,16 +2876,20 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                         dequeueEntry(node);
                     }
                 }
+                else if (nextOfLastSeen)
+                {
+                    extendAcquiredRun(lastSeen, node);
+                }
 
                 if(QueueContext._lastSeenUpdater.compareAndSet(context, lastSeen, node))
                 {
                     QueueContext._releasedUpdater.compareAndSet(context, releasedNode, null);
                 }
 
-                lastSeen = context.getLastSeenEntry();
                 releasedNode = context.getReleasedEntry();
-                node = (releasedNode != null && lastSeen.compareTo(releasedNode)>=0) ? releasedNode : getEntries().next(
-                        lastSeen);
+                lastSeen = skipAcquiredRun(context, context.getLastSeenEntry(), releasedNode);
+                nextOfLastSeen = releasedNode == null || compare(sub, lastSeen, releasedNode) < 0;
+                node = nextOfLastSeen ? next(sub, lastSeen) : releasedNode;
             }
             return node;
         }
@@ -2369,13 +2899,72 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         }
     }
 
+    /**
+     * Moves the consumer past the run of acquired entries at the head of the queue if it has not yet passed it and
+     * has no released entry to return to before the end of the run.  Entries released within the run are found through
+     * the released entry of the consumer.
+     *
+     * @return the entry now last seen by the consumer
+     */
+    private QueueEntry skipAcquiredRun(final QueueContext context,
+                                       final QueueEntry lastSeen,
+                                       final QueueEntry releasedNode)
+    {
+        final QueueEntry runEnd = _acquiredRunEnd.get();
+        if (runEnd != null
+            && isAcquiredRunShared()
+            && lastSeen.compareTo(runEnd) < 0
+            && (releasedNode == null || releasedNode.compareTo(runEnd) > 0)
+            && QueueContext._lastSeenUpdater.compareAndSet(context, lastSeen, runEnd))
+        {
+            return runEnd;
+        }
+        return lastSeen;
+    }
+
+    /**
+     * Extends the run of acquired entries at the head of the queue by the given entry, if the entry follows the end of
+     * the run and is acquired or deleted.
+     */
+    private void extendAcquiredRun(final QueueEntry previous, final QueueEntry node)
+    {
+        final QueueEntry runEnd = _acquiredRunEnd.get();
+        if (isAcquiredRunShared()
+            && (runEnd == null ? previous == getEntries().getHead() : runEnd == previous)
+            && (node.isAcquired() || node.isDeleted())
+            && _acquiredRunEnd.compareAndSet(runEnd, node))
+        {
+            // the entry may have been released after it was checked, but before the run was extended
+            if (!(node.isAcquired() || node.isDeleted()))
+            {
+                _acquiredRunEnd.compareAndSet(node, null);
+            }
+        }
+    }
+
+    /**
+     * Discards the run of acquired entries at the head of the queue if the given entry, which has become available,
+     * falls within it.
+     */
+    void resetAcquiredRun(final QueueEntry entry)
+    {
+        QueueEntry runEnd;
+        while ((runEnd = _acquiredRunEnd.get()) != null && entry.compareTo(runEnd) <= 0)
+        {
+            if (_acquiredRunEnd.compareAndSet(runEnd, null))
+            {
+                break;
+            }
+        }
+    }
+
     public boolean isEntryAheadOfConsumer(QueueEntry entry, QueueConsumer<?> sub)
     {
         QueueContext context = sub.getQueueContext();
         if(context != null)
         {
             QueueEntry releasedNode = context.getReleasedEntry();
-            return releasedNode != null && releasedNode.compareTo(entry) < 0;
+            return releasedNode != null && compare(sub, releasedNode, entry) < 0;
         }
         else
         {
@@ -2448,6 +3037,10 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             {
 
                 QueueConsumer<?> sub = consumerNodeIterator.getNode().getConsumer();
+                if (!isDeliveringTo(runner, sub))
+                {
+                    continue;
+                }
 
                 sub.getSendLock();
 
@@ -2528,11 +3121,11 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
 
     public void checkMessageStatus()
     {
-        QueueEntryIterator queueListIterator = getEntries().iterator();
-
         final long estimatedQueueSize = _atomicQueueSize.get() + _atomicQueueCount.get() * _estimatedAverageMessageHeaderSize;
         _flowToDiskChecker.reportFlowToDiskStatusIfNecessary(estimatedQueueSize, _targetQueueSize.get());
 
+        expireBrowseCursors(System.currentTimeMillis());
+
         final Set<NotificationCheck> perMessageChecks = new HashSet<>();
         final Set<NotificationCheck> queueLevelChecks = new HashSet<>();
 
@@ -2551,61 +3144,180 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         final long currentTime = System.currentTimeMillis();
         final long thresholdTime = currentTime - getAlertRepeatGap();
 
-        long cumulativeQueueSize = 0;
-        while (!_stopped.get() && queueListIterator.advance())
+        // expiry only visits the entries which the expiry wheel reports as due
+        for (QueueEntry node : _expiryWheel.expire(currentTime))
+        {
+            if (_stopped.get())
+            {
+                break;
+            }
+            expireEntry(node);
+        }
+
+        // likewise compaction only visits the entries which have reached the minimum age
+        for (QueueEntry node : _compactionWheel.expire(currentTime))
+        {
+            if (_stopped.get())
+            {
+                break;
+            }
+            final ServerMessage msg = node.getMessage();
+            if (msg != null)
+            {
+                compactContent(msg.getStoredMessage());
+            }
+        }
+
+        // the remaining checks need to visit every entry, so skip the scan when none of them can have an effect
+        final boolean scanRequired = !_holdMethods.isEmpty()
+                                     || !perMessageChecks.isEmpty()
+                                     || estimatedQueueSize > _targetQueueSize.get();
+
+        synchronized (_housekeepingScanLock)
         {
-            final QueueEntry node = queueListIterator.getNode();
-            // Only process nodes that are not currently deleted and not dequeued
-            if (!node.isDeleted())
+            if (!scanRequired)
+            {
+                _housekeepingScanInProgress = false;
+                _housekeepingScanPosition = null;
+                _housekeepingScanCompletedPassStartTime = currentTime;
+            }
+            else
             {
-                // If the node has expired then acquire it
-                if (node.expired())
+                QueueEntry node = null;
+                if (!_housekeepingScanInProgress)
+                {
+                    _housekeepingScanInProgress = true;
+                    _housekeepingScanCumulativeQueueSize = 0L;
+                    _housekeepingScanPassStartTime = currentTime;
+                }
+                else if (_housekeepingScanPosition != null)
                 {
-                    boolean acquiredForDequeueing = node.acquireOrSteal(new Runnable()
+                    node = _housekeepingScanPosition.get();
+                    if (node == null || node.isDeleted())
                     {
-                        @Override
-                        public void run()
-                        {
-                            dequeueEntry(node);
-                        }
-                    });
+                        // the entry the previous run stopped at has been deleted since, so carry on the pass from the
+                        // head; on a queue being consumed the entries before it will mostly have gone too
+                        node = null;
+                        _housekeepingScanCumulativeQueueSize = 0L;
+                    }
+                }
+                _housekeepingScanPosition = null;
 
-                    if(acquiredForDequeueing)
+                // each run visits at most a slice of the entries, resuming where the previous run stopped
+                int remaining = _housekeepingScanSliceSize;
+                boolean passComplete = false;
+                while (!_stopped.get() && (_housekeepingScanSliceSize <= 0 || remaining-- > 0))
+                {
+                    node = node == null ? getFirstEntry() : getEntries().next(node);
+                    if (node == null)
                     {
-                        _logger.debug("Dequeuing expired node {}", node);
-                        // Then dequeue it.
-                        dequeueEntry(node);
+                        passComplete = true;
+                        break;
                     }
+                    checkEntryStatus(node,
+                                     currentTime,
+                                     thresholdTime,
+                                     perMessageChecks,
+                                     listener);
                 }
-                else
+
+                if (passComplete)
+                {
+                    _housekeepingScanInProgress = false;
+                    _housekeepingScanCompletedPassStartTime = _housekeepingScanPassStartTime;
+                }
+                else if (node != null)
                 {
-                    node.checkHeld(currentTime);
+                    _housekeepingScanPosition = new WeakReference<>(node);
+                }
+            }
+        }
 
-                    // There is a chance that the node could be deleted by
-                    // the time the check actually occurs. So verify we
-                    // can actually get the message to perform the check.
-                    ServerMessage msg = node.getMessage();
+        for(NotificationCheck check : queueLevelChecks)
+        {
+            checkForNotification(null, listener, currentTime, thresholdTime, check);
+        }
 
-                    if (msg != null)
-                    {
-                        cumulativeQueueSize += msg.getSize() + _estimatedAverageMessageHeaderSize;
-                        _flowToDiskChecker.flowToDiskIfNecessary(msg.getStoredMessage(), cumulativeQueueSize,
-                                                                 _targetQueueSize.get());
+        if (_pagingWindowSize > 0)
+        {
+            schedulePaging();
+        }
+    }
 
-                        for(NotificationCheck check : perMessageChecks)
-                        {
-                            checkForNotification(msg, listener, currentTime, thresholdTime, check);
-                        }
+    private QueueEntry getFirstEntry()
+    {
+        final QueueEntryIterator iterator = getEntries().iterator();
+        return iterator.advance() ? iterator.getNode() : null;
+    }
+
+    private void checkEntryStatus(final QueueEntry node,
+                                  final long currentTime,
+                                  final long thresholdTime,
+                                  final Set<NotificationCheck> perMessageChecks,
+                                  final QueueNotificationListener listener)
+    {
+        // Only process nodes that are not currently deleted and not dequeued
+        if (!node.isDeleted())
+        {
+            // An entry may have expired since the expiry wheel was advanced
+            if (node.expired())
+            {
+                expireEntry(node);
+            }
+            else
+            {
+                node.checkHeld(currentTime);
+
+                // There is a chance that the node could be deleted by
+                // the time the check actually occurs. So verify we
+                // can actually get the message to perform the check.
+                ServerMessage msg = node.getMessage();
+
+                if (msg != null)
+                {
+                    _housekeepingScanCumulativeQueueSize += msg.getSize() + _estimatedAverageMessageHeaderSize;
+                    _flowToDiskChecker.flowToDiskIfNecessary(msg.getStoredMessage(),
+                                                             _housekeepingScanCumulativeQueueSize,
+                                                             _targetQueueSize.get());
+
+                    for(NotificationCheck check : perMessageChecks)
+                    {
+                        checkForNotification(msg, listener, currentTime, thresholdTime, check);
                     }
                 }
             }
         }
+    }
 
-        for(NotificationCheck check : queueLevelChecks)
+    private void expireEntry(final QueueEntry node)
+    {
+        boolean acquiredForDequeueing = node.acquireOrSteal(new Runnable()
         {
-            checkForNotification(null, listener, currentTime, thresholdTime, check);
+            @Override
+            public void run()
+            {
+                dequeueEntry(node);
+            }
+        });
+
+        if(acquiredForDequeueing)
+        {
+            _logger.debug("Dequeuing expired node {}", node);
+            // Then dequeue it.
+            dequeueEntry(node);
         }
+    }
 
+    private void compactContent(final StoredMessage<?> storedMessage)
+    {
+        if (storedMessage != null && storedMessage.isInMemory())
+        {
+            final long reclaimedBytes = storedMessage.compactContent();
+            if (reclaimedBytes > 0L)
+            {
+                _contentCompactionReclaimedBytes.addAndGet(reclaimedBytes);
+            }
+        }
     }
 
     @Override
@@ -2975,6 +3687,26 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
         return _unackedMsgBytes.get();
     }
 
+    @Override
+    public long getContentCompactionReclaimedBytes()
+    {
+        return _contentCompactionReclaimedBytes.get();
+    }
+
+    @Override
+    public long getHousekeepingScanLag()
+    {
+        return Math.max(0L, System.currentTimeMillis() - _housekeepingScanCompletedPassStartTime);
+    }
+
+    boolean isHousekeepingScanInProgress()
+    {
+        synchronized (_housekeepingScanLock)
+        {
+            return _housekeepingScanInProgress;
+        }
+    }
+
     @Override
     public void decrementUnackedMsgCount(QueueEntry queueEntry)
     {
@@ -3578,7 +4310,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                                                                           destination,
                                                                           parseSelector(selector),
                                                                           limit);
-        _virtualHost.executeTransaction(transaction);
+        executeInChunks(transaction);
         return transaction.getModifiedMessageIds();
 
     }
@@ -3591,7 +4323,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                                                                           destination,
                                                                           parseSelector(selector),
                                                                           limit);
-        _virtualHost.executeTransaction(transaction);
+        executeInChunks(transaction);
         return transaction.getModifiedMessageIds();
 
     }
@@ -3603,11 +4335,188 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
                                                                               messageIds,
                                                                               parseSelector(selector),
                                                                               limit);
-        _virtualHost.executeTransaction(transaction);
+        executeInChunks(transaction);
 
         return transaction.getModifiedMessageIds();
     }
 
+    @Override
+    public void startMoveMessages(final Queue<?> destination,
+                                  final List<Long> messageIds,
+                                  final String selector,
+                                  final int limit)
+    {
+        startBulkOperation("move", new MoveMessagesTransaction(this,
+                                                               messageIds,
+                                                               destination,
+                                                               parseSelector(selector),
+                                                               limit));
+    }
+
+    @Override
+    public void startCopyMessages(final Queue<?> destination,
+                                  final List<Long> messageIds,
+                                  final String selector,
+                                  final int limit)
+    {
+        startBulkOperation("copy", new CopyMessagesTransaction(this,
+                                                               messageIds,
+                                                               destination,
+                                                               parseSelector(selector),
+                                                               limit));
+    }
+
+    @Override
+    public void startDeleteMessages(final List<Long> messageIds, final String selector, final int limit)
+    {
+        startBulkOperation("delete", new DeleteMessagesTransaction(this,
+                                                                   messageIds,
+                                                                   parseSelector(selector),
+                                                                   limit));
+    }
+
+    @Override
+    public Map<String, Object> getBulkOperationProgress()
+    {
+        final BulkOperation operation = _bulkOperation.get();
+        if (operation == null)
+        {
+            return Collections.emptyMap();
+        }
+        final Map<String, Object> progress = new LinkedHashMap<>();
+        progress.put("operation", operation.getName());
+        progress.put("state", operation.getState().name());
+        progress.put("modifiedMessages", operation.getTransaction().getModifiedMessageCount());
+        progress.put("startTime", operation.getStartTime());
+        return progress;
+    }
+
+    @Override
+    public boolean cancelBulkOperation()
+    {
+        final BulkOperation operation = _bulkOperation.get();
+        return operation != null && operation.cancel();
+    }
+
+    /**
+     * Commits each chunk of the operation in a store transaction of its own, so that no transaction need hold every
+     * message of a large operation.
+     */
+    private void executeInChunks(final QueueEntryTransaction transaction)
+    {
+        transaction.setChunkSize(_bulkOperationChunkSize);
+        do
+        {
+            _virtualHost.executeTransaction(transaction);
+        }
+        while (!transaction.isComplete());
+    }
+
+    private void startBulkOperation(final String name, final QueueEntryTransaction transaction)
+    {
+        transaction.setChunkSize(_bulkOperationChunkSize);
+        transaction.setRecordModifiedMessageIds(false);
+
+        final BulkOperation operation = new BulkOperation(name, transaction);
+        BulkOperation current;
+        do
+        {
+            current = _bulkOperation.get();
+            if (current != null && current.getState() == BulkOperationState.RUNNING)
+            {
+                throw new IllegalStateException("Queue '" + getName() + "' is already running a " + current.getName()
+                                                + " operation");
+            }
+        }
+        while (!_bulkOperation.compareAndSet(current, operation));
+
+        operation.schedule();
+    }
+
+    private enum BulkOperationState
+    {
+        RUNNING, COMPLETE, CANCELLED, FAILED
+    }
+
+    /**
+     * A move, copy or delete of messages run in the background a chunk at a time, each chunk being a task of its own so
+     * that the operation neither holds a thread nor a store transaction for its whole duration.
+     */
+    private final class BulkOperation implements Runnable
+    {
+        private final String _name;
+        private final QueueEntryTransaction _transaction;
+        private final long _startTime = System.currentTimeMillis();
+        private final AtomicBoolean _cancelled = new AtomicBoolean();
+        private volatile BulkOperationState _state = BulkOperationState.RUNNING;
+
+        private BulkOperation(final String name, final QueueEntryTransaction transaction)
+        {
+            _name = name;
+            _transaction = transaction;
+        }
+
+        @Override
+        public void run()
+        {
+            if (_cancelled.get() || _stopped.get())
+            {
+                _state = BulkOperationState.CANCELLED;
+                return;
+            }
+
+            try
+            {
+                _virtualHost.executeTransaction(_transaction);
+            }
+            catch (RuntimeException e)
+            {
+                _logger.warn("Failed to {} messages of queue '{}'", _name, getName(), e);
+                _state = BulkOperationState.FAILED;
+                return;
+            }
+
+            if (_transaction.isComplete())
+            {
+                _state = BulkOperationState.COMPLETE;
+            }
+            else
+            {
+                schedule();
+            }
+        }
+
+        private void schedule()
+        {
+            execute("Queue Bulk Operation[" + getName() + "]", this, _bulkOperationContext);
+        }
+
+        private boolean cancel()
+        {
+            return _state == BulkOperationState.RUNNING && _cancelled.compareAndSet(false, true);
+        }
+
+        private String getName()
+        {
+            return _name;
+        }
+
+        private BulkOperationState getState()
+        {
+            return _state;
+        }
+
+        private QueueEntryTransaction getTransaction()
+        {
+            return _transaction;
+        }
+
+        private long getStartTime()
+        {
+            return _startTime;
+        }
+    }
+
     private JMSSelectorFilter parseSelector(final String selector)
     {
         try
@@ -3624,7 +4533,7 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     public Content getMessageContent(final long messageId, final long limit, boolean returnJson, boolean decompressBeforeLimiting)
     {
         final MessageContentFinder messageFinder = new MessageContentFinder(messageId);
-        visit(messageFinder);
+        visit(messageFinder, Collections.singleton(messageId));
         if (messageFinder.isFound())
         {
             return createMessageContent(messageFinder.getMessageReference(), returnJson, limit, decompressBeforeLimiting);
@@ -3678,10 +4587,147 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
     public MessageInfo getMessageInfoById(final long messageId, boolean includeHeaders)
     {
         final MessageFinder messageFinder = new MessageFinder(messageId, includeHeaders);
-        visit(messageFinder);
+        visit(messageFinder, Collections.singleton(messageId));
         return messageFinder.getMessageInfo();
     }
 
+    @Override
+    public Map<String, Object> browseMessages(final String cursor, final int count, final boolean includeHeaders)
+    {
+        if (count <= 0)
+        {
+            throw new IllegalArgumentException("The number of messages to browse must be positive: " + count);
+        }
+
+        final AuthenticatedPrincipal principal = AuthenticatedPrincipal.getCurrentUser();
+        final BrowseCursor browseCursor;
+        final String token;
+        if (cursor == null || "".equals(cursor))
+        {
+            expireBrowseCursors(System.currentTimeMillis());
+            checkBrowseCursorLimits(principal);
+            browseCursor = new BrowseCursor(getEntries().iterator(), principal);
+            token = UUID.randomUUID().toString();
+        }
+        else
+        {
+            browseCursor = _browseCursors.get(cursor);
+            // a cursor of another user is reported as unknown, so that its existence is not disclosed
+            if (browseCursor == null
+                || !browseCursor.isOwnedBy(principal)
+                || browseCursor.isExpired(System.currentTimeMillis())
+                || !_browseCursors.remove(cursor, browseCursor))
+            {
+                throw new IllegalArgumentException("Unknown or expired browse cursor '" + cursor + "'");
+            }
+            token = cursor;
+        }
+
+        final List<MessageInfo> messages = browseCursor.nextPage(count, includeHeaders);
+
+        final Map<String, Object> page = new LinkedHashMap<>();
+        if (messages.size() == count && !_stopped.get())
+        {
+            browseCursor.touch(System.currentTimeMillis() + _browseCursorTimeout);
+            _browseCursors.put(token, browseCursor);
+            page.put("cursor", token);
+        }
+        else
+        {
+            page.put("cursor", null);
+        }
+        page.put("messages", messages);
+        return page;
+    }
+
+    /**
+     * Refuses a further cursor once the queue, or the given user, has the maximum number of cursors open.  The limits
+     * bound the entries the cursors of management clients may keep from being freed.
+     */
+    private void checkBrowseCursorLimits(final AuthenticatedPrincipal principal)
+    {
+        if (_browseCursors.size() >= _maximumBrowseCursors)
+        {
+            throw new IllegalStateException("Queue '" + getName() + "' already has the maximum of "
+                                            + _maximumBrowseCursors + " browse cursors open");
+        }
+
+        int principalCursors = 0;
+        for (BrowseCursor browseCursor : _browseCursors.values())
+        {
+            if (browseCursor.isOwnedBy(principal))
+            {
+                principalCursors++;
+            }
+        }
+        if (principalCursors >= _maximumBrowseCursorsPerPrincipal)
+        {
+            throw new IllegalStateException("Queue '" + getName() + "' already has the maximum of "
+                                            + _maximumBrowseCursorsPerPrincipal + " browse cursors open for "
+                                            + (principal == null ? "the system" : principal.getName()));
+        }
+    }
+
+    private void expireBrowseCursors(final long currentTime)
+    {
+        final Iterator<BrowseCursor> iterator = _browseCursors.values().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().isExpired(currentTime))
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * The position of a management client browsing the queue a page at a time.  A cursor is held by at most one request
+     * at a time, as it is removed from the open cursors while it is in use, and may only be used by the user who
+     * opened it.
+     */
+    private final class BrowseCursor
+    {
+        private final QueueEntryIterator _iterator;
+        private final AuthenticatedPrincipal _owner;
+        private volatile long _expiryTime;
+
+        private BrowseCursor(final QueueEntryIterator iterator, final AuthenticatedPrincipal owner)
+        {
+            _iterator = iterator;
+            _owner = owner;
+        }
+
+        private boolean isOwnedBy(final AuthenticatedPrincipal principal)
+        {
+            return _owner == null ? principal == null : _owner.equals(principal);
+        }
+
+        private List<MessageInfo> nextPage(final int count, final boolean includeHeaders)
+        {
+            final List<MessageInfo> messages = new ArrayList<>(count);
+            visit(_iterator, new QueueEntryVisitor()
+            {
+                @Override
+                public boolean visit(final QueueEntry entry)
+                {
+                    messages.add(new MessageInfoImpl(entry, includeHeaders));
+                    return messages.size() == count;
+                }
+            });
+            return messages;
+        }
+
+        private void touch(final long expiryTime)
+        {
+            _expiryTime = expiryTime;
+        }
+
+        private boolean isExpired(final long currentTime)
+        {
+            return _expiryTime < currentTime;
+        }
+    }
+
     private class MessageFinder implements QueueEntryVisitor
     {
         private final long _messageNumber;
@@ -3857,4 +4903,32 @@ public abstract class AbstractQueue<X extends AbstractQueue<X>>
             }
         }
     }
+
+    /**
+     * The enqueue record of a message read back from the store after it was paged out: the record in the store is
+     * the one made when the message was originally enqueued.
+     */
+    private static final class PagedEnqueueRecord implements MessageEnqueueRecord
+    {
+        private final UUID _queueId;
+        private final long _messageNumber;
+
+        private PagedEnqueueRecord(final UUID queueId, final long messageNumber)
+        {
+            _queueId = queueId;
+            _messageNumber = messageNumber;
+        }
+
+        @Override
+        public UUID getQueueId()
+        {
+            return _queueId;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageNumber;
+        }
+    }
 }
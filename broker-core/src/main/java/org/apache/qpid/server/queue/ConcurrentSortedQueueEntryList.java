@@ -0,0 +1,188 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+
+/**
+ * A sorted implementation of QueueEntryList backed by a concurrent skip list.
+ *
+ * Entries are ordered as in {@link SortedQueueEntryList}: by the value of the sort key, with entries without a key
+ * first, and entries with equal keys in the order they were added.  Adds, deletes and traversal take no lock, so
+ * producers and consumers of the queue do not serialize on the list.
+ */
+public class ConcurrentSortedQueueEntryList implements QueueEntryList
+{
+    private final ConcurrentSortedQueueEntry _head;
+    private final ConcurrentSkipListSet<ConcurrentSortedQueueEntry> _entries = new ConcurrentSkipListSet<>();
+    private final AtomicLong _entryId = new AtomicLong(Long.MIN_VALUE);
+    private final SortedQueueImpl _queue;
+    private final String _propertyName;
+    private final MessageIdIndex _messageIdIndex;
+
+    public ConcurrentSortedQueueEntryList(final SortedQueueImpl queue)
+    {
+        _queue = queue;
+        // the head has no key and the lowest entry id, so it sorts before every entry of the list
+        _head = new ConcurrentSortedQueueEntry(this);
+        _propertyName = queue.getSortKey();
+        _messageIdIndex = MessageIdIndex.newInstance(queue);
+    }
+
+    @Override
+    public SortedQueueImpl getQueue()
+    {
+        return _queue;
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntry add(final ServerMessage message, final MessageEnqueueRecord enqueueRecord)
+    {
+        String key = null;
+        final Object val = message.getMessageHeader().getHeader(_propertyName);
+        if(val != null)
+        {
+            key = val.toString();
+        }
+
+        final ConcurrentSortedQueueEntry entry =
+                new ConcurrentSortedQueueEntry(this, message, _entryId.incrementAndGet(), enqueueRecord, key);
+        _entries.add(entry);
+        if (_messageIdIndex != null)
+        {
+            _messageIdIndex.add(entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Returns the entry following the given one, which need not still be in the list.  The returned entry may itself
+     * have been deleted but not yet removed.
+     */
+    @Override
+    public ConcurrentSortedQueueEntry next(final QueueEntry node)
+    {
+        return _entries.higher((ConcurrentSortedQueueEntry) node);
+    }
+
+    @Override
+    public QueueEntryIterator iterator()
+    {
+        return new QueueEntryIteratorImpl(_head);
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntry getHead()
+    {
+        return _head;
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntry getTail()
+    {
+        final Iterator<ConcurrentSortedQueueEntry> descending = _entries.descendingIterator();
+        return descending.hasNext() ? descending.next() : _head;
+    }
+
+    @Override
+    public QueueEntry getOldestEntry()
+    {
+        QueueEntry oldestEntry = null;
+        for (ConcurrentSortedQueueEntry node : _entries)
+        {
+            if (!node.isDeleted())
+            {
+                ServerMessage msg = node.getMessage();
+                if(msg != null && (oldestEntry == null || oldestEntry.getMessage().getMessageNumber() > msg.getMessageNumber()))
+                {
+                    oldestEntry = node;
+                }
+            }
+        }
+        return oldestEntry;
+    }
+
+    @Override
+    public void entryDeleted(final QueueEntry entry)
+    {
+        if (_messageIdIndex != null)
+        {
+            _messageIdIndex.remove(entry);
+        }
+        _entries.remove(entry);
+    }
+
+    @Override
+    public int getPriorities()
+    {
+        return 0;
+    }
+
+    @Override
+    public MessageIdIndex getMessageIdIndex()
+    {
+        return _messageIdIndex;
+    }
+
+    private final class QueueEntryIteratorImpl implements QueueEntryIterator
+    {
+        private ConcurrentSortedQueueEntry _lastNode;
+
+        private QueueEntryIteratorImpl(final ConcurrentSortedQueueEntry startNode)
+        {
+            _lastNode = startNode;
+        }
+
+        @Override
+        public boolean atTail()
+        {
+            return next(_lastNode) == null;
+        }
+
+        @Override
+        public ConcurrentSortedQueueEntry getNode()
+        {
+            return _lastNode;
+        }
+
+        @Override
+        public boolean advance()
+        {
+            ConcurrentSortedQueueEntry nextNode = next(_lastNode);
+            if(nextNode == null)
+            {
+                return false;
+            }
+            ConcurrentSortedQueueEntry following;
+            while(nextNode.isDeleted() && (following = next(nextNode)) != null)
+            {
+                nextNode = following;
+            }
+            _lastNode = nextNode;
+            return true;
+        }
+    }
+}
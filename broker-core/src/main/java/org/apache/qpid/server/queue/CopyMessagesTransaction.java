@@ -32,7 +32,7 @@ public class CopyMessagesTransaction extends QueueEntryTransaction
 {
     private final Queue _destinationQueue;
 
-    public CopyMessagesTransaction(Queue sourceQueue,
+    public CopyMessagesTransaction(AbstractQueue<?> sourceQueue,
                                    List<Long> messageIds,
                                    Queue destinationQueue,
                                    final MessageFilter filter, final int limit)
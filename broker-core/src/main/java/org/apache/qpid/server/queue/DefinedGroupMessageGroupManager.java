@@ -20,29 +20,40 @@
  */
 package org.apache.qpid.server.queue;
 
-import org.apache.qpid.server.consumer.ConsumerImpl;
-import org.apache.qpid.server.message.MessageInstance;
-import org.apache.qpid.server.message.MessageInstance.ConsumerAcquiredState;
-import org.apache.qpid.server.message.MessageInstance.EntryState;
-import org.apache.qpid.server.util.StateChangeListener;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.MessageInstance.ConsumerAcquiredState;
+import org.apache.qpid.server.message.MessageInstance.EntryState;
 import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.util.StateChangeListener;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
-
+/**
+ * Assigns each message group to a single consumer until the consumer holds no more messages of the group.
+ *
+ * The state of each group is guarded by the group itself rather than by the manager, so that consumers working on
+ * different groups do not contend.  Each group indexes the entries which other consumers passed over because the group
+ * was assigned elsewhere, and each consumer the groups assigned to it, so that the earliest such entry can be found
+ * without visiting the queue when a consumer is removed.
+ */
 public class DefinedGroupMessageGroupManager implements MessageGroupManager
 {
     private static final Logger _logger = LoggerFactory.getLogger(DefinedGroupMessageGroupManager.class);
 
     private final String _groupId;
     private final String _defaultGroup;
-    private final Map<Object, Group> _groupMap = new HashMap<Object, Group>();
+    private final ConcurrentMap<Object, Group> _groupMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<QueueConsumer<?>, Set<Group>> _groupsByConsumer = new ConcurrentHashMap<>();
     private final ConsumerResetHelper _resetHelper;
 
     private final class Group
@@ -57,7 +68,7 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
             _group = key;
             _consumer = consumer;
         }
-        
+
         public boolean add()
         {
             if(_consumer != null)
@@ -70,7 +81,7 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
                 return false;
             }
         }
-        
+
         public void subtract(final QueueEntry entry, final boolean released)
         {
             if(!released)
@@ -84,32 +95,31 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
                     _resetHelper.resetSubPointersForGroups(_skippedEntries.first());
                     _skippedEntries.clear();
                 }
-                _consumer = null;
-                _groupMap.remove(_group);
+                remove();
             }
         }
 
-        @Override
-        public boolean equals(final Object o)
+        /**
+         * Removes the group from the manager.  Must be called holding the lock of the group.
+         */
+        private void remove()
         {
-            if (this == o)
+            final Set<Group> consumerGroups = _groupsByConsumer.get(_consumer);
+            if (consumerGroups != null)
             {
-                return true;
-            }
-            if (o == null || getClass() != o.getClass())
-            {
-                return false;
+                consumerGroups.remove(this);
+                if (consumerGroups.isEmpty() && _consumer.isClosed())
+                {
+                    _groupsByConsumer.remove(_consumer, consumerGroups);
+                }
             }
-
-            Group group = (Group) o;
-
-            return _group.equals(group._group);
+            _consumer = null;
+            _groupMap.remove(_group, this);
         }
 
-        @Override
-        public int hashCode()
+        public boolean isRemoved()
         {
-            return _group.hashCode();
+            return _consumer == null;
         }
 
         public boolean isValid()
@@ -136,6 +146,24 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
         {
             _skippedEntries.add(entry);
         }
+
+        public QueueEntry getEarliestAvailableSkippedEntry()
+        {
+            final Iterator<QueueEntry> iterator = _skippedEntries.iterator();
+            while (iterator.hasNext())
+            {
+                final QueueEntry entry = iterator.next();
+                if (entry.isAvailable())
+                {
+                    return entry;
+                }
+                else if (entry.isDeleted())
+                {
+                    iterator.remove();
+                }
+            }
+            return null;
+        }
     }
 
     public DefinedGroupMessageGroupManager(final String groupId, String defaultGroup, ConsumerResetHelper resetHelper)
@@ -144,108 +172,128 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
         _defaultGroup = defaultGroup;
         _resetHelper = resetHelper;
     }
-    
-    public synchronized boolean mightAssign(final QueueEntry entry, final QueueConsumer sub)
-    {
-        Object groupId = getKey(entry);
 
-        Group group = _groupMap.get(groupId);
-        final boolean possibleAssignment = group == null || !group.isValid() || group.getConsumer() == sub;
-        if(!possibleAssignment)
+    public boolean mightAssign(final QueueEntry entry, final QueueConsumer sub)
+    {
+        final Group group = _groupMap.get(getKey(entry));
+        if (group == null)
         {
-            group.addSkippedEntry(entry);
+            return true;
         }
-        return possibleAssignment;
-    }
 
-    public synchronized boolean acceptMessage(final QueueConsumer<?> sub, final QueueEntry entry)
-    {
-        return assignMessage(sub, entry) && entry.acquire(sub);
+        synchronized (group)
+        {
+            final boolean possibleAssignment = !group.isValid() || group.getConsumer() == sub;
+            if(!possibleAssignment)
+            {
+                group.addSkippedEntry(entry);
+            }
+            return possibleAssignment;
+        }
     }
 
-    private boolean assignMessage(final QueueConsumer<?> sub, final QueueEntry entry)
+    public boolean acceptMessage(final QueueConsumer<?> sub, final QueueEntry entry)
     {
-        Object groupId = getKey(entry);
-        Group group = _groupMap.get(groupId);
+        final Object groupId = getKey(entry);
 
-        if(group == null || !group.isValid())
+        while (true)
         {
-            group = new Group(groupId, sub);
-
-            _groupMap.put(groupId, group);
-
-            // there's a small chance that the group became empty between the point at which getNextAvailable() was
-            // called on the consumer, and when accept message is called... in that case we want to avoid delivering
-            // out of order
-            if(_resetHelper.isEntryAheadOfConsumer(entry, sub))
+            Group group = _groupMap.get(groupId);
+            boolean created = false;
+            if (group == null)
             {
-                return false;
+                final Group newGroup = new Group(groupId, sub);
+                synchronized (newGroup)
+                {
+                    if (_groupMap.putIfAbsent(groupId, newGroup) != null)
+                    {
+                        continue;
+                    }
+                    getGroupsOfConsumer(sub).add(newGroup);
+                }
+                group = newGroup;
+                created = true;
             }
-        }
 
-        ConsumerImpl assignedSub = group.getConsumer();
+            synchronized (group)
+            {
+                if (group.isRemoved())
+                {
+                    continue;
+                }
+                else if (!created && !group.isValid())
+                {
+                    // the consumer of the group has gone away holding no messages of the group: reassign the group
+                    group.remove();
+                    continue;
+                }
 
-        if(assignedSub == sub)
-        {
-            entry.addStateChangeListener(new GroupStateChangeListener(group));
-            return true;
+                // there's a small chance that the group became empty between the point at which getNextAvailable() was
+                // called on the consumer, and when accept message is called... in that case we want to avoid delivering
+                // out of order
+                if (created && _resetHelper.isEntryAheadOfConsumer(entry, sub))
+                {
+                    return false;
+                }
+
+                if (group.getConsumer() == sub)
+                {
+                    entry.addStateChangeListener(new GroupStateChangeListener(group));
+                    return entry.acquire(sub);
+                }
+                else
+                {
+                    group.addSkippedEntry(entry);
+                    return false;
+                }
+            }
         }
-        else
+    }
+
+    public QueueEntry findEarliestAssignedAvailableEntry(final QueueConsumer<?> sub)
+    {
+        QueueEntry earliest = null;
+        final Set<Group> groups = _groupsByConsumer.get(sub);
+        if (groups != null)
         {
-            group.addSkippedEntry(entry);
-            return false;            
+            for (Group group : groups)
+            {
+                synchronized (group)
+                {
+                    if (group.getConsumer() == sub)
+                    {
+                        final QueueEntry entry = group.getEarliestAvailableSkippedEntry();
+                        if (entry != null && (earliest == null || entry.compareTo(earliest) < 0))
+                        {
+                            earliest = entry;
+                        }
+                    }
+                }
+            }
         }
+        return earliest;
     }
 
-    public synchronized QueueEntry findEarliestAssignedAvailableEntry(final QueueConsumer<?> sub)
+    public void clearAssignments(final QueueConsumer<?> sub)
     {
-        EntryFinder visitor = new EntryFinder(sub);
-        sub.getQueue().visit(visitor);
-        return visitor.getEntry();
+        _groupsByConsumer.remove(sub);
     }
 
-    private class EntryFinder implements QueueEntryVisitor
+    private Set<Group> getGroupsOfConsumer(final QueueConsumer<?> sub)
     {
-        private QueueEntry _entry;
-        private QueueConsumer _sub;
-
-        public EntryFinder(final QueueConsumer<?> sub)
+        Set<Group> groups = _groupsByConsumer.get(sub);
+        if (groups == null)
         {
-            _sub = sub;
-        }
-
-        public boolean visit(final QueueEntry entry)
-        {
-            if(!entry.isAvailable())
+            final Set<Group> newGroups = Collections.newSetFromMap(new ConcurrentHashMap<Group, Boolean>());
+            groups = _groupsByConsumer.putIfAbsent(sub, newGroups);
+            if (groups == null)
             {
-                return false;
-            }
-
-            Object groupId = getKey(entry);
-
-            Group group = _groupMap.get(groupId);
-            if(group != null && group.getConsumer() == _sub)
-            {
-                _entry = entry;
-                return true;
-            }
-            else
-            {
-                return false;
+                groups = newGroups;
             }
         }
-
-        public QueueEntry getEntry()
-        {
-            return _entry;
-        }
+        return groups;
     }
 
-    
-    public void clearAssignments(final QueueConsumer<?> sub)
-    {
-    }
-    
     private Object getKey(QueueEntry entry)
     {
         ServerMessage message = entry.getMessage();
@@ -270,7 +318,7 @@ public class DefinedGroupMessageGroupManager implements MessageGroupManager
         @Override
         public void stateChanged(final MessageInstance entry, final EntryState oldState, final EntryState newState)
         {
-            synchronized (DefinedGroupMessageGroupManager.this)
+            synchronized (_group)
             {
                 if(_group.isValid())
                 {
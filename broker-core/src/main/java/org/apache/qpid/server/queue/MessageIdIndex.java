@@ -0,0 +1,99 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.Queue;
+
+/**
+ * Maps the ids of the messages held by a queue entry list to their entries, so that management operations addressing
+ * messages by id need not walk the whole list.  Entries are added once they have been linked into the list and
+ * removed when they are deleted.  Entries found through the index may have been deleted concurrently, so callers must
+ * check {@link QueueEntry#isDeleted()}.
+ */
+public final class MessageIdIndex
+{
+    private final ConcurrentNavigableMap<Long, QueueEntry> _entries = new ConcurrentSkipListMap<>();
+
+    MessageIdIndex()
+    {
+    }
+
+    /**
+     * @return a new index if the queue is configured to index its entries by message id, otherwise null
+     */
+    static MessageIdIndex newInstance(final Queue<?> queue)
+    {
+        return Boolean.TRUE.equals(queue.getContextValue(Boolean.class, Queue.QUEUE_MESSAGE_ID_INDEX_ENABLED))
+                ? new MessageIdIndex()
+                : null;
+    }
+
+    void add(final QueueEntry entry)
+    {
+        final ServerMessage message = entry.getMessage();
+        if (message != null)
+        {
+            _entries.put(message.getMessageNumber(), entry);
+            // the entry may have been deleted before it was indexed, in which case its removal has been missed
+            if (entry.isDeleted())
+            {
+                _entries.remove(message.getMessageNumber(), entry);
+            }
+        }
+    }
+
+    void remove(final QueueEntry entry)
+    {
+        final ServerMessage message = entry.getMessage();
+        if (message != null)
+        {
+            _entries.remove(message.getMessageNumber(), entry);
+        }
+    }
+
+    public QueueEntry get(final long messageId)
+    {
+        return _entries.get(messageId);
+    }
+
+    /**
+     * @return the entries of the messages with ids in the given inclusive range, in message id order
+     */
+    public List<QueueEntry> get(final long fromMessageId, final long toMessageId)
+    {
+        if (fromMessageId > toMessageId)
+        {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(_entries.subMap(fromMessageId, true, toMessageId, true).values());
+    }
+
+    public int size()
+    {
+        return _entries.size();
+    }
+}
@@ -32,7 +32,7 @@ public class MoveMessagesTransaction extends QueueEntryTransaction
 {
     private final Queue _destinationQueue;
 
-    public MoveMessagesTransaction(Queue sourceQueue,
+    public MoveMessagesTransaction(AbstractQueue<?> sourceQueue,
                                    List<Long> messageIds,
                                    Queue destinationQueue,
                                    final MessageFilter filter, final int limit)
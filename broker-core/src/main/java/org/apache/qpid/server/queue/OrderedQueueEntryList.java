@@ -49,13 +49,20 @@ public abstract class OrderedQueueEntryList implements QueueEntryList
     private AtomicLong _scavenges = new AtomicLong(0L);
     private final long _scavengeCount = Integer.getInteger("qpid.queue.scavenge_count", 50);
     private final AtomicReference<QueueEntry> _unscavengedHWM = new AtomicReference<QueueEntry>();
+    private final MessageIdIndex _messageIdIndex;
 
 
     public OrderedQueueEntryList(Queue<?> queue, HeadCreator headCreator)
+    {
+        this(queue, headCreator, MessageIdIndex.newInstance(queue));
+    }
+
+    OrderedQueueEntryList(Queue<?> queue, HeadCreator headCreator, MessageIdIndex messageIdIndex)
     {
         _queue = queue;
         _head = headCreator.createHead(this);
         _tail = _head;
+        _messageIdIndex = messageIdIndex;
     }
 
     void scavenge()
@@ -94,6 +101,10 @@ public abstract class OrderedQueueEntryList implements QueueEntryList
                     if (_nextUpdater.compareAndSet(tail, null, node))
                     {
                         _tailUpdater.compareAndSet(this, tail, node);
+                        if (_messageIdIndex != null)
+                        {
+                            _messageIdIndex.add(node);
+                        }
 
                         return node;
                     }
@@ -171,6 +182,11 @@ public abstract class OrderedQueueEntryList implements QueueEntryList
 
     public void entryDeleted(QueueEntry queueEntry)
     {
+        if (_messageIdIndex != null)
+        {
+            _messageIdIndex.remove(queueEntry);
+        }
+
         QueueEntry next = _head.getNextNode();
         QueueEntry newNext = _head.getNextValidEntry();
 
@@ -210,4 +226,10 @@ public abstract class OrderedQueueEntryList implements QueueEntryList
         return next(getHead());
     }
 
+    @Override
+    public MessageIdIndex getMessageIdIndex()
+    {
+        return _messageIdIndex;
+    }
+
 }
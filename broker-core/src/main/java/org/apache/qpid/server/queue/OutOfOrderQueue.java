@@ -35,6 +35,9 @@ public abstract class OutOfOrderQueue<X extends OutOfOrderQueue<X>> extends Abst
     @Override
     protected void checkConsumersNotAheadOfDelivery(final QueueEntry entry)
     {
+        // the entry may have been inserted within the run of acquired entries at the head of the queue
+        resetAcquiredRun(entry);
+
         // check that all consumers are not in advance of the entry
         ConsumerNodeIterator subIter = getConsumerList().iterator();
         while(subIter.advance() && !entry.isAcquired())
@@ -46,7 +49,7 @@ public abstract class OutOfOrderQueue<X extends OutOfOrderQueue<X>> extends Abst
                 if(context != null)
                 {
                     QueueEntry released = context.getReleasedEntry();
-                    while(!entry.isAcquired() && (released == null || released.compareTo(entry) > 0))
+                    while(!entry.isAcquired() && (released == null || compare(consumer, released, entry) > 0))
                     {
                         if(QueueContext._releasedUpdater.compareAndSet(context,released,entry))
                         {
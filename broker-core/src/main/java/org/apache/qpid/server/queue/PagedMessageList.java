@@ -0,0 +1,99 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.ArrayDeque;
+import java.util.NoSuchElementException;
+
+/**
+ * First-in-first-out list of the numbers and sizes of the messages a queue has paged out to the store.  Both are held
+ * in fixed size chunks of primitive longs, so that each paged message costs sixteen bytes of heap.
+ *
+ * The list is not thread-safe for modification; its size may be read by any thread.
+ */
+final class PagedMessageList
+{
+    private static final int CHUNK_SIZE = 1024;
+
+    private final ArrayDeque<long[]> _chunks = new ArrayDeque<>();
+    private int _headIndex;
+    private int _tailIndex = CHUNK_SIZE;
+    private volatile int _size;
+
+    void add(final long messageNumber, final long messageSize)
+    {
+        if (_tailIndex == CHUNK_SIZE)
+        {
+            _chunks.addLast(new long[2 * CHUNK_SIZE]);
+            _tailIndex = 0;
+        }
+        final long[] chunk = _chunks.peekLast();
+        chunk[2 * _tailIndex] = messageNumber;
+        chunk[2 * _tailIndex + 1] = messageSize;
+        _tailIndex++;
+        _size++;
+    }
+
+    long peek()
+    {
+        return getHeadChunk()[2 * _headIndex];
+    }
+
+    long peekSize()
+    {
+        return getHeadChunk()[2 * _headIndex + 1];
+    }
+
+    private long[] getHeadChunk()
+    {
+        if (_size == 0)
+        {
+            throw new NoSuchElementException();
+        }
+        return _chunks.peekFirst();
+    }
+
+    long remove()
+    {
+        final long messageNumber = peek();
+        _size--;
+        if (++_headIndex == CHUNK_SIZE || _size == 0)
+        {
+            _chunks.removeFirst();
+            _headIndex = 0;
+            if (_size == 0)
+            {
+                _tailIndex = CHUNK_SIZE;
+            }
+        }
+        return messageNumber;
+    }
+
+    int size()
+    {
+        return _size;
+    }
+
+    boolean isEmpty()
+    {
+        return _size == 0;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import org.apache.qpid.server.model.ManagedAttribute;
+import org.apache.qpid.server.model.ManagedContextDefault;
+import org.apache.qpid.server.model.ManagedObject;
+import org.apache.qpid.server.model.Queue;
+
+/**
+ * A queue whose messages are spread across a number of partitions, each of which is enqueued to and delivered from
+ * independently.  Messages of the same message group are always held in the same partition.
+ */
+@ManagedObject( category = false, type="partitioned" )
+public interface PartitionedQueue<X extends PartitionedQueue<X>> extends Queue<X>
+{
+    String PARTITIONS = "partitions";
+
+    @ManagedContextDefault( name = "queue.partitions")
+    int DEFAULT_PARTITIONS = 4;
+
+    String MAXIMUM_HOME_DELIVERIES = "queue.partitionMaximumHomeDeliveries";
+    @ManagedContextDefault( name = MAXIMUM_HOME_DELIVERIES,
+            description = "Maximum number of messages a consumer of a partitioned queue is delivered in a row from its"
+                          + " home partition while an older message waits on another partition.")
+    int DEFAULT_MAXIMUM_HOME_DELIVERIES = 10;
+
+    @ManagedAttribute( defaultValue = "${queue.partitions}")
+    int getPartitions();
+}
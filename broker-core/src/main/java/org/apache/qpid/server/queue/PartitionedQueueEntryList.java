@@ -0,0 +1,396 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+
+abstract public class PartitionedQueueEntryList extends OrderedQueueEntryList
+{
+
+    public static PartitionedQueueMasterList newInstance(PartitionedQueueImpl queue)
+    {
+        return new PartitionedQueueMasterList(queue, queue.getPartitions());
+    }
+
+    PartitionedQueueEntryList(final PartitionedQueueImpl queue, final HeadCreator headCreator)
+    {
+        super(queue, headCreator);
+    }
+
+    PartitionedQueueEntryList(final PartitionedQueueImpl queue,
+                              final HeadCreator headCreator,
+                              final MessageIdIndex messageIdIndex)
+    {
+        super(queue, headCreator, messageIdIndex);
+    }
+
+    /**
+     * Spreads the entries across a list per partition.  Entries are ordered by partition and then by their position
+     * within the partition, so that the entries of each partition are added to without contending with those of the
+     * others, while the queue may still be traversed as one list.
+     */
+    static class PartitionedQueueMasterList extends PartitionedQueueEntryList
+    {
+        private static final HeadCreator DUMMY_HEAD_CREATOR =
+                new HeadCreator()
+                {
+                    @Override
+                    public PartitionedQueueEntry createHead(final QueueEntryList list)
+                    {
+                        return null;
+                    }
+                };
+        private final PartitionedQueueImpl _queue;
+        private final PartitionedQueueEntrySubList[] _partitionLists;
+        private final int _partitions;
+        private final String _groupKey;
+        private final String _defaultGroup;
+
+        public PartitionedQueueMasterList(PartitionedQueueImpl queue, int partitions)
+        {
+            super(queue, DUMMY_HEAD_CREATOR);
+            _queue = queue;
+            _partitions = partitions;
+            _partitionLists = new PartitionedQueueEntrySubList[partitions];
+            _groupKey = queue.getMessageGroupKey();
+            _defaultGroup = queue.getMessageGroupDefaultGroup();
+            for(int i = 0; i < partitions; i++)
+            {
+                // the sub-lists share the index of the master list, so that it covers all partitions
+                _partitionLists[i] = new PartitionedQueueEntrySubList(queue, i, getMessageIdIndex());
+            }
+        }
+
+        public int getPartitions()
+        {
+            return _partitions;
+        }
+
+        @Override
+        public PartitionedQueueImpl getQueue()
+        {
+            return _queue;
+        }
+
+        @Override
+        public PartitionedQueueEntry add(ServerMessage message, final MessageEnqueueRecord enqueueRecord)
+        {
+            return (PartitionedQueueEntry) _partitionLists[getPartition(message)].add(message, enqueueRecord);
+        }
+
+        /**
+         * Messages of the same group are held in the same partition, so that they are delivered in order.  Messages of
+         * queues without groups are added to the partition of the enqueuing thread, so that threads enqueuing
+         * concurrently tend to add to different partitions.
+         */
+        int getPartition(final ServerMessage message)
+        {
+            if(_partitions == 1)
+            {
+                return 0;
+            }
+            else if(_groupKey != null)
+            {
+                final AMQMessageHeader messageHeader = message.getMessageHeader();
+                Object group = messageHeader == null ? null : messageHeader.getHeader(_groupKey);
+                if(group == null)
+                {
+                    group = _defaultGroup;
+                }
+                return group == null ? 0 : (group.hashCode() & Integer.MAX_VALUE) % _partitions;
+            }
+            else
+            {
+                return (int) (Thread.currentThread().getId() % _partitions);
+            }
+        }
+
+        @Override
+        protected PartitionedQueueEntry createQueueEntry(final ServerMessage<?> message,
+                                                         final MessageEnqueueRecord enqueueRecord)
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public PartitionedQueueEntry next(QueueEntry node)
+        {
+            PartitionedQueueEntry next = (PartitionedQueueEntry) node.getNextValidEntry();
+
+            if(next == null)
+            {
+                int index = ((PartitionedQueueEntry) node).getPartition();
+
+                while(next == null && ++index < _partitions)
+                {
+                    next = (PartitionedQueueEntry) _partitionLists[index].getHead().getNextValidEntry();
+                }
+
+            }
+            return next;
+        }
+
+        /**
+         * Returns the entry following the given one in the order of a consumer whose home is the given partition.
+         * Such a consumer visits the entries of its home partition first, and then those of each following partition
+         * in turn, wrapping round to the first partition, so that consumers with different homes drain different
+         * partitions and each partition is drained first by some consumer.
+         *
+         * @return the following entry, or null once the consumer has visited the partition before its home
+         */
+        PartitionedQueueEntry next(final QueueEntry node, final int homePartition)
+        {
+            PartitionedQueueEntry next = (PartitionedQueueEntry) node.getNextValidEntry();
+
+            if(next == null)
+            {
+                int index = ((PartitionedQueueEntry) node).getPartition();
+
+                while(next == null && (index = (index + 1) % _partitions) != homePartition)
+                {
+                    next = (PartitionedQueueEntry) _partitionLists[index].getHead().getNextValidEntry();
+                }
+            }
+            return next;
+        }
+
+        /**
+         * Compares two entries in the order of a consumer whose home is the given partition.
+         */
+        int compare(final QueueEntry entry, final QueueEntry other, final int homePartition)
+        {
+            final int rank = getRank(((PartitionedQueueEntry) entry).getPartition(), homePartition);
+            final int otherRank = getRank(((PartitionedQueueEntry) other).getPartition(), homePartition);
+            if(rank != otherRank)
+            {
+                return rank < otherRank ? -1 : 1;
+            }
+            else
+            {
+                return entry.compareTo(other);
+            }
+        }
+
+        private int getRank(final int partition, final int homePartition)
+        {
+            return (partition - homePartition + _partitions) % _partitions;
+        }
+
+        /**
+         * @return the available entry of the oldest message outside the given partition in which the given consumer is
+         *         interested, or null if there is none
+         */
+        PartitionedQueueEntry getOldestAvailableEntry(final QueueConsumer<?> consumer, final int excludedPartition)
+        {
+            PartitionedQueueEntry oldest = null;
+            for(int i = 0; i < _partitions; i++)
+            {
+                if(i != excludedPartition)
+                {
+                    PartitionedQueueEntry entry =
+                            (PartitionedQueueEntry) _partitionLists[i].getHead().getNextValidEntry();
+                    while(entry != null && !(entry.isAvailable() && consumer.hasInterest(entry)))
+                    {
+                        entry = (PartitionedQueueEntry) entry.getNextValidEntry();
+                    }
+                    if(entry != null && (oldest == null || entry.getMessage().getMessageNumber() < oldest.getMessage().getMessageNumber()))
+                    {
+                        oldest = entry;
+                    }
+                }
+            }
+            return oldest;
+        }
+
+        PartitionedQueueEntry getHead(final int homePartition)
+        {
+            return (PartitionedQueueEntry) _partitionLists[homePartition].getHead();
+        }
+
+        /**
+         * @return the tail of the partition a consumer whose home is the given partition visits last
+         */
+        PartitionedQueueEntry getTail(final int homePartition)
+        {
+            return (PartitionedQueueEntry) _partitionLists[(homePartition + _partitions - 1) % _partitions].getTail();
+        }
+
+        private final class PartitionedQueueEntryListIterator implements QueueEntryIterator
+        {
+            private final QueueEntryIterator[] _iterators = new QueueEntryIterator[ _partitionLists.length ];
+            private PartitionedQueueEntry _lastNode;
+            private int _partition;
+
+            PartitionedQueueEntryListIterator()
+            {
+                for(int i = 0; i < _partitionLists.length; i++)
+                {
+                    _iterators[i] = _partitionLists[i].iterator();
+                }
+                _lastNode = (PartitionedQueueEntry) _iterators[0].getNode();
+            }
+
+            @Override
+            public boolean atTail()
+            {
+                for(int i = _partition; i < _iterators.length; i++)
+                {
+                    if(!_iterators[i].atTail())
+                    {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public PartitionedQueueEntry getNode()
+            {
+                return _lastNode;
+            }
+
+            @Override
+            public boolean advance()
+            {
+                for(; _partition < _iterators.length; _partition++)
+                {
+                    final QueueEntryIterator iterator = _iterators[_partition];
+                    if(iterator.advance())
+                    {
+                        _lastNode = (PartitionedQueueEntry) iterator.getNode();
+                        return true;
+                    }
+                }
+                _partition = _iterators.length - 1;
+                return false;
+            }
+        }
+
+        @Override
+        public PartitionedQueueEntryListIterator iterator()
+        {
+            return new PartitionedQueueEntryListIterator();
+        }
+
+        @Override
+        public PartitionedQueueEntry getHead()
+        {
+            return (PartitionedQueueEntry) _partitionLists[0].getHead();
+        }
+
+        @Override
+        public PartitionedQueueEntry getTail()
+        {
+            return (PartitionedQueueEntry) _partitionLists[_partitions - 1].getTail();
+        }
+
+        @Override
+        public void entryDeleted(final QueueEntry queueEntry)
+        {
+
+        }
+
+        @Override
+        public QueueEntry getOldestEntry()
+        {
+            QueueEntry oldest = null;
+            for(PartitionedQueueEntrySubList partitionList : _partitionLists)
+            {
+                QueueEntry subListOldest = partitionList.getOldestEntry();
+                if(oldest == null || (subListOldest != null && subListOldest.getMessage().getMessageNumber() < oldest.getMessage().getMessageNumber()))
+                {
+                    oldest = subListOldest;
+                }
+            }
+            return oldest;
+        }
+    }
+
+    static class PartitionedQueueEntrySubList extends PartitionedQueueEntryList
+    {
+        private static final HeadCreator HEAD_CREATOR = new HeadCreator()
+        {
+            @Override
+            public PartitionedQueueEntry createHead(final QueueEntryList list)
+            {
+                return new PartitionedQueueEntry((PartitionedQueueEntrySubList) list);
+            }
+        };
+        private final int _partition;
+
+        public PartitionedQueueEntrySubList(PartitionedQueueImpl queue,
+                                            int partition,
+                                            MessageIdIndex messageIdIndex)
+        {
+            super(queue, HEAD_CREATOR, messageIdIndex);
+            _partition = partition;
+        }
+
+        @Override
+        protected PartitionedQueueEntry createQueueEntry(ServerMessage<?> message,
+                                                         final MessageEnqueueRecord enqueueRecord)
+        {
+            return new PartitionedQueueEntry(this, message, enqueueRecord);
+        }
+
+        public int getPartition()
+        {
+            return _partition;
+        }
+    }
+
+    static class PartitionedQueueEntry extends OrderedQueueEntry
+    {
+        private PartitionedQueueEntry(final PartitionedQueueEntrySubList queueEntryList)
+        {
+            super(queueEntryList);
+        }
+
+        public PartitionedQueueEntry(PartitionedQueueEntrySubList queueEntryList,
+                                     ServerMessage<?> message,
+                                     final MessageEnqueueRecord messageEnqueueRecord)
+        {
+            super(queueEntryList, message, messageEnqueueRecord);
+        }
+
+        int getPartition()
+        {
+            return ((PartitionedQueueEntrySubList) getQueueEntryList()).getPartition();
+        }
+
+        @Override
+        public int compareTo(final QueueEntry o)
+        {
+            final int partition = getPartition();
+            final int otherPartition = ((PartitionedQueueEntry) o).getPartition();
+            if(partition != otherPartition)
+            {
+                return partition < otherPartition ? -1 : 1;
+            }
+            else
+            {
+                return super.compareTo(o);
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.security.AccessControlContext;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.server.configuration.IllegalConfigurationException;
+import org.apache.qpid.server.model.ManagedAttributeField;
+import org.apache.qpid.server.model.ManagedObjectFactoryConstructor;
+import org.apache.qpid.server.model.VirtualHost;
+
+public class PartitionedQueueImpl extends OutOfOrderQueue<PartitionedQueueImpl>
+        implements PartitionedQueue<PartitionedQueueImpl>
+{
+
+    private PartitionedQueueEntryList.PartitionedQueueMasterList _entries;
+    private PartitionRunner[] _partitionRunners;
+    private final ConcurrentMap<QueueConsumer<?>, HomePartition> _homePartitions = new ConcurrentHashMap<>();
+    private int[] _homeConsumerCounts;
+    private int _maximumHomeDeliveries;
+
+    @ManagedAttributeField
+    private int _partitions;
+
+    @ManagedObjectFactoryConstructor
+    public PartitionedQueueImpl(Map<String, Object> attributes, VirtualHost<?> virtualHost)
+    {
+        super(attributes, virtualHost);
+    }
+
+    @Override
+    public void onValidate()
+    {
+        super.onValidate();
+        if (_partitions < 1)
+        {
+            throw new IllegalConfigurationException("Number of partitions must be at least 1 but was " + _partitions);
+        }
+    }
+
+    @Override
+    protected void onOpen()
+    {
+        _partitionRunners = new PartitionRunner[_partitions];
+        for(int i = 0; i < _partitions; i++)
+        {
+            _partitionRunners[i] =
+                    new PartitionRunner(this,
+                                        i,
+                                        getSystemTaskControllerContext("Queue Delivery",
+                                                                       getVirtualHost().getPrincipal()));
+        }
+        _homeConsumerCounts = new int[_partitions];
+        super.onOpen();
+        _maximumHomeDeliveries = getContextValue(Integer.class, MAXIMUM_HOME_DELIVERIES);
+        _entries = PartitionedQueueEntryList.newInstance(this);
+    }
+
+    @Override
+    public int getPartitions()
+    {
+        return _partitions;
+    }
+
+    @Override
+    PartitionedQueueEntryList.PartitionedQueueMasterList getEntries()
+    {
+        return _entries;
+    }
+
+    @Override
+    void executeQueueRunners()
+    {
+        for(PartitionRunner runner : _partitionRunners)
+        {
+            runner.execute();
+        }
+    }
+
+    @Override
+    boolean isQueueRunnerIdle()
+    {
+        for(PartitionRunner runner : _partitionRunners)
+        {
+            if(!runner.isIdle())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Each consumer is delivered to by the runner of one partition, so that the runners of the partitions deliver to
+     * different consumers in parallel.
+     */
+    @Override
+    boolean isDeliveringTo(final QueueRunner runner, final QueueConsumer<?> consumer)
+    {
+        return ((PartitionRunner) runner).getPartition() == getPartition(consumer);
+    }
+
+    /**
+     * Each consumer drains the partition of its runner, its home partition, before visiting the others in turn, so
+     * that a partition being enqueued to continuously does not hold every consumer back from the others.
+     */
+    @Override
+    QueueEntry getHead(final QueueConsumer<?> consumer)
+    {
+        return _entries.getHead(getPartition(consumer));
+    }
+
+    @Override
+    QueueEntry getTail(final QueueConsumer<?> consumer)
+    {
+        return _entries.getTail(getPartition(consumer));
+    }
+
+    @Override
+    QueueEntry next(final QueueConsumer<?> consumer, final QueueEntry node)
+    {
+        return _entries.next(node, getPartition(consumer));
+    }
+
+    @Override
+    int compare(final QueueConsumer<?> consumer, final QueueEntry entry, final QueueEntry other)
+    {
+        return _entries.compare(entry, other, getPartition(consumer));
+    }
+
+    /**
+     * Consumers with different home partitions visit the entries in different orders, so cannot share a run of
+     * acquired entries from the head of the first partition.
+     */
+    @Override
+    boolean isAcquiredRunShared()
+    {
+        return _partitions == 1;
+    }
+
+    @Override
+    boolean isPagingSupported()
+    {
+        return true;
+    }
+
+    /**
+     * Makes the partition with the fewest consumers of this queue at home the home of the consumer, so that the
+     * consumers of the queue are spread evenly over its partitions.
+     */
+    @Override
+    void consumerAdded(final QueueConsumer<?> consumer)
+    {
+        synchronized (_homeConsumerCounts)
+        {
+            int home = 0;
+            for (int i = 1; i < _partitions; i++)
+            {
+                if (_homeConsumerCounts[i] < _homeConsumerCounts[home])
+                {
+                    home = i;
+                }
+            }
+            _homeConsumerCounts[home]++;
+            _homePartitions.put(consumer, new HomePartition(home));
+        }
+    }
+
+    @Override
+    void consumerRemoved(final QueueConsumer<?> consumer)
+    {
+        synchronized (_homeConsumerCounts)
+        {
+            final HomePartition homePartition = _homePartitions.remove(consumer);
+            if (homePartition != null)
+            {
+                _homeConsumerCounts[homePartition.getPartition()]--;
+            }
+        }
+    }
+
+    /**
+     * Once a consumer has been delivered the maximum number of messages in a row from its home partition, the oldest
+     * message it may take from the other partitions is delivered first if it is older than the next message of its
+     * home, so that a partition no consumer has as its home is not held back for as long as the homes are fed.
+     */
+    @Override
+    QueueEntry getOverdueEntry(final QueueConsumer<?> consumer, final QueueEntry next)
+    {
+        final HomePartition homePartition = _homePartitions.get(consumer);
+        if (homePartition == null
+            || _partitions == 1
+            || homePartition.getDeliveries() < _maximumHomeDeliveries
+            || ((PartitionedQueueEntryList.PartitionedQueueEntry) next).getPartition() != homePartition.getPartition())
+        {
+            return null;
+        }
+
+        final QueueEntry oldest = _entries.getOldestAvailableEntry(consumer, homePartition.getPartition());
+        if (oldest != null && oldest.getMessage().getMessageNumber() < next.getMessage().getMessageNumber())
+        {
+            return oldest;
+        }
+        return null;
+    }
+
+    @Override
+    void entryDelivered(final QueueConsumer<?> consumer, final QueueEntry entry)
+    {
+        final HomePartition homePartition = _homePartitions.get(consumer);
+        if (homePartition != null)
+        {
+            homePartition.delivered(((PartitionedQueueEntryList.PartitionedQueueEntry) entry).getPartition());
+        }
+    }
+
+    int getPartition(final QueueConsumer<?> consumer)
+    {
+        final HomePartition homePartition = _homePartitions.get(consumer);
+        return homePartition == null
+                ? (int) (consumer.getConsumerNumber() % _partitions)
+                : homePartition.getPartition();
+    }
+
+    /**
+     * The home partition of a consumer, and the number of messages delivered to the consumer in a row from it.
+     */
+    private static final class HomePartition
+    {
+        private final int _partition;
+        private final AtomicInteger _deliveries = new AtomicInteger();
+
+        private HomePartition(final int partition)
+        {
+            _partition = partition;
+        }
+
+        int getPartition()
+        {
+            return _partition;
+        }
+
+        int getDeliveries()
+        {
+            return _deliveries.get();
+        }
+
+        void delivered(final int partition)
+        {
+            if (partition == _partition)
+            {
+                _deliveries.incrementAndGet();
+            }
+            else
+            {
+                _deliveries.set(0);
+            }
+        }
+    }
+
+    private static final class PartitionRunner extends QueueRunner
+    {
+        private final int _partition;
+
+        private PartitionRunner(final PartitionedQueueImpl queue,
+                                final int partition,
+                                final AccessControlContext context)
+        {
+            super(queue, context);
+            _partition = partition;
+        }
+
+        int getPartition()
+        {
+            return _partition;
+        }
+
+        @Override
+        public String toString()
+        {
+            return super.toString() + "[" + _partition + "]";
+        }
+    }
+}
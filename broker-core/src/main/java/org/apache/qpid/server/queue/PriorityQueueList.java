@@ -20,6 +20,9 @@
 */
 package org.apache.qpid.server.queue;
 
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
 import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.store.MessageEnqueueRecord;
 
@@ -38,6 +41,13 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
         super(queue, headCreator);
     }
 
+    PriorityQueueList(final PriorityQueueImpl queue,
+                      final HeadCreator headCreator,
+                      final MessageIdIndex messageIdIndex)
+    {
+        super(queue, headCreator, messageIdIndex);
+    }
+
     static class PriorityQueueMasterList extends PriorityQueueList
     {
         private static final HeadCreator DUMMY_HEAD_CREATOR =
@@ -54,6 +64,13 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
         private final int _priorities;
         private final int _priorityOffset;
 
+        // the number of entries added to and not yet deleted from each sub-list, and a bitmap of the sub-lists for
+        // which it is non-zero.  The bit of a sub-list is only changed holding the lock of the sub-list, and is set
+        // before an entry is added to it, so a sub-list whose bit is clear holds no entry which needs visiting.
+        private final AtomicIntegerArray _levelSizes;
+        private final AtomicLongArray _nonEmptyLevels;
+        private final Object[] _levelLocks;
+
         public PriorityQueueMasterList(PriorityQueueImpl queue, int priorities)
         {
             super(queue, DUMMY_HEAD_CREATOR);
@@ -61,9 +78,14 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             _priorityLists = new PriorityQueueEntrySubList[priorities];
             _priorities = priorities;
             _priorityOffset = 5-((priorities + 1)/2);
+            _levelSizes = new AtomicIntegerArray(priorities);
+            _nonEmptyLevels = new AtomicLongArray((priorities + 63) >> 6);
+            _levelLocks = new Object[priorities];
             for(int i = 0; i < priorities; i++)
             {
-                _priorityLists[i] = new PriorityQueueEntrySubList(queue, i);
+                // the sub-lists share the index of the master list, so that it covers all priorities
+                _priorityLists[i] = new PriorityQueueEntrySubList(queue, this, i, getMessageIdIndex());
+                _levelLocks[i] = new Object();
             }
         }
 
@@ -90,10 +112,64 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             {
                 index = 0;
             }
+            if (_levelSizes.getAndIncrement(index) == 0)
+            {
+                updateNonEmptyLevel(index);
+            }
             return (PriorityQueueEntry) _priorityLists[index].add(message, enqueueRecord);
 
         }
 
+        void subListEntryDeleted(final int level)
+        {
+            if (_levelSizes.decrementAndGet(level) == 0)
+            {
+                updateNonEmptyLevel(level);
+            }
+        }
+
+        private void updateNonEmptyLevel(final int level)
+        {
+            synchronized (_levelLocks[level])
+            {
+                final boolean nonEmpty = _levelSizes.get(level) > 0;
+                final int wordIndex = level >> 6;
+                final long mask = 1L << (level & 63);
+                long word;
+                do
+                {
+                    word = _nonEmptyLevels.get(wordIndex);
+                    if (((word & mask) != 0) == nonEmpty)
+                    {
+                        break;
+                    }
+                }
+                while (!_nonEmptyLevels.compareAndSet(wordIndex, word, word ^ mask));
+            }
+        }
+
+        /**
+         * @return the highest level no higher than the given level whose sub-list may hold entries, or -1 if none
+         */
+        private int getNonEmptyLevel(final int fromLevel)
+        {
+            if (fromLevel < 0)
+            {
+                return -1;
+            }
+            int wordIndex = fromLevel >> 6;
+            long word = _nonEmptyLevels.get(wordIndex) & (-1L >>> (63 - (fromLevel & 63)));
+            while (word == 0L)
+            {
+                if (--wordIndex < 0)
+                {
+                    return -1;
+                }
+                word = _nonEmptyLevels.get(wordIndex);
+            }
+            return (wordIndex << 6) + 63 - Long.numberOfLeadingZeros(word);
+        }
+
         @Override
         protected PriorityQueueEntry createQueueEntry(final ServerMessage<?> message,
                                                       final MessageEnqueueRecord enqueueRecord)
@@ -108,16 +184,12 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
 
             if(next == null)
             {
-                final PriorityQueueList nodeEntryList = (PriorityQueueList) ((PriorityQueueEntry)node).getQueueEntryList();
-                int index;
-                for(index = _priorityLists.length-1; _priorityLists[index] != nodeEntryList; index--)
-                {
-                    // do nothing loop is just to find the index
-                }
+                final PriorityQueueEntrySubList nodeEntryList =
+                        (PriorityQueueEntrySubList) ((PriorityQueueEntry)node).getQueueEntryList();
+                int index = nodeEntryList.getListPriority();
 
-                while(next == null && index != 0)
+                while(next == null && (index = getNonEmptyLevel(index - 1)) >= 0)
                 {
-                    index--;
                     next = (PriorityQueueEntry) _priorityLists[index].getHead().getNextValidEntry();
                 }
 
@@ -132,19 +204,26 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
 
             PriorityQueueEntryListIterator()
             {
-                for(int i = 0; i < _priorityLists.length; i++)
+                _lastNode = (PriorityQueueEntry) getIterator(_iterators.length - 1).getNode();
+            }
+
+            private QueueEntryIterator getIterator(final int level)
+            {
+                QueueEntryIterator iterator = _iterators[level];
+                if (iterator == null)
                 {
-                    _iterators[i] = _priorityLists[i].iterator();
+                    iterator = _priorityLists[level].iterator();
+                    _iterators[level] = iterator;
                 }
-                _lastNode = (PriorityQueueEntry) _iterators[_iterators.length - 1].getNode();
+                return iterator;
             }
 
             @Override
             public boolean atTail()
             {
-                for(int i = 0; i < _iterators.length; i++)
+                for(int i = getNonEmptyLevel(_iterators.length - 1); i >= 0; i = getNonEmptyLevel(i - 1))
                 {
-                    if(!_iterators[i].atTail())
+                    if(!getIterator(i).atTail())
                     {
                         return false;
                     }
@@ -161,11 +240,12 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
             @Override
             public boolean advance()
             {
-                for(int i = _iterators.length-1; i >= 0; i--)
+                for(int i = getNonEmptyLevel(_iterators.length - 1); i >= 0; i = getNonEmptyLevel(i - 1))
                 {
-                    if(_iterators[i].advance())
+                    final QueueEntryIterator iterator = getIterator(i);
+                    if(iterator.advance())
                     {
-                        _lastNode = (PriorityQueueEntry) _iterators[i].getNode();
+                        _lastNode = (PriorityQueueEntry) iterator.getNode();
                         return true;
                     }
                 }
@@ -204,9 +284,9 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
         public QueueEntry getOldestEntry()
         {
             QueueEntry oldest = null;
-            for(PriorityQueueEntrySubList subList : _priorityLists)
+            for(int i = getNonEmptyLevel(_priorities - 1); i >= 0; i = getNonEmptyLevel(i - 1))
             {
-                QueueEntry subListOldest = subList.getOldestEntry();
+                QueueEntry subListOldest = _priorityLists[i].getOldestEntry();
                 if(oldest == null || (subListOldest != null && subListOldest.getMessage().getMessageNumber() < oldest.getMessage().getMessageNumber()))
                 {
                     oldest = subListOldest;
@@ -226,14 +306,26 @@ abstract public class PriorityQueueList extends OrderedQueueEntryList
                 return new PriorityQueueEntry((PriorityQueueList) list);
             }
         };
+        private final PriorityQueueMasterList _masterList;
         private int _listPriority;
 
-        public PriorityQueueEntrySubList(PriorityQueueImpl queue, int listPriority)
+        public PriorityQueueEntrySubList(PriorityQueueImpl queue,
+                                         PriorityQueueMasterList masterList,
+                                         int listPriority,
+                                         MessageIdIndex messageIdIndex)
         {
-            super(queue, HEAD_CREATOR);
+            super(queue, HEAD_CREATOR, messageIdIndex);
+            _masterList = masterList;
             _listPriority = listPriority;
         }
 
+        @Override
+        public void entryDeleted(final QueueEntry queueEntry)
+        {
+            super.entryDeleted(queueEntry);
+            _masterList.subListEntryDeleted(_listPriority);
+        }
+
         @Override
         protected PriorityQueueEntry createQueueEntry(ServerMessage<?> message,
                                                       final MessageEnqueueRecord enqueueRecord)
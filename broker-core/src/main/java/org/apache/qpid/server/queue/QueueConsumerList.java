@@ -20,17 +20,90 @@
 */
 package org.apache.qpid.server.queue;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 class QueueConsumerList
 {
+    private static final PriorityLevel[] NO_PRIORITY_LEVELS = new PriorityLevel[0];
+
     private final ConsumerNode _head = new ConsumerNode();
 
     private final AtomicReference<ConsumerNode> _tail = new AtomicReference<ConsumerNode>(_head);
     private final AtomicReference<ConsumerNode> _subNodeMarker = new AtomicReference<ConsumerNode>(_head);
     private final AtomicInteger _size = new AtomicInteger();
 
+    // the consumers grouped by priority, highest first, alongside the list which gives the round-robin order
+    private final Object _priorityLevelsLock = new Object();
+    private volatile PriorityLevel[] _priorityLevels = NO_PRIORITY_LEVELS;
+
+    /**
+     * The consumers of one priority, counting those which are active, so that priority levels with no active
+     * consumer can be passed over without visiting their consumers.
+     */
+    static final class PriorityLevel
+    {
+        private final int _priority;
+        private final ConcurrentMap<QueueConsumer<?>, AtomicBoolean> _consumers = new ConcurrentHashMap<>();
+        private final AtomicInteger _activeCount = new AtomicInteger();
+
+        private PriorityLevel(final int priority)
+        {
+            _priority = priority;
+        }
+
+        public int getPriority()
+        {
+            return _priority;
+        }
+
+        public int getActiveCount()
+        {
+            return _activeCount.get();
+        }
+
+        public Set<QueueConsumer<?>> getConsumers()
+        {
+            return _consumers.keySet();
+        }
+
+        private void updateActive(final QueueConsumer<?> sub)
+        {
+            final AtomicBoolean counted = _consumers.get(sub);
+            if (counted != null)
+            {
+                boolean active;
+                while ((active = sub.isActive()) != counted.get())
+                {
+                    if (counted.compareAndSet(!active, active))
+                    {
+                        if (active)
+                        {
+                            _activeCount.incrementAndGet();
+                        }
+                        else
+                        {
+                            _activeCount.decrementAndGet();
+                        }
+                    }
+                }
+            }
+        }
+
+        private void remove(final QueueConsumer<?> sub)
+        {
+            final AtomicBoolean counted = _consumers.remove(sub);
+            if (counted != null && counted.getAndSet(false))
+            {
+                _activeCount.decrementAndGet();
+            }
+        }
+    }
+
     private void insert(final ConsumerNode node, final boolean count)
     {
         for (;;)
@@ -63,6 +136,82 @@ class QueueConsumerList
     {
         ConsumerNode node = new ConsumerNode(sub);
         insert(node, true);
+
+        final PriorityLevel level;
+        synchronized (_priorityLevelsLock)
+        {
+            level = getOrCreatePriorityLevel(sub.getPriority());
+            level._consumers.put(sub, new AtomicBoolean());
+        }
+        level.updateActive(sub);
+    }
+
+    private PriorityLevel getOrCreatePriorityLevel(final int priority)
+    {
+        final PriorityLevel[] levels = _priorityLevels;
+        int index = 0;
+        while (index < levels.length && levels[index].getPriority() > priority)
+        {
+            index++;
+        }
+        if (index < levels.length && levels[index].getPriority() == priority)
+        {
+            return levels[index];
+        }
+
+        final PriorityLevel level = new PriorityLevel(priority);
+        final PriorityLevel[] newLevels = new PriorityLevel[levels.length + 1];
+        System.arraycopy(levels, 0, newLevels, 0, index);
+        newLevels[index] = level;
+        System.arraycopy(levels, index, newLevels, index + 1, levels.length - index);
+        _priorityLevels = newLevels;
+        return level;
+    }
+
+    private void removeFromPriorityLevel(final QueueConsumer<?> sub)
+    {
+        synchronized (_priorityLevelsLock)
+        {
+            final PriorityLevel[] levels = _priorityLevels;
+            for (int i = 0; i < levels.length; i++)
+            {
+                if (levels[i].getPriority() == sub.getPriority())
+                {
+                    levels[i].remove(sub);
+                    if (levels[i]._consumers.isEmpty())
+                    {
+                        final PriorityLevel[] newLevels = new PriorityLevel[levels.length - 1];
+                        System.arraycopy(levels, 0, newLevels, 0, i);
+                        System.arraycopy(levels, i + 1, newLevels, i, levels.length - i - 1);
+                        _priorityLevels = newLevels;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the count of active consumers at the priority of the given consumer after its state has changed.
+     */
+    public void consumerStateChanged(final QueueConsumer<?> sub)
+    {
+        for (PriorityLevel level : _priorityLevels)
+        {
+            if (level.getPriority() == sub.getPriority())
+            {
+                level.updateActive(sub);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return the priority levels of the consumers, highest priority first
+     */
+    public PriorityLevel[] getPriorityLevels()
+    {
+        return _priorityLevels;
     }
 
     public boolean remove(final QueueConsumer<?> sub)
@@ -75,6 +224,7 @@ class QueueConsumerList
             if(sub.equals(node.getConsumer()) && node.delete())
             {
                 _size.decrementAndGet();
+                removeFromPriorityLevel(sub);
 
                 ConsumerNode tail = _tail.get();
                 if(node == tail)
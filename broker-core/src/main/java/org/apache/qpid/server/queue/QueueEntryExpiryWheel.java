@@ -0,0 +1,248 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hierarchical timing wheel of the expiration times of the entries of a queue, so that housekeeping need only visit
+ * the entries which are due to expire rather than every entry on the queue.
+ *
+ * Each level has 64 slots; a slot of the lowest level spans one tick and a slot of each higher level spans all the
+ * slots of the level below.  An entry is held in the lowest level on which its expiration tick shares the higher order
+ * digits of the current tick, and moves down a level each time the wheel reaches its slot, until it is due.
+ * Expirations beyond the range of the highest level are kept aside until the wheel comes round to them.
+ *
+ * Entries are held through weak references, so that entries deleted before they expire are not retained by the wheel.
+ * Entries may be scheduled from any thread; they are only placed in the wheel when it is next advanced.
+ */
+final class QueueEntryExpiryWheel
+{
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long _tickDuration;
+    private final Timeout[][] _levels = new Timeout[LEVELS][SLOTS];
+    private final int[] _levelSizes = new int[LEVELS];
+    private final Queue<Timeout> _pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _size = new AtomicInteger();
+    private Timeout _overflow;
+    private Timeout _due;
+    private int _overflowSize;
+    private long _currentTick;
+
+    QueueEntryExpiryWheel(final long tickDuration, final long currentTime)
+    {
+        if (tickDuration <= 0L)
+        {
+            throw new IllegalArgumentException("Tick duration " + tickDuration + " must be greater than zero");
+        }
+        _tickDuration = tickDuration;
+        _currentTick = currentTime / tickDuration;
+    }
+
+    /**
+     * Schedules the given entry to be returned by {@link #expire(long)} once the given expiration time has passed.
+     */
+    void schedule(final QueueEntry entry, final long expiration)
+    {
+        _size.incrementAndGet();
+        // the entry is due at the first tick after its expiration time, so that it is never returned early
+        _pending.add(new Timeout(entry, expiration / _tickDuration + 1L));
+    }
+
+    /**
+     * @return the number of entries scheduled which have not yet been returned or found to be deleted
+     */
+    int size()
+    {
+        return _size.get();
+    }
+
+    /**
+     * Advances the wheel to the given time.
+     *
+     * @return the entries which are due to expire and have not been deleted
+     */
+    synchronized List<QueueEntry> expire(final long currentTime)
+    {
+        final List<QueueEntry> expired = new ArrayList<>();
+        final long targetTick = currentTime / _tickDuration;
+        if (_size.get() == 0)
+        {
+            _currentTick = Math.max(_currentTick, targetTick);
+            return expired;
+        }
+
+        Timeout timeout;
+        while ((timeout = _pending.poll()) != null)
+        {
+            place(timeout);
+        }
+
+        while (_currentTick < targetTick)
+        {
+            // nothing happens until the next tick at which the lowest occupied level cascades, so skip to it
+            final int lowestLevel = getLowestOccupiedLevel();
+            if (lowestLevel > 0)
+            {
+                if (lowestLevel > LEVELS)
+                {
+                    _currentTick = targetTick;
+                    break;
+                }
+                final int shift = SLOT_BITS * lowestLevel;
+                final long nextCascadeTick = ((_currentTick >>> shift) + 1L) << shift;
+                if (nextCascadeTick > targetTick)
+                {
+                    _currentTick = targetTick;
+                    break;
+                }
+                _currentTick = nextCascadeTick - 1L;
+            }
+
+            final long tick = ++_currentTick;
+            if ((tick & ((1L << (SLOT_BITS * LEVELS)) - 1L)) == 0L)
+            {
+                final Timeout overflow = _overflow;
+                _overflow = null;
+                _overflowSize = 0;
+                placeAll(overflow);
+            }
+            for (int level = LEVELS - 1; level > 0; level--)
+            {
+                if ((tick & ((1L << (SLOT_BITS * level)) - 1L)) == 0L)
+                {
+                    placeAll(removeSlot(level, (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK));
+                }
+            }
+            timeout = removeSlot(0, (int) tick & SLOT_MASK);
+            while (timeout != null)
+            {
+                timeout = collect(timeout, expired);
+            }
+        }
+
+        Timeout due = _due;
+        _due = null;
+        while (due != null)
+        {
+            due = collect(due, expired);
+        }
+        return expired;
+    }
+
+    /**
+     * @return the lowest level holding any entries, {@code LEVELS} if only expirations beyond the range of the wheel
+     *         are held, or {@code LEVELS + 1} if the wheel is empty
+     */
+    private int getLowestOccupiedLevel()
+    {
+        for (int level = 0; level < LEVELS; level++)
+        {
+            if (_levelSizes[level] != 0)
+            {
+                return level;
+            }
+        }
+        return _overflowSize != 0 ? LEVELS : LEVELS + 1;
+    }
+
+    private Timeout removeSlot(final int level, final int slot)
+    {
+        Timeout timeout = _levels[level][slot];
+        _levels[level][slot] = null;
+        for (Timeout t = timeout; t != null; t = t._next)
+        {
+            _levelSizes[level]--;
+        }
+        return timeout;
+    }
+
+    private void placeAll(Timeout timeout)
+    {
+        while (timeout != null)
+        {
+            final Timeout next = timeout._next;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void place(final Timeout timeout)
+    {
+        final long tick = timeout._tick;
+        if (tick <= _currentTick)
+        {
+            timeout._next = _due;
+            _due = timeout;
+        }
+        else
+        {
+            final int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ _currentTick)) / SLOT_BITS;
+            if (level >= LEVELS)
+            {
+                timeout._next = _overflow;
+                _overflow = timeout;
+                _overflowSize++;
+            }
+            else
+            {
+                final int slot = (int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+                timeout._next = _levels[level][slot];
+                _levels[level][slot] = timeout;
+                _levelSizes[level]++;
+            }
+        }
+    }
+
+    private Timeout collect(final Timeout timeout, final List<QueueEntry> expired)
+    {
+        final Timeout next = timeout._next;
+        timeout._next = null;
+        _size.decrementAndGet();
+        final QueueEntry entry = timeout.get();
+        if (entry != null && !entry.isDeleted())
+        {
+            expired.add(entry);
+        }
+        return next;
+    }
+
+    private static final class Timeout extends WeakReference<QueueEntry>
+    {
+        private final long _tick;
+        private Timeout _next;
+
+        private Timeout(final QueueEntry entry, final long tick)
+        {
+            super(entry);
+            _tick = tick;
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.apache.qpid.server.queue;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLongFieldUpdater;
@@ -99,19 +100,25 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     private volatile long _entryId;
 
-    private static int REDELIVERED_FLAG = 1;
-    private static int PERSISTENT_FLAG = 2;
-    private static int MANDATORY_FLAG = 4;
-    private static int IMMEDIATE_FLAG = 8;
-    private int _flags;
-    private long _expiration;
+    private static final int REDELIVERED_FLAG = 1;
+    private static final int PERSISTENT_FLAG = 2;
+    private static final int MANDATORY_FLAG = 4;
+    private static final int IMMEDIATE_FLAG = 8;
+    private static final int ENQUEUE_RECORD_FLAG = 16;
+    private static final int DELIVERED_FLAG = 32;
+    private static final int DELIVERY_COUNT_SHIFT = 8;
+    private static final int DELIVERY_COUNT_INCREMENT = 1 << DELIVERY_COUNT_SHIFT;
 
-    /** Number of times this message has been delivered */
-    private volatile int _deliveryCount = -1;
-    private static final AtomicIntegerFieldUpdater<QueueEntryImpl> _deliveryCountUpdater = AtomicIntegerFieldUpdater
-                    .newUpdater(QueueEntryImpl.class, "_deliveryCount");
+    private long _expiration;
 
-    private final MessageEnqueueRecord _enqueueRecord;
+    /**
+     * The flags of the entry in the low bits, and the number of times the message has been delivered above them.  Every
+     * queued message costs an entry, so these are packed into a single field, and the enqueue record is not retained:
+     * the store only needs the queue id and message number, which the entry already knows.
+     */
+    private volatile int _deliveryCountAndFlags;
+    private static final AtomicIntegerFieldUpdater<QueueEntryImpl> _deliveryCountAndFlagsUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(QueueEntryImpl.class, "_deliveryCountAndFlags");
 
 
     public QueueEntryImpl(QueueEntryList queueEntryList)
@@ -131,8 +138,7 @@ public abstract class QueueEntryImpl implements QueueEntry
         _message = message == null ? null : message.newReference(queueEntryList.getQueue());
 
         _entryIdUpdater.set(this, entryId);
-        populateInstanceProperties();
-        _enqueueRecord = enqueueRecord;
+        populateInstanceProperties(enqueueRecord);
     }
 
     public QueueEntryImpl(QueueEntryList queueEntryList,
@@ -141,20 +147,21 @@ public abstract class QueueEntryImpl implements QueueEntry
     {
         _queueEntryList = queueEntryList;
         _message = message == null ? null :  message.newReference(queueEntryList.getQueue());
-        populateInstanceProperties();
-        _enqueueRecord = enqueueRecord;
+        populateInstanceProperties(enqueueRecord);
     }
 
-    private void populateInstanceProperties()
+    private void populateInstanceProperties(final MessageEnqueueRecord enqueueRecord)
     {
+        int flags = enqueueRecord == null ? 0 : ENQUEUE_RECORD_FLAG;
         if(_message != null)
         {
             if(_message.getMessage().isPersistent())
             {
-                setPersistent();
+                flags |= PERSISTENT_FLAG;
             }
             _expiration = _message.getMessage().getExpiration();
         }
+        _deliveryCountAndFlags = flags;
     }
 
     public void setExpiration(long expiration)
@@ -194,7 +201,7 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public boolean getDeliveredToConsumer()
     {
-        return _deliveryCountUpdater.get(this) != -1;
+        return (_deliveryCountAndFlags & DELIVERED_FLAG) != 0;
     }
 
     public boolean expired()
@@ -309,7 +316,7 @@ public abstract class QueueEntryImpl implements QueueEntry
         final boolean acquired = acquire(((QueueConsumer<?>) sub).getOwningState().getUnstealableState());
         if(acquired)
         {
-            _deliveryCountUpdater.compareAndSet(this,-1,0);
+            updateDeliveryCountAndFlags(DELIVERED_FLAG, 0);
             getQueue().incrementUnackedMsgCount(this);
         }
         return acquired;
@@ -582,6 +589,26 @@ public abstract class QueueEntryImpl implements QueueEntry
         }
     }
 
+    /**
+     * Removes an entry acquired by {@link #acquire()} from the queue without dequeuing it from the store and without
+     * releasing its reference to the message, so that the message is kept in the store for the queue to read back.
+     *
+     * @return true if the entry was removed
+     */
+    boolean pageOut()
+    {
+        if(_state == NON_CONSUMER_ACQUIRED_STATE && _stateUpdater.compareAndSet(this, NON_CONSUMER_ACQUIRED_STATE, DELETED_STATE))
+        {
+            _queueEntryList.entryDeleted(this);
+            onDelete();
+            return true;
+        }
+        else
+        {
+            return false;
+        }
+    }
+
     public int routeToAlternate(final Action<? super MessageInstance> action, ServerTransaction txn)
     {
         if (!isAcquired())
@@ -686,7 +713,7 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public int getDeliveryCount()
     {
-        return _deliveryCount == -1 ? 0 : _deliveryCount;
+        return _deliveryCountAndFlags >> DELIVERY_COUNT_SHIFT;
     }
 
     @Override
@@ -697,13 +724,22 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public void incrementDeliveryCount()
     {
-        _deliveryCountUpdater.compareAndSet(this,-1,0);
-        _deliveryCountUpdater.incrementAndGet(this);
+        updateDeliveryCountAndFlags(DELIVERED_FLAG, DELIVERY_COUNT_INCREMENT);
     }
 
     public void decrementDeliveryCount()
     {
-        _deliveryCountUpdater.decrementAndGet(this);
+        updateDeliveryCountAndFlags(0, -DELIVERY_COUNT_INCREMENT);
+    }
+
+    private void updateDeliveryCountAndFlags(final int flags, final int delta)
+    {
+        int current;
+        do
+        {
+            current = _deliveryCountAndFlags;
+        }
+        while(!_deliveryCountAndFlagsUpdater.compareAndSet(this, current, (current | flags) + delta));
     }
 
     @Override
@@ -739,17 +775,12 @@ public abstract class QueueEntryImpl implements QueueEntry
 
     public void setRedelivered()
     {
-        _flags |= REDELIVERED_FLAG;
-    }
-
-    private void setPersistent()
-    {
-        _flags |= PERSISTENT_FLAG;
+        updateDeliveryCountAndFlags(REDELIVERED_FLAG, 0);
     }
 
     public boolean isRedelivered()
     {
-        return (_flags & REDELIVERED_FLAG) != 0;
+        return (_deliveryCountAndFlags & REDELIVERED_FLAG) != 0;
     }
 
     @Override
@@ -771,17 +802,18 @@ public abstract class QueueEntryImpl implements QueueEntry
         @Override
         public Object getProperty(final Property prop)
         {
+            final int flags = _deliveryCountAndFlags;
             switch(prop)
             {
 
                 case REDELIVERED:
-                    return (_flags & REDELIVERED_FLAG) != 0;
+                    return (flags & REDELIVERED_FLAG) != 0;
                 case PERSISTENT:
-                    return (_flags & PERSISTENT_FLAG) != 0;
+                    return (flags & PERSISTENT_FLAG) != 0;
                 case MANDATORY:
-                    return (_flags & MANDATORY_FLAG) != 0;
+                    return (flags & MANDATORY_FLAG) != 0;
                 case IMMEDIATE:
-                    return (_flags & IMMEDIATE_FLAG) != 0;
+                    return (flags & IMMEDIATE_FLAG) != 0;
                 case EXPIRATION:
                     return _expiration;
                 default:
@@ -794,6 +826,34 @@ public abstract class QueueEntryImpl implements QueueEntry
     @Override
     public MessageEnqueueRecord getEnqueueRecord()
     {
-        return _enqueueRecord;
+        if ((_deliveryCountAndFlags & ENQUEUE_RECORD_FLAG) == 0)
+        {
+            return null;
+        }
+        return new EntryEnqueueRecord(getQueue().getId(), getMessage().getMessageNumber());
+    }
+
+    private static final class EntryEnqueueRecord implements MessageEnqueueRecord
+    {
+        private final UUID _queueId;
+        private final long _messageNumber;
+
+        private EntryEnqueueRecord(final UUID queueId, final long messageNumber)
+        {
+            _queueId = queueId;
+            _messageNumber = messageNumber;
+        }
+
+        @Override
+        public UUID getQueueId()
+        {
+            return _queueId;
+        }
+
+        @Override
+        public long getMessageNumber()
+        {
+            return _messageNumber;
+        }
     }
 }
@@ -44,4 +44,9 @@ public interface QueueEntryList
     
     int getPriorities();
 
+    /**
+     * @return the index of the entries of the list by message id, or null if the list does not maintain one
+     */
+    MessageIdIndex getMessageIdIndex();
+
 }
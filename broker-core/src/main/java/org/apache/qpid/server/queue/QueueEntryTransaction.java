@@ -21,61 +21,147 @@
 package org.apache.qpid.server.queue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.qpid.server.filter.MessageFilter;
 import org.apache.qpid.server.message.ServerMessage;
-import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.VirtualHost;
 
+/**
+ * Applies an operation to the messages of a queue selected by id, by selector, or both.
+ *
+ * Each call to {@link #withinTransaction(VirtualHost.Transaction)} updates at most a chunk of the messages, and the
+ * next call resumes from where the previous one stopped, so that a large operation can be committed as a series of
+ * store transactions.  The operation is complete once {@link #isComplete()} returns true.
+ *
+ * Whether the messages are selected by id or not, each entry of the queue is visited at most once over all the calls,
+ * either through an iterator over the queue or, if the queue keeps an index by message id, through the entries of the
+ * listed messages.
+ */
 abstract class QueueEntryTransaction implements VirtualHost.TransactionalOperation
 {
-    private final Queue _sourceQueue;
-    private final List<Long> _messageIds;
+    private final AbstractQueue<?> _sourceQueue;
+    private final Set<Long> _messageIds;
     private final MessageFilter _filter;
     private final List<Long> _modifiedMessageIds = new ArrayList<>();
+    private boolean _recordModifiedMessageIds = true;
+    private final AtomicLong _modifiedMessageCount = new AtomicLong();
     private int _limit;
+    private int _chunkSize;
+    private QueueEntryIterator _iterator;
+    private Iterator<QueueEntry> _indexedEntries;
+    private volatile boolean _complete;
 
-    QueueEntryTransaction(Queue sourceQueue, List<Long> messageIds, final MessageFilter filter, final int limit)
+    QueueEntryTransaction(AbstractQueue<?> sourceQueue, List<Long> messageIds, final MessageFilter filter, final int limit)
     {
         _sourceQueue = sourceQueue;
-        _messageIds = messageIds == null ? null : new ArrayList<>(messageIds);
+        _messageIds = messageIds == null ? null : new HashSet<>(messageIds);
         _filter = filter;
         _limit = limit;
     }
 
+    /**
+     * Sets the maximum number of messages updated by each call to
+     * {@link #withinTransaction(VirtualHost.Transaction)}; zero or a negative value updates all the messages at once.
+     */
+    void setChunkSize(final int chunkSize)
+    {
+        _chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets whether the ids of the messages updated are recorded for {@link #getModifiedMessageIds()}, rather than only
+     * counted.
+     */
+    void setRecordModifiedMessageIds(final boolean recordModifiedMessageIds)
+    {
+        _recordModifiedMessageIds = recordModifiedMessageIds;
+    }
+
     @Override
     public final void withinTransaction(final VirtualHost.Transaction txn)
     {
-        if(_limit != 0)
+        if(_limit == 0 || _complete)
+        {
+            _complete = true;
+            return;
+        }
+
+        final int[] remainingInChunk = {_chunkSize > 0 ? _chunkSize : -1};
+        final QueueEntryVisitor visitor = new QueueEntryVisitor()
         {
-            _sourceQueue.visit(new QueueEntryVisitor()
-            {
 
-                public boolean visit(final QueueEntry entry)
+            public boolean visit(final QueueEntry entry)
+            {
+                final ServerMessage message = entry.getMessage();
+                if (message != null)
                 {
-                    final ServerMessage message = entry.getMessage();
-                    if (message != null)
+                    final long messageId = message.getMessageNumber();
+                    if ((_messageIds == null || _messageIds.remove(messageId))
+                        && (_filter == null || _filter.matches(entry.asFilterable())))
                     {
-                        final long messageId = message.getMessageNumber();
-                        if ((_messageIds == null || _messageIds.remove(messageId))
-                            && (_filter == null || _filter.matches(entry.asFilterable())))
+                        updateEntry(entry, txn);
+                        if (_recordModifiedMessageIds)
                         {
-                            updateEntry(entry, txn);
                             _modifiedMessageIds.add(messageId);
-                            if (_limit > 0)
-                            {
-                                _limit--;
-                            }
                         }
+                        _modifiedMessageCount.incrementAndGet();
+                        if (_limit > 0)
+                        {
+                            _limit--;
+                        }
+                        remainingInChunk[0]--;
                     }
-                    return _limit == 0 || (_messageIds != null && _messageIds.isEmpty());
                 }
-            });
+                return _limit == 0 || (_messageIds != null && _messageIds.isEmpty()) || remainingInChunk[0] == 0;
+            }
+        };
+
+        if (_messageIds != null && _iterator == null && _indexedEntries == null)
+        {
+            final List<QueueEntry> indexedEntries = _sourceQueue.getIndexedEntries(_messageIds);
+            if (indexedEntries != null)
+            {
+                _indexedEntries = indexedEntries.iterator();
+            }
+        }
+
+        if (_indexedEntries != null)
+        {
+            while (_indexedEntries.hasNext())
+            {
+                if (_sourceQueue.visitEntry(_indexedEntries.next(), visitor))
+                {
+                    break;
+                }
+            }
         }
+        else
+        {
+            if (_iterator == null)
+            {
+                _iterator = _sourceQueue.getEntries().iterator();
+            }
+            _sourceQueue.visit(_iterator, visitor);
+        }
+
+        // the chunk stopped the visit if it was filled: otherwise there is nothing left to update
+        _complete = remainingInChunk[0] != 0 || _limit == 0 || (_messageIds != null && _messageIds.isEmpty());
+    }
 
+    boolean isComplete()
+    {
+        return _complete;
     }
 
+    long getModifiedMessageCount()
+    {
+        return _modifiedMessageCount.get();
+    }
 
     protected abstract void updateEntry(QueueEntry entry, VirtualHost.Transaction txn);
 
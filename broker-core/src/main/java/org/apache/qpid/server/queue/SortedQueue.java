@@ -21,6 +21,7 @@
 package org.apache.qpid.server.queue;
 
 import org.apache.qpid.server.model.ManagedAttribute;
+import org.apache.qpid.server.model.ManagedContextDefault;
 import org.apache.qpid.server.model.ManagedObject;
 import org.apache.qpid.server.model.Queue;
 
@@ -30,6 +31,18 @@ public interface SortedQueue<X extends SortedQueue<X>> extends Queue<X>
     String SORT_KEY = "sortKey";
     String SORTED_QUEUE_TYPE = "sorted";
 
+    enum EntryListType
+    {
+        TREE, SKIP_LIST
+    }
+
+    String QUEUE_SORTED_ENTRY_LIST_TYPE = "queue.sortedEntryListType";
+    @ManagedContextDefault( name = QUEUE_SORTED_ENTRY_LIST_TYPE,
+            description = "The structure holding the entries of a sorted queue: TREE (a red-black tree guarded by a"
+                          + " single lock) or SKIP_LIST (a concurrent skip list which producers and consumers"
+                          + " access without locking).  Takes effect when the queue is opened.")
+    EntryListType DEFAULT_SORTED_ENTRY_LIST_TYPE = EntryListType.TREE;
+
     @ManagedAttribute( mandatory = true )
     String getSortKey();
 
@@ -39,12 +39,14 @@ public class SortedQueueEntryList implements QueueEntryList
     private final Object _lock = new Object();
     private final SortedQueueImpl _queue;
     private final String _propertyName;
+    private final MessageIdIndex _messageIdIndex;
 
     public SortedQueueEntryList(final SortedQueueImpl queue)
     {
         _queue = queue;
         _head = new SortedQueueEntry(this);
         _propertyName = queue.getSortKey();
+        _messageIdIndex = MessageIdIndex.newInstance(queue);
     }
 
     public SortedQueueImpl getQueue()
@@ -67,6 +69,10 @@ public class SortedQueueEntryList implements QueueEntryList
             entry.setKey(key);
 
             insert(entry);
+            if (_messageIdIndex != null)
+            {
+                _messageIdIndex.add(entry);
+            }
 
             return entry;
         }
@@ -363,6 +369,11 @@ public class SortedQueueEntryList implements QueueEntryList
         SortedQueueEntry entry = (SortedQueueEntry)e;
         synchronized(_lock)
         {
+            if (_messageIdIndex != null)
+            {
+                _messageIdIndex.remove(entry);
+            }
+
             // If the node to be removed has two children, we swap the position
             // of the node and its successor in the tree
             if(leftChild(entry) != null && rightChild(entry) != null)
@@ -461,6 +472,12 @@ public class SortedQueueEntryList implements QueueEntryList
         return 0;
     }
 
+    @Override
+    public MessageIdIndex getMessageIdIndex()
+    {
+        return _messageIdIndex;
+    }
+
     /**
      * Swaps the position of the node in the tree with it's successor
      * (that is the node with the next highest key)
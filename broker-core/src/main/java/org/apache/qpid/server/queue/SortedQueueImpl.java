@@ -38,7 +38,8 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
 
     @ManagedAttributeField
     private String _sortKey;
-    private SortedQueueEntryList _entries;
+    private QueueEntryList _entries;
+    private boolean _concurrentEntries;
 
     @ManagedObjectFactoryConstructor
     public SortedQueueImpl(Map<String, Object> attributes, VirtualHost<?> virtualHost)
@@ -50,7 +51,9 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
     protected void onOpen()
     {
         super.onOpen();
-        _entries = new SortedQueueEntryList(this);
+        _concurrentEntries =
+                getContextValue(EntryListType.class, QUEUE_SORTED_ENTRY_LIST_TYPE) == EntryListType.SKIP_LIST;
+        _entries = _concurrentEntries ? new ConcurrentSortedQueueEntryList(this) : new SortedQueueEntryList(this);
     }
 
     @Override
@@ -58,14 +61,21 @@ public class SortedQueueImpl extends OutOfOrderQueue<SortedQueueImpl> implements
                         final Action<? super MessageInstance> action,
                         MessageEnqueueRecord record)
     {
-        synchronized (_sortedQueueLock)
+        if (_concurrentEntries)
         {
             super.doEnqueue(message, action, record);
         }
+        else
+        {
+            synchronized (_sortedQueueLock)
+            {
+                super.doEnqueue(message, action, record);
+            }
+        }
     }
 
     @Override
-    SortedQueueEntryList getEntries()
+    QueueEntryList getEntries()
     {
         return _entries;
     }
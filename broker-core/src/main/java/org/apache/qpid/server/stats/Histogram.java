@@ -0,0 +1,185 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.stats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with a bucket for each power of two.  Values are recorded without locking, so
+ * that the histogram is cheap enough to be updated on the IO path; figures read whilst values are being recorded may
+ * be slightly inconsistent with one another.  Percentiles are reported as the upper bound of the bucket in which they
+ * fall, bounded by the maximum recorded value.
+ */
+public final class Histogram
+{
+    private static final int NUMBER_OF_BUCKETS = 64;
+
+    private final AtomicLongArray _buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicLong _max = new AtomicLong();
+
+    public void record(final long value)
+    {
+        final long recordedValue = Math.max(0L, value);
+        _buckets.incrementAndGet(getBucket(recordedValue));
+        _count.incrementAndGet();
+        _sum.addAndGet(recordedValue);
+        long max;
+        while (recordedValue > (max = _max.get()) && !_max.compareAndSet(max, recordedValue))
+        {
+        }
+    }
+
+    /**
+     * Adds the values recorded by the given histogram to this one.
+     */
+    public void add(final Histogram histogram)
+    {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+        {
+            final long bucketCount = histogram._buckets.get(i);
+            if (bucketCount != 0L)
+            {
+                _buckets.addAndGet(i, bucketCount);
+            }
+        }
+        _count.addAndGet(histogram.getCount());
+        _sum.addAndGet(histogram.getSum());
+        final long otherMax = histogram.getMax();
+        long max;
+        while (otherMax > (max = _max.get()) && !_max.compareAndSet(max, otherMax))
+        {
+        }
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+        {
+            _buckets.set(i, 0L);
+        }
+        _count.set(0L);
+        _sum.set(0L);
+        _max.set(0L);
+    }
+
+    public long getCount()
+    {
+        return _count.get();
+    }
+
+    public long getSum()
+    {
+        return _sum.get();
+    }
+
+    public long getMax()
+    {
+        return _max.get();
+    }
+
+    public double getMean()
+    {
+        final long count = getCount();
+        return count == 0L ? 0.0d : (double) getSum() / (double) count;
+    }
+
+    /**
+     * @param percentile the percentile, between 0 and 100
+     * @return the upper bound of the values below which the given percentage of the recorded values fall
+     */
+    public long getValueAtPercentile(final double percentile)
+    {
+        final long[] buckets = getBucketCounts();
+        long count = 0L;
+        for (long bucketCount : buckets)
+        {
+            count += bucketCount;
+        }
+        if (count == 0L)
+        {
+            return 0L;
+        }
+
+        final long rank = Math.max(1L, (long) Math.ceil(count * Math.min(100.0d, Math.max(0.0d, percentile)) / 100.0d));
+        long cumulativeCount = 0L;
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+        {
+            cumulativeCount += buckets[i];
+            if (cumulativeCount >= rank)
+            {
+                return Math.min(getUpperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @return the count, mean, maximum and common percentiles of the recorded values, together with the count of
+     *         each non-empty bucket keyed by the upper bound of its values
+     */
+    public Map<String, Object> toMap()
+    {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", getCount());
+        map.put("mean", getMean());
+        map.put("max", getMax());
+        map.put("p50", getValueAtPercentile(50.0d));
+        map.put("p90", getValueAtPercentile(90.0d));
+        map.put("p99", getValueAtPercentile(99.0d));
+        map.put("p999", getValueAtPercentile(99.9d));
+        final Map<String, Long> buckets = new LinkedHashMap<>();
+        final long[] bucketCounts = getBucketCounts();
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+        {
+            if (bucketCounts[i] != 0L)
+            {
+                buckets.put(String.valueOf(getUpperBound(i)), bucketCounts[i]);
+            }
+        }
+        map.put("buckets", buckets);
+        return map;
+    }
+
+    private long[] getBucketCounts()
+    {
+        final long[] bucketCounts = new long[NUMBER_OF_BUCKETS];
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++)
+        {
+            bucketCounts[i] = _buckets.get(i);
+        }
+        return bucketCounts;
+    }
+
+    private static int getBucket(final long value)
+    {
+        return Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+
+    private static long getUpperBound(final int bucket)
+    {
+        return bucket == NUMBER_OF_BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1L;
+    }
+}
@@ -1648,6 +1648,24 @@ public abstract class AbstractJDBCMessageStore implements MessageStore
             return true;
         }
 
+        @Override
+        public synchronized long compactContent()
+        {
+            final Collection<QpidByteBuffer> data = _messageDataRef == null ? null : _messageDataRef.getData();
+            if (data == null || !QpidByteBuffer.isSparse(data))
+            {
+                return 0L;
+            }
+            final long pinnedSize = QpidByteBuffer.getPinnedSize(data);
+            final Collection<QpidByteBuffer> compacted = QpidByteBuffer.pack(data);
+            _messageDataRef.setData(Collections.unmodifiableCollection(compacted));
+            for (QpidByteBuffer buf : data)
+            {
+                buf.dispose();
+            }
+            return pinnedSize - QpidByteBuffer.getPinnedSize(compacted);
+        }
+
         @Override
         public String toString()
         {
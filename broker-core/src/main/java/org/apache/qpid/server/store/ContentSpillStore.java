@@ -0,0 +1,291 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+
+/**
+ * Holds the content of transient messages which have been flowed to disk in a set of memory-mapped, append-only
+ * segment files.  Spilled content is read back through views onto the mapped segment, so pages are only brought
+ * back into memory when the content is actually used.  A segment file is deleted once all the content spilled to it
+ * has been released and it is no longer being appended to.  Segments are never rewound: views onto released content
+ * may still be in use, so a region of a segment is never written twice and the mapping is only released once the
+ * last view onto it has been garbage collected.
+ */
+class ContentSpillStore
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(ContentSpillStore.class);
+
+    private static final String SEGMENT_FILE_PREFIX = "spill-";
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+    private final File _directory;
+    private final int _segmentSize;
+    private final Set<Segment> _segments = new HashSet<>();
+    private Segment _currentSegment;
+    private long _nextSegmentNumber;
+    private boolean _closed = true;
+
+    ContentSpillStore(final File directory, final int segmentSize)
+    {
+        if (segmentSize <= 0)
+        {
+            throw new IllegalArgumentException("Negative or zero segment size illegal : " + segmentSize);
+        }
+        _directory = directory;
+        _segmentSize = segmentSize;
+    }
+
+    synchronized void open()
+    {
+        if (!_directory.isDirectory() && !_directory.mkdirs())
+        {
+            throw new StoreException("Cannot create spill directory '" + _directory.getAbsolutePath() + "'");
+        }
+        // segments left behind by a previous run hold no recoverable content
+        deleteSegmentFiles();
+        _closed = false;
+    }
+
+    synchronized void close()
+    {
+        _closed = true;
+        _currentSegment = null;
+        _segments.clear();
+        deleteSegmentFiles();
+    }
+
+    synchronized void delete()
+    {
+        close();
+        if (_directory.isDirectory() && !_directory.delete())
+        {
+            LOGGER.warn("Failed to delete spill directory '{}'", _directory.getAbsolutePath());
+        }
+    }
+
+    /**
+     * Appends the remaining content of the given buffer to the current segment, starting a new segment if it does
+     * not fit.  The given buffer is left unchanged.
+     *
+     * @return the spilled content, or null if the spill store is closed
+     */
+    synchronized SpilledContent spill(final QpidByteBuffer content)
+    {
+        if (_closed)
+        {
+            return null;
+        }
+
+        final int length = content.remaining();
+        Segment segment = _currentSegment;
+        if (segment == null || segment.getRemaining() < length)
+        {
+            if (segment != null && segment.getLiveCount() == 0)
+            {
+                deleteSegment(segment);
+            }
+            segment = createSegment(Math.max(_segmentSize, length));
+            _currentSegment = segment;
+        }
+        return segment.append(content);
+    }
+
+    synchronized int getSegmentCount()
+    {
+        return _segments.size();
+    }
+
+    private synchronized void release(final Segment segment)
+    {
+        if (segment.release() == 0 && segment != _currentSegment && _segments.contains(segment))
+        {
+            deleteSegment(segment);
+        }
+    }
+
+    private Segment createSegment(final int size)
+    {
+        final File file = new File(_directory, SEGMENT_FILE_PREFIX + (_nextSegmentNumber++) + SEGMENT_FILE_SUFFIX);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel())
+        {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            final Segment segment = new Segment(file, buffer);
+            _segments.add(segment);
+            LOGGER.debug("Created spill segment '{}' of {} bytes", file, size);
+            return segment;
+        }
+        catch (IOException e)
+        {
+            if (file.exists() && !file.delete())
+            {
+                LOGGER.warn("Failed to delete spill segment '{}'", file.getAbsolutePath());
+            }
+            throw new StoreException("Failed to create spill segment '" + file.getAbsolutePath() + "'", e);
+        }
+    }
+
+    private void deleteSegment(final Segment segment)
+    {
+        _segments.remove(segment);
+        final File file = segment.getFile();
+        // the mapping itself is released once the last view onto it has been garbage collected
+        if (!file.delete())
+        {
+            LOGGER.warn("Failed to delete spill segment '{}'", file.getAbsolutePath());
+        }
+        else
+        {
+            LOGGER.debug("Deleted spill segment '{}'", file);
+        }
+    }
+
+    private void deleteSegmentFiles()
+    {
+        final File[] files = _directory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(final File dir, final String name)
+            {
+                return name.startsWith(SEGMENT_FILE_PREFIX) && name.endsWith(SEGMENT_FILE_SUFFIX);
+            }
+        });
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                if (!file.delete())
+                {
+                    LOGGER.warn("Failed to delete spill segment '{}'", file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    private final class Segment
+    {
+        private final File _file;
+        private final MappedByteBuffer _buffer;
+        private int _writePosition;
+        private int _liveCount;
+
+        private Segment(final File file, final MappedByteBuffer buffer)
+        {
+            _file = file;
+            _buffer = buffer;
+        }
+
+        private File getFile()
+        {
+            return _file;
+        }
+
+        private int getRemaining()
+        {
+            return _buffer.capacity() - _writePosition;
+        }
+
+        private int getLiveCount()
+        {
+            return _liveCount;
+        }
+
+        private SpilledContent append(final QpidByteBuffer content)
+        {
+            final int offset = _writePosition;
+            final int length = content.remaining();
+            final ByteBuffer target = _buffer.duplicate();
+            target.position(offset);
+            content.copyTo(target);
+            _writePosition += length;
+            _liveCount++;
+            return new SpilledContent(this, offset, length);
+        }
+
+        private int release()
+        {
+            return --_liveCount;
+        }
+
+        private ByteBuffer getContent(final int offset, final int length)
+        {
+            final ByteBuffer content = _buffer.duplicate();
+            content.limit(offset + length);
+            content.position(offset);
+            return content.slice();
+        }
+    }
+
+    final class SpilledContent
+    {
+        private final Segment _segment;
+        private final int _offset;
+        private final int _length;
+        private boolean _released;
+
+        private SpilledContent(final Segment segment, final int offset, final int length)
+        {
+            _segment = segment;
+            _offset = offset;
+            _length = length;
+        }
+
+        int getLength()
+        {
+            return _length;
+        }
+
+        /**
+         * Returns a view onto the spilled content.  The view must be disposed of by the caller.
+         */
+        QpidByteBuffer getContent()
+        {
+            return QpidByteBuffer.wrap(_segment.getContent(_offset, _length));
+        }
+
+        void release()
+        {
+            synchronized (ContentSpillStore.this)
+            {
+                if (!_released)
+                {
+                    _released = true;
+                    ContentSpillStore.this.release(_segment);
+                }
+            }
+        }
+    }
+}
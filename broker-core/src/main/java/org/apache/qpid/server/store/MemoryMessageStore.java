@@ -51,6 +51,24 @@ public class MemoryMessageStore implements MessageStore
     private final Object _transactionLock = new Object();
     private final Map<UUID, Set<Long>> _messageInstances = new HashMap<UUID, Set<Long>>();
     private final Map<Xid, DistributedTransactionRecords> _distributedTransactions = new HashMap<Xid, DistributedTransactionRecords>();
+    private final ContentSpillStore _spillStore;
+
+    public MemoryMessageStore()
+    {
+        _spillStore = null;
+    }
+
+    /**
+     * Creates a store which flows message content to disk by spilling it to memory-mapped segment files in the
+     * given directory.
+     *
+     * @param spillDirectory the directory holding the spill segment files
+     * @param spillSegmentSize the size of each segment file; larger messages are given a segment of their own
+     */
+    public MemoryMessageStore(final File spillDirectory, final int spillSegmentSize)
+    {
+        _spillStore = new ContentSpillStore(spillDirectory, spillSegmentSize);
+    }
 
 
     private final class MemoryMessageStoreTransaction implements Transaction
@@ -271,6 +289,10 @@ public class MemoryMessageStore implements MessageStore
     @Override
     public void openMessageStore(final ConfiguredObject<?> parent)
     {
+        if (_spillStore != null)
+        {
+            _spillStore.open();
+        }
     }
 
     @Override
@@ -284,7 +306,7 @@ public class MemoryMessageStore implements MessageStore
     {
         long id = getNextMessageId();
 
-        StoredMemoryMessage<T> storedMemoryMessage = new StoredMemoryMessage<T>(id, metaData)
+        StoredMemoryMessage<T> storedMemoryMessage = new StoredMemoryMessage<T>(id, metaData, _spillStore)
         {
 
             @Override
@@ -327,6 +349,10 @@ public class MemoryMessageStore implements MessageStore
             _messageInstances.clear();
             _distributedTransactions.clear();
         }
+        if (_spillStore != null)
+        {
+            _spillStore.close();
+        }
     }
 
     @Override
@@ -349,6 +375,10 @@ public class MemoryMessageStore implements MessageStore
     @Override
     public void onDelete(ConfiguredObject<?> parent)
     {
+        if (_spillStore != null)
+        {
+            _spillStore.delete();
+        }
     }
 
     @Override
@@ -29,13 +29,21 @@ import org.apache.qpid.bytebuffer.QpidByteBuffer;
 public class StoredMemoryMessage<T extends StorableMessageMetaData> implements StoredMessage<T>, MessageHandle<T>
 {
     private final long _messageNumber;
+    private final ContentSpillStore _spillStore;
     private QpidByteBuffer _content;
+    private volatile ContentSpillStore.SpilledContent _spilledContent;
     private T _metaData;
 
     public StoredMemoryMessage(long messageNumber, T metaData)
+    {
+        this(messageNumber, metaData, null);
+    }
+
+    StoredMemoryMessage(long messageNumber, T metaData, ContentSpillStore spillStore)
     {
         _messageNumber = messageNumber;
         _metaData = metaData;
+        _spillStore = spillStore;
     }
 
     public long getMessageNumber()
@@ -85,11 +93,23 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
 
 
     @Override
-    public Collection<QpidByteBuffer> getContent(int offset, int length)
+    public synchronized Collection<QpidByteBuffer> getContent(int offset, int length)
     {
         if(_content == null)
         {
-            return null;
+            if (_spilledContent == null)
+            {
+                return null;
+            }
+            final QpidByteBuffer spilledContent = _spilledContent.getContent();
+            try
+            {
+                return Collections.singleton(spilledContent.view(offset, length));
+            }
+            finally
+            {
+                spilledContent.dispose();
+            }
         }
         return Collections.singleton(_content.view(offset, length));
     }
@@ -99,7 +119,7 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
         return _metaData;
     }
 
-    public void remove()
+    public synchronized void remove()
     {
         _metaData.dispose();
         _metaData = null;
@@ -108,18 +128,54 @@ public class StoredMemoryMessage<T extends StorableMessageMetaData> implements S
             _content.dispose();
             _content = null;
         }
+        if (_spilledContent != null)
+        {
+            _spilledContent.release();
+            _spilledContent = null;
+        }
     }
 
     @Override
     public boolean isInMemory()
     {
-        return true;
+        return _spilledContent == null;
     }
 
     @Override
-    public boolean flowToDisk()
+    public synchronized boolean flowToDisk()
     {
-        return false;
+        if (_spillStore != null && _content != null)
+        {
+            final ContentSpillStore.SpilledContent spilledContent = _spillStore.spill(_content);
+            if (spilledContent != null)
+            {
+                _spilledContent = spilledContent;
+                _content.dispose();
+                _content = null;
+            }
+        }
+        return _spilledContent != null;
+    }
+
+    @Override
+    public synchronized long compactContent()
+    {
+        if (_content == null)
+        {
+            return 0L;
+        }
+        final Collection<QpidByteBuffer> content = Collections.singleton(_content);
+        if (!QpidByteBuffer.isSparse(content))
+        {
+            return 0L;
+        }
+        final long pinnedSize = QpidByteBuffer.getPinnedSize(content);
+        final QpidByteBuffer compacted = QpidByteBuffer.allocateDirect(_content.remaining());
+        compacted.putCopyOf(_content);
+        compacted.flip();
+        _content.dispose();
+        _content = compacted;
+        return pinnedSize - QpidByteBuffer.getPinnedSize(Collections.singleton(compacted));
     }
 
 }
@@ -38,4 +38,12 @@ public interface StoredMessage<M extends StorableMessageMetaData>
     boolean isInMemory();
 
     boolean flowToDisk();
+
+    /**
+     * Copies content held in memory into tightly sized buffers if the buffers currently holding it keep reachable
+     * substantially more memory than the content itself.
+     *
+     * @return the number of bytes of memory this message no longer keeps reachable
+     */
+    long compactContent();
 }
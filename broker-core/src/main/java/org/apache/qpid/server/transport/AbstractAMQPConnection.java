@@ -671,6 +671,31 @@ public abstract class AbstractAMQPConnection<C extends AbstractAMQPConnection<C>
         return getDataDeliveryStatistics().getTotal();
     }
 
+    @Override
+    public long getTransportWrites()
+    {
+        return _network.getTransportWriteCount();
+    }
+
+    @Override
+    public long getAverageTransportWriteSize()
+    {
+        final long writes = _network.getTransportWriteCount();
+        return writes == 0L ? 0L : _network.getTransportBytesWritten() / writes;
+    }
+
+    @Override
+    public long getCoalescedTransportWrites()
+    {
+        return _network.getCoalescedWriteCount();
+    }
+
+    @Override
+    public long getProcessingBudgetExhaustions()
+    {
+        return _network.getProcessingBudgetExhaustedCount();
+    }
+
     @Override
     public long getMessagesIn()
     {
@@ -844,6 +869,7 @@ public abstract class AbstractAMQPConnection<C extends AbstractAMQPConnection<C>
 
         updateAccessControllerContext();
         logConnectionOpen();
+        _network.handshakeCompleted();
     }
 
     public int getMessageCompressionThreshold()
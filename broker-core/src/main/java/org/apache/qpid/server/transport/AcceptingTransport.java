@@ -27,4 +27,13 @@ public interface AcceptingTransport
     void close();
 
     int getAcceptingPort();
+
+    int getAcceptQueueDepth();
+
+    int getHandshakesInProgress();
+
+    /**
+     * @return the statistics of the selector and IO threads of the transport, or null if it does not collect them
+     */
+    NetworkIoStatistics getIoStatistics();
 }
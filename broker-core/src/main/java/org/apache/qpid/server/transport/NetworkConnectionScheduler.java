@@ -44,13 +44,23 @@ public class NetworkConnectionScheduler
     private final long _threadKeepAliveTimeout;
     private final String _name;
     private final int _numberOfSelectors;
+    private final boolean _workStealing;
+    private final NetworkIoStatistics _ioStatistics = new NetworkIoStatistics();
     private SelectorThread _selectorThread;
 
     public NetworkConnectionScheduler(final String name,
                                       final int numberOfSelectors, int threadPoolSize,
                                       long threadKeepAliveTimeout)
     {
-        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, new ThreadFactory()
+        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, false);
+    }
+
+    public NetworkConnectionScheduler(final String name,
+                                      final int numberOfSelectors, int threadPoolSize,
+                                      long threadKeepAliveTimeout,
+                                      boolean workStealing)
+    {
+        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, workStealing, new ThreadFactory()
                                     {
                                         final AtomicInteger _count = new AtomicInteger();
 
@@ -75,6 +85,7 @@ public class NetworkConnectionScheduler
                ", _threadKeepAliveTimeout=" + _threadKeepAliveTimeout +
                ", _name='" + _name + '\'' +
                ", _numberOfSelectors=" + _numberOfSelectors +
+               ", _workStealing=" + _workStealing +
                ", _selectorThread=" + _selectorThread +
                '}';
     }
@@ -83,12 +94,27 @@ public class NetworkConnectionScheduler
                                       final int numberOfSelectors, int threadPoolSize,
                                       long threadKeepAliveTimeout,
                                       ThreadFactory factory)
+    {
+        this(name, numberOfSelectors, threadPoolSize, threadKeepAliveTimeout, false, factory);
+    }
+
+    /**
+     * @param workStealing if true each IO thread is given its own queue of work, with the work of a connection
+     *                     preferably run by the same IO thread and idle IO threads stealing work from busy ones;
+     *                     otherwise all IO threads share a single queue of work
+     */
+    public NetworkConnectionScheduler(String name,
+                                      final int numberOfSelectors, int threadPoolSize,
+                                      long threadKeepAliveTimeout,
+                                      boolean workStealing,
+                                      ThreadFactory factory)
     {
         _name = name;
         _poolSize = threadPoolSize;
         _threadKeepAliveTimeout = threadKeepAliveTimeout;
         _factory = factory;
         _numberOfSelectors = numberOfSelectors;
+        _workStealing = workStealing;
     }
 
 
@@ -96,7 +122,7 @@ public class NetworkConnectionScheduler
     {
         try
         {
-            _selectorThread = new SelectorThread(this, _numberOfSelectors);
+            _selectorThread = new SelectorThread(this, _numberOfSelectors, _workStealing);
             _executor = new ThreadPoolExecutor(_poolSize, _poolSize,
                                                _threadKeepAliveTimeout, TimeUnit.MINUTES,
                                                new LinkedBlockingQueue<Runnable>(), _factory);
@@ -121,11 +147,23 @@ public class NetworkConnectionScheduler
         do
         {
             rerun = false;
+            final boolean instrumented = NetworkIoStatistics.isEnabled();
+            final long workStartTime = instrumented ? System.nanoTime() : 0L;
             boolean closed = connection.doWork();
+            if (instrumented)
+            {
+                _ioStatistics.recordWorkTime(System.nanoTime() - workStartTime);
+            }
             if (!closed && connection.getScheduler() == this)
             {
 
-                if (connection.isStateChanged() || connection.isPartialRead())
+                if (connection.isProcessingBudgetExhausted())
+                {
+                    // yield to the connections already waiting for an IO thread
+                    connection.clearScheduled();
+                    schedule(connection);
+                }
+                else if (connection.isStateChanged() || connection.isPartialRead())
                 {
                     if (_running.get() == _poolSize)
                     {
@@ -210,6 +248,11 @@ public class NetworkConnectionScheduler
         _selectorThread.removeConnection(connection);
     }
 
+    public NetworkIoStatistics getIoStatistics()
+    {
+        return _ioStatistics;
+    }
+
     int getPoolSize()
     {
         return _poolSize;
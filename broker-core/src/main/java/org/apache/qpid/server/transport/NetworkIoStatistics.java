@@ -0,0 +1,171 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.server.stats.Histogram;
+import org.apache.qpid.server.stats.StatisticsCounter;
+
+/**
+ * Histograms of the activity of the selector and IO threads of a {@link NetworkConnectionScheduler}: how long each
+ * select takes, how long connections wait for an IO thread, how long an IO thread spends processing a connection and
+ * how many bytes each read and write transfers.  Durations are in microseconds.  Nothing is recorded unless
+ * instrumentation has been enabled, which may be done at any time.
+ */
+public final class NetworkIoStatistics
+{
+    private static volatile boolean _enabled;
+
+    private final Histogram _selectTime = new Histogram();
+    private final Histogram _workQueueTime = new Histogram();
+    private final Histogram _workTime = new Histogram();
+    private final Histogram _bytesPerRead = new Histogram();
+    private final Histogram _bytesPerWrite = new Histogram();
+    private final StatisticsCounter _selectorWakeups = new StatisticsCounter("selectorWakeups");
+    private final Collection<NetworkIoStatistics> _parts;
+
+    public NetworkIoStatistics()
+    {
+        _parts = Collections.emptyList();
+    }
+
+    private NetworkIoStatistics(final Collection<NetworkIoStatistics> parts)
+    {
+        _parts = new ArrayList<>(parts);
+        for (NetworkIoStatistics part : _parts)
+        {
+            _selectTime.add(part._selectTime);
+            _workQueueTime.add(part._workQueueTime);
+            _workTime.add(part._workTime);
+            _bytesPerRead.add(part._bytesPerRead);
+            _bytesPerWrite.add(part._bytesPerWrite);
+        }
+    }
+
+    public static boolean isEnabled()
+    {
+        return _enabled;
+    }
+
+    public static void setEnabled(final boolean enabled)
+    {
+        _enabled = enabled;
+    }
+
+    /**
+     * Returns the combined statistics of the given schedulers.
+     */
+    public static NetworkIoStatistics combine(final Collection<NetworkIoStatistics> statistics)
+    {
+        return new NetworkIoStatistics(statistics);
+    }
+
+    void recordSelect(final long selectNanos)
+    {
+        _selectTime.record(TimeUnit.NANOSECONDS.toMicros(selectNanos));
+        _selectorWakeups.registerEvent(1L);
+    }
+
+    void recordWorkQueueTime(final long waitNanos)
+    {
+        _workQueueTime.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+
+    void recordWorkTime(final long workNanos)
+    {
+        _workTime.record(TimeUnit.NANOSECONDS.toMicros(workNanos));
+    }
+
+    void recordRead(final long bytesRead)
+    {
+        _bytesPerRead.record(bytesRead);
+    }
+
+    void recordWrite(final long bytesWritten)
+    {
+        _bytesPerWrite.record(bytesWritten);
+    }
+
+    public Histogram getSelectTime()
+    {
+        return _selectTime;
+    }
+
+    public Histogram getWorkQueueTime()
+    {
+        return _workQueueTime;
+    }
+
+    public Histogram getWorkTime()
+    {
+        return _workTime;
+    }
+
+    public Histogram getBytesPerRead()
+    {
+        return _bytesPerRead;
+    }
+
+    public Histogram getBytesPerWrite()
+    {
+        return _bytesPerWrite;
+    }
+
+    public long getSelectorWakeupCount()
+    {
+        long count = _selectorWakeups.getTotal();
+        for (NetworkIoStatistics part : _parts)
+        {
+            count += part.getSelectorWakeupCount();
+        }
+        return count;
+    }
+
+    public double getSelectorWakeupRate()
+    {
+        double rate = _selectorWakeups.getRate();
+        for (NetworkIoStatistics part : _parts)
+        {
+            rate += part.getSelectorWakeupRate();
+        }
+        return rate;
+    }
+
+    public Map<String, Object> toMap()
+    {
+        final Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", isEnabled());
+        map.put("selectorWakeupCount", getSelectorWakeupCount());
+        map.put("selectorWakeupRate", getSelectorWakeupRate());
+        map.put("selectTime", _selectTime.toMap());
+        map.put("workQueueTime", _workQueueTime.toMap());
+        map.put("workTime", _workTime.toMap());
+        map.put("bytesPerRead", _bytesPerRead.toMap());
+        map.put("bytesPerWrite", _bytesPerWrite.toMap());
+        return map;
+    }
+}
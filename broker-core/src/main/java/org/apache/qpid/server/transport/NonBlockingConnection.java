@@ -33,8 +33,11 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +47,6 @@ import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.util.ConnectionScopedRuntimeException;
 import org.apache.qpid.transport.ByteBufferSender;
-import org.apache.qpid.transport.network.Ticker;
 import org.apache.qpid.transport.network.TransportEncryption;
 import org.apache.qpid.util.SystemUtils;
 
@@ -63,6 +65,21 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
     private final Runnable _onTransportEncryptionAction;
     private final AtomicLong _usedOutboundMessageSpace = new AtomicLong();
     private final long _outboundMessageBufferLimit;
+    private final int _writeCoalescingThreshold;
+    private final long _writeCoalescingMaxDelay;
+    private final int _maxGatheringWriteBuffers;
+    private final AtomicLong _transportWriteCount = new AtomicLong();
+    private final AtomicLong _transportBytesWritten = new AtomicLong();
+    private final AtomicLong _coalescedWriteCount = new AtomicLong();
+    private long _writeDeferredSince = -1L;
+    private final long _processingBudgetBytes;
+    private final int _processingBudgetTasks;
+    private final long _processingBudgetTime;
+    private final AtomicLong _processingBudgetExhaustedCount = new AtomicLong();
+    private long _turnStartTime;
+    private long _turnBytesRead;
+    private int _turnTasks;
+    private boolean _processingBudgetExhausted;
 
     private volatile boolean _fullyWritten = true;
 
@@ -79,6 +96,9 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
     private final AtomicLong _maxReadIdleMillis = new AtomicLong();
     private final List<SchedulingDelayNotificationListener> _schedulingDelayNotificationListeners = new CopyOnWriteArrayList<>();
     private final AtomicBoolean _hasShutdown = new AtomicBoolean();
+    private final AtomicReference<Runnable> _handshakeCompletionTask = new AtomicReference<>();
+    private final AtomicBoolean _delegateWorkPending = new AtomicBoolean();
+    private volatile Executor _handshakeExecutor;
 
     public NonBlockingConnection(SocketChannel socketChannel,
                                  ProtocolEngine protocolEngine,
@@ -99,6 +119,16 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
 
         _outboundMessageBufferLimit = (long) _port.getContextValue(Long.class,
                                                                    AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
+        _writeCoalescingThreshold = _port.getContextValue(Integer.class,
+                                                          AmqpPort.PORT_AMQP_WRITE_COALESCING_THRESHOLD);
+        _writeCoalescingMaxDelay = TimeUnit.MICROSECONDS.toNanos(
+                _port.getContextValue(Long.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_MAX_DELAY));
+        _maxGatheringWriteBuffers = Math.max(1, _port.getContextValue(Integer.class,
+                                                                      AmqpPort.PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS));
+        _processingBudgetBytes = _port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_BYTES);
+        _processingBudgetTasks = _port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TASKS);
+        _processingBudgetTime = TimeUnit.MICROSECONDS.toNanos(
+                _port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TIME));
 
         protocolEngine.setWorkListener(new Action<ProtocolEngine>()
         {
@@ -130,7 +160,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         return _partialRead;
     }
 
-    Ticker getTicker()
+    AggregateTicker getTicker()
     {
         return _protocolEngine.getAggregateTicker();
     }
@@ -237,11 +267,50 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
 
     public boolean isStateChanged()
     {
-        return _protocolEngine.hasWork();
+        return _protocolEngine.hasWork() || _delegateWorkPending.get();
+    }
+
+    /**
+     * Schedules the connection on behalf of its delegate, for instance once TLS handshake work run away from the IO
+     * threads has completed.
+     */
+    void notifyDelegateWork()
+    {
+        _delegateWorkPending.set(true);
+        getScheduler().schedule(this);
+    }
+
+    Executor getHandshakeExecutor()
+    {
+        return _handshakeExecutor;
+    }
+
+    void setHandshakeExecutor(final Executor handshakeExecutor)
+    {
+        _handshakeExecutor = handshakeExecutor;
+    }
+
+    void setHandshakeCompletionTask(final Runnable handshakeCompletionTask)
+    {
+        _handshakeCompletionTask.set(handshakeCompletionTask);
+    }
+
+    @Override
+    public void handshakeCompleted()
+    {
+        final Runnable handshakeCompletionTask = _handshakeCompletionTask.getAndSet(null);
+        if (handshakeCompletionTask != null)
+        {
+            handshakeCompletionTask.run();
+        }
     }
 
     public void doPreWork()
     {
+        _turnStartTime = System.nanoTime();
+        _turnBytesRead = 0L;
+        _turnTasks = 0;
+        _processingBudgetExhausted = false;
         if (!_closed.get())
         {
             long currentTime = System.currentTimeMillis();
@@ -259,6 +328,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
     public boolean doWork()
     {
         _protocolEngine.clearWork();
+        _delegateWorkPending.set(false);
         if (!_closed.get())
         {
             try
@@ -279,10 +349,11 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
                 {
                     _pendingIterator = null;
                     _protocolEngine.setTransportBlockedForWriting(false);
-                    boolean dataRead = doRead();
-                    _protocolEngine.setTransportBlockedForWriting(!doWrite());
+                    boolean dataRead = !isProcessingBudgetExhausted() && doRead();
+                    _protocolEngine.setTransportBlockedForWriting(!isWriteCoalesced() && !doWrite());
 
-                    if (!_fullyWritten || dataRead || (_delegate.needsWork() && _delegate.getNetInputBuffer().position() != 0))
+                    if (!_fullyWritten || dataRead || (_delegate.needsWork() && _delegate.getNetInputBuffer().position() != 0)
+                        || _delegate.needsProcessing())
                     {
                         _protocolEngine.notifyWork();
                     }
@@ -366,10 +437,15 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
                     break;
                 }
             }
+            else if (isProcessingBudgetExhausted())
+            {
+                break;
+            }
             else
             {
                 final Runnable task = _pendingIterator.next();
                 task.run();
+                _turnTasks++;
             }
         }
 
@@ -382,6 +458,52 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         return complete;
     }
 
+    /**
+     * Output is held back while the connection has further work pending, so that it can be written together with the
+     * output of that work, until the buffered output reaches the coalescing threshold or has been held back for the
+     * maximum delay.  A connection without pending work always writes immediately.
+     */
+    private boolean isWriteCoalesced()
+    {
+        if (_writeCoalescingThreshold > 0 && _fullyWritten && _protocolEngine.hasWork() && !_closed.get())
+        {
+            final long bufferedSize = getBufferedSize();
+            if (bufferedSize > 0L && bufferedSize < _writeCoalescingThreshold)
+            {
+                final long currentTime = System.nanoTime();
+                if (_writeDeferredSince == -1L)
+                {
+                    _writeDeferredSince = currentTime;
+                }
+                if (currentTime - _writeDeferredSince < _writeCoalescingMaxDelay)
+                {
+                    _coalescedWriteCount.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+        _writeDeferredSince = -1L;
+        return false;
+    }
+
+    /**
+     * Returns true once the connection has used up the bytes, tasks or time it is allowed between being scheduled and
+     * yielding its IO thread.  A connection which has exhausted its budget stops reading and processing pending work
+     * and is put back on the work queue of its scheduler, behind the connections already waiting.
+     */
+    boolean isProcessingBudgetExhausted()
+    {
+        if (!_processingBudgetExhausted
+            && ((_processingBudgetBytes > 0L && _turnBytesRead >= _processingBudgetBytes)
+                || (_processingBudgetTasks > 0 && _turnTasks >= _processingBudgetTasks)
+                || (_processingBudgetTime > 0L && System.nanoTime() - _turnStartTime >= _processingBudgetTime)))
+        {
+            _processingBudgetExhausted = true;
+            _processingBudgetExhaustedCount.incrementAndGet();
+        }
+        return _processingBudgetExhausted;
+    }
+
     private long getBufferedSize()
     {
         long totalSize = 0l;
@@ -433,6 +555,8 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
                 _delegate.shutdownInput();
                 _delegate.shutdownOutput();
             }
+
+            handshakeCompleted();
         }
     }
 
@@ -499,7 +623,7 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         {
             int readData = readFromNetwork();
 
-            if (readData > 0)
+            if (readData > 0 || _delegate.needsProcessing())
             {
                 return _delegate.processData();
             }
@@ -516,7 +640,41 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
 
     long writeToTransport(Collection<QpidByteBuffer> buffers) throws IOException
     {
-        long written  = QpidByteBuffer.write(_socketChannel, buffers);
+        long written = 0L;
+        long offered;
+        do
+        {
+            offered = 0L;
+            int count = 0;
+            for (QpidByteBuffer buf : buffers)
+            {
+                if (count == _maxGatheringWriteBuffers)
+                {
+                    break;
+                }
+                if (buf.hasRemaining())
+                {
+                    offered += buf.remaining();
+                    count++;
+                }
+            }
+            if (offered == 0L)
+            {
+                break;
+            }
+
+            final long bytesWritten = QpidByteBuffer.write(_socketChannel, buffers, _maxGatheringWriteBuffers);
+            _transportWriteCount.incrementAndGet();
+            _transportBytesWritten.addAndGet(bytesWritten);
+            if (NetworkIoStatistics.isEnabled())
+            {
+                getScheduler().getIoStatistics().recordWrite(bytesWritten);
+            }
+            written += bytesWritten;
+            offered -= bytesWritten;
+        }
+        while (offered == 0L);
+
         if (LOGGER.isDebugEnabled())
         {
             LOGGER.debug("Written " + written + " bytes");
@@ -524,6 +682,30 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         return written;
     }
 
+    @Override
+    public long getTransportWriteCount()
+    {
+        return _transportWriteCount.get();
+    }
+
+    @Override
+    public long getTransportBytesWritten()
+    {
+        return _transportBytesWritten.get();
+    }
+
+    @Override
+    public long getCoalescedWriteCount()
+    {
+        return _coalescedWriteCount.get();
+    }
+
+    @Override
+    public long getProcessingBudgetExhaustedCount()
+    {
+        return _processingBudgetExhaustedCount.get();
+    }
+
     private boolean doWrite() throws IOException
     {
         _fullyWritten = _delegate.doWrite(_buffers);
@@ -556,6 +738,14 @@ public class NonBlockingConnection implements ServerNetworkConnection, ByteBuffe
         }
 
         _partialRead = read != 0;
+        if (read > 0)
+        {
+            _turnBytesRead += read;
+            if (NetworkIoStatistics.isEnabled())
+            {
+                getScheduler().getIoStatistics().recordRead(read);
+            }
+        }
 
         if (LOGGER.isDebugEnabled())
         {
@@ -40,6 +40,11 @@ interface NonBlockingConnectionDelegate
 
     boolean needsWork();
 
+    /**
+     * @return true if received data is waiting to be processed although no further data has been read
+     */
+    boolean needsProcessing();
+
     QpidByteBuffer getNetInputBuffer();
 
     void shutdownInput();
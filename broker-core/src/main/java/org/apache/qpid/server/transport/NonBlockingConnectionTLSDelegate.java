@@ -22,6 +22,7 @@ package org.apache.qpid.server.transport;
 import org.apache.qpid.bytebuffer.QpidByteBuffer;
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.util.ServerScopedRuntimeException;
+import org.apache.qpid.transport.network.Ticker;
 import org.apache.qpid.transport.network.security.ssl.SSLUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,8 @@ import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDelegate
 {
@@ -48,6 +51,8 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
     private final SSLEngine _sslEngine;
     private final NonBlockingConnection _parent;
     private final int _networkBufferSize;
+    private final long _idleBufferReleaseDelay;
+    private final IdleBufferReleaseTicker _idleBufferReleaseTicker = new IdleBufferReleaseTicker();
     private SSLEngineResult _status;
     private final List<QpidByteBuffer> _encryptedOutput = new ArrayList<>();
     private Principal _principal;
@@ -56,6 +61,11 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
     private QpidByteBuffer _netInputBuffer;
     private QpidByteBuffer _netOutputBuffer;
     private QpidByteBuffer _applicationBuffer;
+    private volatile boolean _buffersHeld;
+    private volatile long _lastActivityTime = System.currentTimeMillis();
+    private volatile boolean _bufferReleaseRequested;
+    private volatile boolean _delegatedTasksRunning;
+    private volatile boolean _delegatedTasksCompleted;
 
 
     public NonBlockingConnectionTLSDelegate(NonBlockingConnection parent, AmqpPort port)
@@ -71,9 +81,9 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
                     + ") is greater then broker network buffer size (" + _networkBufferSize + ")");
         }
 
-        _netInputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
-        _applicationBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
-        _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+        // network buffers are borrowed from the pool when needed and returned once the connection has been idle
+        _idleBufferReleaseDelay = port.getContextValue(Long.class, AmqpPort.PORT_AMQP_TLS_IDLE_BUFFER_RELEASE_DELAY);
+        _parent.getTicker().addTicker(_idleBufferReleaseTicker);
     }
 
     @Override
@@ -85,6 +95,17 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
     @Override
     public boolean processData() throws IOException
     {
+        markActive();
+        if (_delegatedTasksRunning)
+        {
+            // the received data is unwrapped once the SSLEngine has completed its delegated tasks
+            return false;
+        }
+        _delegatedTasksCompleted = false;
+        if (_applicationBuffer == null)
+        {
+            _applicationBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+        }
         _netInputBuffer.flip();
         boolean readData = false;
         boolean tasksRun;
@@ -94,16 +115,7 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
             int oldAppBufPos = _applicationBuffer.position();
             oldNetBufferPos = _netInputBuffer.position();
 
-            _status = _netInputBuffer.decryptSSL(_sslEngine, _applicationBuffer);
-            if (_status.getStatus() == SSLEngineResult.Status.CLOSED)
-            {
-                int remaining = _netInputBuffer.remaining();
-                _netInputBuffer.position(_netInputBuffer.limit());
-                // We'd usually expect no more bytes to be sent following a close_notify
-                LOGGER.debug("SSLEngine closed, discarded {} byte(s)", remaining);
-            }
-
-            tasksRun = runSSLEngineTasks(_status);
+            tasksRun = unwrapRecords();
             _applicationBuffer.flip();
             if(_applicationBuffer.position() > oldAppBufPos)
             {
@@ -115,7 +127,8 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
             restoreApplicationBufferForWrite();
 
         }
-        while((_netInputBuffer.hasRemaining() && (_netInputBuffer.position()>oldNetBufferPos)) || tasksRun);
+        while(((_netInputBuffer.hasRemaining() && (_netInputBuffer.position()>oldNetBufferPos)) || tasksRun)
+              && !_delegatedTasksRunning);
 
         if(_netInputBuffer.hasRemaining())
         {
@@ -128,6 +141,41 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         return readData;
     }
 
+    /**
+     * Unwraps as many of the received TLS records as the application buffer has room for, so that the plaintext of
+     * several records is handed to the protocol engine in one go.  The plaintext is decrypted straight into the
+     * pooled application buffer, views of which become the content of the received messages.
+     *
+     * @return true if delegated tasks of the SSLEngine were run
+     */
+    private boolean unwrapRecords() throws SSLException
+    {
+        final int applicationBufferSize = _sslEngine.getSession().getApplicationBufferSize();
+        boolean tasksRun = false;
+        boolean progress;
+        do
+        {
+            final int oldNetBufferPos = _netInputBuffer.position();
+            _status = _netInputBuffer.decryptSSL(_sslEngine, _applicationBuffer);
+            if (_status.getStatus() == SSLEngineResult.Status.CLOSED)
+            {
+                int remaining = _netInputBuffer.remaining();
+                _netInputBuffer.position(_netInputBuffer.limit());
+                // We'd usually expect no more bytes to be sent following a close_notify
+                LOGGER.debug("SSLEngine closed, discarded {} byte(s)", remaining);
+            }
+
+            tasksRun |= runSSLEngineTasks(_status);
+            progress = _netInputBuffer.position() > oldNetBufferPos;
+        }
+        while (progress
+               && !_delegatedTasksRunning
+               && _status.getStatus() == SSLEngineResult.Status.OK
+               && _netInputBuffer.hasRemaining()
+               && _applicationBuffer.remaining() >= applicationBufferSize);
+        return tasksRun;
+    }
+
     @Override
     public boolean doWrite(Collection<QpidByteBuffer> bufferArray) throws IOException
     {
@@ -146,6 +194,7 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
 
         if(!_encryptedOutput.isEmpty())
         {
+            markActive();
             _parent.writeToTransport(_encryptedOutput);
 
             ListIterator<QpidByteBuffer> iter = _encryptedOutput.listIterator();
@@ -163,6 +212,12 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
                 }
             }
         }
+        if (_bufferReleaseRequested)
+        {
+            // released once the pass has read, so that a read finding no data does not keep its buffer
+            _bufferReleaseRequested = false;
+            releaseIdleBuffers();
+        }
         return bufsSent && _encryptedOutput.isEmpty();
     }
 
@@ -202,6 +257,21 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
 
     private void wrapBufferArray(Collection<QpidByteBuffer> bufferArray) throws SSLException
     {
+        if (_delegatedTasksRunning)
+        {
+            return;
+        }
+        if (_netOutputBuffer == null)
+        {
+            if (_sslEngine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_UNWRAP
+                || (!hasRemaining(bufferArray)
+                    && _sslEngine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING))
+            {
+                return;
+            }
+            markActive();
+            _netOutputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+        }
         boolean encrypted;
         do
         {
@@ -253,10 +323,112 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
 
     }
 
+    private boolean hasRemaining(final Collection<QpidByteBuffer> bufferArray)
+    {
+        for (QpidByteBuffer buf : bufferArray)
+        {
+            if (buf.hasRemaining())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markActive()
+    {
+        _lastActivityTime = System.currentTimeMillis();
+        _bufferReleaseRequested = false;
+        _buffersHeld = true;
+    }
+
+    /**
+     * Returns the network buffers which hold no pending data to the pool.
+     */
+    private void releaseIdleBuffers()
+    {
+        boolean buffersHeld = false;
+        if (_netInputBuffer != null)
+        {
+            if (_netInputBuffer.position() == 0)
+            {
+                _netInputBuffer.dispose();
+                _netInputBuffer = null;
+            }
+            else
+            {
+                buffersHeld = true;
+            }
+        }
+        if (_applicationBuffer != null)
+        {
+            if (_applicationBuffer.position() == 0)
+            {
+                _applicationBuffer.dispose();
+                _applicationBuffer = null;
+            }
+            else
+            {
+                buffersHeld = true;
+            }
+        }
+        if (_netOutputBuffer != null)
+        {
+            if (_netOutputBuffer.position() == 0)
+            {
+                _netOutputBuffer.dispose();
+                _netOutputBuffer = null;
+            }
+            else
+            {
+                buffersHeld = true;
+            }
+        }
+        _buffersHeld = buffersHeld;
+    }
+
+    /**
+     * Runs the delegated tasks of the SSLEngine, such as the key exchange of a handshake.  Where the port has a
+     * handshake executor the tasks are run by it rather than by the IO thread, and the connection is scheduled again
+     * once they have completed.
+     *
+     * @return true if delegated tasks were run by the calling thread
+     */
     private boolean runSSLEngineTasks(final SSLEngineResult status)
     {
         if(status.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK)
         {
+            final Executor handshakeExecutor = _parent.getHandshakeExecutor();
+            if (handshakeExecutor != null)
+            {
+                final List<Runnable> tasks = new ArrayList<>();
+                Runnable task;
+                while((task = _sslEngine.getDelegatedTask()) != null)
+                {
+                    tasks.add(task);
+                }
+                if (tasks.isEmpty())
+                {
+                    return false;
+                }
+
+                _delegatedTasksRunning = true;
+                try
+                {
+                    handshakeExecutor.execute(new DelegatedTasksRunner(tasks));
+                    return false;
+                }
+                catch (RejectedExecutionException e)
+                {
+                    _delegatedTasksRunning = false;
+                    for (Runnable rejectedTask : tasks)
+                    {
+                        rejectedTask.run();
+                    }
+                    return true;
+                }
+            }
+
             Runnable task;
             while((task = _sslEngine.getDelegatedTask()) != null)
             {
@@ -286,7 +458,14 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
     @Override
     public boolean needsWork()
     {
-        return _sslEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_UNWRAP;
+        return _netInputBuffer != null
+               && _sslEngine.getHandshakeStatus() != SSLEngineResult.HandshakeStatus.NEED_UNWRAP;
+    }
+
+    @Override
+    public boolean needsProcessing()
+    {
+        return _delegatedTasksCompleted && _netInputBuffer != null && _netInputBuffer.position() != 0;
     }
 
     private synchronized void checkPeerPrincipal()
@@ -338,12 +517,18 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
     @Override
     public QpidByteBuffer getNetInputBuffer()
     {
+        if (_netInputBuffer == null)
+        {
+            _netInputBuffer = QpidByteBuffer.allocateDirect(_networkBufferSize);
+            _buffersHeld = true;
+        }
         return _netInputBuffer;
     }
 
     @Override
     public void shutdownInput()
     {
+        _parent.getTicker().removeTicker(_idleBufferReleaseTicker);
         if (_netInputBuffer != null)
         {
             _netInputBuffer.dispose();
@@ -384,4 +569,58 @@ public class NonBlockingConnectionTLSDelegate implements NonBlockingConnectionDe
         SSLSession session = _sslEngine.getSession();
         return session.getProtocol() + " ; " + session.getCipherSuite() ;
     }
+
+    private class DelegatedTasksRunner implements Runnable
+    {
+        private final List<Runnable> _tasks;
+
+        private DelegatedTasksRunner(final List<Runnable> tasks)
+        {
+            _tasks = tasks;
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                for (Runnable task : _tasks)
+                {
+                    task.run();
+                }
+            }
+            finally
+            {
+                _delegatedTasksRunning = false;
+                _delegatedTasksCompleted = true;
+                _parent.notifyDelegateWork();
+            }
+        }
+    }
+
+    private class IdleBufferReleaseTicker implements Ticker
+    {
+        @Override
+        public int getTimeToNextTick(final long currentTime)
+        {
+            if (!_buffersHeld || _bufferReleaseRequested || _idleBufferReleaseDelay <= 0L)
+            {
+                return Integer.MAX_VALUE;
+            }
+            return (int) Math.max(Math.min(_lastActivityTime + _idleBufferReleaseDelay - currentTime,
+                                           (long) Integer.MAX_VALUE), (long) Integer.MIN_VALUE);
+        }
+
+        @Override
+        public int tick(final long currentTime)
+        {
+            int timeToNextTick = getTimeToNextTick(currentTime);
+            if (timeToNextTick <= 0)
+            {
+                _bufferReleaseRequested = true;
+                timeToNextTick = Integer.MAX_VALUE;
+            }
+            return timeToNextTick;
+        }
+    }
 }
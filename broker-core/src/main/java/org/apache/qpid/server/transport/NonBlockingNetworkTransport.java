@@ -27,8 +27,16 @@ import java.net.SocketAddress;
 import java.net.StandardSocketOptions;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.EnumSet;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.slf4j.Logger;
@@ -44,6 +52,7 @@ public class NonBlockingNetworkTransport
 {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NonBlockingNetworkTransport.class);
+    private static final long HANDSHAKE_LIMIT_RETRY_DELAY = 10L;
     private static final int TIMEOUT = Integer.getInteger(CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_PROP_NAME,
                                                           CommonProperties.IO_NETWORK_TRANSPORT_TIMEOUT_DEFAULT);
     private final Set<TransportEncryption> _encryptionSet;
@@ -53,6 +62,15 @@ public class NonBlockingNetworkTransport
     private final NetworkConnectionScheduler _scheduler;
     private final AmqpPort<?> _port;
     private final InetSocketAddress _address;
+    private final Queue<QueuedSocket> _admissionQueue = new ArrayDeque<>();
+    private final long _admissionTimeout;
+    private final int _admissionQueueCapacity;
+    private final TokenBucket _acceptRateLimiter;
+    private final int _maxConcurrentHandshakes;
+    private final AtomicInteger _handshakesInProgress = new AtomicInteger();
+    private final ThreadPoolExecutor _handshakeExecutor;
+    private volatile int _acceptQueueDepth;
+    private boolean _closed;
 
     public NonBlockingNetworkTransport(final MultiVersionProtocolEngineFactory factory,
                                        final EnumSet<TransportEncryption> encryptionSet,
@@ -98,6 +116,21 @@ public class NonBlockingNetworkTransport
             _scheduler = scheduler;
             _port = port;
 
+            _admissionQueueCapacity = Math.max(1, acceptBacklog);
+            _admissionTimeout = port.getProtocolHandshakeTimeout();
+            final int acceptRate = port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_RATE);
+            final int acceptBurst = port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_BURST);
+            _acceptRateLimiter = acceptRate > 0
+                    ? new TokenBucket(acceptRate, acceptBurst, System.currentTimeMillis())
+                    : null;
+            _maxConcurrentHandshakes = port.getContextValue(Integer.class,
+                                                            AmqpPort.PORT_AMQP_MAX_CONCURRENT_HANDSHAKES);
+            final int handshakeThreadPoolSize = port.getContextValue(Integer.class,
+                                                                     AmqpPort.PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE);
+            _handshakeExecutor = handshakeThreadPoolSize > 0
+                    ? createHandshakeExecutor(port.getName(), handshakeThreadPoolSize)
+                    : null;
+
         }
         catch (IOException e)
         {
@@ -105,6 +138,27 @@ public class NonBlockingNetworkTransport
         }
     }
 
+    private static ThreadPoolExecutor createHandshakeExecutor(final String portName, final int poolSize)
+    {
+        final ThreadFactory factory = new ThreadFactory()
+        {
+            private final AtomicInteger _count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(final Runnable r)
+            {
+                Thread t = Executors.defaultThreadFactory().newThread(r);
+                t.setName("Handshake-pool-Port-" + portName + "-" + _count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 1, TimeUnit.MINUTES,
+                                                                   new LinkedBlockingQueue<Runnable>(), factory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     public void start()
     {
         _scheduler.addAcceptingSocket(_serverSocket, this);
@@ -113,6 +167,20 @@ public class NonBlockingNetworkTransport
 
     public void close()
     {
+        synchronized (this)
+        {
+            _closed = true;
+            QueuedSocket queuedSocket;
+            while ((queuedSocket = _admissionQueue.poll()) != null)
+            {
+                closeSocket(queuedSocket.getSocketChannel());
+            }
+            _acceptQueueDepth = 0;
+        }
+        if (_handshakeExecutor != null)
+        {
+            _handshakeExecutor.shutdown();
+        }
         _scheduler.cancelAcceptingSocket(_serverSocket);
         try
         {
@@ -129,67 +197,144 @@ public class NonBlockingNetworkTransport
         return _serverSocket.socket().getLocalPort();
     }
 
-    void acceptSocketChannel(final ServerSocketChannel serverSocketChannel)
+    int getAcceptQueueDepth()
     {
-        SocketChannel socketChannel = null;
-        boolean success = false;
-        try
+        return _acceptQueueDepth;
+    }
+
+    int getHandshakesInProgress()
+    {
+        return _handshakesInProgress.get();
+    }
+
+    /**
+     * Accepts the sockets waiting on the server socket into the admission queue, then admits as many queued sockets
+     * as the accept rate and the limit on concurrent handshakes allow.
+     *
+     * @return zero if accepting should resume once the server socket has further sockets, otherwise the time in
+     *         milliseconds after which accepting should be attempted again
+     */
+    synchronized long acceptSocketChannel(final ServerSocketChannel serverSocketChannel)
+    {
+        if (_closed)
         {
+            return 0L;
+        }
 
-            while ((socketChannel = serverSocketChannel.accept()) != null)
+        try
+        {
+            final long acceptTime = System.currentTimeMillis();
+            SocketChannel socketChannel;
+            while (_admissionQueue.size() < _admissionQueueCapacity
+                   && (socketChannel = serverSocketChannel.accept()) != null)
             {
-                SocketAddress remoteSocketAddress = socketChannel.socket().getRemoteSocketAddress();
-                final MultiVersionProtocolEngine engine =
-                        _factory.newProtocolEngine(remoteSocketAddress);
+                _admissionQueue.add(new QueuedSocket(socketChannel, acceptTime));
+            }
+        }
+        catch (IOException e)
+        {
+            LOGGER.error("Failed to accept incoming socket", e);
+        }
 
-                if (engine != null)
-                {
-                    socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, _port.isTcpNoDelay());
+        final long acceptDelay = admitQueuedSockets();
+        _acceptQueueDepth = _admissionQueue.size();
+        return acceptDelay;
+    }
 
-                    final int bufferSize = _port.getNetworkBufferSize();
+    private long admitQueuedSockets()
+    {
+        final long currentTime = System.currentTimeMillis();
+        closeTimedOutSockets(currentTime);
+        while (!_admissionQueue.isEmpty())
+        {
+            if (_maxConcurrentHandshakes > 0 && _handshakesInProgress.get() >= _maxConcurrentHandshakes)
+            {
+                return HANDSHAKE_LIMIT_RETRY_DELAY;
+            }
+            if (_acceptRateLimiter != null && !_acceptRateLimiter.tryAcquire(currentTime))
+            {
+                return Math.max(1L, _acceptRateLimiter.getTimeToNextToken(currentTime));
+            }
+            admit(_admissionQueue.poll().getSocketChannel());
+        }
+        return 0L;
+    }
 
-                    socketChannel.setOption(StandardSocketOptions.SO_SNDBUF, bufferSize);
-                    socketChannel.setOption(StandardSocketOptions.SO_RCVBUF, bufferSize);
+    /**
+     * Closes the sockets which have waited for admission for longer than the protocol handshake timeout, as their
+     * peers would give up on the handshake anyway.
+     */
+    private void closeTimedOutSockets(final long currentTime)
+    {
+        QueuedSocket queuedSocket;
+        while ((queuedSocket = _admissionQueue.peek()) != null
+               && currentTime - queuedSocket.getAcceptTime() > _admissionTimeout)
+        {
+            _admissionQueue.poll();
+            LOGGER.debug("Closing socket {} which timed out waiting for admission", queuedSocket.getSocketChannel());
+            closeSocket(queuedSocket.getSocketChannel());
+        }
+    }
 
-                    socketChannel.configureBlocking(false);
+    private void admit(final SocketChannel socketChannel)
+    {
+        boolean success = false;
+        NonBlockingConnection connection = null;
+        try
+        {
+            SocketAddress remoteSocketAddress = socketChannel.socket().getRemoteSocketAddress();
+            final MultiVersionProtocolEngine engine =
+                    _factory.newProtocolEngine(remoteSocketAddress);
 
+            if (engine != null)
+            {
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, _port.isTcpNoDelay());
 
+                final int bufferSize = _port.getNetworkBufferSize();
 
-                    NonBlockingConnection connection =
-                            new NonBlockingConnection(socketChannel,
-                                                      engine,
-                                                      _encryptionSet,
-                                                      new Runnable()
-                                                      {
+                socketChannel.setOption(StandardSocketOptions.SO_SNDBUF, bufferSize);
+                socketChannel.setOption(StandardSocketOptions.SO_RCVBUF, bufferSize);
 
-                                                          @Override
-                                                          public void run()
-                                                          {
-                                                              engine.encryptedTransport();
-                                                          }
-                                                      },
-                                                      _scheduler,
-                                                      _port);
+                socketChannel.configureBlocking(false);
 
-                    engine.setNetworkConnection(connection);
+                connection =
+                        new NonBlockingConnection(socketChannel,
+                                                  engine,
+                                                  _encryptionSet,
+                                                  new Runnable()
+                                                  {
 
-                    connection.start();
+                                                      @Override
+                                                      public void run()
+                                                      {
+                                                          engine.encryptedTransport();
+                                                      }
+                                                  },
+                                                  _scheduler,
+                                                  _port);
 
-                    _scheduler.addConnection(connection);
+                engine.setNetworkConnection(connection);
 
-                    success = true;
-                }
-                else
+                connection.setHandshakeExecutor(_handshakeExecutor);
+                _handshakesInProgress.incrementAndGet();
+                connection.setHandshakeCompletionTask(new Runnable()
                 {
-                    LOGGER.error("No Engine available.");
-                    try
+                    @Override
+                    public void run()
                     {
-                        socketChannel.close();
+                        _handshakesInProgress.decrementAndGet();
                     }
-                    catch (IOException e)
-                    {
-                        LOGGER.debug("Failed to close socket " + socketChannel, e);
-                    }                }
+                });
+
+                connection.start();
+
+                _scheduler.addConnection(connection);
+
+                success = true;
+            }
+            else
+            {
+                LOGGER.error("No Engine available.");
             }
         }
         catch (IOException e)
@@ -198,17 +343,49 @@ public class NonBlockingNetworkTransport
         }
         finally
         {
-            if (!success && socketChannel != null)
+            if (!success)
             {
-                try
+                if (connection != null)
                 {
-                    socketChannel.close();
-                }
-                catch (IOException e)
-                {
-                    LOGGER.debug("Failed to close socket " + socketChannel, e);
+                    // releases the handshake slot taken by the connection
+                    connection.handshakeCompleted();
                 }
+                closeSocket(socketChannel);
             }
         }
     }
+
+    private static final class QueuedSocket
+    {
+        private final SocketChannel _socketChannel;
+        private final long _acceptTime;
+
+        private QueuedSocket(final SocketChannel socketChannel, final long acceptTime)
+        {
+            _socketChannel = socketChannel;
+            _acceptTime = acceptTime;
+        }
+
+        SocketChannel getSocketChannel()
+        {
+            return _socketChannel;
+        }
+
+        long getAcceptTime()
+        {
+            return _acceptTime;
+        }
+    }
+
+    private void closeSocket(final SocketChannel socketChannel)
+    {
+        try
+        {
+            socketChannel.close();
+        }
+        catch (IOException e)
+        {
+            LOGGER.debug("Failed to close socket " + socketChannel, e);
+        }
+    }
 }
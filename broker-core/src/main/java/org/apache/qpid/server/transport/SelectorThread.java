@@ -34,9 +34,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -49,16 +47,20 @@ class SelectorThread extends Thread
     private static final Logger LOGGER = LoggerFactory.getLogger(SelectorThread.class);
 
     static final String IO_THREAD_NAME_PREFIX  = "IO-";
+    private static final long TIMING_WHEEL_TICK_DURATION = 10L;
+    private static final int TIMING_WHEEL_SIZE = 1024;
     private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
 
     private final AtomicBoolean _closed = new AtomicBoolean();
     private final NetworkConnectionScheduler _scheduler;
 
-    private final BlockingQueue<Runnable> _workQueue = new LinkedBlockingQueue<>();
+    private final WorkQueue _workQueue;
     private final  AtomicInteger _nextSelectorTaskIndex = new AtomicInteger();
+    private final AtomicInteger _nextWorkerIndex = new AtomicInteger();
 
     public final class SelectionTask implements Runnable
     {
+        private final int _index;
         private final Selector _selector;
         private final AtomicBoolean _selecting = new AtomicBoolean();
         private final AtomicBoolean _inSelect = new AtomicBoolean();
@@ -74,10 +76,24 @@ class SelectorThread extends Thread
         /** Set of connections that are currently being selected upon */
         private final Set<NonBlockingConnection> _unscheduledConnections = new HashSet<>();
 
+        /** Connections returned to the selector since the deadlines of their tickers were last considered */
+        private final Queue<NonBlockingConnection> _deadlineUpdates = new ConcurrentLinkedQueue<>();
 
+        /** Time at which the current select times out, or {@link Long#MIN_VALUE} if the selector is not selecting */
+        private volatile long _selectDeadline = Long.MIN_VALUE;
 
-        private SelectionTask() throws IOException
+        /** Deadlines of the tickers of the connections that are currently being selected upon */
+        private final TimingWheel<NonBlockingConnection> _timingWheel =
+                new TimingWheel<>(TIMING_WHEEL_TICK_DURATION, TIMING_WHEEL_SIZE, System.currentTimeMillis());
+
+        /** Accepting sockets whose transport has asked for accepting to be resumed after a delay */
+        private final Queue<DeferredAccept> _deferredAccepts = new ConcurrentLinkedQueue<>();
+
+
+
+        private SelectionTask(final int index) throws IOException
         {
+            _index = index;
             _selector = Selector.open();
         }
 
@@ -117,40 +133,67 @@ class SelectorThread extends Thread
             _nextTimeout = Integer.MAX_VALUE;
             if (getUnscheduledConnections().isEmpty())
             {
+                _deadlineUpdates.clear();
                 return Collections.emptyList();
             }
 
             List<NonBlockingConnection> toBeScheduled = new ArrayList<>();
 
             long currentTime = System.currentTimeMillis();
-            Iterator<NonBlockingConnection> iterator = getUnscheduledConnections().iterator();
-            while (iterator.hasNext())
+            NonBlockingConnection returnedConnection;
+            while ((returnedConnection = _deadlineUpdates.poll()) != null)
             {
-                NonBlockingConnection connection = iterator.next();
+                updateDeadline(returnedConnection, currentTime, toBeScheduled);
+            }
+
+            for (NonBlockingConnection connection : _timingWheel.expire(currentTime))
+            {
+                updateDeadline(connection, currentTime, toBeScheduled);
+            }
 
-                int period = connection.getTicker().getTimeToNextTick(currentTime);
+            _nextTimeout = Math.max(1L, Math.min(_timingWheel.getTimeToNextExpiry(currentTime), _nextTimeout));
+
+            return toBeScheduled;
+        }
+
+        /**
+         * Schedules the connection if one of its tickers is due, otherwise sets its deadline in the timing wheel.
+         * The deadline is only reconsidered when it expires or when the connection is next returned to the selector.
+         */
+        private void updateDeadline(final NonBlockingConnection connection,
+                                    final long currentTime,
+                                    final List<NonBlockingConnection> toBeScheduled)
+        {
+            if (!getUnscheduledConnections().contains(connection))
+            {
+                return;
+            }
 
-                if (period <= 0 || connection.isStateChanged())
+            int period = connection.getTicker().getTimeToNextTick(currentTime);
+
+            if (period <= 0 || connection.isStateChanged())
+            {
+                toBeScheduled.add(connection);
+                try
                 {
-                    toBeScheduled.add(connection);
-                    try
-                    {
-                        connection.getSocketChannel().register(_selector, 0, connection);
-                    }
-                    catch (ClosedChannelException | CancelledKeyException e)
-                    {
-                        LOGGER.debug("Failed to register with selector for connection " + connection +
-                                     ". Connection is probably being closed by peer.", e);
-                    }
-                    iterator.remove();
+                    connection.getSocketChannel().register(_selector, 0, connection);
                 }
-                else
+                catch (ClosedChannelException | CancelledKeyException e)
                 {
-                    _nextTimeout = Math.min(period, _nextTimeout);
+                    LOGGER.debug("Failed to register with selector for connection " + connection +
+                                 ". Connection is probably being closed by peer.", e);
                 }
+                getUnscheduledConnections().remove(connection);
+                _timingWheel.cancel(connection);
+            }
+            else if (period == Integer.MAX_VALUE)
+            {
+                _timingWheel.cancel(connection);
+            }
+            else
+            {
+                _timingWheel.schedule(connection, currentTime + period);
             }
-
-            return toBeScheduled;
         }
 
         private List<NonBlockingConnection> processSelectionKeys()
@@ -180,35 +223,7 @@ class SelectorThread extends Thread
                                      localSocketAddress, e);
                     }
 
-                    _workQueue.add(new Runnable()
-                    {
-                        @Override
-                        public void run()
-                        {
-                            try
-                            {
-                                _scheduler.incrementRunningCount();
-                                transport.acceptSocketChannel(channel);
-                            }
-                            finally
-                            {
-                                try
-                                {
-                                    channel.register(_selector, SelectionKey.OP_ACCEPT, transport);
-                                    wakeup();
-                                }
-                                catch (ClosedChannelException e)
-                                {
-                                    LOGGER.error("Failed to register selector on accepting port {}",
-                                                 localSocketAddress, e);
-                                }
-                                finally
-                                {
-                                    _scheduler.decrementRunningCount();
-                                }
-                            }
-                        }
-                    });
+                    scheduleAccept(channel, transport);
                 }
                 else
                 {
@@ -226,6 +241,7 @@ class SelectorThread extends Thread
 
                         toBeScheduled.add(connection);
                         getUnscheduledConnections().remove(connection);
+                        _timingWheel.cancel(connection);
                     }
                 }
 
@@ -235,6 +251,90 @@ class SelectorThread extends Thread
             return toBeScheduled;
         }
 
+        private void scheduleAccept(final ServerSocketChannel channel, final NonBlockingNetworkTransport transport)
+        {
+            final SocketAddress localSocketAddress = channel.socket().getLocalSocketAddress();
+            _workQueue.add(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    long acceptDelay = 0L;
+                    try
+                    {
+                        _scheduler.incrementRunningCount();
+                        acceptDelay = transport.acceptSocketChannel(channel);
+                    }
+                    finally
+                    {
+                        try
+                        {
+                            if (acceptDelay > 0L)
+                            {
+                                _deferredAccepts.add(new DeferredAccept(channel, transport,
+                                                                        System.currentTimeMillis() + acceptDelay));
+                            }
+                            else
+                            {
+                                channel.register(_selector, SelectionKey.OP_ACCEPT, transport);
+                            }
+                            wakeup();
+                        }
+                        catch (ClosedChannelException e)
+                        {
+                            LOGGER.error("Failed to register selector on accepting port {}",
+                                         localSocketAddress, e);
+                        }
+                        finally
+                        {
+                            _scheduler.decrementRunningCount();
+                        }
+                    }
+                }
+            }, _index);
+        }
+
+        private void cancelDeferredAccept(final ServerSocketChannel channel)
+        {
+            final Iterator<DeferredAccept> iterator = _deferredAccepts.iterator();
+            while (iterator.hasNext())
+            {
+                if (iterator.next().getChannel() == channel)
+                {
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void processDeferredAccepts()
+        {
+            if (_deferredAccepts.isEmpty())
+            {
+                return;
+            }
+
+            final long currentTime = System.currentTimeMillis();
+            final Iterator<DeferredAccept> iterator = _deferredAccepts.iterator();
+            while (iterator.hasNext())
+            {
+                final DeferredAccept deferredAccept = iterator.next();
+                final long delay = deferredAccept.getResumeTime() - currentTime;
+                if (!deferredAccept.getChannel().isOpen())
+                {
+                    iterator.remove();
+                }
+                else if (delay <= 0L)
+                {
+                    iterator.remove();
+                    scheduleAccept(deferredAccept.getChannel(), deferredAccept.getTransport());
+                }
+                else
+                {
+                    _nextTimeout = Math.min(delay, _nextTimeout);
+                }
+            }
+        }
+
         private List<NonBlockingConnection> reregisterUnregisteredConnections()
         {
             if (getUnregisteredConnections().isEmpty())
@@ -247,6 +347,7 @@ class SelectorThread extends Thread
             while ((unregisteredConnection = getUnregisteredConnections().poll()) != null)
             {
                 getUnscheduledConnections().add(unregisteredConnection);
+                _deadlineUpdates.add(unregisteredConnection);
 
 
                 final int ops = (unregisteredConnection.wantsRead() ? SelectionKey.OP_READ : 0)
@@ -280,9 +381,14 @@ class SelectorThread extends Thread
                             {
                                 Thread.currentThread().setName("Selector-" + _scheduler.getName());
                                 _inSelect.set(true);
+                                _selectDeadline = System.currentTimeMillis() + _nextTimeout;
+                                final boolean instrumented = NetworkIoStatistics.isEnabled();
+                                final long selectStartTime = instrumented ? System.nanoTime() : 0L;
                                 try
                                 {
-                                    if (_wakeups.getAndSet(0) > 0)
+                                    // deadline updates requested before the select deadline was published are
+                                    // taken into account by selecting immediately
+                                    if (_wakeups.getAndSet(0) > 0 || !_deadlineUpdates.isEmpty())
                                     {
                                         _selector.selectNow();
                                     }
@@ -300,7 +406,12 @@ class SelectorThread extends Thread
                                 }
                                 finally
                                 {
+                                    _selectDeadline = Long.MIN_VALUE;
                                     _inSelect.set(false);
+                                    if (instrumented)
+                                    {
+                                        _scheduler.getIoStatistics().recordSelect(System.nanoTime() - selectStartTime);
+                                    }
                                 }
                                 for (NonBlockingConnection connection : processSelectionKeys())
                                 {
@@ -323,6 +434,7 @@ class SelectorThread extends Thread
                                         connections.add(new ConnectionProcessor(_scheduler, connection));
                                     }
                                 }
+                                processDeferredAccepts();
                                 runTasks();
                             }
                         }
@@ -330,8 +442,11 @@ class SelectorThread extends Thread
                         {
                             clearSelecting();
                         }
-                        _workQueue.addAll(connections);
-                        _workQueue.add(this);
+                        for (ConnectionProcessor connectionProcessor : connections)
+                        {
+                            _workQueue.add(connectionProcessor, getWorker(connectionProcessor.getConnection()));
+                        }
+                        _workQueue.add(this, _index);
                         for (ConnectionProcessor connectionProcessor : connections)
                         {
                             connectionProcessor.processConnection();
@@ -371,6 +486,20 @@ class SelectorThread extends Thread
             }
         }
 
+        /**
+         * Has the deadline of the tickers of a connection which is being selected upon considered again, waking the
+         * selector if the deadline may now be earlier than the current select times out.
+         */
+        void requestDeadlineUpdate(final NonBlockingConnection connection)
+        {
+            _deadlineUpdates.add(connection);
+            final long currentTime = System.currentTimeMillis();
+            if (currentTime + connection.getTicker().getTimeToNextTick(currentTime) < _selectDeadline)
+            {
+                wakeup();
+            }
+        }
+
         public void wakeup()
         {
             _wakeups.compareAndSet(0, 1);
@@ -381,19 +510,53 @@ class SelectorThread extends Thread
         }
     }
 
+    private static final class DeferredAccept
+    {
+        private final ServerSocketChannel _channel;
+        private final NonBlockingNetworkTransport _transport;
+        private final long _resumeTime;
+
+        private DeferredAccept(final ServerSocketChannel channel,
+                               final NonBlockingNetworkTransport transport,
+                               final long resumeTime)
+        {
+            _channel = channel;
+            _transport = transport;
+            _resumeTime = resumeTime;
+        }
+
+        private ServerSocketChannel getChannel()
+        {
+            return _channel;
+        }
+
+        private NonBlockingNetworkTransport getTransport()
+        {
+            return _transport;
+        }
+
+        private long getResumeTime()
+        {
+            return _resumeTime;
+        }
+    }
+
     private SelectionTask[] _selectionTasks;
 
-    SelectorThread(final NetworkConnectionScheduler scheduler, final int numberOfSelectors) throws IOException
+    SelectorThread(final NetworkConnectionScheduler scheduler,
+                   final int numberOfSelectors,
+                   final boolean workStealing) throws IOException
     {
         _scheduler = scheduler;
+        _workQueue = workStealing ? new WorkStealingQueue(scheduler.getPoolSize()) : new SharedWorkQueue();
         _selectionTasks = new SelectionTask[numberOfSelectors];
         for(int i = 0; i < numberOfSelectors; i++)
         {
-            _selectionTasks[i] = new SelectionTask();
+            _selectionTasks[i] = new SelectionTask(i);
         }
         for(SelectionTask task : _selectionTasks)
         {
-            _workQueue.add(task);
+            _workQueue.add(task, task._index);
         }
     }
 
@@ -443,6 +606,7 @@ class SelectorThread extends Thread
                 {
                     selectionKey.cancel();
                 }
+                _selectionTasks[0].cancelDeferredAccept(socketChannel);
             }
         });
         _selectionTasks[0].wakeup();
@@ -453,12 +617,13 @@ class SelectorThread extends Thread
     {
 
         final String name = Thread.currentThread().getName();
+        final int worker = _nextWorkerIndex.getAndIncrement();
         try
         {
             do
             {
                 Thread.currentThread().setName(name);
-                Runnable task = _workQueue.take();
+                Runnable task = _workQueue.take(worker);
                 task.run();
 
             } while (!_closed.get());
@@ -475,17 +640,23 @@ class SelectorThread extends Thread
 
         private final NetworkConnectionScheduler _scheduler;
         private final NonBlockingConnection _connection;
+        private final long _queuedTime;
         private AtomicBoolean _running = new AtomicBoolean();
 
         public ConnectionProcessor(final NetworkConnectionScheduler scheduler, final NonBlockingConnection connection)
         {
             _scheduler = scheduler;
             _connection = connection;
+            _queuedTime = NetworkIoStatistics.isEnabled() ? System.nanoTime() : -1L;
         }
 
         @Override
         public void run()
         {
+            if (_queuedTime != -1L)
+            {
+                _scheduler.getIoStatistics().recordWorkQueueTime(System.nanoTime() - _queuedTime);
+            }
             _scheduler.incrementRunningCount();
             try
             {
@@ -504,6 +675,27 @@ class SelectorThread extends Thread
                 _scheduler.processConnection(_connection);
             }
         }
+
+        public NonBlockingConnection getConnection()
+        {
+            return _connection;
+        }
+    }
+
+    /**
+     * Returns the IO thread preferred for running the work of the given connection.  The IO threads are divided
+     * between the selectors, IO thread {@code n} belonging to selector {@code n % numberOfSelectors}; each connection
+     * is consistently given to one of the IO threads belonging to its selector.
+     */
+    private int getWorker(final NonBlockingConnection connection)
+    {
+        final SelectionTask selectionTask = connection.getSelectionTask();
+        final int selector = selectionTask == null ? 0 : selectionTask._index;
+        final int numberOfSelectors = _selectionTasks.length;
+        final int workersForSelector =
+                Math.max(1, (_scheduler.getPoolSize() - selector + numberOfSelectors - 1) / numberOfSelectors);
+        final int hash = System.identityHashCode(connection);
+        return selector + numberOfSelectors * (((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % workersForSelector);
     }
 
     private void unregisterConnection(final NonBlockingConnection connection) throws ClosedChannelException
@@ -569,6 +761,11 @@ class SelectorThread extends Thread
             selectionTask.getUnregisteredConnections().add(connection);
             selectionTask.wakeup();
         }
+        else
+        {
+            // still selected upon with the same interest, but its tickers may now be due at a different time
+            connection.getSelectionTask().requestDeadlineUpdate(connection);
+        }
 
     }
 
@@ -621,7 +818,7 @@ class SelectorThread extends Thread
         int count = _scheduler.getPoolSize();
         while(count-- > 0)
         {
-            _workQueue.offer(goodNight);
+            _workQueue.add(goodNight, count);
         }
 
         for(SelectionTask task : _selectionTasks)
@@ -639,7 +836,7 @@ class SelectorThread extends Thread
          }
          if(connection.setScheduled())
          {
-             _workQueue.add(new ConnectionProcessor(_scheduler, connection));
+             _workQueue.add(new ConnectionProcessor(_scheduler, connection), getWorker(connection));
          }
          SelectionTask selectionTask = connection.getSelectionTask();
          if (selectionTask != null)
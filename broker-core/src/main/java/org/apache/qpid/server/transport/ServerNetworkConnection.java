@@ -32,4 +32,18 @@ public interface ServerNetworkConnection extends NetworkConnection
     void addSchedulingDelayNotificationListeners(SchedulingDelayNotificationListener listener);
 
     void removeSchedulingDelayNotificationListeners(SchedulingDelayNotificationListener listener);
+
+    long getTransportWriteCount();
+
+    long getTransportBytesWritten();
+
+    long getCoalescedWriteCount();
+
+    long getProcessingBudgetExhaustedCount();
+
+    /**
+     * Notifies the network connection that the connection has been opened, so that it no longer counts towards the
+     * handshakes in progress on its port.
+     */
+    void handshakeCompleted();
 }
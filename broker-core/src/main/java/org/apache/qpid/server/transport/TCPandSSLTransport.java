@@ -71,9 +71,11 @@ class TCPandSSLTransport implements AcceptingTransport
         }
 
         long threadPoolKeepAliveTimeout = _port.getContextValue(Long.class, AmqpPort.PORT_AMQP_THREAD_POOL_KEEP_ALIVE_TIMEOUT);
+        boolean workStealing = _port.getContextValue(Boolean.class, AmqpPort.PORT_AMQP_THREAD_POOL_WORK_STEALING);
 
         _scheduler = new NetworkConnectionScheduler("Port-"+_port.getName(), _port.getNumberOfSelectors(),
-                                                    _port.getThreadPoolSize(), threadPoolKeepAliveTimeout);
+                                                    _port.getThreadPoolSize(), threadPoolKeepAliveTimeout,
+                                                    workStealing);
         _scheduler.start();
         _networkTransport = new NonBlockingNetworkTransport(protocolEngineFactory,
                                                             encryptionSet, _scheduler, _port);
@@ -86,6 +88,24 @@ class TCPandSSLTransport implements AcceptingTransport
         return _networkTransport.getAcceptingPort();
     }
 
+    @Override
+    public int getAcceptQueueDepth()
+    {
+        return _networkTransport == null ? 0 : _networkTransport.getAcceptQueueDepth();
+    }
+
+    @Override
+    public int getHandshakesInProgress()
+    {
+        return _networkTransport == null ? 0 : _networkTransport.getHandshakesInProgress();
+    }
+
+    @Override
+    public NetworkIoStatistics getIoStatistics()
+    {
+        return _scheduler == null ? null : _scheduler.getIoStatistics();
+    }
+
     @Override
     public void close()
     {
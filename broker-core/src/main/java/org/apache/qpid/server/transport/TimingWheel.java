@@ -0,0 +1,221 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hashed timing wheel holding a deadline for each of a set of items.  Deadlines are hashed by their tick into a
+ * fixed number of buckets, so that scheduling and cancelling a deadline take constant time and advancing the wheel
+ * only visits the buckets of the ticks which have passed.  A deadline expires at the end of its tick, so items expire
+ * up to one tick late but never early.  Not thread safe.
+ */
+final class TimingWheel<T>
+{
+    private final long _tickDuration;
+    private final Entry<T>[] _buckets;
+    private final int _mask;
+    private final Map<T, Entry<T>> _entries = new HashMap<>();
+    private long _lastExpiredTick;
+
+    /**
+     * @param tickDuration the duration of a tick in milliseconds
+     * @param numberOfBuckets the number of buckets, rounded up to a power of two
+     * @param currentTime the current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(final long tickDuration, final int numberOfBuckets, final long currentTime)
+    {
+        if (tickDuration <= 0L)
+        {
+            throw new IllegalArgumentException("Tick duration " + tickDuration + " must be greater than zero");
+        }
+        if (numberOfBuckets <= 0 || numberOfBuckets > 1 << 30)
+        {
+            throw new IllegalArgumentException("Number of buckets " + numberOfBuckets + " is out of range");
+        }
+        _tickDuration = tickDuration;
+        final int size = Integer.highestOneBit(numberOfBuckets - 1) << 1;
+        _buckets = (Entry<T>[]) new Entry[Math.max(1, size)];
+        _mask = _buckets.length - 1;
+        _lastExpiredTick = currentTime / tickDuration;
+    }
+
+    /**
+     * Sets the deadline of the item, replacing any deadline it already has.
+     */
+    void schedule(final T item, final long deadline)
+    {
+        final long tick = Math.max(ceilDiv(deadline, _tickDuration), _lastExpiredTick + 1);
+        Entry<T> entry = _entries.get(item);
+        if (entry != null)
+        {
+            if (entry._tick == tick)
+            {
+                return;
+            }
+            unlink(entry);
+        }
+        else
+        {
+            entry = new Entry<>(item);
+            _entries.put(item, entry);
+        }
+        entry._tick = tick;
+        link(entry);
+    }
+
+    /**
+     * @return true if the item had a deadline
+     */
+    boolean cancel(final T item)
+    {
+        final Entry<T> entry = _entries.remove(item);
+        if (entry != null)
+        {
+            unlink(entry);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Advances the wheel to the given time, removing the items whose deadline has passed.
+     *
+     * @return the items whose deadline has passed
+     */
+    List<T> expire(final long currentTime)
+    {
+        final long currentTick = currentTime / _tickDuration;
+        if (currentTick <= _lastExpiredTick)
+        {
+            return Collections.emptyList();
+        }
+
+        List<T> expired = Collections.emptyList();
+        if (!_entries.isEmpty())
+        {
+            // once a whole revolution has passed every bucket has to be visited just once
+            final long lastTick = Math.min(currentTick, _lastExpiredTick + _buckets.length);
+            for (long tick = _lastExpiredTick + 1; tick <= lastTick; tick++)
+            {
+                Entry<T> entry = _buckets[(int) tick & _mask];
+                while (entry != null)
+                {
+                    final Entry<T> next = entry._next;
+                    if (entry._tick <= currentTick)
+                    {
+                        unlink(entry);
+                        _entries.remove(entry._item);
+                        if (expired.isEmpty())
+                        {
+                            expired = new ArrayList<>();
+                        }
+                        expired.add(entry._item);
+                    }
+                    entry = next;
+                }
+            }
+        }
+        _lastExpiredTick = currentTick;
+        return expired;
+    }
+
+    /**
+     * @return the time in milliseconds until the wheel next needs to be advanced, or {@link Long#MAX_VALUE} if it holds
+     *         no deadlines.  Where the nearest deadline is more than a revolution of the wheel away, the time returned
+     *         may be shorter.
+     */
+    long getTimeToNextExpiry(final long currentTime)
+    {
+        if (_entries.isEmpty())
+        {
+            return Long.MAX_VALUE;
+        }
+        for (long tick = _lastExpiredTick + 1; tick <= _lastExpiredTick + _buckets.length; tick++)
+        {
+            if (_buckets[(int) tick & _mask] != null)
+            {
+                return Math.max(0L, tick * _tickDuration - currentTime);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    int size()
+    {
+        return _entries.size();
+    }
+
+    private void link(final Entry<T> entry)
+    {
+        final int index = (int) entry._tick & _mask;
+        final Entry<T> head = _buckets[index];
+        entry._previous = null;
+        entry._next = head;
+        if (head != null)
+        {
+            head._previous = entry;
+        }
+        _buckets[index] = entry;
+    }
+
+    private void unlink(final Entry<T> entry)
+    {
+        if (entry._previous != null)
+        {
+            entry._previous._next = entry._next;
+        }
+        else
+        {
+            _buckets[(int) entry._tick & _mask] = entry._next;
+        }
+        if (entry._next != null)
+        {
+            entry._next._previous = entry._previous;
+        }
+        entry._previous = null;
+        entry._next = null;
+    }
+
+    private static long ceilDiv(final long dividend, final long divisor)
+    {
+        final long quotient = dividend / divisor;
+        return quotient * divisor == dividend || dividend < 0L ? quotient : quotient + 1L;
+    }
+
+    private static final class Entry<T>
+    {
+        private final T _item;
+        private long _tick;
+        private Entry<T> _previous;
+        private Entry<T> _next;
+
+        private Entry(final T item)
+        {
+            _item = item;
+        }
+    }
+}
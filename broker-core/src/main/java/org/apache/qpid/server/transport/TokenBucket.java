@@ -0,0 +1,101 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+/**
+ * Paces an activity to an average rate whilst allowing bursts of up to a given size.  Tokens accumulate at the given
+ * rate up to the burst size; each permitted action takes one token.  Not thread safe.
+ */
+final class TokenBucket
+{
+    private final long _rate;
+    private final long _burst;
+    private long _tokens;
+    private long _lastRefillTime;
+    private long _remainder;
+
+    /**
+     * @param rate number of tokens added per second
+     * @param burst maximum number of tokens held
+     * @param currentTime the current time in milliseconds
+     */
+    TokenBucket(final long rate, final long burst, final long currentTime)
+    {
+        if (rate <= 0L)
+        {
+            throw new IllegalArgumentException("Rate " + rate + " must be greater than zero");
+        }
+        _rate = rate;
+        _burst = Math.max(1L, burst);
+        _tokens = _burst;
+        _lastRefillTime = currentTime;
+    }
+
+    boolean tryAcquire(final long currentTime)
+    {
+        refill(currentTime);
+        if (_tokens > 0L)
+        {
+            _tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the time in milliseconds until a token will be available, zero if one is available now
+     */
+    long getTimeToNextToken(final long currentTime)
+    {
+        refill(currentTime);
+        if (_tokens > 0L)
+        {
+            return 0L;
+        }
+        // ceiling of the time needed to accumulate the missing fraction of a token
+        return (1000L - _remainder + _rate - 1L) / _rate;
+    }
+
+    private void refill(final long currentTime)
+    {
+        final long elapsed = currentTime - _lastRefillTime;
+        if (elapsed > 0L)
+        {
+            _lastRefillTime = currentTime;
+            if (_tokens < _burst)
+            {
+                // _remainder carries the fraction of a token (in thousandths) across refills
+                final long accrued = elapsed * _rate + _remainder;
+                final long tokens = accrued / 1000L;
+                _remainder = accrued % 1000L;
+                if (tokens >= _burst - _tokens)
+                {
+                    _tokens = _burst;
+                    _remainder = 0L;
+                }
+                else
+                {
+                    _tokens += tokens;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+/**
+ * Holds the selector and connection work waiting to be run by the IO threads of a {@link NetworkConnectionScheduler}.
+ */
+interface WorkQueue
+{
+    /**
+     * Adds a task, preferably to be run by the IO thread with the given index.  Implementations are free to ignore
+     * the preference.
+     */
+    void add(Runnable task, int worker);
+
+    /**
+     * Takes the next task to be run by the IO thread with the given index, waiting if none is available.
+     */
+    Runnable take(int worker) throws InterruptedException;
+}
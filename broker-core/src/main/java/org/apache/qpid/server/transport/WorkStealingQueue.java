@@ -0,0 +1,165 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Gives each IO thread its own queue of work.  A task is added to the queue of its preferred IO thread; an IO thread
+ * which has run out of work of its own steals the oldest task from the queues of the other IO threads before going
+ * idle.  When work is added for an IO thread that is busy, an idle IO thread is woken so that it can steal the work.
+ */
+final class WorkStealingQueue implements WorkQueue
+{
+    private final Worker[] _workers;
+    private final Queue<Worker> _idleWorkers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong _stolenTaskCount = new AtomicLong();
+
+    WorkStealingQueue(final int numberOfWorkers)
+    {
+        if (numberOfWorkers < 1)
+        {
+            throw new IllegalArgumentException("Number of workers " + numberOfWorkers + " must be greater than zero");
+        }
+        _workers = new Worker[numberOfWorkers];
+        for (int i = 0; i < numberOfWorkers; i++)
+        {
+            _workers[i] = new Worker();
+        }
+    }
+
+    @Override
+    public void add(final Runnable task, final int worker)
+    {
+        final Worker preferred = getWorker(worker);
+        preferred._tasks.add(task);
+        if (!preferred.unpark())
+        {
+            final Worker idle = _idleWorkers.poll();
+            if (idle != null)
+            {
+                idle.unpark();
+            }
+        }
+    }
+
+    @Override
+    public Runnable take(final int worker) throws InterruptedException
+    {
+        final int index = getIndex(worker);
+        final Worker self = _workers[index];
+        while (true)
+        {
+            Runnable task = poll(index);
+            if (task != null)
+            {
+                return task;
+            }
+
+            self._waiter = Thread.currentThread();
+            _idleWorkers.add(self);
+            try
+            {
+                // re-check after advertising as idle so that work added concurrently is not missed
+                task = poll(index);
+                if (task == null)
+                {
+                    LockSupport.park(this);
+                }
+            }
+            finally
+            {
+                self._waiter = null;
+                _idleWorkers.remove(self);
+            }
+
+            if (Thread.interrupted())
+            {
+                if (task != null)
+                {
+                    self._tasks.add(task);
+                }
+                throw new InterruptedException();
+            }
+            if (task != null)
+            {
+                return task;
+            }
+        }
+    }
+
+    int getNumberOfWorkers()
+    {
+        return _workers.length;
+    }
+
+    long getStolenTaskCount()
+    {
+        return _stolenTaskCount.get();
+    }
+
+    private Runnable poll(final int index)
+    {
+        Runnable task = _workers[index]._tasks.poll();
+        if (task == null)
+        {
+            for (int i = 1; i < _workers.length && task == null; i++)
+            {
+                task = _workers[(index + i) % _workers.length]._tasks.poll();
+            }
+            if (task != null)
+            {
+                _stolenTaskCount.incrementAndGet();
+            }
+        }
+        return task;
+    }
+
+    private Worker getWorker(final int worker)
+    {
+        return _workers[getIndex(worker)];
+    }
+
+    private int getIndex(final int worker)
+    {
+        return (worker & Integer.MAX_VALUE) % _workers.length;
+    }
+
+    private static final class Worker
+    {
+        private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<>();
+        private volatile Thread _waiter;
+
+        private boolean unpark()
+        {
+            final Thread waiter = _waiter;
+            if (waiter != null)
+            {
+                LockSupport.unpark(waiter);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -51,6 +51,7 @@ import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -148,6 +149,8 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
 
     private final Set<AMQPConnection<?>> _connections = newSetFromMap(new ConcurrentHashMap<AMQPConnection<?>, Boolean>());
     private final AccessControlContext _housekeepingJobContext;
+    private final Set<Queue<?>> _queuesUnderHousekeeping =
+            Collections.newSetFromMap(new ConcurrentHashMap<Queue<?>, Boolean>());
     private final AccessControlContext _fileSystemSpaceCheckerJobContext;
     private final AtomicBoolean _acceptsConnections = new AtomicBoolean(false);
     private TaskExecutor _preferenceTaskExecutor;
@@ -1756,12 +1759,38 @@ public abstract class AbstractVirtualHost<X extends AbstractVirtualHost<X>> exte
             Broker<?> broker = virtualHostNode.getParent(Broker.class);
             broker.assignTargetSizes();
 
-            for (Queue<?> q : getChildren(Queue.class))
+            // each queue is checked by a task of its own so that the housekeeping threads share their time fairly
+            // between the queues, rather than all queues waiting on the deepest one
+            for (final Queue<?> q : getChildren(Queue.class))
             {
-                if (q.getState() == State.ACTIVE)
+                if (q.getState() == State.ACTIVE && _queuesUnderHousekeeping.add(q))
                 {
-                    _logger.debug("Checking message status for queue: {}", q.getName());
-                    q.checkMessageStatus();
+                    try
+                    {
+                        executeTask("Housekeeping[" + AbstractVirtualHost.this.getName() + "/" + q.getName() + "]",
+                                    new Runnable()
+                                    {
+                                        @Override
+                                        public void run()
+                                        {
+                                            try
+                                            {
+                                                _logger.debug("Checking message status for queue: {}", q.getName());
+                                                q.checkMessageStatus();
+                                            }
+                                            finally
+                                            {
+                                                _queuesUnderHousekeeping.remove(q);
+                                            }
+                                        }
+                                    },
+                                    _housekeepingJobContext);
+                    }
+                    catch (RejectedExecutionException e)
+                    {
+                        _queuesUnderHousekeeping.remove(q);
+                        _logger.debug("Housekeeping of queue {} rejected", q.getName(), e);
+                    }
                 }
             }
         }
@@ -25,12 +25,15 @@ import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.contains;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
+import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
@@ -39,6 +42,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
 
 import org.apache.qpid.server.model.Binding;
 import org.apache.qpid.server.model.Exchange;
@@ -56,13 +62,23 @@ import org.apache.qpid.server.consumer.MockConsumer;
 import org.apache.qpid.server.exchange.DirectExchange;
 import org.apache.qpid.server.message.AMQMessageHeader;
 import org.apache.qpid.server.message.InstanceProperties;
+import org.apache.qpid.server.message.MessageInfo;
 import org.apache.qpid.server.message.MessageInstance;
 import org.apache.qpid.server.message.MessageReference;
 import org.apache.qpid.server.message.MessageSource;
 import org.apache.qpid.server.message.ServerMessage;
 import org.apache.qpid.server.model.Queue;
 import org.apache.qpid.server.model.QueueNotificationListener;
+import org.apache.qpid.server.plugin.MessageMetaDataType;
 import org.apache.qpid.server.queue.AbstractQueue.QueueEntryFilter;
+import org.apache.qpid.server.security.auth.TestPrincipalUtils;
+import org.apache.qpid.server.store.MessageDurability;
+import org.apache.qpid.server.store.MessageEnqueueRecord;
+import org.apache.qpid.server.store.StorableMessageMetaData;
+import org.apache.qpid.server.store.StoredMemoryMessage;
+import org.apache.qpid.server.store.StoredMessage;
+import org.apache.qpid.server.store.TestMemoryMessageStore;
+import org.apache.qpid.server.store.Transaction;
 import org.apache.qpid.server.store.TransactionLogResource;
 import org.apache.qpid.server.util.Action;
 import org.apache.qpid.server.model.BrokerTestHelper;
@@ -71,6 +87,7 @@ import org.apache.qpid.test.utils.QpidTestCase;
 abstract class AbstractQueueTestBase extends QpidTestCase
 {
     private static final Logger _logger = LoggerFactory.getLogger(AbstractQueueTestBase.class);
+    private static final long PAGED_MESSAGE_SIZE = 100L;
     private long _queueRunnerWaitTime;
     private Queue<?> _queue;
     private VirtualHost<?> _virtualHost;
@@ -549,6 +566,51 @@ abstract class AbstractQueueTestBase extends QpidTestCase
                    consumer2.getQueueContext().getReleasedEntry());
     }
 
+    /**
+     * Tests that consumers registered after earlier consumers have acquired the entries at the head of the queue
+     * still receive an entry released from among them.
+     */
+    public void testReleaseWithinAcquiredEntriesForLaterConsumer() throws Exception
+    {
+        MockConsumer target1 = new MockConsumer();
+        MockConsumer target2 = new MockConsumer();
+        MockConsumer target3 = new MockConsumer();
+
+        final ArrayList<QueueEntry> queueEntries = new ArrayList<QueueEntry>();
+        EntryListAddingAction postEnqueueAction = new EntryListAddingAction(queueEntries);
+
+        ServerMessage messageA = createMessage(new Long(24));
+        _queue.addConsumer(target1, null, messageA.getClass(), "test",
+                           EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES), 0);
+
+        _queue.enqueue(messageA, postEnqueueAction, null);
+        _queue.enqueue(createMessage(new Long(25)), postEnqueueAction, null);
+        _queue.enqueue(createMessage(new Long(26)), postEnqueueAction, null);
+
+        Thread.sleep(_queueRunnerWaitTime);
+        assertEquals("Unexpected number of messages sent to first consumer", 3, target1.getMessages().size());
+
+        // the second consumer passes over the entries acquired by the first
+        _queue.addConsumer(target2, null, messageA.getClass(), "test",
+                           EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES), 0);
+        _queue.enqueue(createMessage(new Long(27)), postEnqueueAction, null);
+
+        Thread.sleep(_queueRunnerWaitTime);
+        assertEquals("Unexpected total number of messages sent after fourth enqueue",
+                     4,
+                     target1.getMessages().size() + target2.getMessages().size());
+
+        queueEntries.get(1).release();
+        _queue.addConsumer(target3, null, messageA.getClass(), "test",
+                           EnumSet.of(ConsumerImpl.Option.ACQUIRES, ConsumerImpl.Option.SEES_REQUEUES), 0);
+
+        Thread.sleep(_queueRunnerWaitTime);
+        assertEquals("Released message should be resent",
+                     5,
+                     target1.getMessages().size() + target2.getMessages().size() + target3.getMessages().size());
+        assertTrue("Released entry should be acquired again", queueEntries.get(1).isAcquired());
+    }
+
     public void testExclusiveConsumer() throws Exception
     {
         ServerMessage messageA = createMessage(new Long(24));
@@ -847,10 +909,171 @@ abstract class AbstractQueueTestBase extends QpidTestCase
         }
     }
 
+    public void testGetMessageOnTheQueueWithDequeuedEntry()
+    {
+        enqueueGivenNumberOfMessages(_queue, 4);
+        dequeueMessage(_queue, 1);
+
+        assertNull("Dequeued message should not be found", _queue.getMessageOnTheQueue(1L));
+        assertNull("Unknown message should not be found", _queue.getMessageOnTheQueue(99L));
+        QueueEntry entry = _queue.getMessageOnTheQueue(2L);
+        assertNotNull("Message not found", entry);
+        assertEquals("Unexpected message", 2L, entry.getMessage().getMessageNumber());
+    }
+
+    public void testGetMessagesOnTheQueueByMessageIdRange()
+    {
+        enqueueGivenNumberOfMessages(_queue, 6);
+        dequeueMessage(_queue, 2);
+
+        List<QueueEntry> entries = ((AbstractQueue<?>) _queue).getMessagesOnTheQueue(1L, 4L);
+        assertEquals("Unexpected number of entries", 3, entries.size());
+        assertEquals("Unexpected message", 1L, entries.get(0).getMessage().getMessageNumber());
+        assertEquals("Unexpected message", 3L, entries.get(1).getMessage().getMessageNumber());
+        assertEquals("Unexpected message", 4L, entries.get(2).getMessage().getMessageNumber());
+    }
+
+    public void testVisitByMessageIds()
+    {
+        enqueueGivenNumberOfMessages(_queue, 5);
+        dequeueMessage(_queue, 3);
+
+        final List<Long> visited = new ArrayList<>();
+        _queue.visit(new QueueEntryVisitor()
+        {
+            @Override
+            public boolean visit(final QueueEntry entry)
+            {
+                long messageId = entry.getMessage().getMessageNumber();
+                if (messageId == 1L || messageId == 3L || messageId == 4L)
+                {
+                    visited.add(messageId);
+                }
+                return false;
+            }
+        }, Arrays.asList(4L, 1L, 3L));
+
+        assertEquals("Unexpected messages visited", Arrays.asList(1L, 4L), visited);
+    }
+
     /**
      * Tests that all messages including dequeued one are deleted from the queue
      * on invocation of {@link AbstractQueue#clearQueue()}
      */
+    public void testBrowseMessagesWithCursor() throws Exception
+    {
+        enqueueGivenNumberOfMessages(_queue, 5);
+
+        Map<String, Object> page = _queue.browseMessages(null, 2, false);
+        String cursor = (String) page.get("cursor");
+        assertNotNull("Cursor not returned with the first page", cursor);
+        assertEquals("Unexpected size of the first page", 2, ((List<?>) page.get("messages")).size());
+
+        page = _queue.browseMessages(cursor, 2, false);
+        assertEquals("Cursor changed between pages", cursor, page.get("cursor"));
+        assertEquals("Unexpected size of the second page", 2, ((List<?>) page.get("messages")).size());
+
+        page = _queue.browseMessages(cursor, 2, false);
+        assertNull("Cursor returned at the end of the queue", page.get("cursor"));
+        assertEquals("Unexpected size of the last page", 1, ((List<?>) page.get("messages")).size());
+
+        try
+        {
+            _queue.browseMessages(cursor, 2, false);
+            fail("Exception not thrown for a cursor which reached the end of the queue");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+
+    public void testBrowseCursorsLimited() throws Exception
+    {
+        Map<String, String> context = new HashMap<>();
+        context.put(Queue.QUEUE_MAXIMUM_BROWSE_CURSORS, "3");
+        context.put(Queue.QUEUE_MAXIMUM_BROWSE_CURSORS_PER_PRINCIPAL, "2");
+        Queue<?> queue = createQueueWithContext("testBrowseCursorsLimited", context);
+        enqueueGivenNumberOfMessages(queue, 5);
+        Subject user1 = TestPrincipalUtils.createTestSubject("user1");
+        Subject user2 = TestPrincipalUtils.createTestSubject("user2");
+
+        assertNotNull("Cursor not opened", browseAs(user1, queue, null).get("cursor"));
+        assertNotNull("Cursor not opened", browseAs(user1, queue, null).get("cursor"));
+        assertBrowseCursorRefused(user1, queue);
+
+        assertNotNull("Cursor of another user not opened", browseAs(user2, queue, null).get("cursor"));
+        assertBrowseCursorRefused(user2, queue);
+    }
+
+    public void testBrowseCursorBoundToPrincipal() throws Exception
+    {
+        enqueueGivenNumberOfMessages(_queue, 5);
+        Subject user1 = TestPrincipalUtils.createTestSubject("user1");
+        Subject user2 = TestPrincipalUtils.createTestSubject("user2");
+
+        String cursor = (String) browseAs(user1, _queue, null).get("cursor");
+        try
+        {
+            browseAs(user2, _queue, cursor);
+            fail("Exception not thrown for the cursor of another user");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+
+        Map<String, Object> page = browseAs(user1, _queue, cursor);
+        assertEquals("Cursor not kept for its owner", cursor, page.get("cursor"));
+        assertEquals("Unexpected message", 1L, ((MessageInfo) ((List<?>) page.get("messages")).get(0)).getId());
+    }
+
+    public void testExpiredBrowseCursorsEvictedWhenCursorOpened() throws Exception
+    {
+        Map<String, String> context = new HashMap<>();
+        context.put(Queue.QUEUE_MAXIMUM_BROWSE_CURSORS, "1");
+        context.put(Queue.QUEUE_BROWSE_CURSOR_TIMEOUT, "-1");
+        Queue<?> queue = createQueueWithContext("testExpiredBrowseCursorsEvictedWhenCursorOpened", context);
+        enqueueGivenNumberOfMessages(queue, 5);
+        Subject user = TestPrincipalUtils.createTestSubject("user");
+
+        assertNotNull("Cursor not opened", browseAs(user, queue, null).get("cursor"));
+        assertNotNull("Cursor not opened in place of an expired one", browseAs(user, queue, null).get("cursor"));
+    }
+
+    private Queue<?> createQueueWithContext(final String name, final Map<String, String> context)
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, name);
+        attributes.put(Queue.CONTEXT, context);
+        return _virtualHost.createChild(Queue.class, attributes);
+    }
+
+    private Map<String, Object> browseAs(final Subject subject, final Queue<?> queue, final String cursor)
+    {
+        return Subject.doAs(subject, new PrivilegedAction<Map<String, Object>>()
+        {
+            @Override
+            public Map<String, Object> run()
+            {
+                return queue.browseMessages(cursor, 1, false);
+            }
+        });
+    }
+
+    private void assertBrowseCursorRefused(final Subject subject, final Queue<?> queue)
+    {
+        try
+        {
+            browseAs(subject, queue, null);
+            fail("Exception not thrown for a cursor beyond the limit");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+    }
+
     public void testClearQueueWithDequeuedEntry() throws Exception
     {
         int messageNumber = 4;
@@ -874,6 +1097,193 @@ abstract class AbstractQueueTestBase extends QpidTestCase
     }
 
 
+    public void testDeleteMessagesInChunks() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, "testDeleteMessagesInChunks");
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.QUEUE_BULK_OPERATION_CHUNK_SIZE, "2"));
+
+        AbstractQueue<?> queue = (AbstractQueue<?>) _virtualHost.createChild(Queue.class, attributes);
+        for (long id = 1; id <= 6; id++)
+        {
+            enqueueStoredMessage(queue, id, true);
+        }
+
+        TestMemoryMessageStore store = (TestMemoryMessageStore) _virtualHost.getMessageStore();
+        int transactionCount = store.getTransactionCount();
+
+        List<Long> deleted = queue.deleteMessages(null, null, 5);
+
+        assertEquals("Unexpected number of messages deleted", 5, deleted.size());
+        assertEquals("Unexpected queue depth", 1, queue.getQueueDepthMessages());
+        assertEquals("Chunks of two messages not committed in transactions of their own",
+                     3, store.getTransactionCount() - transactionCount);
+    }
+
+    public void testDeleteMessagesByIdVisitsEachEntryOnce() throws Exception
+    {
+        Queue<?> queue = createQueueWithBulkOperationChunks("testDeleteMessagesByIdVisitsEachEntryOnce");
+        final List<AtomicInteger> visits = new ArrayList<>();
+        for (long id = 1; id <= 10; id++)
+        {
+            final ServerMessage message = createMessage(id);
+            queue.enqueue(message, null, null);
+            if (id <= 6)
+            {
+                // each visit of an entry not listed reads its message number once
+                final AtomicInteger count = new AtomicInteger();
+                final long messageNumber = id;
+                when(message.getMessageNumber()).thenAnswer(new Answer<Long>()
+                {
+                    @Override
+                    public Long answer(final InvocationOnMock invocation) throws Throwable
+                    {
+                        count.incrementAndGet();
+                        return messageNumber;
+                    }
+                });
+                visits.add(count);
+            }
+        }
+
+        List<Long> deleted = queue.deleteMessages(Arrays.asList(7L, 8L, 9L, 10L), null, -1);
+
+        assertEquals("Unexpected number of messages deleted", 4, deleted.size());
+        assertEquals("Unexpected queue depth", 6, queue.getQueueDepthMessages());
+        for (int i = 0; i < visits.size(); i++)
+        {
+            assertTrue("Entry " + (i + 1) + " visited by more than one chunk", visits.get(i).get() <= 1);
+        }
+    }
+
+    public void testStartMoveMessagesCompletes() throws Exception
+    {
+        Queue<?> queue = createQueueWithBulkOperationChunks("testStartMoveMessagesCompletes");
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, "testStartMoveMessagesCompletesDestination");
+        Queue<?> destination = _virtualHost.createChild(Queue.class, attributes);
+        for (long id = 1; id <= 5; id++)
+        {
+            queue.enqueue(createMessage(id), null, null);
+        }
+
+        queue.startMoveMessages(destination, null, null, -1);
+
+        Map<String, Object> progress = awaitBulkOperation(queue);
+        assertEquals("Unexpected operation", "move", progress.get("operation"));
+        assertEquals("Unexpected state", "COMPLETE", progress.get("state"));
+        assertEquals("Unexpected number of messages moved", 5L, progress.get("modifiedMessages"));
+        assertEquals("Unexpected source queue depth", 0, queue.getQueueDepthMessages());
+        assertEquals("Unexpected destination queue depth", 5, destination.getQueueDepthMessages());
+    }
+
+    public void testBulkOperationCancelledBetweenChunks() throws Exception
+    {
+        Queue<?> queue = createQueueWithBulkOperationChunks("testBulkOperationCancelledBetweenChunks");
+        for (long id = 1; id <= 5; id++)
+        {
+            queue.enqueue(createMessage(id), null, null);
+        }
+        final CountDownLatch firstChunkCommitted = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        queue.startMoveMessages(createBlockingDestination(2, firstChunkCommitted, resume), null, null, -1);
+
+        assertTrue("First chunk not committed", firstChunkCommitted.await(10, TimeUnit.SECONDS));
+        assertTrue("Running operation not cancelled", queue.cancelBulkOperation());
+        resume.countDown();
+
+        Map<String, Object> progress = awaitBulkOperation(queue);
+        assertEquals("Unexpected state", "CANCELLED", progress.get("state"));
+        assertEquals("Unexpected number of messages moved", 2L, progress.get("modifiedMessages"));
+        assertEquals("Unexpected source queue depth", 3, queue.getQueueDepthMessages());
+        assertFalse("Finished operation cancelled", queue.cancelBulkOperation());
+    }
+
+    public void testSecondBulkOperationRejectedWhileRunning() throws Exception
+    {
+        Queue<?> queue = createQueueWithBulkOperationChunks("testSecondBulkOperationRejectedWhileRunning");
+        for (long id = 1; id <= 5; id++)
+        {
+            queue.enqueue(createMessage(id), null, null);
+        }
+        final CountDownLatch firstChunkCommitted = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+
+        queue.startMoveMessages(createBlockingDestination(2, firstChunkCommitted, resume), null, null, -1);
+        assertTrue("First chunk not committed", firstChunkCommitted.await(10, TimeUnit.SECONDS));
+        try
+        {
+            queue.startDeleteMessages(null, null, -1);
+            fail("Exception not thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+        finally
+        {
+            resume.countDown();
+        }
+
+        Map<String, Object> progress = awaitBulkOperation(queue);
+        assertEquals("Running operation replaced", "move", progress.get("operation"));
+        assertEquals("Unexpected state", "COMPLETE", progress.get("state"));
+        assertEquals("Unexpected number of messages moved", 5L, progress.get("modifiedMessages"));
+
+        queue.startDeleteMessages(null, null, -1);
+        assertEquals("Operation not started once the previous one finished",
+                     "delete", awaitBulkOperation(queue).get("operation"));
+    }
+
+    private Queue<?> createQueueWithBulkOperationChunks(final String name)
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, name);
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.QUEUE_BULK_OPERATION_CHUNK_SIZE, "2"));
+        return _virtualHost.createChild(Queue.class, attributes);
+    }
+
+    /**
+     * Creates a destination queue that, once the given number of messages have been moved to it, blocks the bulk
+     * operation until resumed, so that the test can act between two chunks of the operation.
+     */
+    private Queue<?> createBlockingDestination(final int blockAfter,
+                                               final CountDownLatch blocked,
+                                               final CountDownLatch resume)
+    {
+        final Queue<?> destination = mock(Queue.class);
+        when(destination.getMessageDurability()).thenReturn(MessageDurability.NEVER);
+        final AtomicInteger enqueued = new AtomicInteger();
+        doAnswer(new Answer<Void>()
+        {
+            @Override
+            public Void answer(final InvocationOnMock invocation) throws Throwable
+            {
+                if (enqueued.incrementAndGet() == blockAfter)
+                {
+                    blocked.countDown();
+                    resume.await(10, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        }).when(destination).enqueue(any(ServerMessage.class), any(Action.class), any(MessageEnqueueRecord.class));
+        return destination;
+    }
+
+    private Map<String, Object> awaitBulkOperation(final Queue<?> queue) throws InterruptedException
+    {
+        long timeout = System.currentTimeMillis() + 10000L;
+        Map<String, Object> progress = queue.getBulkOperationProgress();
+        while ("RUNNING".equals(progress.get("state")) && System.currentTimeMillis() < timeout)
+        {
+            Thread.sleep(10);
+            progress = queue.getBulkOperationProgress();
+        }
+        assertFalse("Bulk operation not finished", "RUNNING".equals(progress.get("state")));
+        return progress;
+    }
+
     public void testNotificationFiredOnEnqueue() throws Exception
     {
         QueueNotificationListener listener = mock(QueueNotificationListener .class);
@@ -910,6 +1320,266 @@ abstract class AbstractQueueTestBase extends QpidTestCase
     }
 
 
+    public void testHousekeepingScanResumesAcrossSlices() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithHousekeepingScanSlices("testHousekeepingScanResumesAcrossSlices");
+        for (long id = 1; id <= 5; id++)
+        {
+            queue.enqueue(createMessage(id), null, null);
+        }
+
+        queue.checkMessageStatus();
+        assertTrue("Scan pass completed after the first slice", queue.isHousekeepingScanInProgress());
+        queue.checkMessageStatus();
+        assertTrue("Scan pass completed after the second slice", queue.isHousekeepingScanInProgress());
+        queue.checkMessageStatus();
+        assertFalse("Scan pass not completed after the third slice", queue.isHousekeepingScanInProgress());
+    }
+
+    public void testHousekeepingScanResumesFromHeadAfterPositionDeleted() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithHousekeepingScanSlices("testHousekeepingScanResumesFromHeadAfterPositionDeleted");
+        for (long id = 1; id <= 5; id++)
+        {
+            queue.enqueue(createMessage(id), null, null);
+        }
+
+        queue.checkMessageStatus();
+        assertTrue("Scan pass completed after the first slice", queue.isHousekeepingScanInProgress());
+
+        // delete the entries visited by the first slice, including the one the scan stopped at
+        List<? extends QueueEntry> entries = queue.getMessagesOnTheQueue();
+        for (QueueEntry entry : entries.subList(0, 2))
+        {
+            entry.acquire();
+            entry.delete();
+        }
+
+        queue.checkMessageStatus();
+        assertTrue("Scan pass completed after the second slice", queue.isHousekeepingScanInProgress());
+        queue.checkMessageStatus();
+        assertFalse("Scan pass not completed after the third slice", queue.isHousekeepingScanInProgress());
+    }
+
+    private AbstractQueue<?> createQueueWithHousekeepingScanSlices(final String name)
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, name);
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.QUEUE_HOUSEKEEPING_SCAN_SLICE_SIZE, "2"));
+        // a per message check, so that the entries need to be scanned
+        attributes.put(Queue.ALERT_THRESHOLD_MESSAGE_AGE, 100000L);
+
+        return (AbstractQueue<?>) _virtualHost.createChild(Queue.class, attributes);
+    }
+
+    public void testHousekeepingScanSkippedWithoutPerEntryChecks() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, "testHousekeepingScanSkippedWithoutPerEntryChecks");
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(Queue.QUEUE_HOUSEKEEPING_SCAN_SLICE_SIZE, "1"));
+
+        AbstractQueue<?> queue = (AbstractQueue<?>) _virtualHost.createChild(Queue.class, attributes);
+        for (long id = 1; id <= 5; id++)
+        {
+            queue.enqueue(createMessage(id), null, null);
+        }
+
+        queue.checkMessageStatus();
+        assertFalse("Entries scanned although no check needs them", queue.isHousekeepingScanInProgress());
+
+        queue.setAttributes(Collections.<String, Object>singletonMap(Queue.ALERT_THRESHOLD_MESSAGE_AGE, 100000L));
+        queue.checkMessageStatus();
+        assertTrue("Entries not scanned for the per message check", queue.isHousekeepingScanInProgress());
+    }
+
+    public void testPagedMessagesConsumedInOrder() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithPagingWindow("testPagedMessagesConsumedInOrder", 4);
+        for (long id = 1; id <= 10; id++)
+        {
+            enqueueStoredMessage(queue, id, true);
+        }
+        queue.updatePaging();
+
+        if (!queue.isPagingSupported())
+        {
+            assertEquals("Messages paged out by a queue not supporting paging", 0, queue.getPagedMessages());
+            return;
+        }
+        assertEquals("Unexpected number of paged messages", 6, queue.getPagedMessages());
+        assertEquals("Unexpected queue depth", 10, queue.getQueueDepthMessages());
+        assertEquals("Unexpected queue depth bytes", 10 * PAGED_MESSAGE_SIZE, queue.getQueueDepthBytes());
+
+        for (long id = 1; id <= 10; id++)
+        {
+            assertEquals("Message consumed out of order", Long.valueOf(id), consumeHead(queue));
+        }
+        assertNull("Unexpected message after the queue was consumed", consumeHead(queue));
+        assertQueueDrained(queue);
+    }
+
+    public void testClearQueueRemovesPagedMessages() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithPagingWindow("testClearQueueRemovesPagedMessages", 4);
+        if (!queue.isPagingSupported())
+        {
+            return;
+        }
+        for (long id = 1; id <= 10; id++)
+        {
+            enqueueStoredMessage(queue, id, true);
+        }
+        queue.updatePaging();
+        assertEquals("Unexpected number of paged messages", 6, queue.getPagedMessages());
+
+        queue.clearQueue();
+
+        assertQueueDrained(queue);
+    }
+
+    public void testDeleteRemovesPagedMessages() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithPagingWindow("testDeleteRemovesPagedMessages", 4);
+        if (!queue.isPagingSupported())
+        {
+            return;
+        }
+        for (long id = 1; id <= 10; id++)
+        {
+            enqueueStoredMessage(queue, id, true);
+        }
+        queue.updatePaging();
+        assertEquals("Unexpected number of paged messages", 6, queue.getPagedMessages());
+
+        assertEquals("Unexpected number of messages deleted with the queue", 10, queue.deleteAndReturnCount());
+
+        assertQueueDrained(queue);
+    }
+
+    public void testPagedMessageMissingFromStore() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithPagingWindow("testPagedMessageMissingFromStore", 4);
+        if (!queue.isPagingSupported())
+        {
+            return;
+        }
+        for (long id = 1; id <= 10; id++)
+        {
+            enqueueStoredMessage(queue, id, id != 8);
+        }
+        queue.updatePaging();
+        assertEquals("Unexpected number of paged messages", 6, queue.getPagedMessages());
+
+        for (long id = 1; id <= 10; id++)
+        {
+            if (id != 8)
+            {
+                assertEquals("Message consumed out of order", Long.valueOf(id), consumeHead(queue));
+            }
+        }
+        assertNull("Unexpected message after the queue was consumed", consumeHead(queue));
+        assertQueueDrained(queue);
+    }
+
+    protected AbstractQueue<?> createQueueWithPagingWindow(final String name, final int pagingWindowSize)
+    {
+        Map<String,Object> attributes = new HashMap<>(_arguments);
+        attributes.put(Queue.NAME, name);
+        attributes.put(Queue.CONTEXT,
+                       Collections.singletonMap(Queue.QUEUE_PAGING_WINDOW_SIZE, String.valueOf(pagingWindowSize)));
+
+        return (AbstractQueue<?>) _virtualHost.createChild(Queue.class, attributes);
+    }
+
+    /**
+     * Enqueues a persistent message held only by the queue, and so eligible to be paged out, that the store reads
+     * back as the same message.
+     */
+    private void enqueueStoredMessage(final AbstractQueue<?> queue, final long id, final boolean inStore)
+    {
+        enqueueStoredMessage(queue, createMessage(id), inStore);
+    }
+
+    protected void enqueueStoredMessage(final AbstractQueue<?> queue, final ServerMessage message, final boolean inStore)
+    {
+        final long id = message.getMessageNumber();
+        when(message.getSize()).thenReturn(PAGED_MESSAGE_SIZE);
+        when(message.isPersistent()).thenReturn(true);
+        when(message.isReferencedOnlyBy(queue)).thenReturn(true);
+
+        final MessageMetaDataType type = mock(MessageMetaDataType.class);
+        when(type.createMessage(any(StoredMessage.class))).thenReturn(message);
+        final StorableMessageMetaData metaData = mock(StorableMessageMetaData.class);
+        when(metaData.getType()).thenReturn(type);
+        final StoredMessage<StorableMessageMetaData> storedMessage =
+                new StoredMemoryMessage<StorableMessageMetaData>(id, metaData)
+                {
+                    @Override
+                    public synchronized boolean flowToDisk()
+                    {
+                        return true;
+                    }
+                };
+        when(message.getStoredMessage()).thenReturn(storedMessage);
+
+        final MessageEnqueueRecord enqueueRecord;
+        if (inStore)
+        {
+            final Transaction txn = _virtualHost.getMessageStore().newTransaction();
+            enqueueRecord = txn.enqueueMessage(queue, message);
+            txn.commitTran();
+        }
+        else
+        {
+            enqueueRecord = mock(MessageEnqueueRecord.class);
+        }
+        queue.enqueue(message, null, enqueueRecord);
+    }
+
+    /**
+     * Acquires and deletes the first available entry, reading back paged out messages once the entries in memory
+     * are consumed.
+     *
+     * @return the number of the message consumed, or null if the queue is empty
+     */
+    protected Long consumeHead(final AbstractQueue<?> queue)
+    {
+        QueueEntry entry = acquireHead(queue);
+        if (entry == null)
+        {
+            queue.updatePaging();
+            entry = acquireHead(queue);
+        }
+        if (entry == null)
+        {
+            return null;
+        }
+        final long messageNumber = entry.getMessage().getMessageNumber();
+        entry.delete();
+        return messageNumber;
+    }
+
+    private QueueEntry acquireHead(final AbstractQueue<?> queue)
+    {
+        QueueEntryIterator iterator = queue.getEntries().iterator();
+        while (iterator.advance())
+        {
+            QueueEntry entry = iterator.getNode();
+            if (entry.acquire())
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void assertQueueDrained(final AbstractQueue<?> queue)
+    {
+        assertEquals("Unexpected number of paged messages", 0, queue.getPagedMessages());
+        assertEquals("Unexpected queue depth", 0, queue.getQueueDepthMessages());
+        assertEquals("Unexpected queue depth bytes", 0, queue.getQueueDepthBytes());
+    }
+
     public void testMaximumMessageTtl() throws Exception
     {
 
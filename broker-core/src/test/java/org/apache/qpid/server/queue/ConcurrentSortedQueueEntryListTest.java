@@ -0,0 +1,262 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.server.configuration.updater.CurrentThreadTaskExecutor;
+import org.apache.qpid.server.configuration.updater.TaskExecutor;
+import org.apache.qpid.server.logging.EventLogger;
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.MessageReference;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.BrokerModel;
+import org.apache.qpid.server.model.ConfiguredObjectFactory;
+import org.apache.qpid.server.model.ConfiguredObjectFactoryImpl;
+import org.apache.qpid.server.model.LifetimePolicy;
+import org.apache.qpid.server.model.Queue;
+import org.apache.qpid.server.model.VirtualHost;
+import org.apache.qpid.server.store.TransactionLogResource;
+
+public class ConcurrentSortedQueueEntryListTest extends QueueEntryListTestBase
+{
+    private static final String[] KEYS = SortedQueueEntryListTest.keys;
+
+    private final String[] _keysSorted = KEYS.clone();
+    private SortedQueueImpl _testQueue;
+    private ConcurrentSortedQueueEntryList _list;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        Map<String,Object> attributes = new HashMap<String,Object>();
+        attributes.put(Queue.ID,UUID.randomUUID());
+        attributes.put(Queue.NAME, getName());
+        attributes.put(Queue.DURABLE, false);
+        attributes.put(Queue.LIFETIME_POLICY, LifetimePolicy.PERMANENT);
+        attributes.put(SortedQueue.SORT_KEY, "KEY");
+
+        final VirtualHost virtualHost = mock(VirtualHost.class);
+        when(virtualHost.getEventLogger()).thenReturn(new EventLogger());
+        ConfiguredObjectFactory factory = new ConfiguredObjectFactoryImpl(BrokerModel.getInstance());
+        when(virtualHost.getObjectFactory()).thenReturn(factory);
+        when(virtualHost.getModel()).thenReturn(factory.getModel());
+        when(virtualHost.getPrincipal()).thenReturn(mock(Principal.class));
+        TaskExecutor taskExecutor = CurrentThreadTaskExecutor.newStartedInstance();
+        when(virtualHost.getTaskExecutor()).thenReturn(taskExecutor);
+        when(virtualHost.getChildExecutor()).thenReturn(taskExecutor);
+        _testQueue = new SortedQueueImpl(attributes, virtualHost);
+        _testQueue.open();
+        _list = new ConcurrentSortedQueueEntryList(_testQueue);
+
+        super.setUp();
+
+        Arrays.sort(_keysSorted);
+
+        long messageId = 0L;
+        for(final String key : KEYS)
+        {
+            _list.add(generateTestMessage(messageId++, key), null);
+        }
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntryList getTestList()
+    {
+        return getTestList(false);
+    }
+
+    @Override
+    public ConcurrentSortedQueueEntryList getTestList(boolean newList)
+    {
+        if(newList)
+        {
+            return new ConcurrentSortedQueueEntryList(_testQueue);
+        }
+        else
+        {
+            return _list;
+        }
+    }
+
+    public int getExpectedListLength()
+    {
+        return KEYS.length;
+    }
+
+    public long getExpectedFirstMsgId()
+    {
+        return 67L;
+    }
+
+    public ServerMessage getTestMessageToAdd()
+    {
+        return generateTestMessage(1, "test value");
+    }
+
+    @Override
+    protected SortedQueueImpl getTestQueue()
+    {
+        return _testQueue;
+    }
+
+    public void testIterator()
+    {
+        super.testIterator();
+
+        final QueueEntryIterator iter = getTestList().iterator();
+        int count = 0;
+        while(iter.advance())
+        {
+            assertEquals("Sorted queue entry value does not match sorted key array",
+                         _keysSorted[count++], getSortedKeyValue(iter.getNode()));
+        }
+    }
+
+    public void testNonUniqueAndNullSortKeys() throws Exception
+    {
+        _list = new ConcurrentSortedQueueEntryList(_testQueue);
+
+        for (long messageId = 0L; messageId < 200; messageId++)
+        {
+            _list.add(generateTestMessage(messageId, messageId % 2 == 0 ? "samekey" : null), null);
+        }
+
+        final QueueEntryIterator iter = _list.iterator();
+        long expectedNullKeyId = 1L;
+        long expectedSameKeyId = 0L;
+        while(iter.advance())
+        {
+            final QueueEntry node = iter.getNode();
+            if (expectedNullKeyId < 200)
+            {
+                assertNull("Entries without a key should come first", getSortedKeyValue(node));
+                assertEquals("Message id not as expected", expectedNullKeyId, node.getMessage().getMessageNumber());
+                expectedNullKeyId += 2;
+            }
+            else
+            {
+                assertEquals("Sorted queue entry value is not as expected", "samekey", getSortedKeyValue(node));
+                assertEquals("Message id not as expected", expectedSameKeyId, node.getMessage().getMessageNumber());
+                expectedSameKeyId += 2;
+            }
+        }
+        assertEquals("Unexpected number of entries with the same key", 200L, expectedSameKeyId);
+    }
+
+    public void testInsertBeforeDeletedEntryIsVisitedFromDeletedEntry() throws Exception
+    {
+        _list = new ConcurrentSortedQueueEntryList(_testQueue);
+
+        final QueueEntry entryB = _list.add(generateTestMessage(1, "B"), null);
+        final QueueEntry entryD = _list.add(generateTestMessage(2, "D"), null);
+
+        entryB.acquire();
+        entryB.delete();
+        final QueueEntry entryC = _list.add(generateTestMessage(3, "C"), null);
+
+        assertSame("Unexpected entry following deleted entry", entryC, _list.next(entryB));
+        assertSame("Unexpected entry following inserted entry", entryD, _list.next(entryC));
+        assertSame("Unexpected tail", entryD, _list.getTail());
+    }
+
+    public void testConcurrentAdds() throws Exception
+    {
+        final int producers = 4;
+        final int messagesPerProducer = 1000;
+        _list = new ConcurrentSortedQueueEntryList(_testQueue);
+
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(producers);
+        for (int i = 0; i < producers; i++)
+        {
+            final int producer = i;
+            new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        startLatch.await();
+                        for (int j = 0; j < messagesPerProducer; j++)
+                        {
+                            final long messageId = (long) producer * messagesPerProducer + j;
+                            _list.add(generateTestMessage(messageId, String.format("%05d", messageId)), null);
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    finally
+                    {
+                        doneLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        startLatch.countDown();
+        assertTrue("Producers did not finish", doneLatch.await(10, TimeUnit.SECONDS));
+
+        final QueueEntryIterator iter = _list.iterator();
+        long expectedId = 0L;
+        while(iter.advance())
+        {
+            assertEquals("Unexpected entry order", expectedId++, iter.getNode().getMessage().getMessageNumber());
+        }
+        assertEquals("Unexpected number of entries", (long) producers * messagesPerProducer, expectedId);
+    }
+
+    private Object getSortedKeyValue(QueueEntry node)
+    {
+        return node.getMessage().getMessageHeader().getHeader("KEY");
+    }
+
+    private ServerMessage generateTestMessage(final long id, final String keyValue)
+    {
+        final ServerMessage message = mock(ServerMessage.class);
+        AMQMessageHeader hdr = mock(AMQMessageHeader.class);
+        when(message.getMessageHeader()).thenReturn(hdr);
+        when(hdr.getHeader(eq("KEY"))).thenReturn(keyValue);
+        when(hdr.containsHeader(eq("KEY"))).thenReturn(true);
+        when(hdr.getHeaderNames()).thenReturn(Collections.singleton("KEY"));
+        MessageReference ref = mock(MessageReference.class);
+        when(ref.getMessage()).thenReturn(message);
+        when(message.newReference()).thenReturn(ref);
+        when(message.newReference(any(TransactionLogResource.class))).thenReturn(ref);
+        when(message.getMessageNumber()).thenReturn(id);
+
+        return message;
+    }
+}
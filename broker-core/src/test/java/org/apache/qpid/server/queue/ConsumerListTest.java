@@ -215,6 +215,49 @@ public class ConsumerListTest extends QpidTestCase
         assertEquals("Unexpected size result", 0, subList.size());
     }
 
+    /**
+     * Tests that consumers are grouped into priority levels, highest first, counting the active consumers of each.
+     */
+    public void testPriorityLevels()
+    {
+        QueueConsumerList subList = new QueueConsumerList();
+
+        QueueConsumer low = newMockConsumer();
+        QueueConsumer high = newMockConsumer();
+        QueueConsumer high2 = newMockConsumer();
+        when(low.getPriority()).thenReturn(1);
+        when(high.getPriority()).thenReturn(10);
+        when(high2.getPriority()).thenReturn(10);
+        when(high.isActive()).thenReturn(true);
+
+        subList.add(low);
+        subList.add(high);
+        subList.add(high2);
+
+        QueueConsumerList.PriorityLevel[] levels = subList.getPriorityLevels();
+        assertEquals("Unexpected number of priority levels", 2, levels.length);
+        assertEquals("Unexpected highest priority", 10, levels[0].getPriority());
+        assertEquals("Unexpected consumers of highest priority", 2, levels[0].getConsumers().size());
+        assertEquals("Unexpected active consumers of highest priority", 1, levels[0].getActiveCount());
+        assertEquals("Unexpected lowest priority", 1, levels[1].getPriority());
+        assertEquals("Unexpected active consumers of lowest priority", 0, levels[1].getActiveCount());
+
+        when(high.isActive()).thenReturn(false);
+        subList.consumerStateChanged(high);
+        when(high2.isActive()).thenReturn(true);
+        subList.consumerStateChanged(high2);
+        subList.consumerStateChanged(high2);
+        assertEquals("Unexpected active consumers after state changes", 1, levels[0].getActiveCount());
+
+        assertTrue("Removing consumer from list should have succeeded", subList.remove(high2));
+        assertEquals("Unexpected active consumers after removal", 0, levels[0].getActiveCount());
+
+        assertTrue("Removing consumer from list should have succeeded", subList.remove(low));
+        levels = subList.getPriorityLevels();
+        assertEquals("Unexpected number of priority levels after removal", 1, levels.length);
+        assertEquals("Unexpected remaining priority", 10, levels[0].getPriority());
+    }
+
     /**
      * Test that if the first (non-head) node in the list is removed it is no longer
      * present in the node structure of the list at all.
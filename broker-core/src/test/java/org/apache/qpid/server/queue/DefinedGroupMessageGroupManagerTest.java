@@ -0,0 +1,259 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.server.consumer.ConsumerImpl;
+import org.apache.qpid.server.message.AMQMessageHeader;
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.MessageInstance.EntryState;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.util.StateChangeListener;
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class DefinedGroupMessageGroupManagerTest extends QpidTestCase
+{
+    private static final String GROUP_HEADER = "group";
+    private static final String DEFAULT_GROUP = "default";
+
+    private final Map<QueueEntry, Long> _entryIds = new HashMap<>();
+    private MessageGroupManager.ConsumerResetHelper _resetHelper;
+    private DefinedGroupMessageGroupManager _groupManager;
+    private QueueConsumer<?> _consumer1;
+    private QueueConsumer<?> _consumer2;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _resetHelper = mock(MessageGroupManager.ConsumerResetHelper.class);
+        _groupManager = new DefinedGroupMessageGroupManager(GROUP_HEADER, DEFAULT_GROUP, _resetHelper);
+        _consumer1 = mock(QueueConsumer.class);
+        _consumer2 = mock(QueueConsumer.class);
+    }
+
+    public void testGroupAssignedToFirstAcceptingConsumer()
+    {
+        QueueEntry entry1 = createEntry(1, "A");
+        QueueEntry entry2 = createEntry(2, "A");
+        QueueEntry entry3 = createEntry(3, "B");
+        QueueEntry entry4 = createEntry(4, null);
+
+        acquire(_consumer1, entry1);
+
+        assertTrue("Consumer might not be assigned its own group", _groupManager.mightAssign(entry2, _consumer1));
+        assertFalse("Consumer might be assigned a group of another consumer",
+                    _groupManager.mightAssign(entry2, _consumer2));
+        assertFalse("Consumer accepted a message of a group of another consumer",
+                    _groupManager.acceptMessage(_consumer2, entry2));
+        assertTrue("Consumer did not accept a message of an unassigned group",
+                   _groupManager.acceptMessage(_consumer2, entry3));
+
+        acquire(_consumer2, entry4);
+        assertFalse("Message without group header not assigned to the default group",
+                    _groupManager.acceptMessage(_consumer1, createEntry(5, DEFAULT_GROUP)));
+    }
+
+    public void testSkippedEntriesResetWhenGroupReleased()
+    {
+        QueueEntry entry1 = createEntry(1, "A");
+        QueueEntry entry2 = createEntry(2, "A");
+        QueueEntry entry3 = createEntry(3, "A");
+
+        StateChangeListener<MessageInstance, EntryState> listener = acquire(_consumer1, entry1);
+        assertFalse("Consumer might be assigned a group of another consumer",
+                    _groupManager.mightAssign(entry3, _consumer2));
+        assertFalse("Consumer accepted a message of a group of another consumer",
+                    _groupManager.acceptMessage(_consumer2, entry2));
+        verify(_resetHelper, never()).resetSubPointersForGroups(any(QueueEntry.class));
+
+        listener.stateChanged(entry1, acquiredState(_consumer1), MessageInstance.DEQUEUED_STATE);
+
+        verify(_resetHelper).resetSubPointersForGroups(entry2);
+        assertTrue("Group not released by its consumer", _groupManager.acceptMessage(_consumer2, entry2));
+    }
+
+    public void testGroupKeptWhileConsumerHoldsMessages()
+    {
+        QueueEntry entry1 = createEntry(1, "A");
+        QueueEntry entry2 = createEntry(2, "A");
+
+        StateChangeListener<MessageInstance, EntryState> listener = acquire(_consumer1, entry1);
+        acquire(_consumer1, entry2);
+
+        listener.stateChanged(entry1, acquiredState(_consumer1), MessageInstance.DEQUEUED_STATE);
+
+        assertFalse("Group released while its consumer still holds a message",
+                    _groupManager.acceptMessage(_consumer2, createEntry(3, "A")));
+        verify(_resetHelper, never()).resetSubPointersForGroups(any(QueueEntry.class));
+    }
+
+    public void testGroupReassignedAfterClosedConsumerReleasesMessages()
+    {
+        QueueEntry entry1 = createEntry(1, "A");
+        QueueEntry entry2 = createEntry(2, "A");
+
+        StateChangeListener<MessageInstance, EntryState> listener = acquire(_consumer1, entry1);
+        when(_consumer1.isClosed()).thenReturn(true);
+
+        assertFalse("Group reassigned while the closed consumer still holds a message",
+                    _groupManager.acceptMessage(_consumer2, entry2));
+
+        listener.stateChanged(entry1, acquiredState(_consumer1), MessageInstance.AVAILABLE_STATE);
+
+        verify(_resetHelper).resetSubPointersForGroups(entry2);
+        assertTrue("Group not reassigned after the closed consumer released its messages",
+                   _groupManager.acceptMessage(_consumer2, entry1));
+    }
+
+    public void testGroupReassignedAfterConsumerClosedHoldingNoMessages()
+    {
+        QueueEntry entry1 = createEntry(1, "A");
+        QueueEntry entry2 = createEntry(2, "A");
+
+        // the consumer is assigned the group, but loses the message to another acquirer
+        when(entry1.acquire(any(ConsumerImpl.class))).thenReturn(false);
+        assertFalse("Consumer acquired a message already acquired", _groupManager.acceptMessage(_consumer1, entry1));
+        assertFalse("Consumer accepted a message of a group of another consumer",
+                    _groupManager.acceptMessage(_consumer2, entry2));
+
+        when(_consumer1.isClosed()).thenReturn(true);
+        _groupManager.clearAssignments(_consumer1);
+
+        assertTrue("Group of a closed consumer not reassigned", _groupManager.acceptMessage(_consumer2, entry2));
+        assertFalse("Reassigned group accepted by its previous consumer",
+                    _groupManager.mightAssign(createEntry(3, "A"), _consumer1));
+    }
+
+    public void testEarliestAssignedAvailableEntryMatchesQueueScan()
+    {
+        List<QueueEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 12; i++)
+        {
+            entries.add(createEntry(i, Arrays.asList("A", "B", "C").get(i % 3)));
+        }
+
+        // consumer 1 is assigned groups A and B, consumer 2 group C, and each is offered the messages of the other
+        acquire(_consumer1, entries.get(0));
+        acquire(_consumer1, entries.get(1));
+        acquire(_consumer2, entries.get(2));
+        for (QueueEntry entry : entries.subList(3, entries.size()))
+        {
+            assertFalse("Consumer accepted a message of a group of another consumer",
+                        _groupManager.acceptMessage(getGroup(entry).equals("C") ? _consumer1 : _consumer2, entry));
+        }
+
+        assertSame("Unexpected earliest entry",
+                   findEarliestByScan(entries, _consumer1), _groupManager.findEarliestAssignedAvailableEntry(_consumer1));
+        assertSame("Unexpected earliest entry",
+                   entries.get(3), _groupManager.findEarliestAssignedAvailableEntry(_consumer1));
+
+        // the earliest entries are acquired by others or deleted in the meantime
+        when(entries.get(3).isAvailable()).thenReturn(false);
+        when(entries.get(4).isAvailable()).thenReturn(false);
+        when(entries.get(4).isDeleted()).thenReturn(true);
+
+        assertSame("Unexpected earliest entry",
+                   findEarliestByScan(entries, _consumer1), _groupManager.findEarliestAssignedAvailableEntry(_consumer1));
+        assertSame("Unexpected earliest entry",
+                   entries.get(6), _groupManager.findEarliestAssignedAvailableEntry(_consumer1));
+        assertSame("Unexpected earliest entry",
+                   findEarliestByScan(entries, _consumer2), _groupManager.findEarliestAssignedAvailableEntry(_consumer2));
+    }
+
+    /**
+     * Finds the earliest entry to which a consumer must be reset by visiting every entry of the queue, as the manager
+     * did before it indexed the entries its consumers skipped.
+     */
+    private QueueEntry findEarliestByScan(final List<QueueEntry> entries, final QueueConsumer<?> consumer)
+    {
+        for (QueueEntry entry : entries.subList(3, entries.size()))
+        {
+            if (entry.isAvailable() && _groupManager.mightAssign(entry, consumer)
+                && !_groupManager.mightAssign(entry, mock(QueueConsumer.class)))
+            {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private StateChangeListener<MessageInstance, EntryState> acquire(final QueueConsumer<?> consumer,
+                                                                     final QueueEntry entry)
+    {
+        assertTrue("Consumer did not accept message", _groupManager.acceptMessage(consumer, entry));
+
+        ArgumentCaptor<StateChangeListener> captor = ArgumentCaptor.forClass(StateChangeListener.class);
+        verify(entry).addStateChangeListener(captor.capture());
+        StateChangeListener<MessageInstance, EntryState> listener = captor.getValue();
+        listener.stateChanged(entry, MessageInstance.AVAILABLE_STATE, acquiredState(consumer));
+        return listener;
+    }
+
+    private EntryState acquiredState(final QueueConsumer<?> consumer)
+    {
+        return new MessageInstance.StealableConsumerAcquiredState<QueueConsumer<?>>(consumer);
+    }
+
+    private String getGroup(final QueueEntry entry)
+    {
+        return (String) entry.getMessage().getMessageHeader().getHeader(GROUP_HEADER);
+    }
+
+    private QueueEntry createEntry(final long id, final String group)
+    {
+        final AMQMessageHeader header = mock(AMQMessageHeader.class);
+        when(header.getHeader(GROUP_HEADER)).thenReturn(group);
+        final ServerMessage message = mock(ServerMessage.class);
+        when(message.getMessageHeader()).thenReturn(header);
+
+        final QueueEntry entry = mock(QueueEntry.class);
+        when(entry.getMessage()).thenReturn(message);
+        when(entry.isAvailable()).thenReturn(true);
+        when(entry.acquire(any(ConsumerImpl.class))).thenReturn(true);
+        when(entry.compareTo(any(QueueEntry.class))).thenAnswer(new Answer<Integer>()
+        {
+            @Override
+            public Integer answer(final InvocationOnMock invocation) throws Throwable
+            {
+                final QueueEntry other = (QueueEntry) invocation.getArguments()[0];
+                return Long.compare(id, _entryIds.get(other));
+            }
+        });
+        _entryIds.put(entry, id);
+        return entry;
+    }
+}
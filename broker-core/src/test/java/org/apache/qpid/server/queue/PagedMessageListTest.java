@@ -0,0 +1,107 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.NoSuchElementException;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class PagedMessageListTest extends QpidTestCase
+{
+    private PagedMessageList _list;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _list = new PagedMessageList();
+    }
+
+    public void testEmptyList()
+    {
+        assertTrue("New list should be empty", _list.isEmpty());
+        assertEquals("Unexpected size", 0, _list.size());
+        try
+        {
+            _list.peek();
+            fail("Exception not thrown");
+        }
+        catch (NoSuchElementException e)
+        {
+            // pass
+        }
+        try
+        {
+            _list.peekSize();
+            fail("Exception not thrown");
+        }
+        catch (NoSuchElementException e)
+        {
+            // pass
+        }
+    }
+
+    public void testRemoveInOrderOfAddition()
+    {
+        // span several chunks
+        final int count = 5000;
+        for (long i = 0; i < count; i++)
+        {
+            _list.add(i * 3, i);
+        }
+        assertEquals("Unexpected size", count, _list.size());
+
+        for (long i = 0; i < count; i++)
+        {
+            assertEquals("Unexpected head", i * 3, _list.peek());
+            assertEquals("Unexpected head size", i, _list.peekSize());
+            assertEquals("Unexpected message number", i * 3, _list.remove());
+        }
+        assertTrue("List should be empty", _list.isEmpty());
+    }
+
+    public void testInterleavedAddAndRemove()
+    {
+        long next = 0;
+        long expected = 0;
+        for (int round = 0; round < 10; round++)
+        {
+            for (int i = 0; i < 700; i++)
+            {
+                _list.add(next++, 0L);
+            }
+            for (int i = 0; i < 500; i++)
+            {
+                assertEquals("Unexpected message number", expected++, _list.remove());
+            }
+        }
+        assertEquals("Unexpected size", next - expected, _list.size());
+        while (!_list.isEmpty())
+        {
+            assertEquals("Unexpected message number", expected++, _list.remove());
+        }
+        assertEquals("Unexpected number of messages removed", next, expected);
+
+        _list.add(42L, 7L);
+        assertEquals("Unexpected size after emptying", 7L, _list.peekSize());
+        assertEquals("Unexpected message number after emptying", 42L, _list.remove());
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.qpid.server.consumer.ConsumerImpl;
+import org.apache.qpid.server.consumer.MockConsumer;
+import org.apache.qpid.server.message.MessageInstance;
+import org.apache.qpid.server.message.ServerMessage;
+import org.apache.qpid.server.model.Queue;
+
+public class PartitionedQueueTest extends AbstractQueueTestBase
+{
+    private static final int PARTITIONS = 3;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        setArguments(Collections.singletonMap(PartitionedQueue.PARTITIONS, (Object) PARTITIONS));
+        super.setUp();
+    }
+
+    public void testMessagesEnqueuedByDifferentThreadsAreAllDelivered() throws Exception
+    {
+        final PartitionedQueueImpl queue = (PartitionedQueueImpl) getQueue();
+        final int messagesPerThread = 5;
+        final Thread[] threads = new Thread[PARTITIONS * 2];
+        for (int i = 0; i < threads.length; i++)
+        {
+            final long firstId = (long) i * messagesPerThread;
+            threads[i] = new Thread(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (long id = firstId; id < firstId + messagesPerThread; id++)
+                    {
+                        queue.enqueue(createMessage(id), null, null);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads)
+        {
+            thread.join();
+        }
+
+        final int messageCount = threads.length * messagesPerThread;
+        assertEquals("Unexpected queue depth", messageCount, queue.getQueueDepthMessages());
+
+        Set<Integer> partitions = new HashSet<>();
+        QueueEntryIterator iterator = queue.getEntries().iterator();
+        QueueEntry previous = null;
+        while (iterator.advance())
+        {
+            QueueEntry entry = iterator.getNode();
+            if (previous != null)
+            {
+                assertTrue("Entries not iterated in order", previous.compareTo(entry) < 0);
+            }
+            partitions.add(((PartitionedQueueEntryList.PartitionedQueueEntry) entry).getPartition());
+            previous = entry;
+        }
+        assertTrue("Entries held in more partitions than the queue has", partitions.size() <= PARTITIONS);
+
+        queue.addConsumer(getConsumer(), null, null, "test", EnumSet.noneOf(ConsumerImpl.Option.class), 0);
+        Thread.sleep(150);
+
+        Set<Long> delivered = new HashSet<>();
+        for (MessageInstance instance : getConsumer().getMessages())
+        {
+            delivered.add(instance.getMessage().getMessageNumber());
+        }
+        assertEquals("Not all messages were delivered", messageCount, delivered.size());
+    }
+
+    public void testNoPartitionStarvedWhileFirstPartitionIsFed() throws Exception
+    {
+        final PartitionedQueueImpl queue = (PartitionedQueueImpl) getQueue();
+        final int credit = 5;
+        enqueueOnPartition(queue, 0, 0L, credit * 4);
+        for (int partition = 1; partition < PARTITIONS; partition++)
+        {
+            enqueueOnPartition(queue, partition, partition * 100L, credit);
+        }
+
+        final AtomicBoolean feeding = new AtomicBoolean(true);
+        final Thread feeder = createThreadOnPartition(0, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                long id = 1000L;
+                while (feeding.get())
+                {
+                    queue.enqueue(createMessage(id++), null, null);
+                    try
+                    {
+                        Thread.sleep(1);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        });
+        feeder.start();
+
+        final Map<Integer, MockConsumer> targetsByHomePartition = new HashMap<>();
+        try
+        {
+            for (int i = 0; i < PARTITIONS; i++)
+            {
+                final MockConsumer target = new CreditLimitedConsumer(credit);
+                final QueueConsumer<?> consumer = (QueueConsumer<?>) queue.addConsumer(target,
+                                                                                      null,
+                                                                                      null,
+                                                                                      "test" + i,
+                                                                                      EnumSet.noneOf(ConsumerImpl.Option.class),
+                                                                                      0);
+                targetsByHomePartition.put(queue.getPartition(consumer), target);
+            }
+            Thread.sleep(150);
+        }
+        finally
+        {
+            feeding.set(false);
+            feeder.join();
+        }
+
+        assertEquals("Consumers do not have a home partition each", PARTITIONS, targetsByHomePartition.size());
+        for (Map.Entry<Integer, MockConsumer> entry : targetsByHomePartition.entrySet())
+        {
+            final int homePartition = entry.getKey();
+            assertEquals("Unexpected number of messages delivered to the consumer of partition " + homePartition,
+                         credit, entry.getValue().getMessages().size());
+            for (MessageInstance instance : entry.getValue().getMessages())
+            {
+                assertEquals("Consumer not delivered the messages of its home partition",
+                             homePartition,
+                             ((PartitionedQueueEntryList.PartitionedQueueEntry) instance).getPartition());
+            }
+        }
+    }
+
+    public void testPartitionWithoutHomeConsumerServedWhileHomesAreBacklogged() throws Exception
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put(Queue.NAME, "testPartitionWithoutHomeConsumerServedWhileHomesAreBacklogged");
+        attributes.put(PartitionedQueue.PARTITIONS, PARTITIONS);
+        attributes.put(Queue.CONTEXT, Collections.singletonMap(PartitionedQueue.MAXIMUM_HOME_DELIVERIES, "5"));
+        final PartitionedQueueImpl queue = (PartitionedQueueImpl) getVirtualHost().createChild(Queue.class, attributes);
+
+        // the oldest messages are on the last partition, which is no consumer's home
+        final int unhomedPartition = PARTITIONS - 1;
+        enqueueOnPartition(queue, unhomedPartition, 0L, 3);
+        for (int partition = 0; partition < unhomedPartition; partition++)
+        {
+            enqueueOnPartition(queue, partition, (partition + 1) * 100L, 50);
+        }
+
+        final int credit = 30;
+        final Map<Integer, MockConsumer> targetsByHomePartition = new HashMap<>();
+        for (int i = 0; i < unhomedPartition; i++)
+        {
+            final MockConsumer target = new CreditLimitedConsumer(credit);
+            final QueueConsumer<?> consumer = (QueueConsumer<?>) queue.addConsumer(target,
+                                                                                  null,
+                                                                                  null,
+                                                                                  "test" + i,
+                                                                                  EnumSet.noneOf(ConsumerImpl.Option.class),
+                                                                                  0);
+            targetsByHomePartition.put(queue.getPartition(consumer), target);
+        }
+        assertEquals("Consumers of the queue share a home partition",
+                     unhomedPartition, targetsByHomePartition.size());
+        assertFalse("A consumer has the last partition as its home",
+                    targetsByHomePartition.containsKey(unhomedPartition));
+
+        long timeout = System.currentTimeMillis() + 10000L;
+        int delivered;
+        do
+        {
+            Thread.sleep(10);
+            delivered = 0;
+            for (MockConsumer target : targetsByHomePartition.values())
+            {
+                delivered += target.getMessages().size();
+            }
+        }
+        while (delivered < credit * unhomedPartition && System.currentTimeMillis() < timeout);
+        assertEquals("Unexpected number of messages delivered", credit * unhomedPartition, delivered);
+
+        int deliveredFromUnhomedPartition = 0;
+        for (MockConsumer target : targetsByHomePartition.values())
+        {
+            for (MessageInstance instance : target.getMessages())
+            {
+                if (((PartitionedQueueEntryList.PartitionedQueueEntry) instance).getPartition() == unhomedPartition)
+                {
+                    deliveredFromUnhomedPartition++;
+                }
+            }
+        }
+        assertEquals("Messages of the partition without a home consumer held back behind the backlogs of the homes",
+                     3, deliveredFromUnhomedPartition);
+    }
+
+    private void enqueueOnPartition(final PartitionedQueueImpl queue,
+                                    final int partition,
+                                    final long firstId,
+                                    final int count) throws InterruptedException
+    {
+        final Thread thread = createThreadOnPartition(partition, new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (long id = firstId; id < firstId + count; id++)
+                {
+                    queue.enqueue(createMessage(id), null, null);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+    }
+
+    /**
+     * Messages of queues without groups are added to the partition of the enqueuing thread, so create threads until
+     * one enqueues onto the given partition.
+     */
+    private Thread createThreadOnPartition(final int partition, final Runnable runnable)
+    {
+        Thread thread;
+        do
+        {
+            thread = new Thread(runnable);
+        }
+        while (thread.getId() % PARTITIONS != partition);
+        return thread;
+    }
+
+    private static class CreditLimitedConsumer extends MockConsumer
+    {
+        private final AtomicInteger _credit;
+
+        private CreditLimitedConsumer(final int credit)
+        {
+            _credit = new AtomicInteger(credit);
+        }
+
+        @Override
+        public boolean allocateCredit(final ServerMessage msg)
+        {
+            if (_credit.decrementAndGet() >= 0)
+            {
+                return true;
+            }
+            _credit.incrementAndGet();
+            return false;
+        }
+
+        @Override
+        public void restoreCredit(final ServerMessage message)
+        {
+            _credit.incrementAndGet();
+        }
+
+        @Override
+        public boolean hasCredit()
+        {
+            return super.hasCredit() && _credit.get() > 0;
+        }
+    }
+}
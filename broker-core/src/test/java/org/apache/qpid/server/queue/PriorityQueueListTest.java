@@ -161,4 +161,30 @@ public class PriorityQueueListTest extends QpidTestCase
         assertEquals("second message with priority 4 should be 'later' than second message of priority 5",
                 1, _priority4message2.compareTo(_priority5message2));
     }
+
+    public void testNextMovesToNextNonEmptyPriority()
+    {
+        assertSame("Unexpected first entry", _priority5message1, _list.next(_list.getHead()));
+        assertSame("Unexpected entry after last entry of priority 5",
+                   _priority4message1, _list.next(_priority5message2));
+        assertNull("Unexpected entry after last entry of priority 4", _list.next(_priority4message2));
+    }
+
+    public void testIterationAfterPriorityEmptied()
+    {
+        _priority5message1.acquire();
+        _priority5message1.delete();
+        _priority5message2.acquire();
+        _priority5message2.delete();
+
+        QueueEntryIterator iterator = _list.iterator();
+        assertTrue("Iterator should have been able to advance", iterator.advance());
+        assertSame("Unexpected first entry", _priority4message1, iterator.getNode());
+        assertTrue("Iterator should have been able to advance", iterator.advance());
+        assertSame("Unexpected second entry", _priority4message2, iterator.getNode());
+        assertFalse("Iterator should not have been able to advance", iterator.advance());
+        assertTrue("Iterator should have been 'atTail'", iterator.atTail());
+
+        assertSame("Unexpected oldest entry", _priority4message1, _list.getOldestEntry());
+    }
 }
@@ -96,6 +96,22 @@ public class PriorityQueueTest extends AbstractQueueTestBase
 
     }
 
+    public void testHighPriorityMessageDeliveredFirstWithPagingWindow() throws Exception
+    {
+        AbstractQueue<?> queue = createQueueWithPagingWindow("testHighPriorityMessageDeliveredFirstWithPagingWindow", 4);
+        for (long id = 1; id <= 10; id++)
+        {
+            enqueueStoredMessage(queue, createMessage(id, (byte) 0), true);
+        }
+        queue.updatePaging();
+
+        enqueueStoredMessage(queue, createMessage(11L, (byte) 9), true);
+        queue.updatePaging();
+
+        assertEquals("Messages paged out by a priority queue", 0, queue.getPagedMessages());
+        assertEquals("High priority message not delivered first", Long.valueOf(11L), consumeHead(queue));
+    }
+
     protected ServerMessage createMessage(Long id, byte i)
     {
 
@@ -0,0 +1,113 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.queue;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class QueueEntryExpiryWheelTest extends QpidTestCase
+{
+    private static final long TICK = 1000L;
+    private static final long START = 1000000L * TICK;
+
+    private QueueEntryExpiryWheel _wheel;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _wheel = new QueueEntryExpiryWheel(TICK, START);
+    }
+
+    public void testEntryNotReturnedBeforeExpiration()
+    {
+        final QueueEntry entry = mock(QueueEntry.class);
+        _wheel.schedule(entry, START + 5 * TICK);
+
+        assertTrue("Entry returned early", _wheel.expire(START + 5 * TICK).isEmpty());
+        assertEquals("Unexpected entries", Collections.singletonList(entry), _wheel.expire(START + 6 * TICK));
+        assertEquals("Unexpected size", 0, _wheel.size());
+    }
+
+    public void testAlreadyExpiredEntryReturnedImmediately()
+    {
+        final QueueEntry entry = mock(QueueEntry.class);
+        _wheel.expire(START + 10 * TICK);
+        _wheel.schedule(entry, START);
+
+        assertEquals("Unexpected entries", Collections.singletonList(entry), _wheel.expire(START + 10 * TICK));
+    }
+
+    public void testEntriesCascadeFromHigherLevels()
+    {
+        final QueueEntry soon = mock(QueueEntry.class);
+        final QueueEntry later = mock(QueueEntry.class);
+        final QueueEntry muchLater = mock(QueueEntry.class);
+        _wheel.schedule(soon, START + 3 * TICK);
+        _wheel.schedule(later, START + 100 * TICK);
+        _wheel.schedule(muchLater, START + 5000 * TICK);
+
+        assertEquals("Unexpected entries", Collections.singletonList(soon), _wheel.expire(START + 99 * TICK));
+        assertEquals("Unexpected entries", Collections.singletonList(later), _wheel.expire(START + 4999 * TICK));
+        assertTrue("Entry returned early", _wheel.expire(START + 5000 * TICK).isEmpty());
+        assertEquals("Unexpected entries", Collections.singletonList(muchLater), _wheel.expire(START + 5001 * TICK));
+    }
+
+    public void testExpirationBeyondWheelRange()
+    {
+        final QueueEntry entry = mock(QueueEntry.class);
+        final long expiration = START + (1L << 25) * TICK;
+        _wheel.schedule(entry, expiration);
+
+        assertTrue("Entry returned early", _wheel.expire(expiration).isEmpty());
+        assertEquals("Unexpected entries", Collections.singletonList(entry), _wheel.expire(expiration + TICK));
+    }
+
+    public void testDeletedEntryNotReturned()
+    {
+        final QueueEntry deleted = mock(QueueEntry.class);
+        when(deleted.isDeleted()).thenReturn(true);
+        final QueueEntry entry = mock(QueueEntry.class);
+        _wheel.schedule(deleted, START + TICK);
+        _wheel.schedule(entry, START + TICK);
+
+        assertEquals("Unexpected entries", Collections.singletonList(entry), _wheel.expire(START + 2 * TICK));
+        assertEquals("Unexpected size", 0, _wheel.size());
+    }
+
+    public void testEntriesDueInSameTick()
+    {
+        final QueueEntry first = mock(QueueEntry.class);
+        final QueueEntry second = mock(QueueEntry.class);
+        _wheel.schedule(first, START + 70 * TICK);
+        _wheel.schedule(second, START + 70 * TICK + TICK / 2);
+
+        final List<QueueEntry> expired = _wheel.expire(START + 71 * TICK);
+        assertEquals("Unexpected entries", new HashSet<>(Arrays.asList(first, second)), new HashSet<>(expired));
+    }
+}
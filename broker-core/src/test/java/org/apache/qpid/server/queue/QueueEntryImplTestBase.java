@@ -168,6 +168,28 @@ public abstract class QueueEntryImplTestBase extends QpidTestCase
                                                  eq(NON_CONSUMER_ACQUIRED_STATE));
     }
 
+    public void testDeliveryCountAndFlags()
+    {
+        assertFalse("Entry should not initially be delivered to a consumer", _queueEntry.getDeliveredToConsumer());
+        assertEquals("Unexpected initial delivery count", 0, _queueEntry.getDeliveryCount());
+        assertNull("Entry enqueued without a record should have no enqueue record", _queueEntry.getEnqueueRecord());
+
+        _queueEntry.incrementDeliveryCount();
+        _queueEntry.incrementDeliveryCount();
+        _queueEntry.setRedelivered();
+
+        assertTrue("Entry should be delivered to a consumer", _queueEntry.getDeliveredToConsumer());
+        assertTrue("Entry should be redelivered", _queueEntry.isRedelivered());
+        assertEquals("Unexpected delivery count", 2, _queueEntry.getDeliveryCount());
+
+        _queueEntry.decrementDeliveryCount();
+        _queueEntry.decrementDeliveryCount();
+
+        assertEquals("Unexpected delivery count after decrement", 0, _queueEntry.getDeliveryCount());
+        assertTrue("Entry should remain delivered to a consumer", _queueEntry.getDeliveredToConsumer());
+        assertTrue("Entry should remain redelivered", _queueEntry.isRedelivered());
+    }
+
     public void testLocking()
     {
         QueueConsumer consumer = newConsumer();
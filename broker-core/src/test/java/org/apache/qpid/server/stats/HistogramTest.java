@@ -0,0 +1,119 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.stats;
+
+import java.util.Map;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class HistogramTest extends QpidTestCase
+{
+    public void testEmptyHistogram()
+    {
+        final Histogram histogram = new Histogram();
+
+        assertEquals("Unexpected count", 0L, histogram.getCount());
+        assertEquals("Unexpected mean", 0.0d, histogram.getMean());
+        assertEquals("Unexpected max", 0L, histogram.getMax());
+        assertEquals("Unexpected 99th percentile", 0L, histogram.getValueAtPercentile(99.0d));
+    }
+
+    public void testRecord()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(1L);
+        histogram.record(5L);
+        histogram.record(6L);
+        histogram.record(100L);
+
+        assertEquals("Unexpected count", 4L, histogram.getCount());
+        assertEquals("Unexpected sum", 112L, histogram.getSum());
+        assertEquals("Unexpected mean", 28.0d, histogram.getMean());
+        assertEquals("Unexpected max", 100L, histogram.getMax());
+    }
+
+    public void testValueAtPercentile()
+    {
+        final Histogram histogram = new Histogram();
+        for (int i = 0; i < 99; i++)
+        {
+            histogram.record(10L);
+        }
+        histogram.record(1000L);
+
+        assertEquals("Unexpected median", 15L, histogram.getValueAtPercentile(50.0d));
+        assertEquals("Unexpected 99th percentile", 15L, histogram.getValueAtPercentile(99.0d));
+        assertEquals("Unexpected 100th percentile", 1000L, histogram.getValueAtPercentile(100.0d));
+    }
+
+    public void testNegativeValueRecordedAsZero()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(-5L);
+
+        assertEquals("Unexpected count", 1L, histogram.getCount());
+        assertEquals("Unexpected sum", 0L, histogram.getSum());
+        assertEquals("Unexpected 50th percentile", 0L, histogram.getValueAtPercentile(50.0d));
+    }
+
+    public void testAdd()
+    {
+        final Histogram first = new Histogram();
+        first.record(2L);
+        final Histogram second = new Histogram();
+        second.record(3L);
+        second.record(40L);
+
+        first.add(second);
+
+        assertEquals("Unexpected count", 3L, first.getCount());
+        assertEquals("Unexpected sum", 45L, first.getSum());
+        assertEquals("Unexpected max", 40L, first.getMax());
+        assertEquals("Unexpected median", 3L, first.getValueAtPercentile(50.0d));
+    }
+
+    public void testReset()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(7L);
+        histogram.reset();
+
+        assertEquals("Unexpected count", 0L, histogram.getCount());
+        assertEquals("Unexpected max", 0L, histogram.getMax());
+        assertEquals("Unexpected 50th percentile", 0L, histogram.getValueAtPercentile(50.0d));
+    }
+
+    public void testToMap()
+    {
+        final Histogram histogram = new Histogram();
+        histogram.record(1L);
+        histogram.record(2L);
+        histogram.record(3L);
+
+        final Map<String, Object> map = histogram.toMap();
+        assertEquals("Unexpected count", 3L, map.get("count"));
+        assertEquals("Unexpected max", 3L, map.get("max"));
+        final Map<?, ?> buckets = (Map<?, ?>) map.get("buckets");
+        assertEquals("Unexpected bucket count", 2, buckets.size());
+        assertEquals("Unexpected count in bucket 1", 1L, buckets.get("1"));
+        assertEquals("Unexpected count in bucket 3", 2L, buckets.get("3"));
+    }
+}
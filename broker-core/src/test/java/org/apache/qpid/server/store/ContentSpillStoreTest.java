@@ -0,0 +1,202 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.store;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.test.utils.TestFileUtils;
+
+public class ContentSpillStoreTest extends QpidTestCase
+{
+    private static final int SEGMENT_SIZE = 1024;
+
+    private File _spillDirectory;
+    private ContentSpillStore _spillStore;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _spillDirectory = TestFileUtils.createTestDirectory("spill", true);
+        _spillStore = new ContentSpillStore(_spillDirectory, SEGMENT_SIZE);
+        _spillStore.open();
+    }
+
+    @Override
+    protected void tearDown() throws Exception
+    {
+        try
+        {
+            _spillStore.delete();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testSpilledContentReadBack()
+    {
+        final byte[] data = createData(100);
+        final ContentSpillStore.SpilledContent spilledContent = spill(data);
+
+        assertEquals("Unexpected length", data.length, spilledContent.getLength());
+        QpidByteBuffer content = spilledContent.getContent();
+        try
+        {
+            assertEquals("Unexpected remaining", data.length, content.remaining());
+            final byte[] readBack = new byte[data.length];
+            content.get(readBack);
+            assertTrue("Unexpected content", Arrays.equals(data, readBack));
+        }
+        finally
+        {
+            content.dispose();
+        }
+        assertEquals("Unexpected number of segment files", 1, countSegmentFiles());
+    }
+
+    public void testSegmentDeletedOnceAllContentReleased()
+    {
+        final ContentSpillStore.SpilledContent first = spill(createData(600));
+        final ContentSpillStore.SpilledContent second = spill(createData(600));
+        assertEquals("Unexpected number of segments", 2, _spillStore.getSegmentCount());
+        assertEquals("Unexpected number of segment files", 2, countSegmentFiles());
+
+        first.release();
+        assertEquals("Sealed segment should have been deleted", 1, _spillStore.getSegmentCount());
+        assertEquals("Unexpected number of segment files", 1, countSegmentFiles());
+
+        second.release();
+        assertEquals("Current segment should be retained", 1, _spillStore.getSegmentCount());
+
+        final ContentSpillStore.SpilledContent third = spill(createData(1000));
+        assertEquals("Drained segment should have been replaced", 1, _spillStore.getSegmentCount());
+        third.release();
+    }
+
+    public void testViewOfReleasedContentNotOverwritten()
+    {
+        final byte[] data = createData(100);
+        final ContentSpillStore.SpilledContent spilledContent = spill(data);
+        final QpidByteBuffer view = spilledContent.getContent();
+        try
+        {
+            spilledContent.release();
+
+            final byte[] otherData = new byte[100];
+            Arrays.fill(otherData, (byte) -1);
+            final ContentSpillStore.SpilledContent otherContent = spill(otherData);
+
+            final byte[] readBack = new byte[data.length];
+            view.get(readBack);
+            assertTrue("Content of a live view was overwritten", Arrays.equals(data, readBack));
+            otherContent.release();
+        }
+        finally
+        {
+            view.dispose();
+        }
+    }
+
+    public void testContentLargerThanSegment()
+    {
+        final byte[] data = createData(SEGMENT_SIZE * 3);
+        final ContentSpillStore.SpilledContent spilledContent = spill(data);
+        QpidByteBuffer content = spilledContent.getContent();
+        try
+        {
+            assertEquals("Unexpected remaining", data.length, content.remaining());
+        }
+        finally
+        {
+            content.dispose();
+        }
+        spilledContent.release();
+    }
+
+    public void testStoredMemoryMessageFlowsToDisk()
+    {
+        final byte[] data = createData(100);
+        final StoredMemoryMessage<TestMessageMetaData> message =
+                new StoredMemoryMessage<>(1L, new TestMessageMetaData(1L, data.length, false), _spillStore);
+        message.addContent(QpidByteBuffer.wrap(data));
+        message.allContentAdded();
+
+        assertTrue("Message should be in memory", message.isInMemory());
+        assertTrue("Message should have flowed to disk", message.flowToDisk());
+        assertFalse("Message should not be in memory", message.isInMemory());
+
+        final Collection<QpidByteBuffer> content = message.getContent(10, 20);
+        assertEquals("Unexpected number of buffers", 1, content.size());
+        final QpidByteBuffer buffer = content.iterator().next();
+        assertEquals("Unexpected remaining", 20, buffer.remaining());
+        assertEquals("Unexpected first byte", data[10], buffer.get());
+        buffer.dispose();
+
+        message.remove();
+        assertEquals("Current segment should be retained", 1, _spillStore.getSegmentCount());
+    }
+
+    public void testCloseDeletesSegmentFiles()
+    {
+        spill(createData(600));
+        spill(createData(600));
+        assertEquals("Unexpected number of segment files", 2, countSegmentFiles());
+
+        _spillStore.close();
+        assertEquals("Unexpected number of segment files", 0, countSegmentFiles());
+        assertNull("Closed store should not accept content", _spillStore.spill(QpidByteBuffer.wrap(createData(1))));
+    }
+
+    private ContentSpillStore.SpilledContent spill(final byte[] data)
+    {
+        final QpidByteBuffer buffer = QpidByteBuffer.wrap(data);
+        try
+        {
+            return _spillStore.spill(buffer);
+        }
+        finally
+        {
+            buffer.dispose();
+        }
+    }
+
+    private int countSegmentFiles()
+    {
+        final String[] names = _spillDirectory.list();
+        return names == null ? 0 : names.length;
+    }
+
+    private byte[] createData(final int size)
+    {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+        {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+}
@@ -32,6 +32,20 @@ public class TestMemoryMessageStore extends MemoryMessageStore
 {
     public static final String TYPE = "TestMemory";
 
+    private final AtomicInteger _transactionCount = new AtomicInteger();
+
+    @Override
+    public Transaction newTransaction()
+    {
+        _transactionCount.incrementAndGet();
+        return super.newTransaction();
+    }
+
+    public int getTransactionCount()
+    {
+        return _transactionCount.get();
+    }
+
     public int getMessageCount()
     {
         final AtomicInteger counter = new AtomicInteger();
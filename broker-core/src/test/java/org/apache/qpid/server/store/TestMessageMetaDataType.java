@@ -178,6 +178,12 @@ public class TestMessageMetaDataType implements MessageMetaDataType<TestMessageM
             return false;
         }
 
+        @Override
+        public boolean isReferencedOnlyBy(final TransactionLogResource resource)
+        {
+            return false;
+        }
+
         @Override
         public int hashCode()
         {
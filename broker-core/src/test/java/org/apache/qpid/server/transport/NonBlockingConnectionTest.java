@@ -0,0 +1,373 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.apache.qpid.bytebuffer.QpidByteBuffer;
+import org.apache.qpid.server.model.port.AmqpPort;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.network.TransportEncryption;
+
+public class NonBlockingConnectionTest extends QpidTestCase
+{
+    private static final int COALESCING_THRESHOLD = 1024;
+
+    private ServerSocketChannel _serverSocket;
+    private SocketChannel _clientChannel;
+    private SocketChannel _serverChannel;
+    private AmqpPort<?> _port;
+    private ProtocolEngine _protocolEngine;
+    private NetworkConnectionScheduler _scheduler;
+    private final List<Runnable> _pendingTasks = new ArrayList<>();
+    private volatile boolean _engineHasWork;
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _serverSocket = ServerSocketChannel.open();
+        _serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        _clientChannel = SocketChannel.open(_serverSocket.getLocalAddress());
+        _serverChannel = _serverSocket.accept();
+        _serverChannel.configureBlocking(false);
+        _clientChannel.configureBlocking(false);
+
+        _port = mock(AmqpPort.class);
+        when(_port.getNetworkBufferSize()).thenReturn(64 * 1024);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_THRESHOLD)).thenReturn(COALESCING_THRESHOLD);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_MAX_DELAY)).thenReturn(60000000L);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_BYTES)).thenReturn(0L);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TASKS)).thenReturn(0);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TIME)).thenReturn(0L);
+
+        _protocolEngine = mock(ProtocolEngine.class);
+        when(_protocolEngine.getAggregateTicker()).thenReturn(new AggregateTicker());
+        when(_protocolEngine.hasWork()).thenAnswer(new Answer<Boolean>()
+        {
+            @Override
+            public Boolean answer(final InvocationOnMock invocation)
+            {
+                return _engineHasWork;
+            }
+        });
+        when(_protocolEngine.processPendingIterator()).thenAnswer(new Answer<Iterator<Runnable>>()
+        {
+            @Override
+            public Iterator<Runnable> answer(final InvocationOnMock invocation)
+            {
+                final List<Runnable> tasks = new ArrayList<>(_pendingTasks);
+                _pendingTasks.clear();
+                return tasks.iterator();
+            }
+        });
+
+        _scheduler = mock(NetworkConnectionScheduler.class);
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            _clientChannel.close();
+            _serverChannel.close();
+            _serverSocket.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testSmallWriteDeferredWhileEngineHasWork() throws Exception
+    {
+        final NonBlockingConnection connection = createConnection();
+        _engineHasWork = true;
+        _pendingTasks.add(new SendTask(connection, 10));
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Small write should have been deferred", 0, connection.getTransportWriteCount());
+        assertEquals("Unexpected coalesced write count", 1, connection.getCoalescedWriteCount());
+        assertEquals("Unexpected bytes received", 0, readFromClient());
+
+        _engineHasWork = false;
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Deferred write should have been flushed", 1, connection.getTransportWriteCount());
+        assertEquals("Unexpected bytes received", 10, readFromClient());
+    }
+
+    public void testDeferredWriteFlushedAfterMaximumDelay() throws Exception
+    {
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_MAX_DELAY)).thenReturn(1000L);
+        final NonBlockingConnection connection = createConnection();
+        _engineHasWork = true;
+        _pendingTasks.add(new SendTask(connection, 10));
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Small write should have been deferred", 0, connection.getTransportWriteCount());
+
+        Thread.sleep(5);
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Deferred write should have been flushed after the maximum delay",
+                     1,
+                     connection.getTransportWriteCount());
+        assertEquals("Unexpected bytes received", 10, readFromClient());
+    }
+
+    public void testWriteReachingThresholdNotDeferred() throws Exception
+    {
+        final NonBlockingConnection connection = createConnection();
+        _engineHasWork = true;
+        _pendingTasks.add(new SendTask(connection, COALESCING_THRESHOLD));
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Write reaching the threshold should not have been deferred",
+                     1,
+                     connection.getTransportWriteCount());
+        assertEquals("Unexpected coalesced write count", 0, connection.getCoalescedWriteCount());
+        assertEquals("Unexpected bytes received", COALESCING_THRESHOLD, readFromClient());
+    }
+
+    public void testGatheringWriteCapped() throws Exception
+    {
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS)).thenReturn(2);
+        final NonBlockingConnection connection = createConnection();
+
+        final List<QpidByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+        {
+            buffers.add(QpidByteBuffer.wrap(new byte[10]));
+        }
+
+        assertEquals("Unexpected bytes written", 50, connection.writeToTransport(buffers));
+        assertEquals("Unexpected number of gathering writes", 3, connection.getTransportWriteCount());
+        for (QpidByteBuffer buffer : buffers)
+        {
+            assertFalse("Buffer not fully written", buffer.hasRemaining());
+            buffer.dispose();
+        }
+    }
+
+    public void testProcessingBudgetOfTasks() throws Exception
+    {
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TASKS)).thenReturn(2);
+        final NonBlockingConnection connection = createConnection();
+        final AtomicInteger tasksRun = new AtomicInteger();
+        for (int i = 0; i < 5; i++)
+        {
+            _pendingTasks.add(new CountingTask(tasksRun, 0L));
+        }
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Unexpected number of tasks run", 2, tasksRun.get());
+        assertTrue("Budget should be exhausted", connection.isProcessingBudgetExhausted());
+        assertEquals("Unexpected exhausted count", 1, connection.getProcessingBudgetExhaustedCount());
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Unexpected number of tasks run in the next turn", 4, tasksRun.get());
+    }
+
+    public void testProcessingBudgetOfBytes() throws Exception
+    {
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_BYTES)).thenReturn(10L);
+        final NonBlockingConnection connection = createConnection();
+
+        writeFromClient(100);
+        connection.doPreWork();
+        connection.doWork();
+        assertTrue("Budget should be exhausted", connection.isProcessingBudgetExhausted());
+        verify(_protocolEngine, times(1)).received(any(QpidByteBuffer.class));
+
+        writeFromClient(100);
+        connection.doWork();
+        verify(_protocolEngine, times(1)).received(any(QpidByteBuffer.class));
+
+        connection.doPreWork();
+        connection.doWork();
+        verify(_protocolEngine, times(2)).received(any(QpidByteBuffer.class));
+    }
+
+    public void testProcessingBudgetOfTime() throws Exception
+    {
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TIME)).thenReturn(1000L);
+        final NonBlockingConnection connection = createConnection();
+        final AtomicInteger tasksRun = new AtomicInteger();
+        for (int i = 0; i < 3; i++)
+        {
+            _pendingTasks.add(new CountingTask(tasksRun, 5L));
+        }
+
+        connection.doPreWork();
+        connection.doWork();
+        assertEquals("Unexpected number of tasks run", 1, tasksRun.get());
+        assertTrue("Budget should be exhausted", connection.isProcessingBudgetExhausted());
+    }
+
+    public void testConnectionExhaustingBudgetRequeued() throws Exception
+    {
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TASKS)).thenReturn(1);
+        _scheduler = spy(new NetworkConnectionScheduler("test", 1, 2, 1L));
+        doNothing().when(_scheduler).schedule(any(NonBlockingConnection.class));
+        final NonBlockingConnection connection = createConnection();
+        final AtomicInteger tasksRun = new AtomicInteger();
+        for (int i = 0; i < 3; i++)
+        {
+            _pendingTasks.add(new CountingTask(tasksRun, 0L));
+        }
+        _engineHasWork = true;
+
+        final String threadName = Thread.currentThread().getName();
+        try
+        {
+            assertTrue("Connection could not be scheduled", connection.setScheduled());
+            _scheduler.processConnection(connection);
+        }
+        finally
+        {
+            Thread.currentThread().setName(threadName);
+        }
+
+        assertEquals("Unexpected number of tasks run", 1, tasksRun.get());
+        verify(_protocolEngine, times(1)).clearWork();
+        verify(_scheduler, times(1)).schedule(connection);
+        assertTrue("Connection should have been released for rescheduling", connection.setScheduled());
+    }
+
+    private NonBlockingConnection createConnection()
+    {
+        return new NonBlockingConnection(_serverChannel,
+                                         _protocolEngine,
+                                         Collections.singleton(TransportEncryption.NONE),
+                                         mock(Runnable.class),
+                                         _scheduler,
+                                         _port);
+    }
+
+    private void writeFromClient(final int size) throws Exception
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining())
+        {
+            _clientChannel.write(buffer);
+        }
+        Thread.sleep(50);
+    }
+
+    private int readFromClient() throws Exception
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        int total = 0;
+        long timeout = System.currentTimeMillis() + 100L;
+        while (System.currentTimeMillis() < timeout)
+        {
+            final int read = _clientChannel.read(buffer);
+            if (read > 0)
+            {
+                total += read;
+            }
+            else
+            {
+                Thread.sleep(5);
+            }
+        }
+        return total;
+    }
+
+    private static final class CountingTask implements Runnable
+    {
+        private final AtomicInteger _count;
+        private final long _duration;
+
+        private CountingTask(final AtomicInteger count, final long duration)
+        {
+            _count = count;
+            _duration = duration;
+        }
+
+        @Override
+        public void run()
+        {
+            _count.incrementAndGet();
+            if (_duration > 0L)
+            {
+                try
+                {
+                    Thread.sleep(_duration);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class SendTask implements Runnable
+    {
+        private final NonBlockingConnection _connection;
+        private final int _size;
+
+        private SendTask(final NonBlockingConnection connection, final int size)
+        {
+            _connection = connection;
+            _size = size;
+        }
+
+        @Override
+        public void run()
+        {
+            final QpidByteBuffer buffer = QpidByteBuffer.wrap(new byte[_size]);
+            _connection.send(buffer);
+            buffer.dispose();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.mockito.ArgumentCaptor;
+
+import org.apache.qpid.server.model.port.AmqpPort;
+import org.apache.qpid.test.utils.QpidTestCase;
+import org.apache.qpid.transport.network.TransportEncryption;
+
+public class NonBlockingNetworkTransportTest extends QpidTestCase
+{
+    private AmqpPort<?> _port;
+    private NetworkConnectionScheduler _scheduler;
+    private MultiVersionProtocolEngineFactory _factory;
+    private NonBlockingNetworkTransport _transport;
+    private ServerSocketChannel _serverSocket;
+    private final List<SocketChannel> _clients = new ArrayList<>();
+
+    @Override
+    public void setUp() throws Exception
+    {
+        super.setUp();
+        _port = mock(AmqpPort.class);
+        when(_port.getBindingAddress()).thenReturn("127.0.0.1");
+        when(_port.getPort()).thenReturn(0);
+        when(_port.getName()).thenReturn("testAmqp");
+        when(_port.getNetworkBufferSize()).thenReturn(64 * 1024);
+        when(_port.getProtocolHandshakeTimeout()).thenReturn(50L);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_BACKLOG)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_ACCEPT_BACKLOG);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_RATE)).thenReturn(0);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_BURST)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_ACCEPT_BURST);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_MAX_CONCURRENT_HANDSHAKES)).thenReturn(1);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE)).thenReturn(0);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_THRESHOLD)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_WRITE_COALESCING_THRESHOLD);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_MAX_DELAY)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_WRITE_COALESCING_MAX_DELAY);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_BYTES)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_PROCESSING_BUDGET_BYTES);
+        when(_port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TASKS)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_PROCESSING_BUDGET_TASKS);
+        when(_port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TIME)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_PROCESSING_BUDGET_TIME);
+
+        _scheduler = mock(NetworkConnectionScheduler.class);
+        _factory = mock(MultiVersionProtocolEngineFactory.class);
+        when(_factory.newProtocolEngine(any(SocketAddress.class))).thenReturn(mock(MultiVersionProtocolEngine.class));
+
+        _transport = new NonBlockingNetworkTransport(_factory, EnumSet.of(TransportEncryption.NONE), _scheduler, _port);
+        _transport.start();
+        final ArgumentCaptor<ServerSocketChannel> serverSocketCaptor = ArgumentCaptor.forClass(ServerSocketChannel.class);
+        verify(_scheduler).addAcceptingSocket(serverSocketCaptor.capture(), eq(_transport));
+        _serverSocket = serverSocketCaptor.getValue();
+    }
+
+    @Override
+    public void tearDown() throws Exception
+    {
+        try
+        {
+            for (SocketChannel client : _clients)
+            {
+                client.close();
+            }
+            _transport.close();
+        }
+        finally
+        {
+            super.tearDown();
+        }
+    }
+
+    public void testHandshakeSlotReleasedWhenConnectionCannotBeRegistered() throws Exception
+    {
+        doThrow(new IllegalStateException("Test")).when(_scheduler).addConnection(any(NonBlockingConnection.class));
+
+        final SocketChannel client = connect();
+        try
+        {
+            _transport.acceptSocketChannel(_serverSocket);
+            fail("Exception not thrown");
+        }
+        catch (IllegalStateException e)
+        {
+            // pass
+        }
+
+        assertEquals("Unexpected handshakes in progress", 0, _transport.getHandshakesInProgress());
+        assertSocketClosed(client);
+    }
+
+    public void testQueuedSocketClosedAfterAdmissionTimeout() throws Exception
+    {
+        connect();
+        final SocketChannel queuedClient = connect();
+
+        assertTrue("Accepting should have been delayed by the handshake limit",
+                   _transport.acceptSocketChannel(_serverSocket) > 0L);
+        assertEquals("Unexpected handshakes in progress", 1, _transport.getHandshakesInProgress());
+        assertEquals("Unexpected accept queue depth", 1, _transport.getAcceptQueueDepth());
+
+        Thread.sleep(100);
+
+        _transport.acceptSocketChannel(_serverSocket);
+        assertEquals("Timed out socket should have left the accept queue", 0, _transport.getAcceptQueueDepth());
+        assertSocketClosed(queuedClient);
+    }
+
+    private SocketChannel connect() throws Exception
+    {
+        final SocketChannel client = SocketChannel.open(new InetSocketAddress("127.0.0.1",
+                                                                              _transport.getAcceptingPort()));
+        _clients.add(client);
+        // allow the server socket to complete the connection before it is accepted
+        Thread.sleep(20);
+        return client;
+    }
+
+    private void assertSocketClosed(final SocketChannel client) throws Exception
+    {
+        assertEquals("Socket should have been closed by the broker", -1, client.read(ByteBuffer.allocate(1)));
+    }
+}
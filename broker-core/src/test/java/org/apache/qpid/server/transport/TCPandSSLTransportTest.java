@@ -148,8 +148,20 @@ public class TCPandSSLTransportTest extends QpidTestCase
         when(port.getNumberOfSelectors()).thenReturn(1);
         when(port.getSSLContext()).thenReturn(sslContext);
         when(port.getContextValue(Long.class, AmqpPort.PORT_AMQP_THREAD_POOL_KEEP_ALIVE_TIMEOUT)).thenReturn(1l);
+        when(port.getContextValue(Boolean.class, AmqpPort.PORT_AMQP_THREAD_POOL_WORK_STEALING)).thenReturn(false);
         when(port.getContextValue(Long.class, AmqpPort.PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_OUTBOUND_MESSAGE_BUFFER_SIZE);
         when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_BACKLOG)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_ACCEPT_BACKLOG);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_THRESHOLD)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_WRITE_COALESCING_THRESHOLD);
+        when(port.getContextValue(Long.class, AmqpPort.PORT_AMQP_WRITE_COALESCING_MAX_DELAY)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_WRITE_COALESCING_MAX_DELAY);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_MAX_GATHERING_WRITE_BUFFERS);
+        when(port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_BYTES)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_PROCESSING_BUDGET_BYTES);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TASKS)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_PROCESSING_BUDGET_TASKS);
+        when(port.getContextValue(Long.class, AmqpPort.PORT_AMQP_PROCESSING_BUDGET_TIME)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_PROCESSING_BUDGET_TIME);
+        when(port.getContextValue(Long.class, AmqpPort.PORT_AMQP_TLS_IDLE_BUFFER_RELEASE_DELAY)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_TLS_IDLE_BUFFER_RELEASE_DELAY);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_RATE)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_ACCEPT_RATE);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_ACCEPT_BURST)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_ACCEPT_BURST);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_MAX_CONCURRENT_HANDSHAKES)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_MAX_CONCURRENT_HANDSHAKES);
+        when(port.getContextValue(Integer.class, AmqpPort.PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE)).thenReturn(AmqpPort.DEFAULT_PORT_AMQP_HANDSHAKE_THREAD_POOL_SIZE);
         when(port.getProtocolHandshakeTimeout()).thenReturn(AmqpPort.DEFAULT_PROTOCOL_HANDSHAKE_TIMEOUT);
         ObjectMapper mapper = new ObjectMapper();
         JavaType type = mapper.getTypeFactory().constructCollectionType(List.class, String.class);
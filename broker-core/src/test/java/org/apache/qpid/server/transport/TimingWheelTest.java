@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class TimingWheelTest extends QpidTestCase
+{
+    private static final long TICK = 10L;
+
+    public void testItemExpiresAtDeadline()
+    {
+        final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 1000L);
+        wheel.schedule("a", 1025L);
+
+        assertEquals("Unexpected time to next expiry", 30L, wheel.getTimeToNextExpiry(1000L));
+        assertTrue("Item expired early", wheel.expire(1024L).isEmpty());
+        assertEquals("Unexpected expired items", Collections.singletonList("a"), wheel.expire(1030L));
+        assertEquals("Unexpected size", 0, wheel.size());
+        assertEquals("Unexpected time to next expiry", Long.MAX_VALUE, wheel.getTimeToNextExpiry(1030L));
+    }
+
+    public void testItemBeyondRevolution()
+    {
+        final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0L);
+        wheel.schedule("a", 200L);
+        wheel.schedule("b", 20L);
+
+        assertEquals("Unexpected expired items", Collections.singletonList("b"), wheel.expire(80L));
+        assertTrue("Item expired a revolution early", wheel.expire(150L).isEmpty());
+        assertEquals("Unexpected expired items", Collections.singletonList("a"), wheel.expire(210L));
+    }
+
+    public void testExpireAfterSeveralRevolutions()
+    {
+        final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0L);
+        wheel.schedule("a", 30L);
+        wheel.schedule("b", 500L);
+        wheel.schedule("c", 5000L);
+
+        assertEquals("Unexpected expired items",
+                     new HashSet<>(Arrays.asList("a", "b")),
+                     new HashSet<>(wheel.expire(1000L)));
+        assertEquals("Unexpected size", 1, wheel.size());
+    }
+
+    public void testRescheduleReplacesDeadline()
+    {
+        final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0L);
+        wheel.schedule("a", 20L);
+        wheel.schedule("a", 60L);
+
+        assertEquals("Unexpected size", 1, wheel.size());
+        assertTrue("Item expired at replaced deadline", wheel.expire(30L).isEmpty());
+        assertEquals("Unexpected expired items", Collections.singletonList("a"), wheel.expire(60L));
+    }
+
+    public void testCancel()
+    {
+        final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0L);
+        wheel.schedule("a", 20L);
+        wheel.schedule("b", 20L);
+        wheel.schedule("c", 20L);
+
+        assertTrue("Cancel failed", wheel.cancel("b"));
+        assertFalse("Cancel of unscheduled item succeeded", wheel.cancel("b"));
+
+        final List<String> expired = wheel.expire(20L);
+        assertEquals("Unexpected expired items", new HashSet<>(Arrays.asList("a", "c")), new HashSet<>(expired));
+    }
+
+    public void testDeadlineInPastExpiresOnNextTick()
+    {
+        final TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 100L);
+        wheel.schedule("a", 50L);
+
+        assertEquals("Unexpected time to next expiry", 10L, wheel.getTimeToNextExpiry(100L));
+        assertEquals("Unexpected expired items", Collections.singletonList("a"), wheel.expire(110L));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class TokenBucketTest extends QpidTestCase
+{
+    public void testBurstAvailableImmediately()
+    {
+        final TokenBucket bucket = new TokenBucket(10, 3, 0L);
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue("Token " + i + " of burst not available", bucket.tryAcquire(0L));
+        }
+        assertFalse("Token beyond burst available", bucket.tryAcquire(0L));
+        assertEquals("Unexpected time to next token", 100L, bucket.getTimeToNextToken(0L));
+    }
+
+    public void testTokensAccrueAtRate()
+    {
+        final TokenBucket bucket = new TokenBucket(10, 1, 0L);
+        assertTrue("Initial token not available", bucket.tryAcquire(0L));
+        assertFalse("Token available too early", bucket.tryAcquire(60L));
+        assertEquals("Unexpected time to next token", 40L, bucket.getTimeToNextToken(60L));
+        assertTrue("Token not available after interval", bucket.tryAcquire(100L));
+        assertFalse("Second token available too early", bucket.tryAcquire(150L));
+    }
+
+    public void testTokensCappedAtBurst()
+    {
+        final TokenBucket bucket = new TokenBucket(1000, 2, 0L);
+        assertTrue(bucket.tryAcquire(0L));
+        assertTrue(bucket.tryAcquire(0L));
+
+        assertTrue("Token not available after idle period", bucket.tryAcquire(60000L));
+        assertTrue("Token not available after idle period", bucket.tryAcquire(60000L));
+        assertFalse("Tokens accrued beyond burst", bucket.tryAcquire(60000L));
+    }
+
+    public void testFractionalRateCarriedOver()
+    {
+        final TokenBucket bucket = new TokenBucket(3, 3, 0L);
+        for (int i = 0; i < 3; i++)
+        {
+            assertTrue(bucket.tryAcquire(0L));
+        }
+
+        int acquired = 0;
+        for (long time = 1L; time <= 1000L; time++)
+        {
+            if (bucket.tryAcquire(time))
+            {
+                acquired++;
+            }
+        }
+        assertEquals("Unexpected number of tokens acquired in one second", 3, acquired);
+    }
+
+    public void testInvalidRate()
+    {
+        try
+        {
+            new TokenBucket(0, 1, 0L);
+            fail("Exception not thrown");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+}
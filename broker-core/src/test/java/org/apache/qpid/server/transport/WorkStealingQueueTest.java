@@ -0,0 +1,152 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.server.transport;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class WorkStealingQueueTest extends QpidTestCase
+{
+    private static final Runnable NO_OP = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+        }
+    };
+
+    public void testTaskTakenByPreferredWorker() throws Exception
+    {
+        final WorkStealingQueue queue = new WorkStealingQueue(2);
+        final Runnable first = createTask();
+        final Runnable second = createTask();
+        queue.add(first, 0);
+        queue.add(second, 1);
+
+        assertSame("Unexpected task for worker 1", second, queue.take(1));
+        assertSame("Unexpected task for worker 0", first, queue.take(0));
+        assertEquals("Unexpected number of stolen tasks", 0, queue.getStolenTaskCount());
+    }
+
+    public void testIdleWorkerStealsTask() throws Exception
+    {
+        final WorkStealingQueue queue = new WorkStealingQueue(2);
+        final Runnable first = createTask();
+        final Runnable second = createTask();
+        queue.add(first, 0);
+        queue.add(second, 0);
+
+        assertSame("Unexpected task for worker 1", first, queue.take(1));
+        assertSame("Unexpected task for worker 0", second, queue.take(0));
+        assertEquals("Unexpected number of stolen tasks", 1, queue.getStolenTaskCount());
+    }
+
+    public void testPreferredWorkerOutOfRange() throws Exception
+    {
+        final WorkStealingQueue queue = new WorkStealingQueue(3);
+        final Runnable task = createTask();
+        queue.add(task, 4);
+
+        assertSame("Unexpected task for worker 1", task, queue.take(1));
+        assertEquals("Unexpected number of stolen tasks", 0, queue.getStolenTaskCount());
+    }
+
+    public void testIdleWorkerWokenForWorkOfBusyWorker() throws Exception
+    {
+        final WorkStealingQueue queue = new WorkStealingQueue(2);
+        final AtomicReference<Runnable> taken = new AtomicReference<>();
+        final CountDownLatch takenLatch = new CountDownLatch(1);
+        final Thread idleWorker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    taken.set(queue.take(1));
+                    takenLatch.countDown();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        idleWorker.start();
+        try
+        {
+            // worker 0 is not waiting, so the task must be picked up by the idle worker 1
+            final Runnable task = createTask();
+            queue.add(task, 0);
+
+            assertTrue("Idle worker did not take task", takenLatch.await(10, TimeUnit.SECONDS));
+            assertSame("Unexpected task", task, taken.get());
+        }
+        finally
+        {
+            idleWorker.interrupt();
+            idleWorker.join(10000);
+        }
+    }
+
+    public void testTakeInterrupted() throws Exception
+    {
+        final WorkStealingQueue queue = new WorkStealingQueue(1);
+        final CountDownLatch interruptedLatch = new CountDownLatch(1);
+        final Thread worker = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    queue.take(0);
+                }
+                catch (InterruptedException e)
+                {
+                    interruptedLatch.countDown();
+                }
+            }
+        });
+        worker.start();
+        worker.interrupt();
+
+        assertTrue("Take was not interrupted", interruptedLatch.await(10, TimeUnit.SECONDS));
+        worker.join(10000);
+
+        queue.add(NO_OP, 0);
+        assertSame("Unexpected task", NO_OP, queue.take(0));
+    }
+
+    private Runnable createTask()
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+            }
+        };
+    }
+}
@@ -101,6 +101,12 @@ public class MessageConverter_Internal_to_v0_10 implements MessageConverter<Inte
                     {
                         return false;
                     }
+
+                    @Override
+                    public long compactContent()
+                    {
+                        return 0L;
+                    }
         };
     }
 
@@ -107,6 +107,12 @@ public class MessageConverter_v0_10 implements MessageConverter<ServerMessage, M
                     {
                         return false;
                     }
+
+                    @Override
+                    public long compactContent()
+                    {
+                        return 0L;
+                    }
         };
     }
 
@@ -113,6 +113,12 @@ public class MessageConverter_Internal_to_v0_8 implements MessageConverter<Inter
             {
                 return false;
             }
+
+            @Override
+            public long compactContent()
+            {
+                return 0L;
+            }
         };
     }
 
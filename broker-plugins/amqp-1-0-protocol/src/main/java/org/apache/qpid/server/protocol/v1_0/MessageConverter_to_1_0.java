@@ -256,6 +256,12 @@ public abstract class MessageConverter_to_1_0<M extends ServerMessage> implement
                         {
                             return false;
                         }
+
+                        @Override
+                        public long compactContent()
+                        {
+                            return 0L;
+                        }
         };
     }
 
@@ -112,6 +112,12 @@ public class MessageConverter_1_0_to_v0_10 implements MessageConverter<Message_1
             {
                 return false;
             }
+
+            @Override
+            public long compactContent()
+            {
+                return 0L;
+            }
         };
     }
 
@@ -218,6 +218,12 @@ public class MessageConverter_0_10_to_0_8 implements MessageConverter<MessageTra
             {
                 return false;
             }
+
+            @Override
+            public long compactContent()
+            {
+                return 0L;
+            }
         };
     }
 
@@ -104,6 +104,12 @@ public class MessageConverter_0_8_to_0_10  implements MessageConverter<AMQMessag
             {
                 return false;
             }
+
+            @Override
+            public long compactContent()
+            {
+                return 0L;
+            }
         };
     }
 
@@ -344,13 +344,15 @@ define(["dojo/_base/declare",
         var queueTypeKeys = {
             priority: "priorities",
             lvq: "lvqKey",
-            sorted: "sortKey"
+            sorted: "sortKey",
+            partitioned: "partitions"
         };
 
         var queueTypeKeyNames = {
             priority: "Number of priorities",
             lvq: "LVQ key",
-            sorted: "Sort key"
+            sorted: "Sort key",
+            partitioned: "Number of partitions"
         };
 
         function QueueUpdater(tabObject)
@@ -20,8 +20,10 @@
  */
 package org.apache.qpid.server.virtualhost.memory;
 
+import java.io.File;
 import java.util.Map;
 
+import org.apache.qpid.server.model.ManagedContextDefault;
 import org.apache.qpid.server.model.ManagedObject;
 import org.apache.qpid.server.model.ManagedObjectFactoryConstructor;
 import org.apache.qpid.server.model.VirtualHostNode;
@@ -34,6 +36,21 @@ public class MemoryVirtualHost extends AbstractVirtualHost<MemoryVirtualHost>
 {
     public static final String VIRTUAL_HOST_TYPE = "Memory";
 
+    public static final String SPILL_ENABLED = "virtualhost.memory.spillEnabled";
+    @ManagedContextDefault(name = SPILL_ENABLED,
+            description = "If true, the content of messages is flowed to memory-mapped spill files when queues"
+                          + " exceed their share of the available memory.")
+    public static final boolean DEFAULT_SPILL_ENABLED = false;
+
+    public static final String SPILL_PATH = "virtualhost.memory.spillPath";
+    @ManagedContextDefault(name = SPILL_PATH, description = "The directory holding the spill files.")
+    public static final String DEFAULT_SPILL_PATH = "${" + VIRTUALHOST_WORK_DIR_VAR + "}${file.separator}spill";
+
+    public static final String SPILL_SEGMENT_SIZE = "virtualhost.memory.spillSegmentSize";
+    @ManagedContextDefault(name = SPILL_SEGMENT_SIZE,
+            description = "The size in bytes of each spill file. Larger messages are given a file of their own.")
+    public static final int DEFAULT_SPILL_SEGMENT_SIZE = 16 * 1024 * 1024;
+
     @ManagedObjectFactoryConstructor
     public MemoryVirtualHost(final Map<String, Object> attributes,
                              final VirtualHostNode<?> virtualHostNode)
@@ -45,6 +62,11 @@ public class MemoryVirtualHost extends AbstractVirtualHost<MemoryVirtualHost>
     @Override
     protected MessageStore createMessageStore()
     {
+        if (getContextValue(Boolean.class, SPILL_ENABLED))
+        {
+            return new MemoryMessageStore(new File(getContextValue(String.class, SPILL_PATH)),
+                                          getContextValue(Integer.class, SPILL_SEGMENT_SIZE));
+        }
         return new MemoryMessageStore();
     }
 }
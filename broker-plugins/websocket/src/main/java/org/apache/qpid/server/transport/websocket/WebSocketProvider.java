@@ -60,6 +60,7 @@ import org.apache.qpid.server.model.Protocol;
 import org.apache.qpid.server.model.Transport;
 import org.apache.qpid.server.model.port.AmqpPort;
 import org.apache.qpid.server.transport.MultiVersionProtocolEngineFactory;
+import org.apache.qpid.server.transport.NetworkIoStatistics;
 import org.apache.qpid.server.transport.AcceptingTransport;
 import org.apache.qpid.server.transport.ProtocolEngine;
 import org.apache.qpid.server.transport.SchedulingDelayNotificationListener;
@@ -250,6 +251,24 @@ class WebSocketProvider implements AcceptingTransport
         return _server == null || _server.getConnectors() == null || _server.getConnectors().length == 0 ? _port.getPort() : _server.getConnectors()[0].getLocalPort();
     }
 
+    @Override
+    public int getAcceptQueueDepth()
+    {
+        return 0;
+    }
+
+    @Override
+    public int getHandshakesInProgress()
+    {
+        return 0;
+    }
+
+    @Override
+    public NetworkIoStatistics getIoStatistics()
+    {
+        return null;
+    }
+
     private class AmqpWebSocket implements WebSocket,WebSocket.OnBinaryMessage
     {
         private final SocketAddress _localAddress;
@@ -485,6 +504,35 @@ class WebSocketProvider implements AcceptingTransport
             return 0;
         }
 
+        @Override
+        public long getTransportWriteCount()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getTransportBytesWritten()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getCoalescedWriteCount()
+        {
+            return 0;
+        }
+
+        @Override
+        public long getProcessingBudgetExhaustedCount()
+        {
+            return 0;
+        }
+
+        @Override
+        public void handshakeCompleted()
+        {
+        }
+
         void setPeerCertificate(final Certificate certificate)
         {
             _certificate = certificate;
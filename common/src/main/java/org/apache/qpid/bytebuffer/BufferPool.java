@@ -20,35 +20,413 @@
  */
 package org.apache.qpid.bytebuffer;
 
+import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
+/**
+ * Pool of direct buffers of a single size class.
+ *
+ * Buffers smaller than the slab size are carved out of a shared slab so that a miss on a small size class
+ * costs a single direct allocation for many buffers.  A slab is released once none of its buffers are either
+ * in use or held in the pool.  Each buffer is pooled as a {@link Slice} which remembers its slab, so that the
+ * memory a live buffer keeps reachable can be accounted for.
+ *
+ * Each thread caches up to two magazines (bounded stacks) of buffers.  Buffers are taken from and returned to
+ * the thread's own magazines, and only whole magazines are exchanged with the shared depot, so that most
+ * acquire/release pairs touch no shared state.  The maximum pool size bounds the number of buffers held by the
+ * depot; each thread may additionally hold two magazines worth of buffers.
+ */
 class BufferPool
 {
+    private static final int MAXIMUM_MAGAZINE_SIZE = 64;
+    private static final int MINIMUM_MAGAZINE_SIZE = 2;
+
+    private final int _bufferSize;
+    private final int _slabSize;
     private final int _maxSize;
-    private final ConcurrentLinkedQueue<ByteBuffer> _pooledBuffers = new ConcurrentLinkedQueue<>();
+    private final int _magazineSize;
+    private final ConcurrentLinkedQueue<Magazine> _depot = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger _depotCount = new AtomicInteger();
+    private final ConcurrentLinkedQueue<ThreadCache> _threadCaches = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<ThreadCache> _threadCache = new ThreadLocal<ThreadCache>()
+    {
+        @Override
+        protected ThreadCache initialValue()
+        {
+            final ThreadCache cache = new ThreadCache(Thread.currentThread());
+            _threadCaches.add(cache);
+            return cache;
+        }
+    };
+    private final AtomicLong _slabAllocationCount = new AtomicLong();
+    private final AtomicLong _retiredAllocationCount = new AtomicLong();
+    private final AtomicLong _retiredReleaseCount = new AtomicLong();
+    private final AtomicLong _retiredDiscardCount = new AtomicLong();
 
-    BufferPool(final int maxSize)
+    BufferPool(final int bufferSize, final int slabSize, final int maxSize)
     {
+        _bufferSize = bufferSize;
+        _slabSize = Math.max(bufferSize, slabSize);
         _maxSize = maxSize;
+        _magazineSize = Math.min(maxSize,
+                                 Math.max(MINIMUM_MAGAZINE_SIZE,
+                                          Math.min(MAXIMUM_MAGAZINE_SIZE, 4 * (_slabSize / bufferSize))));
     }
 
     ByteBuffer getBuffer()
     {
-        return _pooledBuffers.poll();
+        return getSlice().getBuffer();
+    }
+
+    Slice getSlice()
+    {
+        final ThreadCache cache = _threadCache.get();
+        Slice slice = cache.pop();
+        if (slice == null)
+        {
+            slice = allocateSlab(cache);
+        }
+        cache.allocated();
+        return slice;
     }
 
+    /**
+     * Returns a buffer which was not obtained as a slice of this pool, the buffer being its own slab.
+     */
     void returnBuffer(ByteBuffer buf)
     {
-        buf.clear();
-        if (_pooledBuffers.size() < _maxSize)
+        returnSlice(new Slice(buf, new Slab(buf.capacity())));
+    }
+
+    void returnSlice(final Slice slice)
+    {
+        slice.getBuffer().clear();
+        final ThreadCache cache = _threadCache.get();
+        cache.released();
+        if (!cache.push(slice))
+        {
+            cache.discarded();
+        }
+    }
+
+    void bufferRemoved()
+    {
+        final ThreadCache cache = _threadCache.get();
+        cache.released();
+        cache.discarded();
+    }
+
+    private Magazine pollDepot()
+    {
+        final Magazine magazine = _depot.poll();
+        if (magazine != null)
+        {
+            _depotCount.addAndGet(-magazine.size());
+        }
+        return magazine;
+    }
+
+    private boolean offerDepot(final Magazine magazine)
+    {
+        if (_depotCount.addAndGet(magazine.size()) <= _maxSize)
+        {
+            _depot.add(magazine);
+            return true;
+        }
+        else
+        {
+            _depotCount.addAndGet(-magazine.size());
+            return false;
+        }
+    }
+
+    private Slice allocateSlab(final ThreadCache cache)
+    {
+        reclaimTerminatedThreadCaches();
+
+        final int buffersPerSlab = _slabSize / _bufferSize;
+        final ByteBuffer slab = ByteBuffer.allocateDirect(buffersPerSlab * _bufferSize);
+        final Slab slabIdentity = new Slab(slab.capacity());
+        _slabAllocationCount.incrementAndGet();
+
+        Slice first = null;
+        for (int i = 0; i < buffersPerSlab; i++)
+        {
+            slab.limit((i + 1) * _bufferSize);
+            slab.position(i * _bufferSize);
+            final Slice buf = new Slice(slab.slice(), slabIdentity);
+            if (first == null)
+            {
+                first = buf;
+            }
+            else if (!cache.push(buf))
+            {
+                break;
+            }
+        }
+        return first;
+    }
+
+    private void reclaimTerminatedThreadCaches()
+    {
+        for (ThreadCache cache : _threadCaches)
         {
-            _pooledBuffers.add(buf);
+            if (cache.isTerminated() && _threadCaches.remove(cache))
+            {
+                cache.retire();
+            }
         }
     }
 
+    public int getBufferSize()
+    {
+        return _bufferSize;
+    }
+
     public int getMaxSize()
     {
         return _maxSize;
     }
+
+    int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    BufferPoolStatistics getStatistics()
+    {
+        reclaimTerminatedThreadCaches();
+
+        int pooledCount = _depotCount.get();
+        long allocationCount = _retiredAllocationCount.get();
+        long releaseCount = _retiredReleaseCount.get();
+        long discardCount = _retiredDiscardCount.get();
+        for (ThreadCache cache : _threadCaches)
+        {
+            pooledCount += cache._cachedCount;
+            allocationCount += cache._allocationCount;
+            releaseCount += cache._releaseCount;
+            discardCount += cache._discardCount;
+        }
+        return new BufferPoolStatistics(_bufferSize,
+                                        _maxSize,
+                                        pooledCount,
+                                        (int) (allocationCount - releaseCount),
+                                        allocationCount,
+                                        _slabAllocationCount.get(),
+                                        discardCount);
+    }
+
+    /**
+     * A direct allocation out of which the buffers of a pool are carved.  As a buffer sliced out of a slab keeps the
+     * whole slab reachable, the slab is the memory pinned by any live view of one of its buffers.
+     */
+    static final class Slab
+    {
+        private final int _capacity;
+
+        Slab(final int capacity)
+        {
+            _capacity = capacity;
+        }
+
+        int getCapacity()
+        {
+            return _capacity;
+        }
+    }
+
+    /**
+     * A buffer of the pool together with the slab it was carved from.
+     */
+    static final class Slice
+    {
+        private final ByteBuffer _buffer;
+        private final Slab _slab;
+
+        Slice(final ByteBuffer buffer, final Slab slab)
+        {
+            _buffer = buffer;
+            _slab = slab;
+        }
+
+        ByteBuffer getBuffer()
+        {
+            return _buffer;
+        }
+
+        Slab getSlab()
+        {
+            return _slab;
+        }
+    }
+
+    private static final class Magazine
+    {
+        private final Slice[] _buffers;
+        private int _size;
+
+        private Magazine(final int capacity)
+        {
+            _buffers = new Slice[capacity];
+        }
+
+        int size()
+        {
+            return _size;
+        }
+
+        boolean isEmpty()
+        {
+            return _size == 0;
+        }
+
+        boolean isFull()
+        {
+            return _size == _buffers.length;
+        }
+
+        void push(final Slice buf)
+        {
+            _buffers[_size++] = buf;
+        }
+
+        Slice pop()
+        {
+            final Slice buf = _buffers[--_size];
+            _buffers[_size] = null;
+            return buf;
+        }
+    }
+
+    /**
+     * Magazines and statistics of a single thread.  All fields are only written by the owning thread (or, once
+     * the owning thread has terminated, by the thread reclaiming the cache); the counters are published with
+     * ordered writes so that they may be read for statistics without synchronisation.  The counters are not
+     * private as the field updaters are declared by the enclosing class.
+     */
+    private final class ThreadCache
+    {
+        private final WeakReference<Thread> _owner;
+        private Magazine _loaded = new Magazine(_magazineSize);
+        private Magazine _previous = new Magazine(_magazineSize);
+
+        volatile int _cachedCount;
+        volatile long _allocationCount;
+        volatile long _releaseCount;
+        volatile long _discardCount;
+
+        private ThreadCache(final Thread owner)
+        {
+            _owner = new WeakReference<>(owner);
+        }
+
+        Slice pop()
+        {
+            if (_loaded.isEmpty())
+            {
+                if (!_previous.isEmpty())
+                {
+                    swap();
+                }
+                else
+                {
+                    final Magazine full = pollDepot();
+                    if (full == null)
+                    {
+                        return null;
+                    }
+                    _loaded = full;
+                    CACHED_COUNT_UPDATER.lazySet(this, _cachedCount + full.size());
+                }
+            }
+            CACHED_COUNT_UPDATER.lazySet(this, _cachedCount - 1);
+            return _loaded.pop();
+        }
+
+        boolean push(final Slice buf)
+        {
+            if (_magazineSize == 0)
+            {
+                return false;
+            }
+            if (_loaded.isFull())
+            {
+                if (_previous.isEmpty())
+                {
+                    swap();
+                }
+                else if (offerDepot(_previous))
+                {
+                    CACHED_COUNT_UPDATER.lazySet(this, _cachedCount - _previous.size());
+                    _previous = _loaded;
+                    _loaded = new Magazine(_magazineSize);
+                }
+                else
+                {
+                    return false;
+                }
+            }
+            _loaded.push(buf);
+            CACHED_COUNT_UPDATER.lazySet(this, _cachedCount + 1);
+            return true;
+        }
+
+        private void swap()
+        {
+            final Magazine tmp = _loaded;
+            _loaded = _previous;
+            _previous = tmp;
+        }
+
+        void allocated()
+        {
+            ALLOCATION_COUNT_UPDATER.lazySet(this, _allocationCount + 1);
+        }
+
+        void released()
+        {
+            RELEASE_COUNT_UPDATER.lazySet(this, _releaseCount + 1);
+        }
+
+        void discarded()
+        {
+            DISCARD_COUNT_UPDATER.lazySet(this, _discardCount + 1);
+        }
+
+        boolean isTerminated()
+        {
+            final Thread owner = _owner.get();
+            return owner == null || !owner.isAlive();
+        }
+
+        void retire()
+        {
+            _retiredAllocationCount.addAndGet(_allocationCount);
+            _retiredReleaseCount.addAndGet(_releaseCount);
+            int discarded = 0;
+            for (Magazine magazine : new Magazine[] {_loaded, _previous})
+            {
+                if (!magazine.isEmpty() && !offerDepot(magazine))
+                {
+                    discarded += magazine.size();
+                }
+            }
+            _retiredDiscardCount.addAndGet(_discardCount + discarded);
+        }
+    }
+
+    private static final AtomicIntegerFieldUpdater<ThreadCache> CACHED_COUNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(ThreadCache.class, "_cachedCount");
+    private static final AtomicLongFieldUpdater<ThreadCache> ALLOCATION_COUNT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ThreadCache.class, "_allocationCount");
+    private static final AtomicLongFieldUpdater<ThreadCache> RELEASE_COUNT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ThreadCache.class, "_releaseCount");
+    private static final AtomicLongFieldUpdater<ThreadCache> DISCARD_COUNT_UPDATER =
+            AtomicLongFieldUpdater.newUpdater(ThreadCache.class, "_discardCount");
 }
@@ -0,0 +1,111 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+/**
+ * Point in time snapshot of the usage of a single size class of the direct buffer pool.
+ */
+public final class BufferPoolStatistics
+{
+    private final int _bufferSize;
+    private final int _maxPoolSize;
+    private final int _pooledCount;
+    private final int _inUseCount;
+    private final long _allocationCount;
+    private final long _slabAllocationCount;
+    private final long _discardCount;
+
+    BufferPoolStatistics(final int bufferSize,
+                         final int maxPoolSize,
+                         final int pooledCount,
+                         final int inUseCount,
+                         final long allocationCount,
+                         final long slabAllocationCount,
+                         final long discardCount)
+    {
+        _bufferSize = bufferSize;
+        _maxPoolSize = maxPoolSize;
+        _pooledCount = pooledCount;
+        _inUseCount = inUseCount;
+        _allocationCount = allocationCount;
+        _slabAllocationCount = slabAllocationCount;
+        _discardCount = discardCount;
+    }
+
+    public int getBufferSize()
+    {
+        return _bufferSize;
+    }
+
+    public int getMaxPoolSize()
+    {
+        return _maxPoolSize;
+    }
+
+    public int getPooledCount()
+    {
+        return _pooledCount;
+    }
+
+    public int getInUseCount()
+    {
+        return _inUseCount;
+    }
+
+    public long getPooledBytes()
+    {
+        return (long) _pooledCount * _bufferSize;
+    }
+
+    public long getInUseBytes()
+    {
+        return (long) _inUseCount * _bufferSize;
+    }
+
+    public long getAllocationCount()
+    {
+        return _allocationCount;
+    }
+
+    public long getSlabAllocationCount()
+    {
+        return _slabAllocationCount;
+    }
+
+    public long getDiscardCount()
+    {
+        return _discardCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "BufferPoolStatistics[" +
+               "bufferSize=" + _bufferSize +
+               ", maxPoolSize=" + _maxPoolSize +
+               ", pooledCount=" + _pooledCount +
+               ", inUseCount=" + _inUseCount +
+               ", allocationCount=" + _allocationCount +
+               ", slabAllocationCount=" + _slabAllocationCount +
+               ", discardCount=" + _discardCount +
+               ']';
+    }
+}
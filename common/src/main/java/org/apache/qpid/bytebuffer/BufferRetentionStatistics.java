@@ -0,0 +1,110 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Point in time snapshot of the direct buffer retention observed by sampling pooled buffer allocations.
+ *
+ * Byte counts are those of the sampled buffers; the estimated values scale them by the sample interval.
+ */
+public final class BufferRetentionStatistics
+{
+    static final BufferRetentionStatistics DISABLED =
+            new BufferRetentionStatistics(0, 0, 0L, 0L, 0L, Collections.<String, Long>emptyMap());
+
+    private final int _sampleInterval;
+    private final int _sampledBufferCount;
+    private final long _sampledPinnedBytes;
+    private final long _sampledReferencedBytes;
+    private final long _leakCount;
+    private final Map<String, Long> _sampledPinnedBytesByAllocationSite;
+
+    BufferRetentionStatistics(final int sampleInterval,
+                              final int sampledBufferCount,
+                              final long sampledPinnedBytes,
+                              final long sampledReferencedBytes,
+                              final long leakCount,
+                              final Map<String, Long> sampledPinnedBytesByAllocationSite)
+    {
+        _sampleInterval = sampleInterval;
+        _sampledBufferCount = sampledBufferCount;
+        _sampledPinnedBytes = sampledPinnedBytes;
+        _sampledReferencedBytes = sampledReferencedBytes;
+        _leakCount = leakCount;
+        _sampledPinnedBytesByAllocationSite = Collections.unmodifiableMap(sampledPinnedBytesByAllocationSite);
+    }
+
+    public boolean isEnabled()
+    {
+        return _sampleInterval > 0;
+    }
+
+    public int getSampleInterval()
+    {
+        return _sampleInterval;
+    }
+
+    public int getSampledBufferCount()
+    {
+        return _sampledBufferCount;
+    }
+
+    public long getSampledPinnedBytes()
+    {
+        return _sampledPinnedBytes;
+    }
+
+    public long getSampledReferencedBytes()
+    {
+        return _sampledReferencedBytes;
+    }
+
+    public long getEstimatedPinnedBytes()
+    {
+        return _sampledPinnedBytes * _sampleInterval;
+    }
+
+    public long getEstimatedReferencedBytes()
+    {
+        return _sampledReferencedBytes * _sampleInterval;
+    }
+
+    /**
+     * @return the ratio of bytes pinned to bytes referenced, or 1 if no sampled bytes are referenced
+     */
+    public double getRetentionAmplification()
+    {
+        return _sampledReferencedBytes == 0L ? 1.0 : (double) _sampledPinnedBytes / (double) _sampledReferencedBytes;
+    }
+
+    public long getLeakCount()
+    {
+        return _leakCount;
+    }
+
+    public Map<String, Long> getSampledPinnedBytesByAllocationSite()
+    {
+        return _sampledPinnedBytesByAllocationSite;
+    }
+}
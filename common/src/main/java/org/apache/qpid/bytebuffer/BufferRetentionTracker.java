@@ -0,0 +1,194 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples pooled direct buffer allocations and tracks the views which keep each sampled buffer alive.
+ *
+ * For every sampled buffer the tracker knows the bytes pinned (the capacity of the slab the pooled buffer was
+ * carved from, as any live view keeps the whole slab reachable) and the bytes referenced (the capacity of the views
+ * still live on it), so that the retention amplification caused by small views holding on to large slabs can be
+ * estimated.  A slab pinned by several sampled buffers is counted once.  Views which are garbage collected without having
+ * been disposed are reported as leaks together with the site that allocated the buffer, and their reference is
+ * released so that the buffer may return to the pool.
+ */
+class BufferRetentionTracker
+{
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferRetentionTracker.class);
+    private static final int MAXIMUM_REPORTED_ALLOCATION_SITES = 20;
+    private static final int ALLOCATION_SITE_DEPTH = 8;
+
+    private final int _sampleInterval;
+    private final ReferenceQueue<QpidByteBuffer> _collectedViews = new ReferenceQueue<>();
+    private final Set<TrackedByteBufferRef> _liveRefs =
+            Collections.newSetFromMap(new ConcurrentHashMap<TrackedByteBufferRef, Boolean>());
+    private final AtomicLong _leakCount = new AtomicLong();
+
+    BufferRetentionTracker(final int sampleInterval)
+    {
+        if (sampleInterval <= 0)
+        {
+            throw new IllegalArgumentException("Negative or zero sampleInterval illegal : " + sampleInterval);
+        }
+        _sampleInterval = sampleInterval;
+    }
+
+    int getSampleInterval()
+    {
+        return _sampleInterval;
+    }
+
+    ByteBufferRef sample(final ByteBufferRef ref, final int capacity)
+    {
+        return sample(ref, capacity, null);
+    }
+
+    ByteBufferRef sample(final ByteBufferRef ref, final int capacity, final BufferPool.Slab slab)
+    {
+        if (_sampleInterval != 1 && ThreadLocalRandom.current().nextInt(_sampleInterval) != 0)
+        {
+            return ref;
+        }
+        processCollectedViews();
+        final TrackedByteBufferRef trackedRef = new TrackedByteBufferRef(ref, this, capacity, slab, getAllocationSite());
+        _liveRefs.add(trackedRef);
+        return trackedRef;
+    }
+
+    void processCollectedViews()
+    {
+        Reference<? extends QpidByteBuffer> reference;
+        while ((reference = _collectedViews.poll()) != null)
+        {
+            final TrackedByteBufferRef.TrackedView view = (TrackedByteBufferRef.TrackedView) reference;
+            if (view.release())
+            {
+                final long leakCount = _leakCount.incrementAndGet();
+                LOGGER.warn("Direct buffer view of {} bytes was garbage collected without being disposed"
+                            + " ({} leaks detected). The buffer was allocated at: {}",
+                            view.getSize(), leakCount, view.getRef().getAllocationSite());
+                view.getRef().decrementRef();
+            }
+        }
+    }
+
+    BufferRetentionStatistics getStatistics()
+    {
+        processCollectedViews();
+
+        long pinnedBytes = 0L;
+        long referencedBytes = 0L;
+        int liveRefCount = 0;
+        final Map<String, Long> pinnedBytesBySite = new HashMap<>();
+        final Set<BufferPool.Slab> pinnedSlabs = new HashSet<>();
+        for (TrackedByteBufferRef ref : _liveRefs)
+        {
+            liveRefCount++;
+            referencedBytes += ref.getReferencedBytes();
+            if (ref.getSlab() == null || pinnedSlabs.add(ref.getSlab()))
+            {
+                pinnedBytes += ref.getPinnedBytes();
+                final String site = ref.getAllocationSite();
+                final Long sitePinnedBytes = pinnedBytesBySite.get(site);
+                pinnedBytesBySite.put(site, (sitePinnedBytes == null ? 0L : sitePinnedBytes) + ref.getPinnedBytes());
+            }
+        }
+
+        return new BufferRetentionStatistics(_sampleInterval,
+                                             liveRefCount,
+                                             pinnedBytes,
+                                             referencedBytes,
+                                             _leakCount.get(),
+                                             topAllocationSites(pinnedBytesBySite));
+    }
+
+    private Map<String, Long> topAllocationSites(final Map<String, Long> pinnedBytesBySite)
+    {
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(pinnedBytesBySite.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>()
+        {
+            @Override
+            public int compare(final Map.Entry<String, Long> o1, final Map.Entry<String, Long> o2)
+            {
+                return o2.getValue().compareTo(o1.getValue());
+            }
+        });
+
+        final Map<String, Long> topSites = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : entries)
+        {
+            if (topSites.size() == MAXIMUM_REPORTED_ALLOCATION_SITES)
+            {
+                break;
+            }
+            topSites.put(entry.getKey(), entry.getValue());
+        }
+        return topSites;
+    }
+
+    private static StackTraceElement[] getAllocationSite()
+    {
+        final StackTraceElement[] stackTrace = new Throwable().getStackTrace();
+        int start = 0;
+        while (start < stackTrace.length
+               && (stackTrace[start].getClassName().equals(BufferRetentionTracker.class.getName())
+                   || stackTrace[start].getClassName().equals(QpidByteBuffer.class.getName())))
+        {
+            start++;
+        }
+        final List<StackTraceElement> site = new ArrayList<>(ALLOCATION_SITE_DEPTH);
+        for (int i = start; i < stackTrace.length && site.size() < ALLOCATION_SITE_DEPTH; i++)
+        {
+            site.add(stackTrace[i]);
+        }
+        return site.toArray(new StackTraceElement[site.size()]);
+    }
+
+    TrackedByteBufferRef.TrackedView viewCreated(final TrackedByteBufferRef ref,
+                                                 final QpidByteBuffer view,
+                                                 final int size)
+    {
+        return new TrackedByteBufferRef.TrackedView(ref, view, size, _collectedViews);
+    }
+
+    void refReleased(final TrackedByteBufferRef ref)
+    {
+        _liveRefs.remove(ref);
+    }
+}
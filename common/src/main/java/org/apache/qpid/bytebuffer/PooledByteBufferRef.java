@@ -27,12 +27,14 @@ class PooledByteBufferRef implements ByteBufferRef
 {
     private static final AtomicIntegerFieldUpdater<PooledByteBufferRef> REF_COUNT = AtomicIntegerFieldUpdater.newUpdater(PooledByteBufferRef.class, "_refCount");
 
-    private final ByteBuffer _buffer;
+    private final BufferPool.Slice _slice;
+    private final BufferPool _sizeClass;
     private volatile int _refCount;
 
-    PooledByteBufferRef(final ByteBuffer buffer)
+    PooledByteBufferRef(final BufferPool.Slice slice, final BufferPool sizeClass)
     {
-        _buffer = buffer;
+        _slice = slice;
+        _sizeClass = sizeClass;
     }
 
     @Override
@@ -50,20 +52,23 @@ class PooledByteBufferRef implements ByteBufferRef
     {
         if(REF_COUNT.get(this) > 0 && REF_COUNT.decrementAndGet(this) == 0)
         {
-            QpidByteBuffer.returnToPool(_buffer);
+            QpidByteBuffer.returnToPool(_sizeClass, _slice);
         }
     }
 
     @Override
     public ByteBuffer getBuffer()
     {
-        return _buffer.duplicate();
+        return _slice.getBuffer().duplicate();
     }
 
     @Override
     public void removeFromPool()
     {
-        REF_COUNT.set(this, Integer.MIN_VALUE/2);
+        if (REF_COUNT.getAndSet(this, Integer.MIN_VALUE/2) >= 0)
+        {
+            _sizeClass.bufferRemoved();
+        }
     }
 
 
@@ -31,8 +31,10 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -48,23 +50,28 @@ import org.apache.qpid.streams.CompositeInputStream;
 
 public final class QpidByteBuffer
 {
+    public static final int DEFAULT_MINIMUM_POOLED_BUFFER_SIZE = 256;
+
     private static final Logger LOGGER = LoggerFactory.getLogger(QpidByteBuffer.class);
 
     private static final AtomicIntegerFieldUpdater<QpidByteBuffer> DISPOSED_UPDATER = AtomicIntegerFieldUpdater.newUpdater(
             QpidByteBuffer.class,
             "_disposed");
 
-    private static final ThreadLocal<QpidByteBuffer> _cachedBuffer = new ThreadLocal<>();
     private volatile ByteBuffer _buffer;
     private final ByteBufferRef _ref;
+    private final TrackedByteBufferRef.TrackedView _trackedView;
 
     @SuppressWarnings("unused")
     private volatile int _disposed;
 
     private volatile static boolean _isPoolInitialized;
-    private volatile static BufferPool _bufferPool;
+    private volatile static SizeClassedBufferPool _bufferPool;
     private volatile static int _pooledBufferSize;
+    private volatile static int _pooledBufferMinimumSize;
+    private volatile static Map<Integer, Integer> _poolSizeClassLimits;
     private volatile static ByteBuffer _zeroed;
+    private volatile static BufferRetentionTracker _retentionTracker;
 
     QpidByteBuffer(ByteBufferRef ref)
     {
@@ -76,6 +83,9 @@ public final class QpidByteBuffer
         _buffer = buf;
         _ref = ref;
         ref.incrementRef();
+        _trackedView = ref instanceof TrackedByteBufferRef
+                ? ((TrackedByteBufferRef) ref).viewCreated(this, buf.capacity())
+                : null;
     }
 
 
@@ -453,6 +463,10 @@ public final class QpidByteBuffer
     {
         if(DISPOSED_UPDATER.compareAndSet(this,0,1))
         {
+            if (_trackedView != null)
+            {
+                _trackedView.dispose();
+            }
             _ref.decrementRef();
             _buffer = null;
         }
@@ -481,41 +495,32 @@ public final class QpidByteBuffer
             throw new IllegalArgumentException("Cannot allocate QpidByteBuffer with size " + size + " which is negative.");
         }
 
-        final ByteBufferRef ref;
         if (_isPoolInitialized && _pooledBufferSize >= size)
         {
-            if (_pooledBufferSize == size)
+            final BufferPool sizeClass = _bufferPool.getSizeClass(size);
+            final BufferPool.Slice slice = sizeClass.getSlice();
+            final ByteBuffer buf = slice.getBuffer();
+            final BufferRetentionTracker retentionTracker = _retentionTracker;
+            final ByteBufferRef ref = retentionTracker == null
+                    ? new PooledByteBufferRef(slice, sizeClass)
+                    : retentionTracker.sample(new PooledByteBufferRef(slice, sizeClass),
+                                              buf.capacity(),
+                                              slice.getSlab());
+            if (buf.capacity() == size)
             {
-                ByteBuffer buf = _bufferPool.getBuffer();
-                if (buf == null)
-                {
-                    buf = ByteBuffer.allocateDirect(size);
-                }
-                ref = new PooledByteBufferRef(buf);
+                return new QpidByteBuffer(ref);
             }
             else
             {
-                QpidByteBuffer buf = _cachedBuffer.get();
-                if (buf == null || buf.remaining() < size)
-                {
-                    if (buf != null)
-                    {
-                        buf.dispose();
-                    }
-                    buf = allocateDirect(_pooledBufferSize);
-                }
-                QpidByteBuffer rVal = buf.view(0, size);
-                buf.position(buf.position() + size);
-
-                _cachedBuffer.set(buf);
-                return rVal;
+                final ByteBuffer view = ref.getBuffer();
+                view.limit(size);
+                return new QpidByteBuffer(view.slice(), ref);
             }
         }
         else
         {
-            ref = new NonPooledByteBufferRef(ByteBuffer.allocateDirect(size));
+            return new QpidByteBuffer(new NonPooledByteBufferRef(ByteBuffer.allocateDirect(size)));
         }
-        return new QpidByteBuffer(ref);
     }
 
     public static Collection<QpidByteBuffer> allocateDirectCollection(int size)
@@ -526,43 +531,85 @@ public final class QpidByteBuffer
         }
         else
         {
-            List<QpidByteBuffer> buffers = new ArrayList<>((size / _pooledBufferSize)+2);
+            List<QpidByteBuffer> buffers = new ArrayList<>((size / _pooledBufferSize)+1);
             int remaining = size;
-
-            QpidByteBuffer buf = _cachedBuffer.get();
-            if(buf == null)
+            while(remaining > _pooledBufferSize)
             {
-                buf = allocateDirect(_pooledBufferSize);
+                buffers.add(allocateDirect(_pooledBufferSize));
+                remaining -= _pooledBufferSize;
             }
-            while(remaining > buf.remaining())
-            {
-                int bufRemaining = buf.remaining();
-                if (buf  == _cachedBuffer.get())
-                {
-                    buffers.add(buf.view(0, bufRemaining));
-                    buf.dispose();
-                }
-                else
-                {
-                    buffers.add(buf);
-                }
-                remaining -= bufRemaining;
-                buf = allocateDirect(_pooledBufferSize);
-            }
-            buffers.add(buf.view(0, remaining));
-            buf.position(buf.position() + remaining);
+            buffers.add(allocateDirect(remaining));
+            return buffers;
+        }
+    }
 
-            if (buf.hasRemaining())
+    /**
+     * Returns the amount of memory kept reachable by the given buffers.  A buffer which is a view onto part of a larger
+     * buffer keeps the whole of that buffer from being reused; consecutive views onto the same buffer are counted once.
+     */
+    public static long getPinnedSize(final Collection<QpidByteBuffer> buffers)
+    {
+        long pinnedSize = 0L;
+        ByteBufferRef previousRef = null;
+        for (QpidByteBuffer buf : buffers)
+        {
+            if (buf._ref != previousRef)
             {
-                _cachedBuffer.set(buf);
+                pinnedSize += buf._ref.getBuffer().capacity();
+                previousRef = buf._ref;
             }
-            else
+        }
+        return pinnedSize;
+    }
+
+    /**
+     * Returns true if the given buffers keep reachable more than twice the memory needed to hold their remaining
+     * content, so that copying the content into {@link #pack(Collection) packed} buffers would release memory.
+     */
+    public static boolean isSparse(final Collection<QpidByteBuffer> buffers)
+    {
+        long size = 0L;
+        for (QpidByteBuffer buf : buffers)
+        {
+            size += buf.remaining();
+        }
+        return getPinnedSize(buffers) > 2L * Math.max(size, Math.min(_pooledBufferMinimumSize, _pooledBufferSize));
+    }
+
+    /**
+     * Copies the remaining content of the given buffers into newly allocated direct buffers sized to the content.
+     * The given buffers are left unchanged and must still be disposed of by the caller.
+     */
+    public static Collection<QpidByteBuffer> pack(final Collection<QpidByteBuffer> buffers)
+    {
+        int size = 0;
+        for (QpidByteBuffer buf : buffers)
+        {
+            size += buf.remaining();
+        }
+        final Collection<QpidByteBuffer> packed = allocateDirectCollection(size);
+        final Iterator<QpidByteBuffer> targets = packed.iterator();
+        ByteBuffer target = targets.next()._buffer;
+        for (QpidByteBuffer buf : buffers)
+        {
+            final ByteBuffer source = buf._buffer.duplicate();
+            while (source.hasRemaining())
             {
-                _cachedBuffer.set(allocateDirect(_pooledBufferSize));
-                buf.dispose();
+                if (!target.hasRemaining())
+                {
+                    target = targets.next()._buffer;
+                }
+                final ByteBuffer chunk = source.duplicate();
+                chunk.limit(chunk.position() + Math.min(chunk.remaining(), target.remaining()));
+                source.position(chunk.limit());
+                target.put(chunk);
             }
-            return buffers;
         }
+        for (QpidByteBuffer buf : packed)
+        {
+            buf.flip();
+        }
+        return packed;
     }
 
     public ByteBuffer asByteBuffer()
@@ -678,6 +725,27 @@ public final class QpidByteBuffer
         return channel.write(bufs);
     }
 
+    /**
+     * Performs a single gathering write of at most {@code maxBuffers} of the given buffers, skipping any buffers which
+     * have no remaining content.
+     */
+    public static long write(GatheringByteChannel channel, Collection<QpidByteBuffer> buffers, int maxBuffers)
+            throws IOException
+    {
+        ByteBuffer[] bufs = new ByteBuffer[Math.min(buffers.size(), maxBuffers)];
+        int count = 0;
+        Iterator<QpidByteBuffer> bufIter = buffers.iterator();
+        while (count < bufs.length && bufIter.hasNext())
+        {
+            ByteBuffer buf = bufIter.next()._buffer;
+            if (buf.hasRemaining())
+            {
+                bufs[count++] = buf;
+            }
+        }
+        return count == 0 ? 0L : channel.write(bufs, 0, count);
+    }
+
     public static QpidByteBuffer wrap(final ByteBuffer wrap)
     {
         return new QpidByteBuffer(new NonPooledByteBufferRef(wrap));
@@ -693,37 +761,95 @@ public final class QpidByteBuffer
         return wrap(ByteBuffer.wrap(data, offset, length));
     }
 
-    static void returnToPool(final ByteBuffer buffer)
+    static void returnToPool(final BufferPool sizeClass, final BufferPool.Slice slice)
     {
+        final ByteBuffer buffer = slice.getBuffer();
         buffer.clear();
         final ByteBuffer duplicate = _zeroed.duplicate();
         duplicate.limit(buffer.capacity());
         buffer.put(duplicate);
 
-        _bufferPool.returnBuffer(buffer);
+        sizeClass.returnSlice(slice);
     }
 
-    public synchronized static void initialisePool(int bufferSize, int maxPoolSize)
+    public static void initialisePool(int bufferSize, int maxPoolSize)
     {
-        if (_isPoolInitialized && (bufferSize != _pooledBufferSize || maxPoolSize != _bufferPool.getMaxSize()))
+        initialisePool(bufferSize, maxPoolSize, DEFAULT_MINIMUM_POOLED_BUFFER_SIZE, Collections.<Integer, Integer>emptyMap());
+    }
+
+    /**
+     * Initialises the pool of direct buffers.
+     *
+     * @param bufferSize the largest size of buffer served from the pool
+     * @param maxPoolSize the maximum number of buffers retained by a size class unless overridden
+     * @param minimumBufferSize the size of the smallest size class, rounded up to a power of two
+     * @param maxPoolSizes the maximum number of buffers retained by individual size classes, keyed by buffer size
+     */
+    public synchronized static void initialisePool(int bufferSize,
+                                                   int maxPoolSize,
+                                                   int minimumBufferSize,
+                                                   Map<Integer, Integer> maxPoolSizes)
+    {
+        if (_isPoolInitialized && (bufferSize != _pooledBufferSize
+                                   || maxPoolSize != _bufferPool.getDefaultMaxPoolSize()
+                                   || minimumBufferSize != _pooledBufferMinimumSize
+                                   || !_poolSizeClassLimits.equals(maxPoolSizes)))
         {
             final String errorMessage = String.format("QpidByteBuffer pool has already been initialised with bufferSize=%d and maxPoolSize=%d." +
                             "Re-initialisation with different bufferSize=%d and maxPoolSize=%d is not allowed.",
-                            _pooledBufferSize, _bufferPool.getMaxSize(), bufferSize, maxPoolSize);
+                            _pooledBufferSize, _bufferPool.getDefaultMaxPoolSize(), bufferSize, maxPoolSize);
             throw new IllegalStateException(errorMessage);
         }
         if (bufferSize <= 0)
         {
             throw new IllegalArgumentException("Negative or zero bufferSize illegal : " + bufferSize);
         }
+        if (_isPoolInitialized)
+        {
+            return;
+        }
 
-
-        _bufferPool = new BufferPool(maxPoolSize);
+        _bufferPool = new SizeClassedBufferPool(bufferSize, minimumBufferSize, maxPoolSize, maxPoolSizes);
+        _poolSizeClassLimits = Collections.unmodifiableMap(new HashMap<>(maxPoolSizes));
+        _pooledBufferMinimumSize = minimumBufferSize;
         _pooledBufferSize = bufferSize;
         _zeroed = ByteBuffer.allocateDirect(_pooledBufferSize);
         _isPoolInitialized = true;
     }
 
+    /**
+     * Enables or disables the tracking of direct buffer retention.
+     *
+     * @param sampleInterval one in how many pooled buffer allocations are tracked, or zero to disable tracking
+     */
+    public static void initialiseRetentionTracking(int sampleInterval)
+    {
+        if (sampleInterval < 0)
+        {
+            throw new IllegalArgumentException("Negative sampleInterval illegal : " + sampleInterval);
+        }
+        final BufferRetentionTracker currentTracker = _retentionTracker;
+        if (sampleInterval == 0)
+        {
+            _retentionTracker = null;
+        }
+        else if (currentTracker == null || currentTracker.getSampleInterval() != sampleInterval)
+        {
+            _retentionTracker = new BufferRetentionTracker(sampleInterval);
+        }
+    }
+
+    public static BufferRetentionStatistics getRetentionStatistics()
+    {
+        final BufferRetentionTracker retentionTracker = _retentionTracker;
+        return retentionTracker == null ? BufferRetentionStatistics.DISABLED : retentionTracker.getStatistics();
+    }
+
+    public static List<BufferPoolStatistics> getBufferPoolStatistics()
+    {
+        return _isPoolInitialized ? _bufferPool.getStatistics() : Collections.<BufferPoolStatistics>emptyList();
+    }
+
     private final class BufferInputStream extends InputStream
     {
 
@@ -0,0 +1,138 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Slab allocator for direct buffers up to a maximum buffer size.
+ *
+ * Requests are rounded up to a power of two size class (the largest class being exactly the maximum
+ * buffer size) and served from the free list of that class.  Each class has its own cap on the number of
+ * buffers it retains, so the direct memory held by the pool is bounded by the sum of the class caps.
+ */
+class SizeClassedBufferPool
+{
+    private final int _maximumBufferSize;
+    private final int _minimumBufferSize;
+    private final int _minimumShift;
+    private final int _defaultMaxPoolSize;
+    private final BufferPool[] _sizeClasses;
+
+    SizeClassedBufferPool(final int maximumBufferSize,
+                          final int minimumBufferSize,
+                          final int defaultMaxPoolSize,
+                          final Map<Integer, Integer> maxPoolSizes)
+    {
+        if (minimumBufferSize <= 0)
+        {
+            throw new IllegalArgumentException("Negative or zero minimumBufferSize illegal : " + minimumBufferSize);
+        }
+        _maximumBufferSize = maximumBufferSize;
+        _minimumBufferSize = Math.min(roundUpToPowerOfTwo(minimumBufferSize), roundUpToPowerOfTwo(maximumBufferSize));
+        _minimumShift = Integer.numberOfTrailingZeros(_minimumBufferSize);
+        _defaultMaxPoolSize = defaultMaxPoolSize;
+
+        final int numberOfSizeClasses = log2Ceiling(maximumBufferSize) - _minimumShift + 1;
+        _sizeClasses = new BufferPool[numberOfSizeClasses];
+        for (int i = 0; i < numberOfSizeClasses; i++)
+        {
+            final int bufferSize = i == numberOfSizeClasses - 1 ? maximumBufferSize : _minimumBufferSize << i;
+            final Integer maxPoolSize = maxPoolSizes.get(bufferSize);
+            _sizeClasses[i] = new BufferPool(bufferSize,
+                                             maximumBufferSize,
+                                             maxPoolSize == null ? defaultMaxPoolSize : maxPoolSize);
+        }
+    }
+
+    ByteBuffer getBuffer(final int size)
+    {
+        return getSizeClass(size).getBuffer();
+    }
+
+    BufferPool getSizeClass(final int size)
+    {
+        return _sizeClasses[getSizeClassIndex(size)];
+    }
+
+    void returnBuffer(final ByteBuffer buf)
+    {
+        getSizeClass(buf).returnBuffer(buf);
+    }
+
+    int getMaximumBufferSize()
+    {
+        return _maximumBufferSize;
+    }
+
+    int getMinimumBufferSize()
+    {
+        return _minimumBufferSize;
+    }
+
+    int getDefaultMaxPoolSize()
+    {
+        return _defaultMaxPoolSize;
+    }
+
+    List<BufferPoolStatistics> getStatistics()
+    {
+        final List<BufferPoolStatistics> statistics = new ArrayList<>(_sizeClasses.length);
+        for (BufferPool sizeClass : _sizeClasses)
+        {
+            statistics.add(sizeClass.getStatistics());
+        }
+        return Collections.unmodifiableList(statistics);
+    }
+
+    private BufferPool getSizeClass(final ByteBuffer buf)
+    {
+        final BufferPool sizeClass = getSizeClass(buf.capacity());
+        if (sizeClass.getBufferSize() != buf.capacity())
+        {
+            throw new IllegalArgumentException("Buffer of capacity " + buf.capacity() + " does not belong to a size class");
+        }
+        return sizeClass;
+    }
+
+    int getSizeClassIndex(final int size)
+    {
+        if (size <= _minimumBufferSize)
+        {
+            return 0;
+        }
+        return Math.min(log2Ceiling(size) - _minimumShift, _sizeClasses.length - 1);
+    }
+
+    private static int log2Ceiling(final int value)
+    {
+        return value <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(value - 1);
+    }
+
+    private static int roundUpToPowerOfTwo(final int value)
+    {
+        return 1 << log2Ceiling(value);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reference to a sampled pooled buffer which keeps track of the views created on it.  The tracked views are held
+ * strongly here so that they are enqueued when the view they track is garbage collected.
+ */
+class TrackedByteBufferRef implements ByteBufferRef
+{
+    private final ByteBufferRef _delegate;
+    private final BufferRetentionTracker _tracker;
+    private final int _capacity;
+    private final BufferPool.Slab _slab;
+    private final StackTraceElement[] _allocationSite;
+    private final Set<TrackedView> _liveViews = Collections.newSetFromMap(new ConcurrentHashMap<TrackedView, Boolean>());
+    private final AtomicInteger _liveViewCount = new AtomicInteger();
+    private final AtomicLong _referencedBytes = new AtomicLong();
+    private volatile String _formattedAllocationSite;
+
+    TrackedByteBufferRef(final ByteBufferRef delegate,
+                         final BufferRetentionTracker tracker,
+                         final int capacity,
+                         final BufferPool.Slab slab,
+                         final StackTraceElement[] allocationSite)
+    {
+        _delegate = delegate;
+        _tracker = tracker;
+        _capacity = capacity;
+        _slab = slab;
+        _allocationSite = allocationSite;
+    }
+
+    @Override
+    public void incrementRef()
+    {
+        _delegate.incrementRef();
+    }
+
+    @Override
+    public void decrementRef()
+    {
+        _delegate.decrementRef();
+    }
+
+    @Override
+    public ByteBuffer getBuffer()
+    {
+        return _delegate.getBuffer();
+    }
+
+    @Override
+    public void removeFromPool()
+    {
+        _delegate.removeFromPool();
+    }
+
+    TrackedView viewCreated(final QpidByteBuffer view, final int size)
+    {
+        _liveViewCount.incrementAndGet();
+        _referencedBytes.addAndGet(size);
+        final TrackedView trackedView = _tracker.viewCreated(this, view, size);
+        _liveViews.add(trackedView);
+        return trackedView;
+    }
+
+    private void viewReleased(final TrackedView view)
+    {
+        _liveViews.remove(view);
+        _referencedBytes.addAndGet(-view.getSize());
+        if (_liveViewCount.decrementAndGet() == 0)
+        {
+            _tracker.refReleased(this);
+        }
+    }
+
+    int getCapacity()
+    {
+        return _capacity;
+    }
+
+    /**
+     * @return the slab the buffer was carved from, or null if the buffer is a direct allocation of its own
+     */
+    BufferPool.Slab getSlab()
+    {
+        return _slab;
+    }
+
+    /**
+     * @return the bytes kept reachable by the views of the buffer: the whole slab it was carved from
+     */
+    int getPinnedBytes()
+    {
+        return _slab == null ? _capacity : _slab.getCapacity();
+    }
+
+    long getReferencedBytes()
+    {
+        return Math.min(_capacity, _referencedBytes.get());
+    }
+
+    int getLiveViewCount()
+    {
+        return _liveViewCount.get();
+    }
+
+    String getAllocationSite()
+    {
+        String formattedAllocationSite = _formattedAllocationSite;
+        if (formattedAllocationSite == null)
+        {
+            final StringBuilder builder = new StringBuilder();
+            for (StackTraceElement element : _allocationSite)
+            {
+                builder.append(System.lineSeparator()).append("\tat ").append(element);
+            }
+            formattedAllocationSite = builder.toString();
+            _formattedAllocationSite = formattedAllocationSite;
+        }
+        return formattedAllocationSite;
+    }
+
+    static final class TrackedView extends WeakReference<QpidByteBuffer>
+    {
+        private static final AtomicIntegerFieldUpdater<TrackedView> RELEASED_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(TrackedView.class, "_released");
+
+        private final TrackedByteBufferRef _ref;
+        private final int _size;
+        @SuppressWarnings("unused")
+        private volatile int _released;
+
+        TrackedView(final TrackedByteBufferRef ref,
+                    final QpidByteBuffer view,
+                    final int size,
+                    final ReferenceQueue<QpidByteBuffer> queue)
+        {
+            super(view, queue);
+            _ref = ref;
+            _size = size;
+        }
+
+        TrackedByteBufferRef getRef()
+        {
+            return _ref;
+        }
+
+        int getSize()
+        {
+            return _size;
+        }
+
+        void dispose()
+        {
+            clear();
+            release();
+        }
+
+        boolean release()
+        {
+            if (RELEASED_UPDATER.compareAndSet(this, 0, 1))
+            {
+                _ref.viewReleased(this);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class BufferPoolTest extends QpidTestCase
+{
+    private static final int BUFFER_SIZE = 1024;
+    private static final int SLAB_SIZE = 4096;
+    private static final int MAX_POOL_SIZE = 32;
+
+    private BufferPool _pool;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _pool = new BufferPool(BUFFER_SIZE, SLAB_SIZE, MAX_POOL_SIZE);
+    }
+
+    public void testMagazineSize() throws Exception
+    {
+        assertEquals("Unexpected magazine size", 16, _pool.getMagazineSize());
+        assertEquals("Unexpected magazine size", 0, new BufferPool(BUFFER_SIZE, SLAB_SIZE, 0).getMagazineSize());
+        assertEquals("Unexpected magazine size", 4, new BufferPool(SLAB_SIZE, SLAB_SIZE, MAX_POOL_SIZE).getMagazineSize());
+    }
+
+    public void testBufferReturnedToThreadCacheIsReused() throws Exception
+    {
+        ByteBuffer buffer = _pool.getBuffer();
+        assertEquals("Unexpected buffer capacity", BUFFER_SIZE, buffer.capacity());
+        _pool.returnBuffer(buffer);
+
+        assertSame("Returned buffer was not reused", buffer, _pool.getBuffer());
+        assertEquals("Unexpected number of slab allocations", 1, _pool.getStatistics().getSlabAllocationCount());
+    }
+
+    public void testBuffersExchangedBetweenThreadsThroughDepot() throws Exception
+    {
+        final List<ByteBuffer> buffers = takeBuffers(3 * _pool.getMagazineSize());
+        final long slabAllocations = _pool.getStatistics().getSlabAllocationCount();
+        final CountDownLatch released = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+
+        Thread releasingThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (ByteBuffer buffer : buffers)
+                {
+                    _pool.returnBuffer(buffer);
+                }
+                released.countDown();
+                try
+                {
+                    done.await();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        releasingThread.start();
+        try
+        {
+            assertTrue("Buffers not released", released.await(10, TimeUnit.SECONDS));
+
+            BufferPoolStatistics statistics = _pool.getStatistics();
+            assertEquals("Unexpected number of buffers in use", 0, statistics.getInUseCount());
+            assertEquals("Unexpected number of pooled buffers", buffers.size(), statistics.getPooledCount());
+
+            takeBuffers(_pool.getMagazineSize());
+            assertEquals("Unexpected slab allocation",
+                         slabAllocations,
+                         _pool.getStatistics().getSlabAllocationCount());
+        }
+        finally
+        {
+            done.countDown();
+            releasingThread.join();
+        }
+    }
+
+    public void testBuffersOfTerminatedThreadReturnedToDepot() throws Exception
+    {
+        final List<ByteBuffer> buffers = takeBuffers(2 * _pool.getMagazineSize());
+        final long slabAllocations = _pool.getStatistics().getSlabAllocationCount();
+
+        Thread releasingThread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (ByteBuffer buffer : buffers)
+                {
+                    _pool.returnBuffer(buffer);
+                }
+            }
+        });
+        releasingThread.start();
+        releasingThread.join();
+
+        BufferPoolStatistics statistics = _pool.getStatistics();
+        assertEquals("Unexpected number of pooled buffers", buffers.size(), statistics.getPooledCount());
+        assertEquals("Unexpected number of discarded buffers", 0, statistics.getDiscardCount());
+
+        takeBuffers(buffers.size());
+        assertEquals("Unexpected slab allocation", slabAllocations, _pool.getStatistics().getSlabAllocationCount());
+    }
+
+    public void testDepotBoundedByMaxPoolSize() throws Exception
+    {
+        final List<ByteBuffer> buffers = takeBuffers(6 * _pool.getMagazineSize());
+        for (ByteBuffer buffer : buffers)
+        {
+            _pool.returnBuffer(buffer);
+        }
+
+        BufferPoolStatistics statistics = _pool.getStatistics();
+        assertEquals("Unexpected number of pooled buffers",
+                     MAX_POOL_SIZE + 2 * _pool.getMagazineSize(),
+                     statistics.getPooledCount());
+        assertEquals("Unexpected number of discarded buffers",
+                     buffers.size() - statistics.getPooledCount(),
+                     statistics.getDiscardCount());
+    }
+
+    public void testRemovedBufferIsNoLongerInUse() throws Exception
+    {
+        _pool.getBuffer();
+        _pool.bufferRemoved();
+
+        BufferPoolStatistics statistics = _pool.getStatistics();
+        assertEquals("Unexpected number of buffers in use", 0, statistics.getInUseCount());
+        assertEquals("Unexpected number of discarded buffers", 1, statistics.getDiscardCount());
+    }
+
+    private List<ByteBuffer> takeBuffers(final int count)
+    {
+        final List<ByteBuffer> buffers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+        {
+            buffers.add(_pool.getBuffer());
+        }
+        return buffers;
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class BufferRetentionTrackerTest extends QpidTestCase
+{
+    private static final int BUFFER_SIZE = 1024;
+
+    private BufferRetentionTracker _tracker;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _tracker = new BufferRetentionTracker(1);
+    }
+
+    public void testPinnedAndReferencedBytes() throws Exception
+    {
+        QpidByteBuffer buffer = new QpidByteBuffer(_tracker.sample(newRef(), BUFFER_SIZE));
+        QpidByteBuffer view = buffer.view(0, 100);
+
+        BufferRetentionStatistics statistics = _tracker.getStatistics();
+        assertEquals("Unexpected number of sampled buffers", 1, statistics.getSampledBufferCount());
+        assertEquals("Unexpected pinned bytes", BUFFER_SIZE, statistics.getSampledPinnedBytes());
+        assertEquals("Unexpected referenced bytes", BUFFER_SIZE, statistics.getSampledReferencedBytes());
+
+        buffer.dispose();
+
+        statistics = _tracker.getStatistics();
+        assertEquals("Unexpected pinned bytes", BUFFER_SIZE, statistics.getSampledPinnedBytes());
+        assertEquals("Unexpected referenced bytes", 100, statistics.getSampledReferencedBytes());
+        assertEquals("Unexpected retention amplification",
+                     (double) BUFFER_SIZE / 100,
+                     statistics.getRetentionAmplification(),
+                     0.001);
+
+        view.dispose();
+
+        statistics = _tracker.getStatistics();
+        assertEquals("Unexpected number of sampled buffers", 0, statistics.getSampledBufferCount());
+        assertEquals("Unexpected pinned bytes", 0, statistics.getSampledPinnedBytes());
+        assertEquals("Unexpected leaks", 0, statistics.getLeakCount());
+    }
+
+    public void testSlabPinnedByLiveSlices() throws Exception
+    {
+        BufferPool pool = new BufferPool(BUFFER_SIZE, 8 * BUFFER_SIZE, 16);
+        BufferPool.Slice first = pool.getSlice();
+        BufferPool.Slice second = pool.getSlice();
+        assertSame("Slices not carved from the same slab", first.getSlab(), second.getSlab());
+
+        QpidByteBuffer firstBuffer =
+                new QpidByteBuffer(_tracker.sample(new NonPooledByteBufferRef(first.getBuffer()), BUFFER_SIZE, first.getSlab()));
+        QpidByteBuffer secondBuffer =
+                new QpidByteBuffer(_tracker.sample(new NonPooledByteBufferRef(second.getBuffer()), BUFFER_SIZE, second.getSlab()));
+
+        BufferRetentionStatistics statistics = _tracker.getStatistics();
+        assertEquals("Unexpected number of sampled buffers", 2, statistics.getSampledBufferCount());
+        assertEquals("Slab not counted once", 8 * BUFFER_SIZE, statistics.getSampledPinnedBytes());
+
+        QpidByteBuffer view = firstBuffer.view(0, 100);
+        firstBuffer.dispose();
+        secondBuffer.dispose();
+
+        statistics = _tracker.getStatistics();
+        assertEquals("Unexpected number of sampled buffers", 1, statistics.getSampledBufferCount());
+        assertEquals("Unexpected pinned bytes", 8 * BUFFER_SIZE, statistics.getSampledPinnedBytes());
+        assertEquals("Unexpected referenced bytes", 100, statistics.getSampledReferencedBytes());
+
+        view.dispose();
+    }
+
+    public void testEstimatedBytesScaledBySampleInterval() throws Exception
+    {
+        _tracker = new BufferRetentionTracker(1)
+        {
+            @Override
+            int getSampleInterval()
+            {
+                return 1;
+            }
+        };
+        QpidByteBuffer buffer = new QpidByteBuffer(_tracker.sample(newRef(), BUFFER_SIZE));
+
+        BufferRetentionStatistics statistics = _tracker.getStatistics();
+        assertEquals("Unexpected estimated pinned bytes",
+                     statistics.getSampledPinnedBytes() * statistics.getSampleInterval(),
+                     statistics.getEstimatedPinnedBytes());
+        buffer.dispose();
+    }
+
+    public void testAllocationSiteReported() throws Exception
+    {
+        QpidByteBuffer buffer = new QpidByteBuffer(_tracker.sample(newRef(), BUFFER_SIZE));
+
+        Map<String, Long> sites = _tracker.getStatistics().getSampledPinnedBytesByAllocationSite();
+        assertEquals("Unexpected number of allocation sites", 1, sites.size());
+        String site = sites.keySet().iterator().next();
+        assertTrue("Allocation site does not name the allocating method : " + site,
+                   site.contains("testAllocationSiteReported"));
+        assertEquals("Unexpected pinned bytes for site", Long.valueOf(BUFFER_SIZE), sites.get(site));
+        buffer.dispose();
+    }
+
+    public void testUndisposedBufferReportedAsLeak() throws Exception
+    {
+        new QpidByteBuffer(_tracker.sample(newRef(), BUFFER_SIZE));
+
+        long timeout = System.currentTimeMillis() + 10000L;
+        while (_tracker.getStatistics().getLeakCount() == 0 && System.currentTimeMillis() < timeout)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        BufferRetentionStatistics statistics = _tracker.getStatistics();
+        assertEquals("Leak not detected", 1, statistics.getLeakCount());
+        assertEquals("Unexpected number of sampled buffers", 0, statistics.getSampledBufferCount());
+    }
+
+    public void testUnsampledRefNotTracked() throws Exception
+    {
+        _tracker = new BufferRetentionTracker(Integer.MAX_VALUE);
+        int tracked = 0;
+        for (int i = 0; i < 100; i++)
+        {
+            if (_tracker.sample(newRef(), BUFFER_SIZE) instanceof TrackedByteBufferRef)
+            {
+                tracked++;
+            }
+        }
+        assertTrue("Unexpected number of tracked buffers " + tracked, tracked <= 1);
+    }
+
+    private ByteBufferRef newRef()
+    {
+        return new NonPooledByteBufferRef(ByteBuffer.allocateDirect(BUFFER_SIZE));
+    }
+}
@@ -21,6 +21,8 @@
 package org.apache.qpid.bytebuffer;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -95,6 +97,80 @@ public class QpidByteBufferTest extends QpidTestCase
         }
     }
 
+    public void testPackSparseBuffers() throws Exception
+    {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++)
+        {
+            data[i] = (byte) i;
+        }
+        QpidByteBuffer whole = QpidByteBuffer.wrap(data);
+        Collection<QpidByteBuffer> sparse = Arrays.asList(whole.view(10, 15), whole.view(50, 3));
+        whole.dispose();
+
+        assertEquals("Unexpected pinned size", 100, QpidByteBuffer.getPinnedSize(sparse));
+        assertTrue("Buffers should be sparse", QpidByteBuffer.isSparse(sparse));
+
+        Collection<QpidByteBuffer> packed = QpidByteBuffer.pack(sparse);
+        byte[] packedData = new byte[18];
+        int position = 0;
+        for (QpidByteBuffer buf : packed)
+        {
+            assertTrue("Packed buffer should be direct", buf.isDirect());
+            int remaining = buf.remaining();
+            buf.get(packedData, position, remaining);
+            position += remaining;
+            buf.rewind();
+        }
+        assertEquals("Unexpected packed size", packedData.length, position);
+        byte[] expected = new byte[18];
+        System.arraycopy(data, 10, expected, 0, 15);
+        System.arraycopy(data, 50, expected, 15, 3);
+        Assert.assertArrayEquals("Unexpected packed content", expected, packedData);
+        assertFalse("Packed buffers should not be sparse", QpidByteBuffer.isSparse(packed));
+
+        for (QpidByteBuffer buf : sparse)
+        {
+            assertEquals("Source buffer should be unchanged", 0, buf.position());
+            buf.dispose();
+        }
+        for (QpidByteBuffer buf : packed)
+        {
+            buf.dispose();
+        }
+    }
+
+    public void testGatheringWriteLimitedToMaxBuffers() throws Exception
+    {
+        Collection<QpidByteBuffer> buffers = Arrays.asList(QpidByteBuffer.wrap(new byte[]{1, 2}),
+                                                           QpidByteBuffer.wrap(new byte[0]),
+                                                           QpidByteBuffer.wrap(new byte[]{3}),
+                                                           QpidByteBuffer.wrap(new byte[]{4, 5}));
+        Pipe pipe = Pipe.open();
+        try
+        {
+            assertEquals("Unexpected number of bytes written", 3L, QpidByteBuffer.write(pipe.sink(), buffers, 2));
+            ByteBuffer received = ByteBuffer.allocate(3);
+            while (received.hasRemaining())
+            {
+                pipe.source().read(received);
+            }
+            Assert.assertArrayEquals("Unexpected content", new byte[]{1, 2, 3}, received.array());
+
+            assertEquals("Unexpected number of bytes written", 2L, QpidByteBuffer.write(pipe.sink(), buffers, 2));
+            assertEquals("Unexpected number of bytes written", 0L, QpidByteBuffer.write(pipe.sink(), buffers, 2));
+        }
+        finally
+        {
+            pipe.sink().close();
+            pipe.source().close();
+            for (QpidByteBuffer buf : buffers)
+            {
+                buf.dispose();
+            }
+        }
+    }
+
     public void testSettingUpPoolTwice() throws Exception
     {
         try
@@ -0,0 +1,156 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.bytebuffer;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.qpid.test.utils.QpidTestCase;
+
+public class SizeClassedBufferPoolTest extends QpidTestCase
+{
+    private static final int MAXIMUM_BUFFER_SIZE = 4096;
+    private static final int MINIMUM_BUFFER_SIZE = 200;
+    private static final int MAX_POOL_SIZE = 16;
+
+    private SizeClassedBufferPool _pool;
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        super.setUp();
+        _pool = new SizeClassedBufferPool(MAXIMUM_BUFFER_SIZE,
+                                          MINIMUM_BUFFER_SIZE,
+                                          MAX_POOL_SIZE,
+                                          Collections.singletonMap(1024, 2));
+    }
+
+    public void testSizeClasses() throws Exception
+    {
+        assertEquals("Unexpected minimum buffer size", 256, _pool.getMinimumBufferSize());
+
+        List<BufferPoolStatistics> statistics = _pool.getStatistics();
+        assertEquals("Unexpected number of size classes", 5, statistics.size());
+        assertEquals(256, statistics.get(0).getBufferSize());
+        assertEquals(512, statistics.get(1).getBufferSize());
+        assertEquals(1024, statistics.get(2).getBufferSize());
+        assertEquals(2048, statistics.get(3).getBufferSize());
+        assertEquals(MAXIMUM_BUFFER_SIZE, statistics.get(4).getBufferSize());
+
+        assertEquals("Unexpected overridden pool size", 2, statistics.get(2).getMaxPoolSize());
+        assertEquals("Unexpected default pool size", MAX_POOL_SIZE, statistics.get(3).getMaxPoolSize());
+    }
+
+    public void testNonPowerOfTwoMaximumBufferSize() throws Exception
+    {
+        SizeClassedBufferPool pool = new SizeClassedBufferPool(3000,
+                                                               MINIMUM_BUFFER_SIZE,
+                                                               MAX_POOL_SIZE,
+                                                               Collections.<Integer, Integer>emptyMap());
+
+        assertEquals("Unexpected buffer size", 2048, pool.getBuffer(2048).capacity());
+        assertEquals("Unexpected buffer size", 3000, pool.getBuffer(2049).capacity());
+        assertEquals("Unexpected buffer size", 3000, pool.getBuffer(3000).capacity());
+    }
+
+    public void testBufferRoundedUpToSizeClass() throws Exception
+    {
+        assertEquals("Unexpected buffer size", 256, _pool.getBuffer(0).capacity());
+        assertEquals("Unexpected buffer size", 256, _pool.getBuffer(200).capacity());
+        assertEquals("Unexpected buffer size", 256, _pool.getBuffer(256).capacity());
+        assertEquals("Unexpected buffer size", 512, _pool.getBuffer(257).capacity());
+        assertEquals("Unexpected buffer size", 2048, _pool.getBuffer(1025).capacity());
+        assertEquals("Unexpected buffer size", MAXIMUM_BUFFER_SIZE, _pool.getBuffer(MAXIMUM_BUFFER_SIZE).capacity());
+    }
+
+    public void testSmallBuffersCarvedFromSlab() throws Exception
+    {
+        ByteBuffer first = _pool.getBuffer(256);
+        assertTrue("Pooled buffer is not direct", first.isDirect());
+
+        BufferPoolStatistics statistics = _pool.getStatistics().get(0);
+        assertEquals("Unexpected number of slab allocations", 1, statistics.getSlabAllocationCount());
+        assertEquals("Unexpected number of buffers in use", 1, statistics.getInUseCount());
+        assertEquals("Unexpected number of pooled buffers",
+                     MAXIMUM_BUFFER_SIZE / 256 - 1,
+                     statistics.getPooledCount());
+
+        for (int i = 1; i < MAXIMUM_BUFFER_SIZE / 256; i++)
+        {
+            _pool.getBuffer(256);
+        }
+
+        statistics = _pool.getStatistics().get(0);
+        assertEquals("Unexpected number of slab allocations", 1, statistics.getSlabAllocationCount());
+        assertEquals("Unexpected number of pooled buffers", 0, statistics.getPooledCount());
+
+        _pool.getBuffer(256);
+        assertEquals("Unexpected number of slab allocations", 2, _pool.getStatistics().get(0).getSlabAllocationCount());
+    }
+
+    public void testReturnedBufferIsReused() throws Exception
+    {
+        ByteBuffer buffer = _pool.getBuffer(MAXIMUM_BUFFER_SIZE);
+        _pool.returnBuffer(buffer);
+
+        assertSame("Returned buffer was not reused", buffer, _pool.getBuffer(MAXIMUM_BUFFER_SIZE));
+        BufferPoolStatistics statistics = _pool.getStatistics().get(4);
+        assertEquals("Unexpected number of allocations", 2, statistics.getAllocationCount());
+        assertEquals("Unexpected number of slab allocations", 1, statistics.getSlabAllocationCount());
+    }
+
+    public void testPoolSizeLimitedPerSizeClass() throws Exception
+    {
+        BufferPool sizeClass = _pool.getSizeClass(1024);
+        assertEquals("Unexpected magazine size", 2, sizeClass.getMagazineSize());
+
+        ByteBuffer[] buffers = new ByteBuffer[8];
+        for (int i = 0; i < buffers.length; i++)
+        {
+            buffers[i] = _pool.getBuffer(1024);
+        }
+        for (ByteBuffer buffer : buffers)
+        {
+            _pool.returnBuffer(buffer);
+        }
+
+        BufferPoolStatistics statistics = _pool.getStatistics().get(2);
+        assertEquals("Unexpected number of pooled buffers",
+                     sizeClass.getMaxSize() + 2 * sizeClass.getMagazineSize(),
+                     statistics.getPooledCount());
+        assertEquals("Unexpected number of buffers in use", 0, statistics.getInUseCount());
+        assertEquals("Unexpected number of discarded buffers", 2, statistics.getDiscardCount());
+    }
+
+    public void testReturnBufferOfForeignSize() throws Exception
+    {
+        try
+        {
+            _pool.returnBuffer(ByteBuffer.allocateDirect(300));
+            fail("Exception not thrown");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // pass
+        }
+    }
+}